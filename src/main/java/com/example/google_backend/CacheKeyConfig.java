@@ -0,0 +1,51 @@
+package com.example.google_backend;
+
+import com.example.google_backend.utils.generator.CacheKeyGenerator;
+import com.example.google_backend.utils.generator.SpatialQuantizer;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * 路线缓存键配置：坐标量化方式与键格式
+ */
+@Configuration
+public class CacheKeyConfig {
+
+    private static final Logger logger = Logger.getLogger(CacheKeyConfig.class.getName());
+
+    // 未单独配置的出行方式使用的量化器
+    @Value("${route.cache.key.default-quantizer:decimal:5}")
+    private String defaultQuantizer;
+
+    // 按出行方式配置的量化器，如 TRANSIT=geohash:7,DRIVE=grid:200
+    @Value("${route.cache.key.quantizers:}")
+    private String modeQuantizers;
+
+    // 是否使用哈希后的短键
+    @Value("${route.cache.key.hashed:false}")
+    private boolean hashed;
+
+    @PostConstruct
+    public void init() {
+        Map<String, SpatialQuantizer> quantizers = new HashMap<>();
+        for (String item : modeQuantizers.split(",")) {
+            if (item.isBlank()) {
+                continue;
+            }
+            int separator = item.indexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Invalid route.cache.key.quantizers entry: " + item);
+            }
+            quantizers.put(item.substring(0, separator).trim().toUpperCase(),
+                    SpatialQuantizer.parse(item.substring(separator + 1)));
+        }
+        SpatialQuantizer fallback = SpatialQuantizer.parse(defaultQuantizer);
+        CacheKeyGenerator.configure(fallback, quantizers, hashed);
+        logger.info("路线缓存键配置 - 默认量化: " + fallback.level() + " - 按出行方式: " + quantizers.keySet() + " - 哈希键: " + hashed);
+    }
+}
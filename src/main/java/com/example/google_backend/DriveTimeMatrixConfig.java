@@ -0,0 +1,55 @@
+package com.example.google_backend;
+
+import com.example.google_backend.common.matrix.DriveTimeMatrix;
+import com.example.google_backend.common.matrix.StopCatalog;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.logging.Logger;
+
+/**
+ * 预计算驾驶时间矩阵配置
+ * route.matrix.path 指向 DriveTimeMatrixJob 生成的文件；文件不存在、损坏或与当前站点列表不匹配时不启用，
+ * 所有替换路段照常请求 OTP
+ */
+@Configuration
+public class DriveTimeMatrixConfig {
+
+    private final Logger logger = Logger.getLogger(DriveTimeMatrixConfig.class.getName());
+
+    private final Environment environment;
+
+    public DriveTimeMatrixConfig(Environment environment) {
+        this.environment = environment;
+    }
+
+    @Bean
+    public DriveTimeMatrix driveTimeMatrix() {
+        String location = environment.getProperty("route.matrix.path", "");
+        if (!environment.getProperty("route.matrix.enabled", Boolean.class, true) || location.isBlank()) {
+            return DriveTimeMatrix.disabled();
+        }
+        Path path = Path.of(location);
+        if (!Files.isRegularFile(path)) {
+            logger.info("驾驶时间矩阵文件不存在，不启用: " + path.toAbsolutePath());
+            return DriveTimeMatrix.disabled();
+        }
+        try (InputStream kmb = new ClassPathResource("kmb_stops.csv").getInputStream();
+             InputStream ctb = new ClassPathResource("cb_stops.csv").getInputStream()) {
+            StopCatalog catalog = StopCatalog.load(kmb, ctb);
+            DriveTimeMatrix matrix = DriveTimeMatrix.open(path, catalog,
+                    environment.getProperty("route.matrix.snap-meters", Double.class, 60.0));
+            logger.info("驾驶时间矩阵已加载 - 站点: " + catalog.size() + " - 条目: " + matrix.size());
+            return matrix;
+        } catch (IOException e) {
+            logger.warning("驾驶时间矩阵加载失败，不启用: " + e.getMessage());
+            return DriveTimeMatrix.disabled();
+        }
+    }
+}
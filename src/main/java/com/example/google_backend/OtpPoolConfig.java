@@ -0,0 +1,59 @@
+package com.example.google_backend;
+
+import com.example.google_backend.common.otp.OtpBackendPool;
+import com.example.google_backend.common.otp.OtpGraphQlClient;
+import com.example.google_backend.common.otp.OtpPlanBatcher;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * OTP 实例池配置
+ * otp.base.urls 配置多个实例 (逗号分隔)，未配置时只使用 otp.base.url；
+ * 健康检查与被动摘除参数见 otp.pool.*，GraphQL 客户端与微批参数见 otp.graphql.*
+ */
+@Configuration
+public class OtpPoolConfig {
+
+    private final Environment environment;
+
+    public OtpPoolConfig(Environment environment) {
+        this.environment = environment;
+    }
+
+    @Bean(destroyMethod = "close")
+    public OtpBackendPool otpBackendPool() {
+        String urls = environment.getProperty("otp.base.urls", "");
+        if (urls.isBlank()) {
+            urls = environment.getRequiredProperty("otp.base.url");
+        }
+        List<String> baseUrls = Arrays.stream(urls.split(","))
+                .map(String::trim)
+                .filter(url -> !url.isEmpty())
+                .toList();
+
+        return new OtpBackendPool(baseUrls,
+                ZoneId.of(environment.getProperty("otp.zone-id", "Asia/Hong_Kong")),
+                environment.getProperty("otp.pool.failure-threshold", Integer.class, 3),
+                environment.getProperty("otp.pool.slow-ms", Long.class, 3000L),
+                environment.getProperty("otp.pool.eject-ms", Long.class, 30000L),
+                environment.getProperty("otp.pool.health-path", "/otp/actuators/health"),
+                environment.getProperty("otp.pool.health-interval-ms", Long.class, 5000L));
+    }
+
+    @Bean(destroyMethod = "close")
+    public OtpPlanBatcher otpPlanBatcher(OtpBackendPool otpBackendPool,
+                                         @Qualifier("otpRestTemplate") RestTemplate otpRestTemplate) {
+        OtpGraphQlClient client = new OtpGraphQlClient(otpRestTemplate,
+                environment.getProperty("otp.graphql.path", "/otp/routers/default/index/graphql"));
+        return new OtpPlanBatcher(otpBackendPool, client,
+                environment.getProperty("otp.graphql.batch-window-ms", Long.class, 3L),
+                environment.getProperty("otp.graphql.batch-max-size", Integer.class, 16));
+    }
+}
@@ -1,12 +1,62 @@
 package com.example.google_backend;
+import com.example.google_backend.common.concurrent.RequestBudget;
+import com.example.google_backend.common.http.HttpClientPoolRegistry;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 上游 HTTP 客户端配置
+ * 每个上游 (Google Routes、九巴、城巴、OTP) 使用独立的超时配置 (http.client.&lt;上游&gt;.*)，
+ * 连接保持复用，响应自动 gzip 解压；当前线程有请求预算时，等待连接与读取的超时不超过剩余预算
+ * Google Routes 使用 java.net.http.HttpClient (HTTP/2，并发请求在同一连接上多路复用)，
+ * 其余上游使用 Apache HttpClient 连接池 (HTTP/1.1)
+ */
 @Configuration
 public class RestTemplateConfig {
+
+    private final Environment environment;
+    private final HttpClientPoolRegistry httpClientPoolRegistry;
+
+    public RestTemplateConfig(Environment environment, HttpClientPoolRegistry httpClientPoolRegistry) {
+        this.environment = environment;
+        this.httpClientPoolRegistry = httpClientPoolRegistry;
+    }
+
     @Bean
+    @Primary
     public RestTemplate restTemplate() {
 //        // 设置系统代理
 //        System.setProperty("http.proxyHost", "127.0.0.1");
@@ -14,6 +64,215 @@ public class RestTemplateConfig {
 //        System.setProperty("https.proxyHost", "127.0.0.1");
 //        System.setProperty("https.proxyPort", "7890");  // 你的代理端口
 
-        return new RestTemplate();
+        return pooledRestTemplate("default");
+    }
+
+    @Bean
+    public RestTemplate googleRestTemplate() {
+        return http2RestTemplate("google");
+    }
+
+    @Bean
+    public RestTemplate kmbRestTemplate() {
+        return pooledRestTemplate("kmb");
+    }
+
+    @Bean
+    public RestTemplate citybusRestTemplate() {
+        return pooledRestTemplate("citybus");
+    }
+
+    @Bean
+    public RestTemplate otpRestTemplate() {
+        return pooledRestTemplate("otp");
+    }
+
+    /**
+     * 创建带连接池的 RestTemplate
+     *
+     * @param upstream 上游名称，对应配置前缀 http.client.&lt;upstream&gt;
+     * @return RestTemplate
+     */
+    private RestTemplate pooledRestTemplate(String upstream) {
+        String prefix = "http.client." + upstream + ".";
+        int maxConnections = environment.getProperty(prefix + "max-connections", Integer.class, 20);
+        long connectTimeoutMs = environment.getProperty(prefix + "connect-timeout-ms", Long.class, 2000L);
+        long readTimeoutMs = environment.getProperty(prefix + "read-timeout-ms", Long.class, 5000L);
+        long acquireTimeoutMs = environment.getProperty(prefix + "acquire-timeout-ms", Long.class, 1000L);
+        long idleSeconds = environment.getProperty(prefix + "idle-seconds", Long.class, 60L);
+
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                // 每个上游只有一个主机，单路由上限即总上限
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnections)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                        .setSocketTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(10))
+                        .build())
+                .build();
+        httpClientPoolRegistry.register(upstream, connectionManager);
+
+        RequestConfig defaultRequestConfig = RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.ofMilliseconds(acquireTimeoutMs))
+                .setResponseTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                .build();
+
+        // HttpClients.custom() 默认发送 Accept-Encoding 并自动解压 gzip/deflate 响应
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(defaultRequestConfig)
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofSeconds(idleSeconds))
+                .build();
+
+        return new RestTemplate(new BudgetAwareRequestFactory(httpClient, defaultRequestConfig, acquireTimeoutMs, readTimeoutMs));
+    }
+
+    /**
+     * 创建基于 java.net.http.HttpClient 的 RestTemplate，通过 TLS ALPN 协商 HTTP/2，服务端不支持时回落到 HTTP/1.1
+     * HTTP/2 下同一主机的并发请求共用一个连接，不需要连接池，max-connections / acquire-timeout-ms 不适用
+     *
+     * @param upstream 上游名称，对应配置前缀 http.client.&lt;upstream&gt;
+     * @return RestTemplate
+     */
+    private RestTemplate http2RestTemplate(String upstream) {
+        String prefix = "http.client." + upstream + ".";
+        long connectTimeoutMs = environment.getProperty(prefix + "connect-timeout-ms", Long.class, 2000L);
+        long readTimeoutMs = environment.getProperty(prefix + "read-timeout-ms", Long.class, 5000L);
+
+        HttpClient httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .build();
+
+        RestTemplate restTemplate = new RestTemplate(new BudgetAwareJdkRequestFactory(httpClient, readTimeoutMs));
+        // java.net.http 不处理压缩，由拦截器请求并解压 gzip 响应
+        restTemplate.getInterceptors().add(new GzipResponseInterceptor());
+        return restTemplate;
+    }
+
+    /**
+     * 按当前线程的请求预算缩短单次请求的超时 (java.net.http)
+     */
+    private static final class BudgetAwareJdkRequestFactory implements ClientHttpRequestFactory {
+
+        private final HttpClient httpClient;
+        private final Executor executor = new SimpleAsyncTaskExecutor("google-http-");
+        private final JdkClientHttpRequestFactory defaultFactory;
+        private final long readTimeoutMs;
+
+        private BudgetAwareJdkRequestFactory(HttpClient httpClient, long readTimeoutMs) {
+            this.httpClient = httpClient;
+            this.readTimeoutMs = readTimeoutMs;
+            this.defaultFactory = new JdkClientHttpRequestFactory(httpClient, executor);
+            this.defaultFactory.setReadTimeout(Duration.ofMillis(readTimeoutMs));
+        }
+
+        @Override
+        public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) throws IOException {
+            long remainingMs = RequestBudget.remainingMillis();
+            if (remainingMs >= readTimeoutMs) {
+                // 没有预算或预算充足，使用默认配置
+                return defaultFactory.createRequest(uri, httpMethod);
+            }
+            JdkClientHttpRequestFactory budgeted = new JdkClientHttpRequestFactory(httpClient, executor);
+            budgeted.setReadTimeout(Duration.ofMillis(Math.max(1L, remainingMs)));
+            return budgeted.createRequest(uri, httpMethod);
+        }
+    }
+
+    /**
+     * 发送 Accept-Encoding: gzip，响应为 gzip 时解压并去掉 Content-Encoding / Content-Length
+     */
+    static final class GzipResponseInterceptor implements ClientHttpRequestInterceptor {
+
+        @Override
+        public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+                throws IOException {
+            if (!request.getHeaders().containsKey(HttpHeaders.ACCEPT_ENCODING)) {
+                request.getHeaders().set(HttpHeaders.ACCEPT_ENCODING, "gzip");
+            }
+            ClientHttpResponse response = execution.execute(request, body);
+            String encoding = response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING);
+            return "gzip".equalsIgnoreCase(encoding) ? new GzipClientHttpResponse(response) : response;
+        }
+    }
+
+    private static final class GzipClientHttpResponse implements ClientHttpResponse {
+
+        private final ClientHttpResponse delegate;
+        private final HttpHeaders headers;
+        private InputStream body;
+
+        private GzipClientHttpResponse(ClientHttpResponse delegate) {
+            this.delegate = delegate;
+            this.headers = new HttpHeaders();
+            this.headers.putAll(delegate.getHeaders());
+            this.headers.remove(HttpHeaders.CONTENT_ENCODING);
+            this.headers.remove(HttpHeaders.CONTENT_LENGTH);
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return delegate.getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return delegate.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            if (body == null) {
+                body = new GZIPInputStream(delegate.getBody());
+            }
+            return body;
+        }
+
+        @Override
+        public void close() {
+            delegate.close();
+        }
+    }
+
+    /**
+     * 按当前线程的请求预算缩短单次请求的超时
+     */
+    private static final class BudgetAwareRequestFactory extends HttpComponentsClientHttpRequestFactory {
+
+        private final RequestConfig defaultRequestConfig;
+        private final long acquireTimeoutMs;
+        private final long readTimeoutMs;
+
+        private BudgetAwareRequestFactory(CloseableHttpClient httpClient, RequestConfig defaultRequestConfig,
+                                          long acquireTimeoutMs, long readTimeoutMs) {
+            super(httpClient);
+            this.defaultRequestConfig = defaultRequestConfig;
+            this.acquireTimeoutMs = acquireTimeoutMs;
+            this.readTimeoutMs = readTimeoutMs;
+        }
+
+        @Override
+        protected HttpContext createHttpContext(HttpMethod httpMethod, URI uri) {
+            long remainingMs = RequestBudget.remainingMillis();
+            if (remainingMs >= readTimeoutMs) {
+                // 没有预算或预算充足，使用默认配置
+                return null;
+            }
+            long timeoutMs = Math.max(1L, remainingMs);
+            HttpClientContext context = HttpClientContext.create();
+            context.setRequestConfig(RequestConfig.copy(defaultRequestConfig)
+                    .setConnectionRequestTimeout(Timeout.ofMilliseconds(Math.min(acquireTimeoutMs, timeoutMs)))
+                    .setResponseTimeout(Timeout.ofMilliseconds(timeoutMs))
+                    .build());
+            return context;
+        }
     }
 }
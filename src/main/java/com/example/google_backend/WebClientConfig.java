@@ -0,0 +1,63 @@
+package com.example.google_backend;
+
+import io.netty.channel.ChannelOption;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+
+/**
+ * 响应式路线接口使用的非阻塞 HTTP 客户端
+ * 与 RestTemplateConfig 读取相同的 http.client.&lt;上游&gt;.* 配置，连接池独立
+ */
+@Configuration
+public class WebClientConfig {
+
+    private final Environment environment;
+
+    public WebClientConfig(Environment environment) {
+        this.environment = environment;
+    }
+
+    @Bean
+    public WebClient googleWebClient() {
+        return pooledWebClient("google");
+    }
+
+    /**
+     * 创建带连接池的 WebClient (Reactor Netty)
+     *
+     * @param upstream 上游名称，对应配置前缀 http.client.&lt;upstream&gt;
+     * @return WebClient
+     */
+    private WebClient pooledWebClient(String upstream) {
+        String prefix = "http.client." + upstream + ".";
+        int maxConnections = environment.getProperty(prefix + "max-connections", Integer.class, 20);
+        int connectTimeoutMs = environment.getProperty(prefix + "connect-timeout-ms", Integer.class, 2000);
+        long readTimeoutMs = environment.getProperty(prefix + "read-timeout-ms", Long.class, 5000L);
+        long acquireTimeoutMs = environment.getProperty(prefix + "acquire-timeout-ms", Long.class, 1000L);
+        long idleSeconds = environment.getProperty(prefix + "idle-seconds", Long.class, 60L);
+
+        ConnectionProvider provider = ConnectionProvider.builder("reactive-" + upstream)
+                .maxConnections(maxConnections)
+                .pendingAcquireTimeout(Duration.ofMillis(acquireTimeoutMs))
+                .maxIdleTime(Duration.ofSeconds(idleSeconds))
+                .build();
+
+        HttpClient httpClient = HttpClient.create(provider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMs)
+                .responseTimeout(Duration.ofMillis(readTimeoutMs))
+                .compress(true);
+
+        return WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                // Google 路线响应可能超过默认的 256KB 缓冲上限
+                .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize(4 * 1024 * 1024))
+                .build();
+    }
+}
@@ -0,0 +1,222 @@
+package com.example.google_backend.common.concurrent;
+
+import java.net.SocketTimeoutException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 自适应并发隔离舱 (bulkhead)
+ * 同时执行的调用数不超过当前并发上限，超出的调用在有界队列中最多等待 maxWait，
+ * 队列已满或等待超时立即抛出 {@link BulkheadFullException}，调用方据此降级而不是继续堆积线程。
+ *
+ * 并发上限按延迟梯度调整 (gradient 算法)：本次调用延迟与长期基线之比在容忍范围内时上限缓慢增长，
+ * 延迟上升时按比例收缩；调用超时视为过载，上限直接按比例回退。
+ * 使用 ReentrantLock 而不是 synchronized，等待时不会固定虚拟线程的载体线程。
+ */
+public class AdaptiveBulkhead {
+
+    // 长期延迟基线的指数加权系数
+    private static final double LONG_RTT_ALPHA = 0.02;
+
+    // 超时后的上限回退比例
+    private static final double TIMEOUT_BACKOFF = 0.9;
+
+    // 梯度下限，单次样本最多将上限减半
+    private static final double MIN_GRADIENT = 0.5;
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxQueue;
+    private final long maxWaitNanos;
+
+    // 延迟容忍倍数：本次延迟不超过基线的该倍数时不收缩
+    private final double tolerance;
+
+    // 新上限的平滑系数
+    private final double smoothing;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+
+    // 以下字段由 lock 保护
+    private double limit;
+    private int inFlight;
+    private int queued;
+    private double longRttNanos;
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder waitTimeouts = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+
+    public AdaptiveBulkhead(String name, int initialLimit, int minLimit, int maxLimit,
+                            int maxQueue, long maxWaitMillis, double tolerance, double smoothing) {
+        this.name = name;
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = Math.max(this.minLimit, Math.min(this.maxLimit, initialLimit));
+        this.maxQueue = Math.max(0, maxQueue);
+        this.maxWaitNanos = Math.max(0L, maxWaitMillis) * 1_000_000L;
+        this.tolerance = Math.max(1.0, tolerance);
+        this.smoothing = Math.max(0.01, Math.min(1.0, smoothing));
+    }
+
+    /**
+     * 在隔离舱内执行调用
+     *
+     * @param call 上游调用
+     * @return 调用结果
+     * @throws BulkheadFullException 并发已满且排队失败
+     * @throws Exception 调用本身抛出的异常
+     */
+    public <T> T execute(Callable<T> call) throws Exception {
+        acquire();
+        long start = System.nanoTime();
+        Throwable failure = null;
+        try {
+            return call.call();
+        } catch (Throwable t) {
+            failure = t;
+            throw t;
+        } finally {
+            release(System.nanoTime() - start, failure);
+        }
+    }
+
+    /**
+     * 异步调用获取许可 (可能排队等待，不能在事件循环线程上调用)
+     * 调用结束 (成功、失败或取消) 后必须调用一次 {@link #releasePermit(long, Throwable)}
+     *
+     * @return 获取许可的时间 (System.nanoTime)
+     * @throws BulkheadFullException 并发已满且排队失败
+     */
+    public long acquirePermit() throws InterruptedException {
+        acquire();
+        return System.nanoTime();
+    }
+
+    /**
+     * 异步调用结束后释放许可
+     *
+     * @param acquiredAtNanos {@link #acquirePermit()} 的返回值
+     * @param failure 调用失败的异常，成功时为 null
+     */
+    public void releasePermit(long acquiredAtNanos, Throwable failure) {
+        release(System.nanoTime() - acquiredAtNanos, failure);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 当前并发上限、占用、排队与拒绝统计
+     */
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        lock.lock();
+        try {
+            stats.put("limit", (long) limit);
+            stats.put("inFlight", (long) inFlight);
+            stats.put("queued", (long) queued);
+            stats.put("baselineRttMillis", (long) (longRttNanos / 1_000_000));
+        } finally {
+            lock.unlock();
+        }
+        stats.put("accepted", accepted.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("waitTimeouts", waitTimeouts.sum());
+        stats.put("completed", completed.sum());
+        stats.put("timeouts", timeouts.sum());
+        return stats;
+    }
+
+    private void acquire() throws InterruptedException {
+        lock.lock();
+        try {
+            if (inFlight < (int) limit) {
+                inFlight++;
+                accepted.increment();
+                return;
+            }
+            if (queued >= maxQueue || maxWaitNanos <= 0) {
+                rejected.increment();
+                throw new BulkheadFullException(name, "queue full");
+            }
+            queued++;
+            try {
+                long remaining = maxWaitNanos;
+                while (inFlight >= (int) limit) {
+                    if (remaining <= 0) {
+                        waitTimeouts.increment();
+                        throw new BulkheadFullException(name, "wait timeout");
+                    }
+                    remaining = released.awaitNanos(remaining);
+                }
+                inFlight++;
+                accepted.increment();
+            } finally {
+                queued--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(long rttNanos, Throwable failure) {
+        lock.lock();
+        try {
+            int inFlightAtCompletion = inFlight;
+            inFlight--;
+            if (failure == null) {
+                completed.increment();
+                onSample(rttNanos, inFlightAtCompletion);
+            } else if (isTimeout(failure)) {
+                timeouts.increment();
+                setLimit(limit * TIMEOUT_BACKOFF);
+            }
+            // 上限可能已变化，唤醒所有排队者重新检查
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 按延迟梯度更新并发上限
+     *
+     * @param rttNanos 本次调用延迟
+     * @param inFlightAtCompletion 本次调用完成时的并发数
+     */
+    private void onSample(long rttNanos, int inFlightAtCompletion) {
+        longRttNanos = longRttNanos == 0 ? rttNanos : longRttNanos * (1 - LONG_RTT_ALPHA) + rttNanos * LONG_RTT_ALPHA;
+        // 并发远未用满时延迟样本说明不了更高并发下的情况，不调整
+        if (inFlightAtCompletion < limit / 2) {
+            return;
+        }
+        double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, tolerance * longRttNanos / Math.max(1L, rttNanos)));
+        // sqrt(limit) 作为允许的排队余量，延迟稳定时上限按此增长
+        double newLimit = limit * gradient + Math.sqrt(limit);
+        setLimit(limit * (1 - smoothing) + newLimit * smoothing);
+    }
+
+    private void setLimit(double newLimit) {
+        limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+    }
+
+    private static boolean isTimeout(Throwable failure) {
+        for (Throwable t = failure; t != null; t = t.getCause()) {
+            if (t instanceof SocketTimeoutException || t instanceof TimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.google_backend.common.concurrent;
+
+/**
+ * 隔离舱并发已满且排队失败，调用未执行
+ */
+public class BulkheadFullException extends RuntimeException {
+
+    private final String bulkhead;
+
+    public BulkheadFullException(String bulkhead, String reason) {
+        super("Bulkhead '" + bulkhead + "' is full: " + reason);
+        this.bulkhead = bulkhead;
+    }
+
+    public String getBulkhead() {
+        return bulkhead;
+    }
+
+    /**
+     * 异常链中是否包含隔离舱拒绝
+     *
+     * @param failure 调用抛出的异常 (可能被多层包装)
+     * @return true 调用因隔离舱已满被拒绝
+     */
+    public static boolean isCause(Throwable failure) {
+        for (Throwable t = failure; t != null; t = t.getCause()) {
+            if (t instanceof BulkheadFullException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.google_backend.common.concurrent;
+
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 各上游 (google、otp、kmb、citybus、redis) 的隔离舱
+ * 配置前缀 bulkhead.&lt;上游&gt;.*，未配置的项使用默认值
+ */
+@Component
+public class BulkheadRegistry {
+
+    private final Environment environment;
+
+    private final Map<String, AdaptiveBulkhead> bulkheads = new ConcurrentHashMap<>();
+
+    public BulkheadRegistry(Environment environment) {
+        this.environment = environment;
+    }
+
+    /**
+     * 获取上游的隔离舱，首次使用时按配置创建
+     *
+     * @param upstream 上游名称
+     * @return 隔离舱
+     */
+    public AdaptiveBulkhead get(String upstream) {
+        return bulkheads.computeIfAbsent(upstream, this::create);
+    }
+
+    /**
+     * 各隔离舱的并发上限与拒绝统计
+     *
+     * @return 按上游分组的统计
+     */
+    public Map<String, Map<String, Long>> getStats() {
+        Map<String, Map<String, Long>> stats = new LinkedHashMap<>();
+        bulkheads.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(bulkhead -> stats.put(bulkhead.getKey(), bulkhead.getValue().getStats()));
+        return stats;
+    }
+
+    private AdaptiveBulkhead create(String upstream) {
+        String prefix = "bulkhead." + upstream + ".";
+        return new AdaptiveBulkhead(upstream,
+                environment.getProperty(prefix + "initial-limit", Integer.class, 20),
+                environment.getProperty(prefix + "min-limit", Integer.class, 2),
+                environment.getProperty(prefix + "max-limit", Integer.class, 200),
+                environment.getProperty(prefix + "max-queue", Integer.class, 50),
+                environment.getProperty(prefix + "max-wait-ms", Long.class, 100L),
+                environment.getProperty(prefix + "tolerance", Double.class, 2.0),
+                environment.getProperty(prefix + "smoothing", Double.class, 0.2));
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.google_backend.common.concurrent;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 熔断器
+ * CLOSED: 正常调用，连续失败达到阈值后打开；
+ * OPEN: 拒绝所有调用，openDuration 之后进入 HALF_OPEN；
+ * HALF_OPEN: 只放行少量探测调用，探测成功则关闭，失败则重新打开。
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openNanos;
+    private final int halfOpenMaxCalls;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // 以下字段由 lock 保护
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private int halfOpenInFlight;
+
+    private final LongAdder successes = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder opened = new LongAdder();
+
+    public CircuitBreaker(String name, int failureThreshold, long openMillis, int halfOpenMaxCalls) {
+        this.name = name;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0L, openMillis));
+        this.halfOpenMaxCalls = Math.max(1, halfOpenMaxCalls);
+    }
+
+    /**
+     * 是否允许本次调用；返回 true 后必须调用 onSuccess / onFailure / onIgnored 之一
+     *
+     * @return false 熔断中，调用方应直接降级
+     */
+    public boolean tryAcquire() {
+        lock.lock();
+        try {
+            if (state == State.CLOSED) {
+                return true;
+            }
+            if (state == State.OPEN) {
+                if (System.nanoTime() - openedAt < openNanos) {
+                    rejected.increment();
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                halfOpenInFlight = 0;
+            }
+            if (halfOpenInFlight < halfOpenMaxCalls) {
+                halfOpenInFlight++;
+                return true;
+            }
+            rejected.increment();
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void onSuccess() {
+        successes.increment();
+        lock.lock();
+        try {
+            consecutiveFailures = 0;
+            if (state == State.HALF_OPEN) {
+                state = State.CLOSED;
+                halfOpenInFlight = 0;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void onFailure() {
+        failures.increment();
+        lock.lock();
+        try {
+            if (state == State.HALF_OPEN || (state == State.CLOSED && ++consecutiveFailures >= failureThreshold)) {
+                trip();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 调用未真正发往下游 (如被本地隔离舱拒绝)，不计入成功或失败
+     */
+    public void onIgnored() {
+        lock.lock();
+        try {
+            if (state == State.HALF_OPEN && halfOpenInFlight > 0) {
+                halfOpenInFlight--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public State getState() {
+        lock.lock();
+        try {
+            return state;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("state", getState().name());
+        stats.put("successes", successes.sum());
+        stats.put("failures", failures.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("opened", opened.sum());
+        return stats;
+    }
+
+    private void trip() {
+        state = State.OPEN;
+        openedAt = System.nanoTime();
+        consecutiveFailures = 0;
+        halfOpenInFlight = 0;
+        opened.increment();
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.google_backend.common.concurrent;
+
+/**
+ * 请求预算已用完，必需阶段无法开始
+ */
+public class DeadlineExceededException extends RuntimeException {
+
+    private final String stage;
+
+    public DeadlineExceededException(String stage) {
+        super("Request deadline exceeded before stage: " + stage);
+        this.stage = stage;
+    }
+
+    public String getStage() {
+        return stage;
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.google_backend.common.concurrent;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 对冲请求 (hedged request)
+ * 第一次调用在对冲延迟 (最近调用延迟的分位数，如 p95) 内没有返回时，再发出一次相同的调用，
+ * 先成功返回的结果生效，另一次调用在后台完成后丢弃。
+ * 对冲次数不超过总调用次数的 maxHedgeRatio，避免下游整体变慢时成倍放大压力。
+ */
+public class Hedger {
+
+    // 样本不足时不对冲
+    private static final int MIN_SAMPLES = 20;
+
+    // 每记录多少个样本重新计算一次分位数
+    private static final int RECOMPUTE_EVERY = 16;
+
+    private final String name;
+    private final double percentile;
+    private final long minDelayMillis;
+    private final long maxDelayMillis;
+    private final double maxHedgeRatio;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    // 最近调用延迟 (ms) 的环形窗口，由 lock 保护
+    private final ReentrantLock lock = new ReentrantLock();
+    private final long[] window;
+    private long recorded;
+
+    private volatile long hedgeDelayMillis = -1L;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+    private final LongAdder hedgesThrottled = new LongAdder();
+
+    public Hedger(String name, double percentile, long minDelayMillis, long maxDelayMillis,
+                  double maxHedgeRatio, int windowSize) {
+        this.name = name;
+        this.percentile = Math.max(0.5, Math.min(0.999, percentile));
+        this.minDelayMillis = Math.max(1L, minDelayMillis);
+        this.maxDelayMillis = Math.max(this.minDelayMillis, maxDelayMillis);
+        this.maxHedgeRatio = Math.max(0.0, maxHedgeRatio);
+        this.window = new long[Math.max(MIN_SAMPLES, windowSize)];
+    }
+
+    /**
+     * 执行调用，必要时发出对冲调用
+     * 调用在虚拟线程上执行，当前线程的请求预算会传递过去
+     *
+     * @param attempt 一次完整的调用，需可重复执行
+     * @return 先成功返回的结果
+     * @throws Exception 两次调用都失败时抛出第一次调用的异常
+     */
+    public <T> T call(Callable<T> attempt) throws Exception {
+        calls.increment();
+        Callable<T> task = RequestBudget.wrap(attempt);
+        CompletableFuture<T> primary = submit(task);
+
+        long delay = hedgeDelayMillis;
+        if (delay < 0) {
+            return await(primary);
+        }
+        try {
+            return primary.get(delay, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // 超过对冲延迟，考虑发出对冲调用
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        }
+
+        if (hedges.sum() + 1 > Math.max(1.0, calls.sum() * maxHedgeRatio)) {
+            hedgesThrottled.increment();
+            return await(primary);
+        }
+        hedges.increment();
+        CompletableFuture<T> hedge = submit(task);
+        return await(firstSuccess(primary, hedge));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("calls", calls.sum());
+        stats.put("hedges", hedges.sum());
+        stats.put("hedgeWins", hedgeWins.sum());
+        stats.put("hedgesThrottled", hedgesThrottled.sum());
+        stats.put("hedgeDelayMillis", hedgeDelayMillis);
+        return stats;
+    }
+
+    private <T> CompletableFuture<T> submit(Callable<T> task) {
+        return CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            try {
+                T value = task.call();
+                record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                return value;
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    /**
+     * 两次调用中先成功的结果；都失败时以第一次调用的异常结束
+     */
+    private <T> CompletableFuture<T> firstSuccess(CompletableFuture<T> primary, CompletableFuture<T> hedge) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicInteger failed = new AtomicInteger();
+        primary.whenComplete((value, error) -> {
+            if (error == null) {
+                result.complete(value);
+            } else if (failed.incrementAndGet() == 2) {
+                result.completeExceptionally(error);
+            }
+        });
+        hedge.whenComplete((value, error) -> {
+            if (error == null) {
+                if (result.complete(value)) {
+                    hedgeWins.increment();
+                }
+            } else if (failed.incrementAndGet() == 2) {
+                primary.whenComplete((ignored, primaryError) ->
+                        result.completeExceptionally(primaryError != null ? primaryError : error));
+            }
+        });
+        return result;
+    }
+
+    private <T> T await(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        }
+    }
+
+    private static Exception unwrap(ExecutionException e) {
+        Throwable cause = e.getCause();
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof Exception exception) {
+            return exception;
+        }
+        if (cause instanceof Error error) {
+            throw error;
+        }
+        return e;
+    }
+
+    private void record(long latencyMillis) {
+        lock.lock();
+        try {
+            window[(int) (recorded % window.length)] = latencyMillis;
+            recorded++;
+            if (recorded >= MIN_SAMPLES && (recorded % RECOMPUTE_EVERY == 0 || hedgeDelayMillis < 0)) {
+                int size = (int) Math.min(recorded, window.length);
+                long[] sorted = Arrays.copyOf(window, size);
+                Arrays.sort(sorted);
+                long value = sorted[Math.min(size - 1, (int) Math.ceil(percentile * size) - 1)];
+                hedgeDelayMillis = Math.max(minDelayMillis, Math.min(maxDelayMillis, value));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
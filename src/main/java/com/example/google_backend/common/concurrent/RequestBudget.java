@@ -0,0 +1,140 @@
+package com.example.google_backend.common.concurrent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单个请求的时间预算 (deadline)
+ * 在控制器入口创建并绑定到当前线程，各阶段通过 {@link #current()} 读取剩余时间，只使用剩余的预算；
+ * 可选阶段 (OTP 替换、长距离出口检查、ETA 等) 预算不足时跳过，并记录在 {@link #getDropped()} 中。
+ * 子任务 (如 OTP 并发规划) 需要用 {@link #wrap(Callable)} 传递预算。
+ */
+public final class RequestBudget {
+
+    private static final ThreadLocal<RequestBudget> CURRENT = new ThreadLocal<>();
+
+    private final long deadlineNanos;
+
+    // 因预算不足被跳过的优化
+    private final Set<String> dropped = ConcurrentHashMap.newKeySet();
+
+    private RequestBudget(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    /**
+     * 创建从现在开始计时的预算
+     *
+     * @param budgetMillis 总预算 (ms)
+     * @return 预算
+     */
+    public static RequestBudget of(long budgetMillis) {
+        return new RequestBudget(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budgetMillis));
+    }
+
+    /**
+     * 当前线程绑定的预算，没有时返回 null (不限时，例如后台刷新)
+     */
+    public static RequestBudget current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 当前线程的剩余预算 (ms)，没有预算时返回 Long.MAX_VALUE
+     */
+    public static long remainingMillis() {
+        RequestBudget budget = CURRENT.get();
+        return budget == null ? Long.MAX_VALUE : budget.remaining();
+    }
+
+    /**
+     * 可选阶段开始前检查：剩余预算不少于 minMillis 时返回 true，否则记录该优化被跳过并返回 false
+     *
+     * @param optimization 优化名称，如 otpReplacement
+     * @param minMillis 该阶段至少需要的时间 (ms)
+     * @return true 可以执行
+     */
+    public static boolean allows(String optimization, long minMillis) {
+        RequestBudget budget = CURRENT.get();
+        if (budget == null || budget.remaining() >= minMillis) {
+            return true;
+        }
+        budget.drop(optimization);
+        return false;
+    }
+
+    /**
+     * 必需阶段开始前检查：预算已用完时抛出 {@link DeadlineExceededException}
+     *
+     * @param stage 阶段名称
+     */
+    public static void check(String stage) {
+        RequestBudget budget = CURRENT.get();
+        if (budget != null && budget.remaining() <= 0) {
+            throw new DeadlineExceededException(stage);
+        }
+    }
+
+    /**
+     * 将当前线程的预算传递给在其他线程执行的子任务
+     *
+     * @param task 子任务
+     * @return 在执行线程上绑定同一预算的任务
+     */
+    public static <T> Callable<T> wrap(Callable<T> task) {
+        RequestBudget budget = CURRENT.get();
+        if (budget == null) {
+            return task;
+        }
+        return () -> {
+            try (Scope ignored = budget.open()) {
+                return task.call();
+            }
+        };
+    }
+
+    /**
+     * 绑定到当前线程，关闭时恢复原来的预算
+     */
+    public Scope open() {
+        RequestBudget previous = CURRENT.get();
+        CURRENT.set(this);
+        return () -> {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        };
+    }
+
+    public long remaining() {
+        return TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+    }
+
+    public void drop(String optimization) {
+        dropped.add(optimization);
+    }
+
+    /**
+     * 被跳过的优化 (按名称排序)
+     */
+    public List<String> getDropped() {
+        List<String> names = new ArrayList<>(dropped);
+        Collections.sort(names);
+        return names;
+    }
+
+    /**
+     * 预算绑定范围
+     */
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.google_backend.common.concurrent;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 进程内请求合并 (single-flight)
+ * 同一个 key 同时只执行一次加载，其余并发调用等待并共享同一个结果或异常
+ */
+public class SingleFlight<T> {
+
+    private final ConcurrentHashMap<String, CompletableFuture<T>> inFlight = new ConcurrentHashMap<>();
+
+    // 实际执行的加载次数
+    private final LongAdder executions = new LongAdder();
+
+    // 被合并 (直接共享结果) 的调用次数
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * 执行加载，若同一 key 已有加载在进行中则等待其结果
+     *
+     * @param key 合并键
+     * @param loader 实际的加载逻辑
+     * @return 加载结果
+     * @throws Exception 加载过程中抛出的异常 (等待方收到同一个异常)
+     */
+    public T execute(String key, Callable<T> loader) throws Exception {
+        CompletableFuture<T> created = new CompletableFuture<>();
+        CompletableFuture<T> existing = inFlight.putIfAbsent(key, created);
+
+        if (existing != null) {
+            coalesced.increment();
+            return await(existing);
+        }
+
+        executions.increment();
+        try {
+            T value = loader.call();
+            created.complete(value);
+            return value;
+        } catch (Throwable t) {
+            created.completeExceptionally(t);
+            throw t;
+        } finally {
+            inFlight.remove(key, created);
+        }
+    }
+
+    private T await(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception exception) {
+                throw exception;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+
+    public long getExecutions() {
+        return executions.sum();
+    }
+
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    public int getInFlight() {
+        return inFlight.size();
+    }
+
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("executions", getExecutions());
+        stats.put("coalesced", getCoalesced());
+        stats.put("inFlight", (long) getInFlight());
+        return stats;
+    }
+}
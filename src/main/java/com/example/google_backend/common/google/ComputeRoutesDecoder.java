@@ -0,0 +1,435 @@
+package com.example.google_backend.common.google;
+
+import com.example.google_backend.model.ComputeRoutesResponse;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Google computeRoutes 响应的流式解析
+ * 一遍读取响应，直接得到 {@link ComputeRoutesResponse}，不构建 JsonNode 树；用不到的字段整体跳过
+ */
+public final class ComputeRoutesDecoder {
+
+    private static final Logger logger = Logger.getLogger(ComputeRoutesDecoder.class.getName());
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private ComputeRoutesDecoder() {
+    }
+
+    public static ComputeRoutesResponse decode(byte[] body) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+            return decode(parser);
+        }
+    }
+
+    public static ComputeRoutesResponse decode(String body) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+            return decode(parser);
+        }
+    }
+
+    private static ComputeRoutesResponse decode(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Unexpected computeRoutes response token: " + parser.currentToken());
+        }
+        List<ComputeRoutesResponse.Route> routes = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("routes".equals(field) && value == JsonToken.START_ARRAY) {
+                routes = new ArrayList<>();
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    routes.add(route(parser));
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return new ComputeRoutesResponse(routes);
+    }
+
+    /**
+     * 解析单个 location JSON，如 {"latLng":{"latitude":22.3,"longitude":114.1}}
+     * 用于读取以 JSON 文本保存坐标的旧数据
+     *
+     * @return 坐标，不是 location JSON (如 "Unknown Location") 时返回 null
+     */
+    public static ComputeRoutesResponse.LatLng parseLocation(String json) {
+        if (json == null || !json.startsWith("{")) {
+            return null;
+        }
+        try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+            return location(parser, parser.nextToken());
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static ComputeRoutesResponse.Route route(JsonParser parser) throws IOException {
+        String summary = null;
+        Long distanceMeters = null;
+        String duration = null;
+        String polyline = null;
+        List<ComputeRoutesResponse.Leg> legs = new ArrayList<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "summary" -> summary = text(parser, value);
+                case "distanceMeters" -> distanceMeters = number(parser, value);
+                case "duration" -> duration = text(parser, value);
+                case "polyline" -> polyline = polyline(parser, value);
+                case "legs" -> {
+                    if (value == JsonToken.START_ARRAY) {
+                        while (parser.nextToken() == JsonToken.START_OBJECT) {
+                            legs.add(leg(parser));
+                        }
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                default -> parser.skipChildren();
+            }
+        }
+        return new ComputeRoutesResponse.Route(summary, distanceMeters, duration, polyline, legs);
+    }
+
+    private static ComputeRoutesResponse.Leg leg(JsonParser parser) throws IOException {
+        ComputeRoutesResponse.LatLng startLocation = null;
+        ComputeRoutesResponse.LatLng endLocation = null;
+        Long distanceMeters = null;
+        String duration = null;
+        List<ComputeRoutesResponse.Step> steps = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "startLocation" -> startLocation = location(parser, value);
+                case "endLocation" -> endLocation = location(parser, value);
+                case "distanceMeters" -> distanceMeters = number(parser, value);
+                case "duration" -> duration = text(parser, value);
+                case "steps" -> {
+                    if (value == JsonToken.START_ARRAY) {
+                        steps = new ArrayList<>();
+                        while (parser.nextToken() == JsonToken.START_OBJECT) {
+                            steps.add(step(parser));
+                        }
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                default -> parser.skipChildren();
+            }
+        }
+        return new ComputeRoutesResponse.Leg(startLocation, endLocation, distanceMeters, duration, steps);
+    }
+
+    private static ComputeRoutesResponse.Step step(JsonParser parser) throws IOException {
+        String instruction = null;
+        long distanceMeters = 0;
+        long durationSeconds = 0;
+        String polyline = null;
+        String travelMode = null;
+        ComputeRoutesResponse.Transit transit = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "navigationInstruction" -> {
+                    if (value == JsonToken.START_OBJECT) {
+                        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                            String name = parser.currentName();
+                            JsonToken instructionValue = parser.nextToken();
+                            if ("instructions".equals(name)) {
+                                instruction = text(parser, instructionValue);
+                            } else {
+                                parser.skipChildren();
+                            }
+                        }
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                case "distanceMeters" -> {
+                    Long distance = number(parser, value);
+                    distanceMeters = distance == null ? 0 : distance;
+                }
+                case "staticDuration" -> durationSeconds = parseDuration(text(parser, value));
+                case "polyline" -> polyline = polyline(parser, value);
+                case "travelMode" -> travelMode = text(parser, value);
+                case "transitDetails" -> {
+                    if (value == JsonToken.START_OBJECT) {
+                        transit = transit(parser);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                default -> parser.skipChildren();
+            }
+        }
+        return new ComputeRoutesResponse.Step(instruction, distanceMeters, durationSeconds, polyline, travelMode, transit);
+    }
+
+    private static ComputeRoutesResponse.Transit transit(JsonParser parser) throws IOException {
+        ComputeRoutesResponse.Stop departureStop = null;
+        ComputeRoutesResponse.Stop arrivalStop = null;
+        String departureTime = null;
+        String arrivalTime = null;
+        boolean hasStopDetails = false;
+        String headsign = null;
+        ComputeRoutesResponse.Line line = null;
+        Integer stopCount = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "stopDetails" -> {
+                    if (value != JsonToken.START_OBJECT) {
+                        parser.skipChildren();
+                        break;
+                    }
+                    hasStopDetails = true;
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String name = parser.currentName();
+                        JsonToken stopValue = parser.nextToken();
+                        switch (name) {
+                            case "departureStop" -> departureStop = stop(parser, stopValue);
+                            case "arrivalStop" -> arrivalStop = stop(parser, stopValue);
+                            case "departureTime" -> departureTime = text(parser, stopValue);
+                            case "arrivalTime" -> arrivalTime = text(parser, stopValue);
+                            default -> parser.skipChildren();
+                        }
+                    }
+                }
+                case "headsign" -> headsign = text(parser, value);
+                case "transitLine" -> {
+                    if (value == JsonToken.START_OBJECT) {
+                        line = line(parser);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                case "stopCount" -> {
+                    Long count = number(parser, value);
+                    stopCount = count == null ? null : count.intValue();
+                }
+                default -> parser.skipChildren();
+            }
+        }
+        return new ComputeRoutesResponse.Transit(departureStop, arrivalStop, departureTime, arrivalTime,
+                hasStopDetails, headsign, line, stopCount);
+    }
+
+    private static ComputeRoutesResponse.Line line(JsonParser parser) throws IOException {
+        List<ComputeRoutesResponse.Agency> agencies = null;
+        String name = null;
+        String color = null;
+        String nameShort = null;
+        String textColor = null;
+        boolean hasVehicle = false;
+        String vehicleName = null;
+        String vehicleType = null;
+        String vehicleIconUri = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "agencies" -> {
+                    if (value != JsonToken.START_ARRAY) {
+                        parser.skipChildren();
+                        break;
+                    }
+                    agencies = new ArrayList<>();
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        agencies.add(agency(parser));
+                    }
+                }
+                case "name" -> name = text(parser, value);
+                case "color" -> color = text(parser, value);
+                case "nameShort" -> nameShort = text(parser, value);
+                case "textColor" -> textColor = text(parser, value);
+                case "vehicle" -> {
+                    if (value != JsonToken.START_OBJECT) {
+                        parser.skipChildren();
+                        break;
+                    }
+                    hasVehicle = true;
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String vehicleField = parser.currentName();
+                        JsonToken vehicleValue = parser.nextToken();
+                        switch (vehicleField) {
+                            case "name" -> {
+                                if (vehicleValue == JsonToken.START_OBJECT) {
+                                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                                        String textField = parser.currentName();
+                                        JsonToken textValue = parser.nextToken();
+                                        if ("text".equals(textField)) {
+                                            vehicleName = text(parser, textValue);
+                                        } else {
+                                            parser.skipChildren();
+                                        }
+                                    }
+                                } else {
+                                    parser.skipChildren();
+                                }
+                            }
+                            case "type" -> vehicleType = text(parser, vehicleValue);
+                            case "iconUri" -> vehicleIconUri = text(parser, vehicleValue);
+                            default -> parser.skipChildren();
+                        }
+                    }
+                }
+                default -> parser.skipChildren();
+            }
+        }
+        return new ComputeRoutesResponse.Line(agencies, name, color, nameShort, textColor,
+                hasVehicle, vehicleName, vehicleType, vehicleIconUri);
+    }
+
+    private static ComputeRoutesResponse.Agency agency(JsonParser parser) throws IOException {
+        String name = null;
+        String phoneNumber = null;
+        String uri = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "name" -> name = text(parser, value);
+                case "phoneNumber" -> phoneNumber = text(parser, value);
+                case "uri" -> uri = text(parser, value);
+                default -> parser.skipChildren();
+            }
+        }
+        return new ComputeRoutesResponse.Agency(name, phoneNumber, uri);
+    }
+
+    private static ComputeRoutesResponse.Stop stop(JsonParser parser, JsonToken value) throws IOException {
+        if (value != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return null;
+        }
+        String name = null;
+        ComputeRoutesResponse.LatLng location = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken fieldValue = parser.nextToken();
+            switch (field) {
+                case "name" -> name = text(parser, fieldValue);
+                case "location" -> location = location(parser, fieldValue);
+                default -> parser.skipChildren();
+            }
+        }
+        return new ComputeRoutesResponse.Stop(name, location);
+    }
+
+    /**
+     * location: {"latLng": {"latitude": ..., "longitude": ...}}
+     */
+    private static ComputeRoutesResponse.LatLng location(JsonParser parser, JsonToken value) throws IOException {
+        if (value != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return null;
+        }
+        ComputeRoutesResponse.LatLng latLng = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken fieldValue = parser.nextToken();
+            if (!"latLng".equals(field) || fieldValue != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            double latitude = 0;
+            double longitude = 0;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                JsonToken number = parser.nextToken();
+                if ("latitude".equals(name) && number.isNumeric()) {
+                    latitude = parser.getDoubleValue();
+                } else if ("longitude".equals(name) && number.isNumeric()) {
+                    longitude = parser.getDoubleValue();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            latLng = new ComputeRoutesResponse.LatLng(latitude, longitude);
+        }
+        return latLng;
+    }
+
+    private static String polyline(JsonParser parser, JsonToken value) throws IOException {
+        if (value != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return null;
+        }
+        String polyline = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken fieldValue = parser.nextToken();
+            if ("encodedPolyline".equals(field)) {
+                polyline = text(parser, fieldValue);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return polyline;
+    }
+
+    /**
+     * 标量的文本，null 或对象、数组返回 null
+     */
+    private static String text(JsonParser parser, JsonToken value) throws IOException {
+        if (value == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (value.isScalarValue()) {
+            return parser.getText();
+        }
+        parser.skipChildren();
+        return null;
+    }
+
+    /**
+     * 整数 (Google 的 int64 字段可能以字符串形式返回)
+     */
+    private static Long number(JsonParser parser, JsonToken value) throws IOException {
+        if (value == JsonToken.VALUE_NUMBER_INT || value == JsonToken.VALUE_NUMBER_FLOAT) {
+            return parser.getValueAsLong();
+        }
+        if (value == JsonToken.VALUE_STRING) {
+            try {
+                return Long.parseLong(parser.getText().trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        parser.skipChildren();
+        return null;
+    }
+
+    /**
+     * Parses duration string (e.g., "1581s") to seconds.
+     *
+     * @param durationStr The duration string.
+     * @return The duration in seconds.
+     */
+    public static long parseDuration(String durationStr) {
+        if (durationStr == null || durationStr.isEmpty()) return 0;
+        durationStr = durationStr.trim().toLowerCase();
+        if (durationStr.endsWith("s")) {
+            try {
+                return Long.parseLong(durationStr.replace("s", ""));
+            } catch (NumberFormatException e) {
+                logger.warning("Failed to parse duration: " + durationStr);
+                return 0;
+            }
+        }
+        return 0;
+    }
+}
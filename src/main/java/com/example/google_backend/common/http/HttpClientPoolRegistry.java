@@ -0,0 +1,43 @@
+package com.example.google_backend.common.http;
+
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.core5.pool.PoolStats;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 各上游 HTTP 连接池的登记表，用于输出连接池使用情况
+ */
+@Component
+public class HttpClientPoolRegistry {
+
+    private final Map<String, PoolingHttpClientConnectionManager> pools = new ConcurrentHashMap<>();
+
+    public void register(String upstream, PoolingHttpClientConnectionManager connectionManager) {
+        pools.put(upstream, connectionManager);
+    }
+
+    /**
+     * 各连接池的 leased (使用中) / available (空闲) / pending (等待连接) / max 统计
+     *
+     * @return 按上游分组的统计
+     */
+    public Map<String, Map<String, Long>> getStats() {
+        Map<String, Map<String, Long>> stats = new LinkedHashMap<>();
+        pools.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(pool -> {
+                    PoolStats total = pool.getValue().getTotalStats();
+                    Map<String, Long> poolStats = new LinkedHashMap<>();
+                    poolStats.put("leased", (long) total.getLeased());
+                    poolStats.put("available", (long) total.getAvailable());
+                    poolStats.put("pending", (long) total.getPending());
+                    poolStats.put("max", (long) total.getMax());
+                    stats.put(pool.getKey(), poolStats);
+                });
+        return stats;
+    }
+}
@@ -0,0 +1,189 @@
+package com.example.google_backend.common.matrix;
+
+import com.example.google_backend.common.otp.OtpGraphQlClient;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 预计算的站点对驾驶时间矩阵 (只读，内存映射)
+ * 文件由 {@link DriveTimeMatrixJob} 离线生成，格式 (大端)：
+ * <pre>
+ * 头部 32 字节: magic "DTM1" | version int | 站点目录指纹 long | 时段数 int | 槽位数 int (2 的幂) | 条目数 int | 保留 int
+ * 槽位 16 字节: key long (起点下标 &lt;&lt; 40 | 终点下标 &lt;&lt; 16 | 时段，空槽为 -1) | 时长 int (秒) | 距离 int (米)
+ * </pre>
+ * 槽位为线性探测的开放寻址哈希表，查询为 O(1)，不需要把矩阵加载到堆内存。
+ * 时段为 日类型 (工作日 / 周末) × 24 小时。
+ */
+public final class DriveTimeMatrix {
+
+    static final int MAGIC = 0x44544D31; // "DTM1"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 32;
+    static final int ENTRY_BYTES = 16;
+    static final int BUCKETS = 48;
+    static final long EMPTY = -1L;
+
+    // 站点下标上限 (24 位)
+    static final int MAX_STOPS = 1 << 24;
+
+    private final StopCatalog catalog;
+    private final ByteBuffer entries;
+    private final int mask;
+    private final int size;
+    private final double snapMeters;
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder unmatched = new LongAdder();
+
+    private DriveTimeMatrix(StopCatalog catalog, ByteBuffer entries, int capacity, int size, double snapMeters) {
+        this.catalog = catalog;
+        this.entries = entries;
+        this.mask = capacity - 1;
+        this.size = size;
+        this.snapMeters = snapMeters;
+    }
+
+    /**
+     * 内存映射矩阵文件
+     *
+     * @param catalog    生成矩阵时使用的站点目录
+     * @param snapMeters 坐标与目录站点的最大距离 (米)
+     * @throws IOException 文件格式不正确或与站点目录不匹配
+     */
+    public static DriveTimeMatrix open(Path path, StopCatalog catalog, double snapMeters) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // 映射在通道关闭后仍然有效
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a drive time matrix file: " + path);
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported drive time matrix version " + buffer.getInt(4) + ": " + path);
+        }
+        if (buffer.getLong(8) != catalog.fingerprint()) {
+            throw new IOException("Drive time matrix was built for a different stop list: " + path);
+        }
+        int buckets = buffer.getInt(16);
+        int capacity = buffer.getInt(20);
+        int size = buffer.getInt(24);
+        if (buckets != BUCKETS || Integer.bitCount(capacity) != 1
+                || buffer.capacity() != HEADER_BYTES + (long) capacity * ENTRY_BYTES) {
+            throw new IOException("Corrupt drive time matrix header: " + path);
+        }
+        ByteBuffer entries = buffer.slice(HEADER_BYTES, capacity * ENTRY_BYTES);
+        return new DriveTimeMatrix(catalog, entries, capacity, size, snapMeters);
+    }
+
+    /**
+     * 未配置矩阵文件时使用，所有查询返回 null
+     */
+    public static DriveTimeMatrix disabled() {
+        return new DriveTimeMatrix(null, null, 1, 0, 0);
+    }
+
+    public boolean isEnabled() {
+        return entries != null;
+    }
+
+    /**
+     * 查询两个坐标之间的驾驶时间，坐标先对应到最近的目录站点
+     *
+     * @param departure 出发时间 (香港时间)
+     * @return 驾驶路段，站点无法对应或矩阵中没有该站点对时返回 null
+     */
+    public OtpGraphQlClient.DrivingPlan lookup(double fromLat, double fromLng, double toLat, double toLng,
+                                               LocalDateTime departure) {
+        if (entries == null) {
+            return null;
+        }
+        lookups.increment();
+        int from = catalog.nearest(fromLat, fromLng, snapMeters);
+        int to = catalog.nearest(toLat, toLng, snapMeters);
+        if (from < 0 || to < 0) {
+            unmatched.increment();
+            return null;
+        }
+        OtpGraphQlClient.DrivingPlan plan = get(from, to, bucket(departure));
+        if (plan == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return plan;
+    }
+
+    /**
+     * 按站点下标与时段查询
+     *
+     * @return 驾驶路段，不存在时返回 null
+     */
+    public OtpGraphQlClient.DrivingPlan get(int from, int to, int bucket) {
+        long key = key(from, to, bucket);
+        int slot = slot(key, mask);
+        // 装载因子不超过 0.5，探测必然在空槽处结束
+        while (true) {
+            int offset = slot * ENTRY_BYTES;
+            long current = entries.getLong(offset);
+            if (current == key) {
+                return new OtpGraphQlClient.DrivingPlan(entries.getInt(offset + 12), entries.getInt(offset + 8));
+            }
+            if (current == EMPTY) {
+                return null;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", isEnabled());
+        stats.put("entries", size);
+        stats.put("lookups", lookups.sum());
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("unmatched", unmatched.sum());
+        return stats;
+    }
+
+    /**
+     * 时段：工作日 0-23，周末 24-47
+     */
+    public static int bucket(LocalDateTime time) {
+        DayOfWeek day = time.getDayOfWeek();
+        boolean weekend = day == DayOfWeek.SATURDAY || day == DayOfWeek.SUNDAY;
+        return (weekend ? 24 : 0) + time.getHour();
+    }
+
+    static long key(int from, int to, int bucket) {
+        return ((long) from << 40) | ((long) to << 16) | bucket;
+    }
+
+    static int slot(long key, int mask) {
+        // murmur3 fmix64
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h & mask;
+    }
+}
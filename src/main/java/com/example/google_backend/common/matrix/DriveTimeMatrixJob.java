@@ -0,0 +1,209 @@
+package com.example.google_backend.common.matrix;
+
+import com.example.google_backend.common.otp.OtpGraphQlClient;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+/**
+ * 离线生成驾驶时间矩阵
+ * 读取常被替换的站点对 (CSV: from_id,to_id，站点 id 如 kmb:0012AB2F3E1C8A4D 或 ctb:001001)，
+ * 对每个站点对和时段向本地 OTP 实例请求驾驶规划，结果写入矩阵文件，服务启动时内存映射。
+ * 站点对可以从 Redis 中的 seg:* 键或访问日志中统计得到。
+ *
+ * <pre>
+ * java -cp google_backend.jar -Dloader.main=com.example.google_backend.common.matrix.DriveTimeMatrixJob \
+ *     org.springframework.boot.loader.launch.PropertiesLauncher \
+ *     --pairs=pairs.csv --out=data/drive-time-matrix.bin --otp=http://localhost:8080 [--hours=7,8,9,17,18,19] [--parallelism=4]
+ * </pre>
+ */
+public final class DriveTimeMatrixJob {
+
+    private static final Logger logger = Logger.getLogger(DriveTimeMatrixJob.class.getName());
+
+    private static final ZoneId ZONE_ID = ZoneId.of("Asia/Hong_Kong");
+    private static final int BATCH_SIZE = 16;
+
+    private DriveTimeMatrixJob() {
+    }
+
+    private record Pair(int from, int to) {
+    }
+
+    private record Batch(int bucket, List<Pair> pairs) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseArgs(args);
+        Path pairsFile = Path.of(required(options, "pairs"));
+        Path out = Path.of(options.getOrDefault("out", "data/drive-time-matrix.bin"));
+        String otpUrl = options.getOrDefault("otp", "http://localhost:8080");
+        String graphQlPath = options.getOrDefault("graphql-path", "/otp/routers/default/index/graphql");
+        int parallelism = Integer.parseInt(options.getOrDefault("parallelism", "4"));
+        List<Integer> hours = parseHours(options.getOrDefault("hours", "0-23"));
+
+        StopCatalog catalog;
+        try (InputStream kmb = resource("kmb_stops.csv"); InputStream ctb = resource("cb_stops.csv")) {
+            catalog = StopCatalog.load(kmb, ctb);
+        }
+        List<Pair> pairs = readPairs(pairsFile, catalog);
+        logger.info("站点: " + catalog.size() + " - 站点对: " + pairs.size() + " - 小时: " + hours);
+
+        // 每个时段取下一个对应的工作日 / 周末日期
+        LocalDate today = LocalDate.now(ZONE_ID);
+        LocalDate weekday = today.with(TemporalAdjusters.next(DayOfWeek.WEDNESDAY));
+        LocalDate weekend = today.with(TemporalAdjusters.next(DayOfWeek.SATURDAY));
+
+        List<Batch> batches = new ArrayList<>();
+        for (int dayType = 0; dayType < 2; dayType++) {
+            for (int hour : hours) {
+                int bucket = dayType * 24 + hour;
+                for (int i = 0; i < pairs.size(); i += BATCH_SIZE) {
+                    batches.add(new Batch(bucket, pairs.subList(i, Math.min(pairs.size(), i + BATCH_SIZE))));
+                }
+            }
+        }
+
+        OtpGraphQlClient client = new OtpGraphQlClient(new RestTemplate(), graphQlPath);
+        DriveTimeMatrixWriter writer = new DriveTimeMatrixWriter(catalog);
+        int failed = 0;
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, parallelism));
+        try {
+            List<Future<List<OtpGraphQlClient.PlanResult>>> futures = new ArrayList<>(batches.size());
+            for (Batch batch : batches) {
+                LocalDate date = batch.bucket() < 24 ? weekday : weekend;
+                LocalDateTime departure = date.atTime(batch.bucket() % 24, 0);
+                List<OtpGraphQlClient.PlanQuery> queries = new ArrayList<>(batch.pairs().size());
+                for (Pair pair : batch.pairs()) {
+                    queries.add(new OtpGraphQlClient.PlanQuery(
+                            catalog.latitude(pair.from()), catalog.longitude(pair.from()),
+                            catalog.latitude(pair.to()), catalog.longitude(pair.to()), departure));
+                }
+                futures.add(executor.submit(() -> client.planBatch(otpUrl, queries)));
+            }
+
+            // 结果在主线程写入，writer 不是线程安全的
+            for (int i = 0; i < batches.size(); i++) {
+                Batch batch = batches.get(i);
+                List<OtpGraphQlClient.PlanResult> results;
+                try {
+                    results = futures.get(i).get();
+                } catch (Exception e) {
+                    failed += batch.pairs().size();
+                    logger.warning("批次失败 (时段 " + batch.bucket() + "): " + e.getMessage());
+                    continue;
+                }
+                for (int j = 0; j < results.size(); j++) {
+                    OtpGraphQlClient.PlanResult result = results.get(j);
+                    if (result.error() != null || result.plan() == null) {
+                        failed++;
+                        continue;
+                    }
+                    Pair pair = batch.pairs().get(j);
+                    writer.put(pair.from(), pair.to(), batch.bucket(),
+                            Math.round(result.plan().durationSeconds()), Math.round(result.plan().distanceMeters()));
+                }
+                if ((i + 1) % 100 == 0) {
+                    logger.info("进度: " + (i + 1) + "/" + batches.size() + " 批");
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        int written = writer.write(out);
+        logger.info("驾驶时间矩阵已写入 " + out + " - 条目: " + written + " - 失败: " + failed);
+    }
+
+    private static List<Pair> readPairs(Path file, StopCatalog catalog) throws IOException {
+        List<Pair> pairs = new ArrayList<>();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+             CSVParser csvParser = CSVFormat.DEFAULT
+                     .builder()
+                     .setHeader()
+                     .setSkipHeaderRecord(true)
+                     .setTrim(true)
+                     .build()
+                     .parse(reader)) {
+            for (CSVRecord record : csvParser) {
+                int from = catalog.indexOf(record.get("from_id"));
+                int to = catalog.indexOf(record.get("to_id"));
+                if (from < 0 || to < 0 || from == to) {
+                    logger.warning("忽略站点对: " + record.get("from_id") + " -> " + record.get("to_id"));
+                    continue;
+                }
+                pairs.add(new Pair(from, to));
+            }
+        }
+        return pairs;
+    }
+
+    private static InputStream resource(String name) throws IOException {
+        InputStream in = DriveTimeMatrixJob.class.getClassLoader().getResourceAsStream(name);
+        if (in == null) {
+            throw new IOException("Missing classpath resource " + name);
+        }
+        return in;
+    }
+
+    /**
+     * 小时列表，如 "0-23" 或 "7,8,9,17-19"
+     */
+    static List<Integer> parseHours(String value) {
+        List<Integer> hours = new ArrayList<>();
+        for (String part : value.split(",")) {
+            String[] range = part.trim().split("-");
+            int first = Integer.parseInt(range[0].trim());
+            int last = range.length > 1 ? Integer.parseInt(range[1].trim()) : first;
+            for (int hour = first; hour <= last; hour++) {
+                if (hour < 0 || hour > 23) {
+                    throw new IllegalArgumentException("Hour out of range: " + hour);
+                }
+                if (!hours.contains(hour)) {
+                    hours.add(hour);
+                }
+            }
+        }
+        return hours;
+    }
+
+    private static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                int split = arg.indexOf('=');
+                options.put(arg.substring(2, split), arg.substring(split + 1));
+            }
+        }
+        return options;
+    }
+
+    private static String required(Map<String, String> options, String name) {
+        String value = options.get(name);
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("Missing --" + name + "=...");
+        }
+        return value;
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.google_backend.common.matrix;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * 生成驾驶时间矩阵文件，格式见 {@link DriveTimeMatrix}
+ * 条目先放在基本类型数组中，写出时按 2 倍以上容量建开放寻址表；先写临时文件再替换，服务读到的总是完整文件
+ */
+public final class DriveTimeMatrixWriter {
+
+    private final StopCatalog catalog;
+
+    private long[] keys = new long[1024];
+    private int[] durations = new int[1024];
+    private int[] distances = new int[1024];
+    private int count;
+
+    public DriveTimeMatrixWriter(StopCatalog catalog) {
+        if (catalog.size() >= DriveTimeMatrix.MAX_STOPS) {
+            throw new IllegalArgumentException("Too many stops for a drive time matrix: " + catalog.size());
+        }
+        this.catalog = catalog;
+    }
+
+    /**
+     * 添加一个站点对在某时段的驾驶时间；同一 key 重复添加时以最后一次为准
+     *
+     * @param from            起点下标
+     * @param to              终点下标
+     * @param bucket          时段 (见 {@link DriveTimeMatrix#bucket})
+     * @param durationSeconds 驾驶时长 (秒)
+     * @param distanceMeters  驾驶距离 (米)
+     */
+    public void put(int from, int to, int bucket, long durationSeconds, long distanceMeters) {
+        if (from < 0 || from >= catalog.size() || to < 0 || to >= catalog.size()) {
+            throw new IllegalArgumentException("Stop index out of range: " + from + " -> " + to);
+        }
+        if (bucket < 0 || bucket >= DriveTimeMatrix.BUCKETS) {
+            throw new IllegalArgumentException("Bucket out of range: " + bucket);
+        }
+        if (count == keys.length) {
+            keys = Arrays.copyOf(keys, count * 2);
+            durations = Arrays.copyOf(durations, count * 2);
+            distances = Arrays.copyOf(distances, count * 2);
+        }
+        keys[count] = DriveTimeMatrix.key(from, to, bucket);
+        durations[count] = (int) Math.min(Integer.MAX_VALUE, Math.max(0, durationSeconds));
+        distances[count] = (int) Math.min(Integer.MAX_VALUE, Math.max(0, distanceMeters));
+        count++;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * 写出矩阵文件
+     *
+     * @return 写入的条目数 (去重后)
+     */
+    public int write(Path path) throws IOException {
+        int capacity = Integer.highestOneBit(Math.max(16, count * 2 - 1)) << 1;
+        if ((long) capacity * DriveTimeMatrix.ENTRY_BYTES + DriveTimeMatrix.HEADER_BYTES > Integer.MAX_VALUE) {
+            throw new IOException("Drive time matrix too large: " + count + " entries");
+        }
+        int mask = capacity - 1;
+        long[] tableKeys = new long[capacity];
+        int[] tableDurations = new int[capacity];
+        int[] tableDistances = new int[capacity];
+        Arrays.fill(tableKeys, DriveTimeMatrix.EMPTY);
+
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            int slot = DriveTimeMatrix.slot(keys[i], mask);
+            while (tableKeys[slot] != DriveTimeMatrix.EMPTY && tableKeys[slot] != keys[i]) {
+                slot = (slot + 1) & mask;
+            }
+            if (tableKeys[slot] == DriveTimeMatrix.EMPTY) {
+                size++;
+            }
+            tableKeys[slot] = keys[i];
+            tableDurations[slot] = durations[i];
+            tableDistances[slot] = distances[i];
+        }
+
+        Path absolute = path.toAbsolutePath();
+        if (absolute.getParent() != null) {
+            Files.createDirectories(absolute.getParent());
+        }
+        Path temp = absolute.resolveSibling(absolute.getFileName() + ".tmp");
+        try (OutputStream file = Files.newOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+            out.writeInt(DriveTimeMatrix.MAGIC);
+            out.writeInt(DriveTimeMatrix.VERSION);
+            out.writeLong(catalog.fingerprint());
+            out.writeInt(DriveTimeMatrix.BUCKETS);
+            out.writeInt(capacity);
+            out.writeInt(size);
+            out.writeInt(0);
+            for (int slot = 0; slot < capacity; slot++) {
+                out.writeLong(tableKeys[slot]);
+                out.writeInt(tableDurations[slot]);
+                out.writeInt(tableDistances[slot]);
+            }
+        }
+        Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return size;
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.google_backend.common.matrix;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 巴士站目录 (kmb_stops.csv、cb_stops.csv)
+ * 每个站点按 "kmb:&lt;stop&gt;" / "ctb:&lt;stop&gt;" 排序后得到稳定的下标，驾驶时间矩阵按下标存储；
+ * 站点坐标按约 110 米的网格索引，用于把 Google 返回的站点坐标对应到最近的目录站点。
+ */
+public final class StopCatalog {
+
+    // 网格单元大小 (度)，约 110 米
+    private static final double CELL_DEGREES = 0.001;
+
+    private static final double EARTH_RADIUS_METERS = 6_371_000.0;
+
+    private final String[] ids;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final Map<String, Integer> indexById = new HashMap<>();
+    private final Map<Long, List<Integer>> grid = new HashMap<>();
+    private final long fingerprint;
+
+    private StopCatalog(TreeMap<String, double[]> stops) {
+        int size = stops.size();
+        ids = new String[size];
+        latitudes = new double[size];
+        longitudes = new double[size];
+        long hash = 0xcbf29ce484222325L;
+        int index = 0;
+        for (Map.Entry<String, double[]> stop : stops.entrySet()) {
+            ids[index] = stop.getKey();
+            latitudes[index] = stop.getValue()[0];
+            longitudes[index] = stop.getValue()[1];
+            indexById.put(stop.getKey(), index);
+            grid.computeIfAbsent(cell(latitudes[index], longitudes[index]), k -> new ArrayList<>()).add(index);
+            // FNV-1a，站点列表变化后矩阵文件中的下标不再有效
+            for (byte b : stop.getKey().getBytes(StandardCharsets.UTF_8)) {
+                hash ^= b;
+                hash *= 0x100000001b3L;
+            }
+            hash ^= '\n';
+            hash *= 0x100000001b3L;
+            index++;
+        }
+        fingerprint = hash;
+    }
+
+    /**
+     * 从九巴与城巴站点 CSV 加载
+     *
+     * @param kmbStops kmb_stops.csv (stop,name_en,name_tc,name_sc,lat,long)
+     * @param ctbStops cb_stops.csv (stop,name_tc,name_en,lat,long,...)，同一站点可能按线路出现多次
+     * @return 站点目录
+     */
+    public static StopCatalog load(InputStream kmbStops, InputStream ctbStops) throws IOException {
+        TreeMap<String, double[]> stops = new TreeMap<>();
+        read(kmbStops, "kmb:", stops);
+        read(ctbStops, "ctb:", stops);
+        return new StopCatalog(stops);
+    }
+
+    private static void read(InputStream in, String prefix, TreeMap<String, double[]> stops) throws IOException {
+        try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8);
+             CSVParser csvParser = CSVFormat.DEFAULT
+                     .builder()
+                     .setHeader()
+                     .setSkipHeaderRecord(true)
+                     .setTrim(true)
+                     .build()
+                     .parse(reader)) {
+            for (CSVRecord record : csvParser) {
+                try {
+                    double lat = Double.parseDouble(record.get("lat"));
+                    double lng = Double.parseDouble(record.get("long"));
+                    stops.putIfAbsent(prefix + record.get("stop"), new double[]{lat, lng});
+                } catch (IllegalArgumentException e) {
+                    // 缺少坐标的行跳过
+                }
+            }
+        }
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    public String id(int index) {
+        return ids[index];
+    }
+
+    /**
+     * @return 站点下标，不存在时返回 -1
+     */
+    public int indexOf(String id) {
+        Integer index = indexById.get(id);
+        return index == null ? -1 : index;
+    }
+
+    public double latitude(int index) {
+        return latitudes[index];
+    }
+
+    public double longitude(int index) {
+        return longitudes[index];
+    }
+
+    /**
+     * 站点列表的指纹，写入矩阵文件头，加载时校验
+     */
+    public long fingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * 距离坐标最近且不超过 maxMeters 的站点
+     *
+     * @return 站点下标，没有时返回 -1
+     */
+    public int nearest(double latitude, double longitude, double maxMeters) {
+        long latCell = (long) Math.floor(latitude / CELL_DEGREES);
+        long lngCell = (long) Math.floor(longitude / CELL_DEGREES);
+        int best = -1;
+        double bestMeters = maxMeters;
+        for (long dLat = -1; dLat <= 1; dLat++) {
+            for (long dLng = -1; dLng <= 1; dLng++) {
+                List<Integer> candidates = grid.get(cellKey(latCell + dLat, lngCell + dLng));
+                if (candidates == null) {
+                    continue;
+                }
+                for (int index : candidates) {
+                    double meters = distanceMeters(latitude, longitude, latitudes[index], longitudes[index]);
+                    if (meters <= bestMeters) {
+                        best = index;
+                        bestMeters = meters;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    private static long cell(double latitude, double longitude) {
+        return cellKey((long) Math.floor(latitude / CELL_DEGREES), (long) Math.floor(longitude / CELL_DEGREES));
+    }
+
+    private static long cellKey(long latCell, long lngCell) {
+        return (latCell << 32) ^ (lngCell & 0xFFFFFFFFL);
+    }
+
+    /**
+     * 等距圆柱投影近似距离，站点附近几百米内足够准确
+     */
+    private static double distanceMeters(double lat1, double lng1, double lat2, double lng2) {
+        double x = Math.toRadians(lng2 - lng1) * Math.cos(Math.toRadians((lat1 + lat2) / 2));
+        double y = Math.toRadians(lat2 - lat1);
+        return Math.sqrt(x * x + y * y) * EARTH_RADIUS_METERS;
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.google_backend.common.otp;
+
+import org.opentripplanner.client.OtpApiClient;
+
+import java.time.ZoneId;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个 OTP 实例
+ * 记录进行中的请求数、延迟 (EWMA) 与失败情况；
+ * 主动健康检查失败或被动摘除 (连续失败 / 过慢) 期间不参与选择
+ */
+public class OtpBackend {
+
+    // 延迟 EWMA 平滑系数
+    private static final double EWMA_ALPHA = 0.3;
+
+    private final String baseUrl;
+    private final OtpApiClient client;
+
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+    private volatile boolean healthy = true;
+    private volatile boolean ejected;
+    private volatile long ejectedUntil;
+    private volatile double ewmaMillis = -1;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder ejections = new LongAdder();
+    private final LongAdder totalMillis = new LongAdder();
+
+    public OtpBackend(String baseUrl, ZoneId zoneId) {
+        this.baseUrl = baseUrl;
+        this.client = new OtpApiClient(zoneId, baseUrl);
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public OtpApiClient getClient() {
+        return client;
+    }
+
+    public int getOutstanding() {
+        return outstanding.get();
+    }
+
+    public double getEwmaMillis() {
+        return ewmaMillis;
+    }
+
+    public boolean isHealthy() {
+        return healthy;
+    }
+
+    /**
+     * 健康且未被摘除
+     */
+    public boolean isAvailable(long nowNanos) {
+        return healthy && (!ejected || nowNanos - ejectedUntil >= 0);
+    }
+
+    void setHealthy(boolean healthy) {
+        this.healthy = healthy;
+    }
+
+    void onStart() {
+        outstanding.incrementAndGet();
+        calls.increment();
+    }
+
+    void onFinish() {
+        outstanding.decrementAndGet();
+    }
+
+    /**
+     * 调用成功：更新延迟，EWMA 与本次延迟都超过 slowMillis 时摘除
+     */
+    void onSuccess(long latencyMillis, long slowMillis, long ejectMillis) {
+        totalMillis.add(latencyMillis);
+        consecutiveFailures.set(0);
+        double previous = ewmaMillis;
+        double ewma = previous < 0 ? latencyMillis : EWMA_ALPHA * latencyMillis + (1 - EWMA_ALPHA) * previous;
+        ewmaMillis = ewma;
+        if (slowMillis > 0 && latencyMillis > slowMillis && ewma > slowMillis) {
+            eject(ejectMillis);
+        }
+    }
+
+    /**
+     * 调用失败：连续失败达到 failureThreshold 时摘除
+     */
+    void onFailure(int failureThreshold, long ejectMillis) {
+        failures.increment();
+        if (consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            eject(ejectMillis);
+        }
+    }
+
+    private void eject(long ejectMillis) {
+        ejectedUntil = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ejectMillis);
+        ejected = true;
+        consecutiveFailures.set(0);
+        // 摘除结束后重新统计延迟，避免旧的高延迟导致再次摘除
+        ewmaMillis = -1;
+        ejections.increment();
+    }
+
+    public Map<String, Object> getStats() {
+        long callCount = calls.sum();
+        long failureCount = failures.sum();
+        long successCount = callCount - failureCount - outstanding.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("healthy", healthy);
+        stats.put("ejected", !isAvailable(System.nanoTime()) && healthy);
+        stats.put("outstanding", outstanding.get());
+        stats.put("calls", callCount);
+        stats.put("failures", failureCount);
+        stats.put("ejections", ejections.sum());
+        stats.put("avgMillis", successCount > 0 ? totalMillis.sum() / successCount : 0L);
+        stats.put("ewmaMillis", Math.round(Math.max(0, ewmaMillis)));
+        return stats;
+    }
+}
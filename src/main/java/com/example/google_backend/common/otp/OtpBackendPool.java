@@ -0,0 +1,186 @@
+package com.example.google_backend.common.otp;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 多个 OTP 实例的负载均衡池
+ * 每次规划发往进行中请求最少 (least outstanding requests) 的可用实例，数量相同时轮询；
+ * 定期主动健康检查，连续失败或过慢的实例被动摘除 ejectMillis；
+ * 所有实例都不可用时退回到在全部实例中选择，而不是直接失败。
+ */
+public class OtpBackendPool implements AutoCloseable {
+
+    private static final Logger logger = Logger.getLogger(OtpBackendPool.class.getName());
+
+    /**
+     * 在选中的实例上执行的调用
+     */
+    @FunctionalInterface
+    public interface OtpCall<T> {
+        T call(OtpBackend backend) throws Exception;
+    }
+
+    private final List<OtpBackend> backends;
+    private final int failureThreshold;
+    private final long slowMillis;
+    private final long ejectMillis;
+    private final String healthPath;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    private final HttpClient healthClient;
+    private final ScheduledExecutorService healthScheduler;
+
+    /**
+     * @param baseUrls OTP 实例地址
+     * @param zoneId 规划使用的时区
+     * @param failureThreshold 连续失败多少次后摘除
+     * @param slowMillis 延迟超过该值 (且 EWMA 也超过) 时摘除，0 表示不按延迟摘除
+     * @param ejectMillis 摘除时长
+     * @param healthPath 健康检查路径，为空时不做主动检查
+     * @param healthIntervalMillis 健康检查间隔，不大于 0 时不做主动检查
+     */
+    public OtpBackendPool(List<String> baseUrls, ZoneId zoneId, int failureThreshold, long slowMillis,
+                          long ejectMillis, String healthPath, long healthIntervalMillis) {
+        if (baseUrls.isEmpty()) {
+            throw new IllegalArgumentException("At least one OTP base url is required");
+        }
+        List<OtpBackend> list = new ArrayList<>();
+        for (String baseUrl : baseUrls) {
+            list.add(new OtpBackend(baseUrl, zoneId));
+        }
+        this.backends = Collections.unmodifiableList(list);
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.slowMillis = Math.max(0L, slowMillis);
+        this.ejectMillis = Math.max(0L, ejectMillis);
+        this.healthPath = healthPath == null ? "" : healthPath;
+
+        this.healthClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(2))
+                .build();
+        if (!this.healthPath.isEmpty() && healthIntervalMillis > 0) {
+            this.healthScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "otp-health-check");
+                thread.setDaemon(true);
+                return thread;
+            });
+            healthScheduler.scheduleWithFixedDelay(this::checkHealth,
+                    0, healthIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.healthScheduler = null;
+        }
+    }
+
+    /**
+     * 选择实例并执行调用，记录延迟与失败
+     *
+     * @param call 调用
+     * @return 调用结果
+     */
+    public <T> T execute(OtpCall<T> call) throws Exception {
+        OtpBackend backend = select();
+        backend.onStart();
+        long start = System.nanoTime();
+        try {
+            T result = call.call(backend);
+            backend.onSuccess(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), slowMillis, ejectMillis);
+            return result;
+        } catch (Exception e) {
+            backend.onFailure(failureThreshold, ejectMillis);
+            throw e;
+        } finally {
+            backend.onFinish();
+        }
+    }
+
+    /**
+     * 进行中请求最少的可用实例；从轮询位置开始比较，数量相同时先到先得
+     */
+    OtpBackend select() {
+        long now = System.nanoTime();
+        int size = backends.size();
+        int offset = Math.floorMod(next.getAndIncrement(), size);
+        OtpBackend best = null;
+        OtpBackend fallback = null;
+        for (int i = 0; i < size; i++) {
+            OtpBackend backend = backends.get((offset + i) % size);
+            if (fallback == null || backend.getOutstanding() < fallback.getOutstanding()) {
+                fallback = backend;
+            }
+            if (backend.isAvailable(now) && (best == null || backend.getOutstanding() < best.getOutstanding())) {
+                best = backend;
+            }
+        }
+        return best != null ? best : fallback;
+    }
+
+    public List<OtpBackend> getBackends() {
+        return backends;
+    }
+
+    /**
+     * 对所有实例做一次健康检查 (2xx 视为健康)
+     */
+    void checkHealth() {
+        if (healthPath.isEmpty()) {
+            return;
+        }
+        for (OtpBackend backend : backends) {
+            boolean healthy;
+            try {
+                HttpRequest request = HttpRequest.newBuilder(URI.create(backend.getBaseUrl() + healthPath))
+                        .timeout(Duration.ofSeconds(2))
+                        .GET()
+                        .build();
+                int status = healthClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                healthy = status >= 200 && status < 300;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                healthy = false;
+            }
+            if (healthy != backend.isHealthy()) {
+                logger.log(healthy ? Level.INFO : Level.WARNING,
+                        "OTP backend " + backend.getBaseUrl() + (healthy ? " is healthy again" : " failed health check"));
+            }
+            backend.setHealthy(healthy);
+        }
+    }
+
+    /**
+     * 各实例的健康状态、进行中请求与延迟统计
+     *
+     * @return 按实例地址分组的统计
+     */
+    public Map<String, Map<String, Object>> getStats() {
+        Map<String, Map<String, Object>> stats = new LinkedHashMap<>();
+        for (OtpBackend backend : backends) {
+            stats.put(backend.getBaseUrl(), backend.getStats());
+        }
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        if (healthScheduler != null) {
+            healthScheduler.shutdownNow();
+        }
+    }
+}
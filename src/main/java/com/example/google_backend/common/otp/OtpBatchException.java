@@ -0,0 +1,41 @@
+package com.example.google_backend.common.otp;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 微批中的规划失败 (整批请求失败，或请求成功但该规划返回错误)
+ * 同一批次的所有调用方共享一个计数标记，熔断器对一个批次只记一次失败
+ */
+public class OtpBatchException extends RuntimeException {
+
+    private final AtomicBoolean counted;
+
+    OtpBatchException(String message, Throwable cause, AtomicBoolean counted) {
+        super(message, cause);
+        this.counted = counted;
+    }
+
+    /**
+     * 领取该批次的失败计数
+     *
+     * @return true 本调用方是该批次第一个领取的，应计入一次失败
+     */
+    public boolean claimFailure() {
+        return counted.compareAndSet(false, true);
+    }
+
+    /**
+     * 在异常链中查找批次失败
+     *
+     * @param failure 调用抛出的异常 (可能被多层包装)
+     * @return 批次失败，不是批次失败时为 null
+     */
+    public static OtpBatchException find(Throwable failure) {
+        for (Throwable t = failure; t != null; t = t.getCause()) {
+            if (t instanceof OtpBatchException batchFailure) {
+                return batchFailure;
+            }
+        }
+        return null;
+    }
+}
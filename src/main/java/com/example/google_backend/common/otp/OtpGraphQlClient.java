@@ -0,0 +1,251 @@
+package com.example.google_backend.common.otp;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 精简的 OTP GraphQL 客户端
+ * 只请求驾驶替换用到的字段 (第一个行程第一段的距离与时长)，
+ * 多个规划以别名 p0、p1 ... 合并为一次查询，响应用流式解析器读取，不构建完整的对象树
+ */
+public class OtpGraphQlClient {
+
+    private static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm");
+
+    private static final String PLAN_FIELDS = "{itineraries{legs{distance duration}}}";
+
+    private final RestTemplate restTemplate;
+    private final String graphQlPath;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final JsonFactory jsonFactory = objectMapper.getFactory();
+
+    /**
+     * 一次驾驶规划的起终点与出发时间
+     */
+    public record PlanQuery(double fromLat, double fromLon, double toLat, double toLon, LocalDateTime departure) {
+    }
+
+    /**
+     * 驾驶路段：距离 (米) 与时长 (秒)
+     */
+    public record DrivingPlan(double distanceMeters, double durationSeconds) {
+    }
+
+    /**
+     * 单个规划的结果：plan 为 null 表示没有可行的行程；error 不为 null 表示该规划失败
+     */
+    public record PlanResult(DrivingPlan plan, String error) {
+    }
+
+    public OtpGraphQlClient(RestTemplate restTemplate, String graphQlPath) {
+        this.restTemplate = restTemplate;
+        this.graphQlPath = graphQlPath;
+    }
+
+    /**
+     * 在一个 OTP 实例上执行一批规划
+     *
+     * @param baseUrl OTP 实例地址
+     * @param queries 规划
+     * @return 与 queries 一一对应的结果
+     */
+    public List<PlanResult> planBatch(String baseUrl, List<PlanQuery> queries) {
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(Map.of("query", buildQuery(queries)));
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to build OTP GraphQL request", e);
+        }
+
+        return restTemplate.execute(baseUrl + graphQlPath, HttpMethod.POST,
+                request -> {
+                    request.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+                    request.getHeaders().setAccept(List.of(MediaType.APPLICATION_JSON));
+                    request.getBody().write(body);
+                },
+                response -> parse(response.getBody(), queries.size()));
+    }
+
+    /**
+     * 生成带别名的多规划查询，如 query{p0:plan(...){...} p1:plan(...){...}}
+     */
+    static String buildQuery(List<PlanQuery> queries) {
+        StringBuilder query = new StringBuilder(64 + queries.size() * 192).append("query{");
+        for (int i = 0; i < queries.size(); i++) {
+            PlanQuery q = queries.get(i);
+            query.append('p').append(i).append(":plan(")
+                    .append("from:{lat:").append(coordinate(q.fromLat())).append(",lon:").append(coordinate(q.fromLon())).append('}')
+                    .append(",to:{lat:").append(coordinate(q.toLat())).append(",lon:").append(coordinate(q.toLon())).append('}')
+                    .append(",date:\"").append(DATE.format(q.departure())).append('"')
+                    .append(",time:\"").append(TIME.format(q.departure())).append('"')
+                    .append(",transportModes:[{mode:CAR}],numItineraries:1)")
+                    .append(PLAN_FIELDS)
+                    .append(' ');
+        }
+        return query.append('}').toString();
+    }
+
+    /**
+     * 流式解析响应：data.pN 取第一个行程第一段的 distance、duration，errors 按 path[0] 对应到别名
+     */
+    List<PlanResult> parse(InputStream body, int size) throws IOException {
+        DrivingPlan[] plans = new DrivingPlan[size];
+        Map<Integer, String> errors = new HashMap<>();
+
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            expect(parser.nextToken(), JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("data".equals(field) && value == JsonToken.START_OBJECT) {
+                    parseData(parser, plans);
+                } else if ("errors".equals(field) && value == JsonToken.START_ARRAY) {
+                    parseErrors(parser, errors, size);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+
+        List<PlanResult> results = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            String error = errors.get(i);
+            if (error == null && errors.containsKey(-1)) {
+                // 不属于任何别名的错误 (如语法错误) 使整批失败
+                error = errors.get(-1);
+            }
+            results.add(new PlanResult(error == null ? plans[i] : null, error));
+        }
+        return results;
+    }
+
+    private void parseData(JsonParser parser, DrivingPlan[] plans) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            int index = aliasIndex(parser.currentName(), plans.length);
+            JsonToken value = parser.nextToken();
+            if (index >= 0 && value == JsonToken.START_OBJECT) {
+                plans[index] = parsePlan(parser);
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    /**
+     * plan: {itineraries: [{legs: [{distance, duration}, ...]}, ...]}
+     */
+    private DrivingPlan parsePlan(JsonParser parser) throws IOException {
+        DrivingPlan plan = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (!"itineraries".equals(field) || value != JsonToken.START_ARRAY) {
+                parser.skipChildren();
+                continue;
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                if (plan != null) {
+                    parser.skipChildren();
+                    continue;
+                }
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String itineraryField = parser.currentName();
+                    JsonToken legs = parser.nextToken();
+                    if (!"legs".equals(itineraryField) || legs != JsonToken.START_ARRAY) {
+                        parser.skipChildren();
+                        continue;
+                    }
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        if (plan != null) {
+                            parser.skipChildren();
+                            continue;
+                        }
+                        plan = parseLeg(parser);
+                    }
+                }
+            }
+        }
+        return plan;
+    }
+
+    private DrivingPlan parseLeg(JsonParser parser) throws IOException {
+        double distance = 0;
+        double duration = 0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("distance".equals(field) && value.isNumeric()) {
+                distance = parser.getDoubleValue();
+            } else if ("duration".equals(field) && value.isNumeric()) {
+                duration = parser.getDoubleValue();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return new DrivingPlan(distance, duration);
+    }
+
+    private void parseErrors(JsonParser parser, Map<Integer, String> errors, int size) throws IOException {
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            String message = null;
+            int index = -1;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("message".equals(field) && value == JsonToken.VALUE_STRING) {
+                    message = parser.getText();
+                } else if ("path".equals(field) && value == JsonToken.START_ARRAY) {
+                    if (parser.nextToken() == JsonToken.VALUE_STRING) {
+                        index = aliasIndex(parser.getText(), size);
+                    }
+                    if (parser.currentToken() != JsonToken.END_ARRAY) {
+                        while (parser.nextToken() != JsonToken.END_ARRAY) {
+                            parser.skipChildren();
+                        }
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            errors.putIfAbsent(index, message == null ? "OTP GraphQL error" : message);
+        }
+    }
+
+    private static int aliasIndex(String alias, int size) {
+        if (alias == null || alias.length() < 2 || alias.charAt(0) != 'p') {
+            return -1;
+        }
+        try {
+            int index = Integer.parseInt(alias.substring(1));
+            return index < size ? index : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static String coordinate(double value) {
+        return String.format(Locale.ROOT, "%.6f", value);
+    }
+
+    private static void expect(JsonToken actual, JsonToken expected) throws IOException {
+        if (actual != expected) {
+            throw new IOException("Unexpected OTP GraphQL response token: " + actual);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.google_backend.common.otp;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * OTP 规划的跨请求微批处理
+ * 第一个规划到达后等待 windowMillis，期间其他请求的规划加入同一批 (最多 maxBatchSize 个)，
+ * 然后作为一次带别名的 GraphQL 查询发往实例池中进行中请求最少的实例，结果按调用方拆分返回。
+ */
+public class OtpPlanBatcher implements AutoCloseable {
+
+    private final OtpBackendPool backendPool;
+    private final OtpGraphQlClient client;
+    private final long windowMillis;
+    private final int maxBatchSize;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // 当前正在收集的批次，由 lock 保护
+    private List<Pending> pending = new ArrayList<>();
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "otp-plan-batcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final LongAdder plans = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder fullBatches = new LongAdder();
+    private final LongAdder failedBatches = new LongAdder();
+
+    private record Pending(OtpGraphQlClient.PlanQuery query, CompletableFuture<OtpGraphQlClient.DrivingPlan> result) {
+    }
+
+    public OtpPlanBatcher(OtpBackendPool backendPool, OtpGraphQlClient client, long windowMillis, int maxBatchSize) {
+        this.backendPool = backendPool;
+        this.client = client;
+        this.windowMillis = Math.max(0L, windowMillis);
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+    }
+
+    /**
+     * 提交一个规划并等待结果
+     *
+     * @param query 规划
+     * @return 驾驶路段，没有可行的行程时返回 null
+     */
+    public OtpGraphQlClient.DrivingPlan plan(OtpGraphQlClient.PlanQuery query) throws Exception {
+        plans.increment();
+        CompletableFuture<OtpGraphQlClient.DrivingPlan> result = new CompletableFuture<>();
+        List<Pending> full = null;
+        List<Pending> current;
+        boolean first;
+
+        lock.lock();
+        try {
+            pending.add(new Pending(query, result));
+            current = pending;
+            first = pending.size() == 1;
+            if (pending.size() >= maxBatchSize || windowMillis == 0) {
+                full = pending;
+                pending = new ArrayList<>();
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (full != null) {
+            if (full.size() >= maxBatchSize) {
+                fullBatches.increment();
+            }
+            List<Pending> batch = full;
+            executor.execute(() -> send(batch));
+        } else if (first) {
+            List<Pending> batch = current;
+            timer.schedule(() -> flush(batch), windowMillis, TimeUnit.MILLISECONDS);
+        }
+
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception exception) {
+                throw exception;
+            }
+            throw e;
+        }
+    }
+
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("plans", plans.sum());
+        stats.put("batches", batches.sum());
+        stats.put("fullBatches", fullBatches.sum());
+        stats.put("failedBatches", failedBatches.sum());
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    /**
+     * 窗口到期：发送该窗口收集的批次；批次已因达到上限被提前发送时不做任何事
+     */
+    private void flush(List<Pending> batch) {
+        lock.lock();
+        try {
+            if (pending != batch) {
+                return;
+            }
+            pending = new ArrayList<>();
+        } finally {
+            lock.unlock();
+        }
+        executor.execute(() -> send(batch));
+    }
+
+    private void send(List<Pending> batch) {
+        batches.increment();
+        List<OtpGraphQlClient.PlanQuery> queries = new ArrayList<>(batch.size());
+        for (Pending item : batch) {
+            queries.add(item.query());
+        }
+        // 整批只对应一次 HTTP 请求，所有调用方共享一个失败计数
+        AtomicBoolean counted = new AtomicBoolean();
+        try {
+            List<OtpGraphQlClient.PlanResult> results =
+                    backendPool.execute(backend -> client.planBatch(backend.getBaseUrl(), queries));
+            for (int i = 0; i < batch.size(); i++) {
+                OtpGraphQlClient.PlanResult result = results.get(i);
+                if (result.error() != null) {
+                    batch.get(i).result().completeExceptionally(
+                            new OtpBatchException("OTP plan failed: " + result.error(), null, counted));
+                } else {
+                    batch.get(i).result().complete(result.plan());
+                }
+            }
+        } catch (Exception e) {
+            failedBatches.increment();
+            for (Pending item : batch) {
+                item.result().completeExceptionally(
+                        new OtpBatchException("OTP batch of " + batch.size() + " plans failed", e, counted));
+            }
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.google_backend.common.otp;
+
+/**
+ * 本次没有请求 OTP (熔断中或请求预算已用完)，调用方可以改用估算的驾驶步骤或保留原公交路段
+ */
+public class OtpUnavailableException extends RuntimeException {
+
+    public OtpUnavailableException(String reason) {
+        super("OTP unavailable: " + reason);
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.google_backend.common.redis.codec;
+
+import com.example.google_backend.model.CachedRoute;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 预序列化路线缓存条目的二进制格式
+ * 条目中保存的是返回给客户端的 JSON 字节，读取时无需构建 RouteResponse 对象
+ *
+ * 格式: magic(4) | version(1) | createdAt | softExpireAt | hardExpireAt | computeMillis
+ *      | fingerprint | volatility (版本 2) | contentType | contentHash | routeOffsets | sortOrders | body
+ */
+public class CachedRouteBytesCodec {
+
+    // "RTB1"
+    private static final int MAGIC = 0x52544231;
+    // 版本 2 增加了 fingerprint、volatility
+    private static final byte VERSION = 2;
+
+    private CachedRouteBytesCodec() {
+        // 私有构造函数防止实例化
+    }
+
+    /**
+     * 判断 Redis 中的值是否为预序列化格式
+     *
+     * @param bytes Redis 原始值
+     * @return true 是预序列化格式
+     */
+    public static boolean isEncoded(byte[] bytes) {
+        return bytes != null && bytes.length >= 5
+                && ((bytes[0] & 0xFF) << 24 | (bytes[1] & 0xFF) << 16 | (bytes[2] & 0xFF) << 8 | (bytes[3] & 0xFF)) == MAGIC;
+    }
+
+    public static byte[] encode(CachedRoute entry) {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(entry.getBody().length + 256);
+        try (DataOutputStream out = new DataOutputStream(bos)) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeLong(entry.getCreatedAt());
+            out.writeLong(entry.getSoftExpireAt());
+            out.writeLong(entry.getHardExpireAt());
+            out.writeLong(entry.getComputeMillis());
+            out.writeLong(entry.getFingerprint());
+            out.writeDouble(entry.getVolatility());
+            out.writeUTF(entry.getContentType());
+            out.writeUTF(entry.getContentHash());
+
+            writeInts(out, entry.getRouteOffsets());
+
+            Map<String, int[]> sortOrders = entry.getSortOrders();
+            out.writeShort(sortOrders == null ? 0 : sortOrders.size());
+            if (sortOrders != null) {
+                for (Map.Entry<String, int[]> order : sortOrders.entrySet()) {
+                    out.writeUTF(order.getKey());
+                    writeInts(out, order.getValue());
+                }
+            }
+
+            out.writeInt(entry.getBody().length);
+            out.write(entry.getBody());
+        } catch (IOException e) {
+            throw new IllegalStateException("Error encoding cached route bytes", e);
+        }
+        return bos.toByteArray();
+    }
+
+    public static CachedRoute decode(byte[] bytes) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            if (in.readInt() != MAGIC) {
+                throw new IllegalArgumentException("Not a cached route bytes value");
+            }
+            byte version = in.readByte();
+            if (version < 1 || version > VERSION) {
+                throw new IllegalArgumentException("Unsupported cached route bytes version: " + version);
+            }
+
+            CachedRoute entry = new CachedRoute();
+            entry.setCreatedAt(in.readLong());
+            entry.setSoftExpireAt(in.readLong());
+            entry.setHardExpireAt(in.readLong());
+            entry.setComputeMillis(in.readLong());
+            if (version >= 2) {
+                entry.setFingerprint(in.readLong());
+                entry.setVolatility(in.readDouble());
+            }
+            entry.setContentType(in.readUTF());
+            entry.setContentHash(in.readUTF());
+            entry.setRouteOffsets(readInts(in));
+
+            int sortCount = in.readUnsignedShort();
+            Map<String, int[]> sortOrders = new LinkedHashMap<>();
+            for (int i = 0; i < sortCount; i++) {
+                String sortType = in.readUTF();
+                sortOrders.put(sortType, readInts(in));
+            }
+            entry.setSortOrders(sortOrders);
+
+            byte[] body = new byte[in.readInt()];
+            in.readFully(body);
+            entry.setBody(body);
+            return entry;
+        } catch (IOException e) {
+            throw new IllegalStateException("Error decoding cached route bytes", e);
+        }
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values == null ? 0 : values.length);
+        if (values != null) {
+            for (int value : values) {
+                out.writeInt(value);
+            }
+        }
+    }
+
+    private static int[] readInts(DataInputStream in) throws IOException {
+        int[] values = new int[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+}
@@ -0,0 +1,646 @@
+package com.example.google_backend.common.redis.codec;
+
+import com.example.google_backend.model.CachedRoute;
+import com.example.google_backend.model.RouteResponse;
+import com.example.google_backend.model.RouteResponse.StepDetail.TransitDetails;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 路线模型的紧凑二进制编码 (不带类名、字段名)
+ * 整数使用变长编码；字符串使用字符串表，重复出现的机构名、颜色、交通工具类型等只写一次，
+ * 之后以表下标引用。字段顺序即格式的一部分，修改模型字段时需要同时提升 {@link #VERSION}。
+ */
+public class RouteBinaryCodec {
+
+    // 版本 2 增加了 CachedRoute 的 fingerprint、volatility；版本 3 增加了 RouteResponse 的 droppedOptimizations；
+    // 版本 4 起站点、leg 起终点写入坐标，路线距离、时长写入数值
+    public static final byte VERSION = 4;
+
+    public static final byte TYPE_CACHED_ROUTE = 1;
+    public static final byte TYPE_ROUTE_RESPONSE = 2;
+
+    // 字符串标记：0 = null，1 = 新字符串 (随后是长度和内容)，n >= 2 表示字符串表第 n - 2 项
+    private static final int STRING_NULL = 0;
+    private static final int STRING_NEW = 1;
+
+    private RouteBinaryCodec() {
+        // 私有构造函数防止实例化
+    }
+
+    /**
+     * 是否为本编码支持的类型
+     */
+    public static boolean supports(Object value) {
+        return value instanceof CachedRoute || value instanceof RouteResponse;
+    }
+
+    public static byte typeOf(Object value) {
+        return value instanceof CachedRoute ? TYPE_CACHED_ROUTE : TYPE_ROUTE_RESPONSE;
+    }
+
+    public static byte[] encode(Object value) {
+        Writer out = new Writer();
+        if (value instanceof CachedRoute entry) {
+            out.writeVarLong(entry.getCreatedAt());
+            out.writeVarLong(entry.getSoftExpireAt());
+            out.writeVarLong(entry.getHardExpireAt());
+            out.writeVarLong(entry.getComputeMillis());
+            out.writeVarLong(entry.getFingerprint());
+            out.writeVarLong(Double.doubleToLongBits(entry.getVolatility()));
+            writeResponse(out, entry.getResponse());
+        } else {
+            writeResponse(out, (RouteResponse) value);
+        }
+        return out.toByteArray();
+    }
+
+    public static Object decode(byte version, byte type, byte[] bytes, int offset, int length) {
+        if (version < 1 || version > VERSION) {
+            throw new IllegalArgumentException("Unsupported route binary version: " + version);
+        }
+        Reader in = new Reader(bytes, offset, length);
+        switch (type) {
+            case TYPE_CACHED_ROUTE:
+                CachedRoute entry = new CachedRoute();
+                entry.setCreatedAt(in.readVarLong());
+                entry.setSoftExpireAt(in.readVarLong());
+                entry.setHardExpireAt(in.readVarLong());
+                entry.setComputeMillis(in.readVarLong());
+                if (version >= 2) {
+                    entry.setFingerprint(in.readVarLong());
+                    entry.setVolatility(Double.longBitsToDouble(in.readVarLong()));
+                }
+                entry.setResponse(readResponse(in, version));
+                return entry;
+            case TYPE_ROUTE_RESPONSE:
+                return readResponse(in, version);
+            default:
+                throw new IllegalArgumentException("Unknown route binary type: " + type);
+        }
+    }
+
+    /**
+     * 编码步骤列表 (如 OTP 驾驶路段缓存)，首字节为格式版本
+     */
+    public static byte[] encodeSteps(List<RouteResponse.StepDetail> steps) {
+        Writer out = new Writer();
+        out.writeVarInt(VERSION);
+        if (out.writeSize(steps)) {
+            for (RouteResponse.StepDetail step : steps) {
+                writeStep(out, step);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 解码 {@link #encodeSteps(List)} 的结果，每次返回新的对象
+     */
+    public static List<RouteResponse.StepDetail> decodeSteps(byte[] bytes) {
+        Reader in = new Reader(bytes, 0, bytes.length);
+        int version = in.readVarInt();
+        if (version < 1 || version > VERSION) {
+            throw new IllegalArgumentException("Unsupported route binary version: " + version);
+        }
+        int size = in.readSize();
+        if (size < 0) {
+            return null;
+        }
+        List<RouteResponse.StepDetail> steps = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            steps.add(readStep(in, version));
+        }
+        return steps;
+    }
+
+    // ---------------------------------------------------------------- RouteResponse
+
+    private static void writeResponse(Writer out, RouteResponse response) {
+        if (!out.writePresent(response)) {
+            return;
+        }
+        List<RouteResponse.RouteDetail> routes = response.getRoutes();
+        if (out.writeSize(routes)) {
+            for (RouteResponse.RouteDetail route : routes) {
+                writeRoute(out, route);
+            }
+        }
+        Map<String, Long> timings = response.getTimings();
+        if (out.writeSize(timings == null ? null : timings.keySet())) {
+            for (Map.Entry<String, Long> timing : timings.entrySet()) {
+                out.writeString(timing.getKey());
+                out.writeVarLong(timing.getValue() == null ? 0L : timing.getValue());
+            }
+        }
+        List<String> dropped = response.getDroppedOptimizations();
+        if (out.writeSize(dropped)) {
+            for (String optimization : dropped) {
+                out.writeString(optimization);
+            }
+        }
+    }
+
+    private static RouteResponse readResponse(Reader in, byte version) {
+        if (!in.readPresent()) {
+            return null;
+        }
+        RouteResponse response = new RouteResponse();
+        int routeCount = in.readSize();
+        if (routeCount >= 0) {
+            List<RouteResponse.RouteDetail> routes = new ArrayList<>(routeCount);
+            for (int i = 0; i < routeCount; i++) {
+                routes.add(readRoute(in, version));
+            }
+            response.setRoutes(routes);
+        }
+        int timingCount = in.readSize();
+        if (timingCount >= 0) {
+            Map<String, Long> timings = new LinkedHashMap<>();
+            for (int i = 0; i < timingCount; i++) {
+                timings.put(in.readString(), in.readVarLong());
+            }
+            response.setTimings(timings);
+        }
+        if (version >= 3) {
+            int droppedCount = in.readSize();
+            if (droppedCount >= 0) {
+                List<String> dropped = new ArrayList<>(droppedCount);
+                for (int i = 0; i < droppedCount; i++) {
+                    dropped.add(in.readString());
+                }
+                response.setDroppedOptimizations(dropped);
+            }
+        }
+        return response;
+    }
+
+    private static void writeRoute(Writer out, RouteResponse.RouteDetail route) {
+        if (!out.writePresent(route)) {
+            return;
+        }
+        out.writeString(route.getSummary());
+        out.writeVarLong(route.getDistanceInMeters());
+        out.writeVarLong(route.getDurationSeconds());
+        out.writeString(route.getPolyline());
+        out.writeString(route.getSteps());
+        List<RouteResponse.LegDetail> legs = route.getLegs();
+        if (out.writeSize(legs)) {
+            for (RouteResponse.LegDetail leg : legs) {
+                writeLeg(out, leg);
+            }
+        }
+    }
+
+    private static RouteResponse.RouteDetail readRoute(Reader in, int version) {
+        if (!in.readPresent()) {
+            return null;
+        }
+        RouteResponse.RouteDetail route = new RouteResponse.RouteDetail();
+        route.setSummary(in.readString());
+        if (version >= 4) {
+            route.setDistanceInMeters(in.readVarLong());
+            route.setDurationSeconds(in.readVarLong());
+        } else {
+            route.setDistanceMeters(in.readString());
+            route.setDuration(in.readString());
+        }
+        route.setPolyline(in.readString());
+        route.setSteps(in.readString());
+        int legCount = in.readSize();
+        if (legCount >= 0) {
+            List<RouteResponse.LegDetail> legs = new ArrayList<>(legCount);
+            for (int i = 0; i < legCount; i++) {
+                legs.add(readLeg(in, version));
+            }
+            route.setLegs(legs);
+        }
+        return route;
+    }
+
+    private static void writeLeg(Writer out, RouteResponse.LegDetail leg) {
+        if (!out.writePresent(leg)) {
+            return;
+        }
+        writeLocation(out, leg.hasStartLocation(), leg.getStartLatitude(), leg.getStartLongitude(), leg.getStartLocation());
+        writeLocation(out, leg.hasEndLocation(), leg.getEndLatitude(), leg.getEndLongitude(), leg.getEndLocation());
+        out.writeString(leg.getDistance());
+        out.writeString(leg.getDuration());
+        List<RouteResponse.StepDetail> steps = leg.getSteps();
+        if (out.writeSize(steps)) {
+            for (RouteResponse.StepDetail step : steps) {
+                writeStep(out, step);
+            }
+        }
+    }
+
+    private static RouteResponse.LegDetail readLeg(Reader in, int version) {
+        if (!in.readPresent()) {
+            return null;
+        }
+        RouteResponse.LegDetail leg = new RouteResponse.LegDetail();
+        if (version < 4) {
+            leg.setStartLocation(in.readString());
+            leg.setEndLocation(in.readString());
+        } else {
+            if (in.readPresent()) {
+                leg.setStartCoordinates(in.readDouble(), in.readDouble());
+            } else {
+                leg.setStartLocation(in.readString());
+            }
+            if (in.readPresent()) {
+                leg.setEndCoordinates(in.readDouble(), in.readDouble());
+            } else {
+                leg.setEndLocation(in.readString());
+            }
+        }
+        leg.setDistance(in.readString());
+        leg.setDuration(in.readString());
+        int stepCount = in.readSize();
+        if (stepCount >= 0) {
+            List<RouteResponse.StepDetail> steps = new ArrayList<>(stepCount);
+            for (int i = 0; i < stepCount; i++) {
+                steps.add(readStep(in, version));
+            }
+            leg.setSteps(steps);
+        }
+        return leg;
+    }
+
+    private static void writeStep(Writer out, RouteResponse.StepDetail step) {
+        if (!out.writePresent(step)) {
+            return;
+        }
+        out.writeString(step.getInstruction());
+        out.writeVarLong(step.getDistance());
+        out.writeVarLong(step.getDuration());
+        out.writeString(step.getHeadsign());
+        out.writeVarLong(step.getStopCount());
+        out.writeString(step.getPolyline());
+        out.writeString(step.getTravelMode());
+        writeLine(out, step.getTransitLine());
+        writeTransitDetails(out, step.getTransitDetails());
+    }
+
+    private static RouteResponse.StepDetail readStep(Reader in, int version) {
+        if (!in.readPresent()) {
+            return null;
+        }
+        RouteResponse.StepDetail step = new RouteResponse.StepDetail();
+        step.setInstruction(in.readString());
+        step.setDistance(in.readVarLong());
+        step.setDuration(in.readVarLong());
+        step.setHeadsign(in.readString());
+        step.setStopCount((int) in.readVarLong());
+        step.setPolyline(in.readString());
+        step.setTravelMode(in.readString());
+        step.setTransitLine(readLine(in));
+        step.setTransitDetails(readTransitDetails(in, version));
+        return step;
+    }
+
+    // ---------------------------------------------------------------- TransitDetails
+
+    private static void writeTransitDetails(Writer out, TransitDetails details) {
+        if (!out.writePresent(details)) {
+            return;
+        }
+        out.writeVarLong(details.getWaitTimeSeconds());
+        out.writeString(details.getHeadsign());
+        out.writeVarLong(details.getStopCount());
+
+        TransitDetails.StopDetails stopDetails = details.getStopDetails();
+        if (out.writePresent(stopDetails)) {
+            writeStop(out, stopDetails.getArrivalStop());
+            writeStop(out, stopDetails.getDepartureStop());
+            out.writeString(stopDetails.getArrivalTime());
+            out.writeString(stopDetails.getDepartureTime());
+        }
+
+        TransitDetails.TransitLine line = details.getTransitLine();
+        if (out.writePresent(line)) {
+            out.writeString(line.getName());
+            out.writeString(line.getColor());
+            out.writeString(line.getNameShort());
+            out.writeString(line.getTextColor());
+            List<TransitDetails.TransitLine.Agency> agencies = line.getAgencies();
+            if (out.writeSize(agencies)) {
+                for (TransitDetails.TransitLine.Agency agency : agencies) {
+                    if (out.writePresent(agency)) {
+                        out.writeString(agency.getName());
+                        out.writeString(agency.getPhoneNumber());
+                        out.writeString(agency.getUri());
+                    }
+                }
+            }
+            TransitDetails.TransitLine.Vehicle vehicle = line.getVehicle();
+            if (out.writePresent(vehicle)) {
+                out.writeString(vehicle.getName() == null ? null : vehicle.getName().getText());
+                out.writeString(vehicle.getType());
+                out.writeString(vehicle.getIconUri());
+            }
+        }
+    }
+
+    private static TransitDetails readTransitDetails(Reader in, int version) {
+        if (!in.readPresent()) {
+            return null;
+        }
+        TransitDetails details = new TransitDetails();
+        details.setWaitTimeSeconds(in.readVarLong());
+        details.setHeadsign(in.readString());
+        details.setStopCount((int) in.readVarLong());
+
+        if (in.readPresent()) {
+            TransitDetails.StopDetails stopDetails = new TransitDetails.StopDetails();
+            stopDetails.setArrivalStop(readStop(in, version));
+            stopDetails.setDepartureStop(readStop(in, version));
+            stopDetails.setArrivalTime(in.readString());
+            stopDetails.setDepartureTime(in.readString());
+            details.setStopDetails(stopDetails);
+        }
+
+        if (in.readPresent()) {
+            TransitDetails.TransitLine line = new TransitDetails.TransitLine();
+            line.setName(in.readString());
+            line.setColor(in.readString());
+            line.setNameShort(in.readString());
+            line.setTextColor(in.readString());
+            int agencyCount = in.readSize();
+            if (agencyCount >= 0) {
+                List<TransitDetails.TransitLine.Agency> agencies = new ArrayList<>(agencyCount);
+                for (int i = 0; i < agencyCount; i++) {
+                    agencies.add(in.readPresent()
+                            ? new TransitDetails.TransitLine.Agency(in.readString(), in.readString(), in.readString())
+                            : null);
+                }
+                line.setAgencies(agencies);
+            }
+            if (in.readPresent()) {
+                String nameText = in.readString();
+                TransitDetails.TransitLine.Vehicle vehicle = new TransitDetails.TransitLine.Vehicle();
+                vehicle.setName(nameText == null ? null : new TransitDetails.TransitLine.Vehicle.Name(nameText));
+                vehicle.setType(in.readString());
+                vehicle.setIconUri(in.readString());
+                line.setVehicle(vehicle);
+            }
+            details.setTransitLine(line);
+        }
+        return details;
+    }
+
+    private static void writeStop(Writer out, TransitDetails.StopDetails.Stop stop) {
+        if (out.writePresent(stop)) {
+            out.writeString(stop.getName());
+            writeLocation(out, stop.hasLocation(), stop.getLatitude(), stop.getLongitude(), stop.getLocation());
+        }
+    }
+
+    private static TransitDetails.StopDetails.Stop readStop(Reader in, int version) {
+        if (!in.readPresent()) {
+            return null;
+        }
+        String name = in.readString();
+        if (version >= 4 && in.readPresent()) {
+            return new TransitDetails.StopDetails.Stop(name, in.readDouble(), in.readDouble());
+        }
+        // 版本 4 之前 location 为 JSON 文本；之后没有坐标时为原文本 (如 "Unknown Location")
+        return new TransitDetails.StopDetails.Stop(name, in.readString());
+    }
+
+    /**
+     * 有坐标时写入标记与经纬度，否则写入原文本
+     */
+    private static void writeLocation(Writer out, boolean hasLocation, double latitude, double longitude, String text) {
+        if (out.writePresent(hasLocation ? Boolean.TRUE : null)) {
+            out.writeDouble(latitude);
+            out.writeDouble(longitude);
+        } else {
+            out.writeString(text);
+        }
+    }
+
+    // ---------------------------------------------------------------- RouteResponse.TransitLine
+
+    private static void writeLine(Writer out, RouteResponse.TransitLine line) {
+        if (!out.writePresent(line)) {
+            return;
+        }
+        out.writeString(line.getName());
+        out.writeString(line.getColor());
+        out.writeString(line.getNameShort());
+        out.writeString(line.getTextColor());
+        List<RouteResponse.TransitLine.Agency> agencies = line.getAgencies();
+        if (out.writeSize(agencies)) {
+            for (RouteResponse.TransitLine.Agency agency : agencies) {
+                if (out.writePresent(agency)) {
+                    out.writeString(agency.getName());
+                    out.writeString(agency.getPhoneNumber());
+                    out.writeString(agency.getUri());
+                }
+            }
+        }
+        RouteResponse.TransitLine.Vehicle vehicle = line.getVehicle();
+        if (out.writePresent(vehicle)) {
+            out.writeString(vehicle.getName() == null ? null : vehicle.getName().getText());
+            out.writeString(vehicle.getType());
+            out.writeString(vehicle.getIconUri());
+        }
+    }
+
+    private static RouteResponse.TransitLine readLine(Reader in) {
+        if (!in.readPresent()) {
+            return null;
+        }
+        RouteResponse.TransitLine line = new RouteResponse.TransitLine();
+        line.setName(in.readString());
+        line.setColor(in.readString());
+        line.setNameShort(in.readString());
+        line.setTextColor(in.readString());
+        int agencyCount = in.readSize();
+        if (agencyCount >= 0) {
+            List<RouteResponse.TransitLine.Agency> agencies = new ArrayList<>(agencyCount);
+            for (int i = 0; i < agencyCount; i++) {
+                if (in.readPresent()) {
+                    RouteResponse.TransitLine.Agency agency = new RouteResponse.TransitLine.Agency();
+                    agency.setName(in.readString());
+                    agency.setPhoneNumber(in.readString());
+                    agency.setUri(in.readString());
+                    agencies.add(agency);
+                } else {
+                    agencies.add(null);
+                }
+            }
+            line.setAgencies(agencies);
+        }
+        if (in.readPresent()) {
+            String nameText = in.readString();
+            RouteResponse.TransitLine.Vehicle vehicle = new RouteResponse.TransitLine.Vehicle();
+            if (nameText != null) {
+                RouteResponse.TransitLine.Vehicle.Name name = new RouteResponse.TransitLine.Vehicle.Name();
+                name.setText(nameText);
+                vehicle.setName(name);
+            }
+            vehicle.setType(in.readString());
+            vehicle.setIconUri(in.readString());
+            line.setVehicle(vehicle);
+        }
+        return line;
+    }
+
+    // ---------------------------------------------------------------- 基础读写
+
+    private static final class Writer {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+        private final Map<String, Integer> strings = new HashMap<>();
+
+        boolean writePresent(Object value) {
+            out.write(value == null ? 0 : 1);
+            return value != null;
+        }
+
+        /**
+         * 写入集合大小，null 写为 0，其余写为 size + 1
+         *
+         * @return 集合非空 (null) 时返回 true
+         */
+        boolean writeSize(Collection<?> values) {
+            writeVarInt(values == null ? 0 : values.size() + 1);
+            return values != null;
+        }
+
+        void writeString(String value) {
+            if (value == null) {
+                writeVarInt(STRING_NULL);
+                return;
+            }
+            Integer index = strings.get(value);
+            if (index != null) {
+                writeVarInt(index + 2);
+                return;
+            }
+            strings.put(value, strings.size());
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(STRING_NEW);
+            writeVarInt(bytes.length);
+            out.write(bytes, 0, bytes.length);
+        }
+
+        void writeVarLong(long value) {
+            // zigzag，负数同样紧凑
+            long v = (value << 1) ^ (value >> 63);
+            while ((v & ~0x7FL) != 0) {
+                out.write((int) ((v & 0x7F) | 0x80));
+                v >>>= 7;
+            }
+            out.write((int) v);
+        }
+
+        void writeVarInt(int value) {
+            while ((value & ~0x7F) != 0) {
+                out.write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.write(value);
+        }
+
+        void writeDouble(double value) {
+            long bits = Double.doubleToLongBits(value);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                out.write((int) (bits >>> shift));
+            }
+        }
+
+        byte[] toByteArray() {
+            return out.toByteArray();
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] bytes;
+        private final int limit;
+        private final List<String> strings = new ArrayList<>();
+        private int pos;
+
+        Reader(byte[] bytes, int offset, int length) {
+            this.bytes = bytes;
+            this.pos = offset;
+            this.limit = offset + length;
+        }
+
+        boolean readPresent() {
+            return readByte() != 0;
+        }
+
+        /**
+         * @return 集合大小，null 集合返回 -1
+         */
+        int readSize() {
+            return readVarInt() - 1;
+        }
+
+        String readString() {
+            int marker = readVarInt();
+            if (marker == STRING_NULL) {
+                return null;
+            }
+            if (marker != STRING_NEW) {
+                return strings.get(marker - 2);
+            }
+            int length = readVarInt();
+            if (length < 0 || pos + length > limit) {
+                throw new IllegalArgumentException("Truncated route binary value");
+            }
+            String value = new String(bytes, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+            strings.add(value);
+            return value;
+        }
+
+        long readVarLong() {
+            long v = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                v |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return (v >>> 1) ^ -(v & 1);
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint in route binary value");
+        }
+
+        double readDouble() {
+            long bits = 0;
+            for (int i = 0; i < 8; i++) {
+                bits = (bits << 8) | readByte();
+            }
+            return Double.longBitsToDouble(bits);
+        }
+
+        int readVarInt() {
+            int v = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                int b = readByte();
+                v |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return v;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint in route binary value");
+        }
+
+        private int readByte() {
+            if (pos >= limit) {
+                throw new IllegalArgumentException("Truncated route binary value");
+            }
+            return bytes[pos++] & 0xFF;
+        }
+    }
+}
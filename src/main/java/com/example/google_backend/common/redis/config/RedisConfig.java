@@ -1,13 +1,19 @@
 package com.example.google_backend.common.redis.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.AutoConfigureBefore;
 import org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration;
 import org.springframework.cache.annotation.CachingConfigurerSupport;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 /**
@@ -20,6 +26,19 @@ import org.springframework.data.redis.serializer.StringRedisSerializer;
 @AutoConfigureBefore(RedisAutoConfiguration.class)
 public class RedisConfig extends CachingConfigurerSupport
 {
+    /**
+     * 缓存值的序列化方式：json (FastJson2，带类名) 或 binary (路线模型使用二进制编码，其他类型仍为 JSON)
+     * 两种方式都可以读取对方写入的值
+     */
+    @Value("${redis.value-codec:json}")
+    private String valueCodec;
+
+    /**
+     * binary 方式下编码结果超过该大小 (字节) 时压缩，0 表示不压缩
+     */
+    @Value("${redis.codec.compress-threshold:4096}")
+    private int compressThreshold;
+
     @Bean
     @SuppressWarnings(value = { "unchecked", "rawtypes" })
     public RedisTemplate<Object, Object> redisTemplate(RedisConnectionFactory connectionFactory)
@@ -27,7 +46,9 @@ public class RedisConfig extends CachingConfigurerSupport
         RedisTemplate<Object, Object> template = new RedisTemplate<>();
         template.setConnectionFactory(connectionFactory);
 
-        FastJson2JsonRedisSerializer serializer = new FastJson2JsonRedisSerializer(Object.class);
+        RedisSerializer serializer = "binary".equalsIgnoreCase(valueCodec)
+                ? new RouteBinaryRedisSerializer(compressThreshold)
+                : new FastJson2JsonRedisSerializer(Object.class);
 
         // 使用StringRedisSerializer来序列化和反序列化redis的key值
         template.setKeySerializer(new StringRedisSerializer());
@@ -40,4 +61,29 @@ public class RedisConfig extends CachingConfigurerSupport
         template.afterPropertiesSet();
         return template;
     }
+
+    /**
+     * 响应式路线接口使用的 Redis 模板 (Lettuce 响应式 API)
+     * 值按原始字节读写，由 RouteCacheService 按格式编码/解码，与阻塞接口写入的条目互通
+     */
+    @Bean
+    public ReactiveRedisTemplate<String, byte[]> reactiveRouteRedisTemplate(ReactiveRedisConnectionFactory connectionFactory)
+    {
+        RedisSerializationContext<String, byte[]> context = RedisSerializationContext
+                .<String, byte[]>newSerializationContext(RedisSerializer.string())
+                .value(RedisSerializer.byteArray())
+                .build();
+        return new ReactiveRedisTemplate<>(connectionFactory, context);
+    }
+
+    /**
+     * Redis 发布/订阅监听容器 (路线缓存跨节点失效通知)
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory)
+    {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        return container;
+    }
 }
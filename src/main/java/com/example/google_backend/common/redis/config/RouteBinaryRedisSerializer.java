@@ -0,0 +1,206 @@
+package com.example.google_backend.common.redis.config;
+
+import com.example.google_backend.common.redis.codec.CachedRouteBytesCodec;
+import com.example.google_backend.common.redis.codec.RouteBinaryCodec;
+import com.example.google_backend.model.CachedRoute;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayOutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Redis使用二进制格式序列化路线模型
+ * 路线模型 (CachedRoute / RouteResponse) 使用 {@link RouteBinaryCodec} 编码，超过阈值时整体压缩；
+ * 其他类型以及旧的 FastJson2 JSON 值仍交给 {@link FastJson2JsonRedisSerializer} 处理，保证可以读取已有缓存
+ *
+ * 格式: magic "RTC"(3) | version(1) | flags(1) | type(1) | [原始长度(4)] | 内容
+ */
+public class RouteBinaryRedisSerializer implements RedisSerializer<Object>
+{
+    private static final byte[] MAGIC = { 'R', 'T', 'C' };
+    private static final int HEADER_LENGTH = 6;
+    private static final byte FLAG_DEFLATED = 0x01;
+
+    private final FastJson2JsonRedisSerializer<Object> fallback = new FastJson2JsonRedisSerializer<>(Object.class);
+
+    // 编码后超过该大小 (字节) 时压缩，小于等于 0 表示不压缩
+    private final int compressThreshold;
+
+    private final LongAdder encodeCount = new LongAdder();
+    private final LongAdder encodeNanos = new LongAdder();
+    private final LongAdder encodedBytes = new LongAdder();
+    private final LongAdder uncompressedBytes = new LongAdder();
+    private final LongAdder compressedCount = new LongAdder();
+    private final LongAdder decodeCount = new LongAdder();
+    private final LongAdder decodeNanos = new LongAdder();
+    private final LongAdder decodedBytes = new LongAdder();
+    private final LongAdder jsonReads = new LongAdder();
+    private final LongAdder jsonWrites = new LongAdder();
+
+    public RouteBinaryRedisSerializer(int compressThreshold)
+    {
+        this.compressThreshold = compressThreshold;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException
+    {
+        if (value instanceof CachedRoute entry && entry.getBody() != null)
+        {
+            // 预序列化条目保持自己的格式
+            return CachedRouteBytesCodec.encode(entry);
+        }
+        if (!RouteBinaryCodec.supports(value))
+        {
+            jsonWrites.increment();
+            return fallback.serialize(value);
+        }
+        long start = System.nanoTime();
+        try {
+            byte[] payload = RouteBinaryCodec.encode(value);
+            boolean deflate = compressThreshold > 0 && payload.length > compressThreshold;
+            byte[] body = deflate ? deflate(payload) : payload;
+
+            byte[] result = new byte[HEADER_LENGTH + (deflate ? 4 : 0) + body.length];
+            System.arraycopy(MAGIC, 0, result, 0, MAGIC.length);
+            result[3] = RouteBinaryCodec.VERSION;
+            result[4] = deflate ? FLAG_DEFLATED : 0;
+            result[5] = RouteBinaryCodec.typeOf(value);
+            int pos = HEADER_LENGTH;
+            if (deflate) {
+                writeInt(result, pos, payload.length);
+                pos += 4;
+                compressedCount.increment();
+            }
+            System.arraycopy(body, 0, result, pos, body.length);
+
+            encodeCount.increment();
+            encodedBytes.add(result.length);
+            uncompressedBytes.add(payload.length);
+            return result;
+        } catch (Exception ex) {
+            throw new SerializationException("Error serializing object using route binary codec", ex);
+        } finally {
+            encodeNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException
+    {
+        if (bytes == null || bytes.length <= 0)
+        {
+            return null;
+        }
+        if (CachedRouteBytesCodec.isEncoded(bytes))
+        {
+            return CachedRouteBytesCodec.decode(bytes);
+        }
+        if (!isEncoded(bytes))
+        {
+            // 旧的 JSON 格式
+            jsonReads.increment();
+            return fallback.deserialize(bytes);
+        }
+        long start = System.nanoTime();
+        try {
+            byte version = bytes[3];
+            byte type = bytes[5];
+            Object value;
+            if ((bytes[4] & FLAG_DEFLATED) != 0) {
+                byte[] payload = inflate(bytes, HEADER_LENGTH + 4, readInt(bytes, HEADER_LENGTH));
+                value = RouteBinaryCodec.decode(version, type, payload, 0, payload.length);
+            } else {
+                value = RouteBinaryCodec.decode(version, type, bytes, HEADER_LENGTH, bytes.length - HEADER_LENGTH);
+            }
+            decodeCount.increment();
+            decodedBytes.add(bytes.length);
+            return value;
+        } catch (Exception ex) {
+            throw new SerializationException("Error deserializing object using route binary codec", ex);
+        } finally {
+            decodeNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 编码次数、大小 (字节) 与耗时 (微秒) 统计
+     */
+    public Map<String, Long> getStats()
+    {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("encodeCount", encodeCount.sum());
+        stats.put("encodeMicros", encodeNanos.sum() / 1000);
+        stats.put("encodedBytes", encodedBytes.sum());
+        stats.put("uncompressedBytes", uncompressedBytes.sum());
+        stats.put("compressedCount", compressedCount.sum());
+        stats.put("decodeCount", decodeCount.sum());
+        stats.put("decodeMicros", decodeNanos.sum() / 1000);
+        stats.put("decodedBytes", decodedBytes.sum());
+        stats.put("jsonReads", jsonReads.sum());
+        stats.put("jsonWrites", jsonWrites.sum());
+        return stats;
+    }
+
+    private static boolean isEncoded(byte[] bytes)
+    {
+        return bytes.length >= HEADER_LENGTH && bytes[0] == MAGIC[0] && bytes[1] == MAGIC[1] && bytes[2] == MAGIC[2];
+    }
+
+    private static byte[] deflate(byte[] payload)
+    {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(payload);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(payload.length / 2 + 64);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buffer);
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] bytes, int offset, int rawLength) throws DataFormatException
+    {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(bytes, offset, bytes.length - offset);
+            byte[] payload = new byte[rawLength];
+            int pos = 0;
+            while (pos < rawLength) {
+                int n = inflater.inflate(payload, pos, rawLength - pos);
+                if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new DataFormatException("Truncated deflated route value");
+                }
+                pos += n;
+            }
+            return payload;
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static void writeInt(byte[] bytes, int pos, int value)
+    {
+        bytes[pos] = (byte) (value >>> 24);
+        bytes[pos + 1] = (byte) (value >>> 16);
+        bytes[pos + 2] = (byte) (value >>> 8);
+        bytes[pos + 3] = (byte) value;
+    }
+
+    private static int readInt(byte[] bytes, int pos)
+    {
+        return (bytes[pos] & 0xFF) << 24 | (bytes[pos + 1] & 0xFF) << 16 | (bytes[pos + 2] & 0xFF) << 8 | (bytes[pos + 3] & 0xFF);
+    }
+}
@@ -0,0 +1,257 @@
+package com.example.google_backend.common.redis.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 基于 Redis 的分布式租约 (SET NX PX + fencing token)
+ * 集群内同一个 key 同时只有一个节点持有租约；持有者写入结果时校验 token，
+ * 租约过期后被其他节点接管的旧持有者无法再覆盖结果。
+ * 租约过期但没有被接管时 (计算时间超过租约有效期)，只要之后没有更大 token 的结果写入，仍然写入结果。
+ */
+@SuppressWarnings(value = { "unchecked", "rawtypes" })
+@Component
+public class RedisLeaseService {
+
+    private static final String LEASE_KEY_PREFIX = "lease:";
+    private static final String FENCE_KEY = "lease:fence";
+    // 记录最近一次写入结果的 token，与结果同时过期
+    private static final String PUBLISHED_KEY_PREFIX = "lease:published:";
+
+    // 租约仍由当前 token 持有时写入结果并释放租约，返回 1；
+    // 租约已过期且没有节点持有、之后也没有更大 token 的结果写入时仍写入结果，返回 2；否则返回 0
+    private static final DefaultRedisScript<Long> PUBLISH_SCRIPT = new DefaultRedisScript<>(
+            "local holder = redis.call('GET', KEYS[1]) " +
+                    "if holder == ARGV[1] then " +
+                    "redis.call('SET', KEYS[2], ARGV[2], 'PX', ARGV[3]) " +
+                    "redis.call('SET', KEYS[3], ARGV[1], 'PX', ARGV[3]) " +
+                    "redis.call('DEL', KEYS[1]) " +
+                    "return 1 " +
+                    "end " +
+                    "if not holder then " +
+                    "local last = redis.call('GET', KEYS[3]) " +
+                    "if not last or tonumber(last) < tonumber(ARGV[1]) then " +
+                    "redis.call('SET', KEYS[2], ARGV[2], 'PX', ARGV[3]) " +
+                    "redis.call('SET', KEYS[3], ARGV[1], 'PX', ARGV[3]) " +
+                    "return 2 " +
+                    "end " +
+                    "end " +
+                    "return 0", Long.class);
+
+    // 未持有租约的写入：之前没有更大 token 的结果写入时写入结果，返回 1；否则返回 0
+    private static final DefaultRedisScript<Long> PUBLISH_IF_NEWER_SCRIPT = new DefaultRedisScript<>(
+            "local last = redis.call('GET', KEYS[2]) " +
+                    "if not last or tonumber(last) < tonumber(ARGV[1]) then " +
+                    "redis.call('SET', KEYS[1], ARGV[2], 'PX', ARGV[3]) " +
+                    "redis.call('SET', KEYS[2], ARGV[1], 'PX', ARGV[3]) " +
+                    "return 1 " +
+                    "end " +
+                    "return 0", Long.class);
+
+    // 仅当租约仍由当前 token 持有时释放租约
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then " +
+                    "return redis.call('DEL', KEYS[1]) " +
+                    "end " +
+                    "return 0", Long.class);
+
+    private static final GenericToStringSerializer<Long> LONG_SERIALIZER = new GenericToStringSerializer<>(Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisTemplate redisTemplate;
+
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder contended = new LongAdder();
+    private final LongAdder published = new LongAdder();
+    private final LongAdder latePublished = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder unleasedPublished = new LongAdder();
+    private final LongAdder unleasedRejected = new LongAdder();
+    private final LongAdder peerHits = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+
+    /**
+     * 尝试获取租约
+     *
+     * @param key 业务键
+     * @param leaseTime 租约有效期
+     * @param timeUnit 时间颗粒度
+     * @return 获取成功返回租约，已被其他节点持有返回 null
+     */
+    public Lease tryAcquire(final String key, final long leaseTime, final TimeUnit timeUnit) {
+        Long token = stringRedisTemplate.opsForValue().increment(FENCE_KEY);
+        if (token == null) {
+            return null;
+        }
+        String leaseKey = LEASE_KEY_PREFIX + key;
+        Boolean ok = stringRedisTemplate.opsForValue()
+                .setIfAbsent(leaseKey, String.valueOf(token), Duration.ofMillis(timeUnit.toMillis(leaseTime)));
+        if (Boolean.TRUE.equals(ok)) {
+            acquired.increment();
+            return new Lease(key, leaseKey, token);
+        }
+        contended.increment();
+        return null;
+    }
+
+    /**
+     * 租约是否仍被某个节点持有
+     *
+     * @param key 业务键
+     * @return true 仍被持有
+     */
+    public boolean isHeld(final String key) {
+        return Boolean.TRUE.equals(stringRedisTemplate.hasKey(LEASE_KEY_PREFIX + key));
+    }
+
+    /**
+     * 校验 fencing token 后写入结果并释放租约 (原子操作)
+     *
+     * @param lease 当前持有的租约
+     * @param value 要写入的缓存值，使用 redisTemplate 的值序列化方式
+     * @param timeout 缓存有效期
+     * @param timeUnit 时间颗粒度
+     * @return true 写入成功；false 租约已被其他节点接管或已有更新的结果，未写入
+     */
+    public boolean publishAndRelease(final Lease lease, final Object value, final long timeout, final TimeUnit timeUnit) {
+        byte[] valueBytes = ((RedisSerializer<Object>) redisTemplate.getValueSerializer()).serialize(value);
+        return publishAndRelease(lease, valueBytes, timeout, timeUnit);
+    }
+
+    /**
+     * 校验 fencing token 后写入已编码的结果并释放租约 (原子操作)
+     * 租约已过期时，只要没有其他节点持有租约、也没有更大 token 的结果写入，仍然写入
+     *
+     * @param lease 当前持有的租约
+     * @param valueBytes 已编码的缓存值
+     * @param timeout 缓存有效期
+     * @param timeUnit 时间颗粒度
+     * @return true 写入成功；false 租约已被其他节点接管或已有更新的结果，未写入
+     */
+    public boolean publishAndRelease(final Lease lease, final byte[] valueBytes, final long timeout, final TimeUnit timeUnit) {
+        Long result = stringRedisTemplate.execute(PUBLISH_SCRIPT, RedisSerializer.byteArray(), LONG_SERIALIZER,
+                Arrays.asList(lease.leaseKey, lease.key, PUBLISHED_KEY_PREFIX + lease.key),
+                tokenBytes(lease), valueBytes, String.valueOf(timeUnit.toMillis(timeout)).getBytes(StandardCharsets.UTF_8));
+        if (result != null && result == 1L) {
+            published.increment();
+            return true;
+        }
+        if (result != null && result == 2L) {
+            latePublished.increment();
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    /**
+     * 未持有租约时写入已编码的结果 (等待其他节点超时后自行计算)
+     * 先取一个新的 fencing token，只有之前没有更大 token 的结果写入时才写入；
+     * 之后持有租约的节点仍可写入，租约过期的旧持有者 (token 更小) 不会再覆盖该结果
+     *
+     * @param key 业务键
+     * @param valueBytes 已编码的缓存值
+     * @param timeout 缓存有效期
+     * @param timeUnit 时间颗粒度
+     * @return true 写入成功；false 已有更新的结果，未写入
+     */
+    public boolean publishIfNewer(final String key, final byte[] valueBytes, final long timeout, final TimeUnit timeUnit) {
+        Long token = stringRedisTemplate.opsForValue().increment(FENCE_KEY);
+        if (token == null) {
+            unleasedRejected.increment();
+            return false;
+        }
+        Long result = stringRedisTemplate.execute(PUBLISH_IF_NEWER_SCRIPT, RedisSerializer.byteArray(), LONG_SERIALIZER,
+                Arrays.asList(key, PUBLISHED_KEY_PREFIX + key),
+                String.valueOf(token).getBytes(StandardCharsets.UTF_8), valueBytes,
+                String.valueOf(timeUnit.toMillis(timeout)).getBytes(StandardCharsets.UTF_8));
+        if (result != null && result == 1L) {
+            unleasedPublished.increment();
+            return true;
+        }
+        unleasedRejected.increment();
+        return false;
+    }
+
+    /**
+     * 释放租约 (不写入结果)，仅当 token 匹配时生效
+     *
+     * @param lease 当前持有的租约
+     */
+    public void release(final Lease lease) {
+        stringRedisTemplate.execute(RELEASE_SCRIPT, RedisSerializer.byteArray(), LONG_SERIALIZER,
+                List.of(lease.leaseKey), tokenBytes(lease));
+    }
+
+    /**
+     * 记录一次等待其他节点发布结果后命中
+     */
+    public void recordPeerHit() {
+        peerHits.increment();
+    }
+
+    /**
+     * 记录一次等待超时后由本节点自行计算
+     */
+    public void recordFallback() {
+        fallbacks.increment();
+    }
+
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("acquired", acquired.sum());
+        stats.put("contended", contended.sum());
+        stats.put("published", published.sum());
+        stats.put("latePublished", latePublished.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("unleasedPublished", unleasedPublished.sum());
+        stats.put("unleasedRejected", unleasedRejected.sum());
+        stats.put("peerHits", peerHits.sum());
+        stats.put("fallbacks", fallbacks.sum());
+        return stats;
+    }
+
+    private byte[] tokenBytes(Lease lease) {
+        return String.valueOf(lease.token).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 租约持有凭证
+     */
+    public static final class Lease {
+        private final String key;
+        private final String leaseKey;
+        private final long token;
+
+        private Lease(String key, String leaseKey, long token) {
+            this.key = key;
+            this.leaseKey = leaseKey;
+            this.token = token;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public long getToken() {
+            return token;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.google_backend.common.redis.service;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
@@ -13,10 +14,14 @@ import org.springframework.data.geo.GeoResults;
 import org.springframework.data.geo.Metrics;
 import org.springframework.data.geo.Point;
 import org.springframework.data.redis.connection.RedisGeoCommands;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.connection.ReturnType;
 import org.springframework.data.redis.core.BoundSetOperations;
 import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.types.Expiration;
 import org.springframework.stereotype.Component;
 
 /**
@@ -25,6 +30,10 @@ import org.springframework.stereotype.Component;
 @SuppressWarnings(value = { "unchecked", "rawtypes" })
 @Component
 public class RedisService {
+    private static final byte[] REPLACE_BYTES_SCRIPT = ("local existed = redis.call('EXISTS', KEYS[1]) " +
+            "redis.call('SET', KEYS[1], ARGV[1], 'PX', ARGV[2]) " +
+            "return existed").getBytes(StandardCharsets.UTF_8);
+
     @Autowired
     public RedisTemplate redisTemplate;
 
@@ -52,6 +61,53 @@ public class RedisService {
         redisTemplate.opsForValue().set(key, value, timeout, timeUnit);
     }
 
+    /**
+     * 缓存原始字节 (不经过 redisTemplate 的值序列化)
+     *
+     * @param key 缓存的键值
+     * @param value 原始字节
+     * @param timeout 时间
+     * @param timeUnit 时间颗粒度
+     */
+    public void setCacheBytes(final String key, final byte[] value, final long timeout, final TimeUnit timeUnit)
+    {
+        redisTemplate.execute((RedisCallback<Object>) connection -> {
+            connection.stringCommands().set(key.getBytes(StandardCharsets.UTF_8), value,
+                    Expiration.from(timeout, timeUnit), RedisStringCommands.SetOption.upsert());
+            return null;
+        });
+    }
+
+    /**
+     * 缓存原始字节并返回键之前是否存在 (EXISTS 与 SET 在同一个脚本中执行)
+     *
+     * @param key 缓存的键值
+     * @param value 原始字节
+     * @param timeout 时间
+     * @param timeUnit 时间颗粒度
+     * @return true 覆盖了已有的值
+     */
+    public boolean replaceCacheBytes(final String key, final byte[] value, final long timeout, final TimeUnit timeUnit)
+    {
+        Long existed = (Long) redisTemplate.execute((RedisCallback<Long>) connection ->
+                connection.scriptingCommands().eval(REPLACE_BYTES_SCRIPT, ReturnType.INTEGER, 1,
+                        key.getBytes(StandardCharsets.UTF_8), value,
+                        String.valueOf(timeUnit.toMillis(timeout)).getBytes(StandardCharsets.UTF_8)));
+        return existed != null && existed == 1L;
+    }
+
+    /**
+     * 获得缓存的原始字节
+     *
+     * @param key 缓存键值
+     * @return 缓存键值对应的字节，不存在时返回 null
+     */
+    public byte[] getCacheBytes(final String key)
+    {
+        return (byte[]) redisTemplate.execute((RedisCallback<Object>) connection ->
+                connection.stringCommands().get(key.getBytes(StandardCharsets.UTF_8)));
+    }
+
     /**
      * 设置有效时间
      *
@@ -0,0 +1,86 @@
+package com.example.google_backend.controller;
+
+import com.example.google_backend.model.CachedRoute;
+import com.example.google_backend.model.RouteRequest;
+import com.example.google_backend.model.RouteResponse;
+import com.example.google_backend.service.ReactiveRouteService;
+import com.example.google_backend.service.RouteCacheService;
+import com.example.google_backend.service.RouteService;
+import com.example.google_backend.utils.generator.CacheKeyGenerator;
+import jakarta.annotation.Resource;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * 响应式版本的路线接口，用于与 {@link RouteController} 的阻塞实现对比
+ * 返回 Mono 的处理方法以 Servlet 异步方式执行，等待 Google / Redis 期间不占用请求线程
+ */
+@RestController
+@RequestMapping("/api/reactive/routes")
+public class ReactiveRouteController {
+
+    @Resource
+    private ReactiveRouteService reactiveRouteService;
+
+    @Resource
+    private RouteCacheService routeCacheService;
+
+    @Resource
+    private RouteService routeService;
+
+    @PostMapping("/calculate")
+    public Mono<ResponseEntity<?>> calculateRoutes(@RequestBody RouteRequest routeRequest) {
+        String cacheKey = CacheKeyGenerator.generateRouteKey(routeRequest);
+        return reactiveRouteService.getCachedRoutes(cacheKey, routeRequest)
+                .<ResponseEntity<?>>map(this::respond)
+                .onErrorResume(e -> Mono.just(ResponseEntity.status(500).body("Error calculating routes: " + e.getMessage())));
+    }
+
+    // 不使用缓存的版本，用于对比上游调用本身的开销
+    @PostMapping("/calculate/without-cache")
+    public Mono<ResponseEntity<?>> calculateRoutesWithoutCache(@RequestBody RouteRequest routeRequest) {
+        return reactiveRouteService.getRoutes(routeRequest)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .onErrorResume(e -> Mono.just(ResponseEntity.status(500).body("Error calculating routes: " + e.getMessage())));
+    }
+
+    @PostMapping("/sorted")
+    public Mono<ResponseEntity<?>> getSortedRoutes(
+            @RequestBody RouteRequest routeRequest,
+            @RequestParam(value = "sort", defaultValue = "shortestDuration") String sortType) {
+        String cacheKey = CacheKeyGenerator.generateRouteKey(routeRequest);
+        return reactiveRouteService.getCachedRoutes(cacheKey, routeRequest)
+                .<ResponseEntity<?>>map(cached -> sorted(cached, sortType))
+                .onErrorResume(IllegalArgumentException.class,
+                        e -> Mono.just(ResponseEntity.badRequest().body("Invalid sort type: " + sortType)))
+                .onErrorResume(e -> Mono.just(ResponseEntity.status(500).body("Error sorting routes: " + e.getMessage())));
+    }
+
+    /**
+     * 输出缓存条目：预序列化条目直接写出 JSON 字节 (附带 ETag)，否则由 Spring 序列化 RouteResponse
+     */
+    private ResponseEntity<?> respond(CachedRoute entry) {
+        if (entry.getBody() != null) {
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType(entry.getContentType()))
+                    .eTag(entry.getContentHash())
+                    .body(entry.getBody());
+        }
+        return ResponseEntity.ok(entry.getResponse());
+    }
+
+    private ResponseEntity<?> sorted(CachedRoute cached, String sortType) {
+        // 预序列化条目：按预先计算的顺序直接拼接路线字节
+        if (cached.getBody() != null) {
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType(cached.getContentType()))
+                    .body(routeCacheService.sortedBody(cached, sortType));
+        }
+        List<RouteResponse.RouteDetail> sortedRoutes = routeService.sortRoutes(cached.getResponse().getRoutes(), sortType);
+        return ResponseEntity.ok(sortedRoutes);
+    }
+}
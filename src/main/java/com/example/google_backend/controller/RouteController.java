@@ -1,20 +1,39 @@
 package com.example.google_backend.controller;
 
+import com.example.google_backend.common.concurrent.BulkheadRegistry;
+import com.example.google_backend.common.concurrent.RequestBudget;
+import com.example.google_backend.common.concurrent.SingleFlight;
+import com.example.google_backend.common.http.HttpClientPoolRegistry;
+import com.example.google_backend.common.redis.config.RouteBinaryRedisSerializer;
+import com.example.google_backend.common.redis.service.RedisLeaseService;
 import com.example.google_backend.common.redis.service.RedisService;
+import com.example.google_backend.model.CachedRoute;
 import com.example.google_backend.model.RouteRequest;
 import com.example.google_backend.model.RouteResponse;
 import com.example.google_backend.service.AsyncCacheService;
+import com.example.google_backend.service.OTPService;
+import com.example.google_backend.service.RawRouteCacheService;
+import com.example.google_backend.service.ReactiveRouteService;
+import com.example.google_backend.service.RouteCacheService;
 import com.example.google_backend.service.RouteService;
+import com.example.google_backend.service.RouteSpatialIndexService;
 import com.example.google_backend.service.impl.RouteServiceImpl;
 import com.example.google_backend.utils.TimingUtils;
 import com.example.google_backend.utils.generator.CacheKeyGenerator;
+import com.example.google_backend.utils.route.DriveTimeEstimator;
 import jakarta.annotation.Resource;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.Instant;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
@@ -34,11 +53,65 @@ public class RouteController {
     @Resource
     private AsyncCacheService asyncCacheService;
 
-    //路线缓存过期时间 (minute)
-    private static final int ROUTE_CACHE_EXPIRE_TIME = 15;
+    @Resource
+    private RedisLeaseService redisLeaseService;
+
+    @Resource
+    private RouteCacheService routeCacheService;
+
+    @Resource
+    private RouteSpatialIndexService routeSpatialIndexService;
+
+    @Resource
+    private RawRouteCacheService rawRouteCacheService;
+
+    @Resource
+    private HttpClientPoolRegistry httpClientPoolRegistry;
+
+    @Resource
+    private ReactiveRouteService reactiveRouteService;
+
+    @Resource
+    private BulkheadRegistry bulkheadRegistry;
+
+    @Resource
+    private OTPService otpService;
+
+    @Resource
+    private DriveTimeEstimator driveTimeEstimator;
+
+    // 是否启用集群范围的租约合并
+    @Value("${route.lease.enabled:true}")
+    private boolean leaseEnabled;
+
+    // 租约有效期 (ms)，应覆盖一次完整的路线计算 (最坏情况 Google 读超时 10s + OTP 读超时 8s)
+    @Value("${route.lease.ttl-ms:20000}")
+    private long leaseTtlMs;
+
+    // 未持有租约时等待其他节点发布结果的最长时间 (ms)
+    @Value("${route.lease.wait-ms:8000}")
+    private long leaseWaitMs;
+
+    // 等待期间轮询缓存的间隔 (ms)
+    @Value("${route.lease.poll-interval-ms:50}")
+    private long leasePollIntervalMs;
+
+    // 单个路线请求的总时间预算 (ms)，各阶段只使用剩余部分
+    @Value("${route.request.budget-ms:6000}")
+    private long requestBudgetMs;
+
+    // 相同缓存键的并发未命中请求合并为一次路线计算
+    private final SingleFlight<CachedRoute> routeSingleFlight = new SingleFlight<>();
+
+    // 正在后台刷新的缓存键，保证每个键同时只有一次后台刷新
+    private final Set<String> refreshingKeys = ConcurrentHashMap.newKeySet();
 
     private final Logger logger = Logger.getLogger(RouteController.class.getName());
 
+    // 近似命中标记响应头
+    private static final String CACHE_STATUS_HEADER = "X-Route-Cache";
+    private static final String CACHE_OFFSET_HEADER = "X-Route-Cache-Offset-Meters";
+
 
     /**
      * Endpoint to calculate routes based on the provided request. (formal)
@@ -49,28 +122,24 @@ public class RouteController {
     @PostMapping("/calculate")
     public ResponseEntity<?> calculateRoutes(@RequestBody RouteRequest routeRequest) {
 
-        try {
+        try (RequestBudget.Scope ignored = RequestBudget.of(requestBudgetMs).open()) {
             String cacheKey = CacheKeyGenerator.generateRouteKey(routeRequest);
-            // Step 1: 检查缓存
-            if(redisService.hasKey(cacheKey)){
+            // Step 1: 检查缓存 (L1 -> Redis)，软过期的条目直接返回并在后台刷新
+            CachedRoute cached = routeCacheService.get(cacheKey);
+            if(cached != null){
                 logger.info("路径缓存命中 - /calculate - 缓存键: " + cacheKey);
-                return ResponseEntity.ok(redisService.getCacheObject(cacheKey));
+                refreshIfNeeded(cacheKey, routeRequest, cached);
+                return respond(cached, null);
             }else{
                 logger.info("路径缓存未命中 - /calculate - 缓存键: {}" + cacheKey);
-                // 缓存没查到，调Google API; 记录路线计算服务的耗时
-                RouteResponse response = TimingUtils.measureExecutionTime("路线计算服务耗时",
-                        () -> {
-                            try {
-                                return routeService.getRoutes(routeRequest);
-                            } catch (Exception e) {
-                                throw new RuntimeException(e);
-                            }
-                        });
-                // 异步缓存路线到redis
-                asyncCacheService.cacheRouteAsync(cacheKey, response, ROUTE_CACHE_EXPIRE_TIME);
-                // 缓存保存日志
-                logger.info("路径已缓存 - 有效期: " + ROUTE_CACHE_EXPIRE_TIME + " 分钟 - 缓存键: " + cacheKey);;
-                return ResponseEntity.ok(response);
+                // 查找起终点都在附近的已缓存路线
+                RouteSpatialIndexService.NearbyRoute nearby = routeSpatialIndexService.findNearby(routeRequest);
+                if (nearby != null) {
+                    logger.info("路径近似命中 - /calculate - 缓存键: " + cacheKey + " - 使用: " + nearby.getCacheKey());
+                    return respond(nearby.getEntry(), nearby);
+                }
+                // 缓存没查到，调Google API (相同缓存键的并发请求合并为一次计算)
+                return respond(loadRoutes(cacheKey, routeRequest), null);
 
             }
         } catch (Exception e) {
@@ -82,7 +151,7 @@ public class RouteController {
     // 一个不用redis缓存的版本用于测试
     @PostMapping("/calculate/without-cache")
     public ResponseEntity<?> calculateRoutesWithoutCache(@RequestBody RouteRequest routeRequest) {
-        try {
+        try (RequestBudget.Scope ignored = RequestBudget.of(requestBudgetMs).open()) {
             // 记录路线计算服务的耗时
             RouteResponse response = TimingUtils.measureExecutionTime("路线计算服务耗时",
                     () -> {
@@ -102,7 +171,7 @@ public class RouteController {
     //一个不进行任何替换的路径规划接口
     @PostMapping("/calculate/without-replace")
     public ResponseEntity<?> calculateRoutesWithoutReplace(@RequestBody RouteRequest routeRequest) {
-        try {
+        try (RequestBudget.Scope ignored = RequestBudget.of(requestBudgetMs).open()) {
             // 记录路线计算服务的耗时
             RouteResponse response = TimingUtils.measureExecutionTime("路线计算服务耗时",
                     () -> {
@@ -125,25 +194,35 @@ public class RouteController {
     public ResponseEntity<?> getSortedRoutes(
             @RequestBody RouteRequest routeRequest,
             @RequestParam(value = "sort", defaultValue = "shortestDuration") String sortType) {
-        try {
+        try (RequestBudget.Scope ignored = RequestBudget.of(requestBudgetMs).open()) {
             String cacheKey = CacheKeyGenerator.generateRouteKey(routeRequest);
 
-            List<RouteResponse.RouteDetail> allRoutes;
-
-            if(redisService.hasKey(cacheKey)){
+            RouteSpatialIndexService.NearbyRoute nearby = null;
+            CachedRoute cached = routeCacheService.get(cacheKey);
+            if(cached != null){
                 logger.info("路径缓存命中 - /sorted - 缓存键: " + cacheKey + " - 排序方式: " + sortType);
-                RouteResponse cachedResponse = redisService.getCacheObject(cacheKey);
-                allRoutes = cachedResponse.getRoutes();
+                refreshIfNeeded(cacheKey, routeRequest, cached);
             }else{
                 logger.info("路径缓存未命中 - /sorted - 缓存键: " + cacheKey) ;
-                // 注意这里直接走service层方法，不再调用calculateRoutes方法
-                RouteResponse response = routeService.getRoutes(routeRequest);
-                allRoutes = response.getRoutes();
-                // 异步缓存路线到redis
-                asyncCacheService.cacheRouteAsync(cacheKey, response, ROUTE_CACHE_EXPIRE_TIME);
-                logger.info("路径已缓存 - 有效期: " + ROUTE_CACHE_EXPIRE_TIME + " 分钟 - 缓存键: " + cacheKey);
+                nearby = routeSpatialIndexService.findNearby(routeRequest);
+                if (nearby != null) {
+                    logger.info("路径近似命中 - /sorted - 缓存键: " + cacheKey + " - 使用: " + nearby.getCacheKey());
+                    cached = nearby.getEntry();
+                } else {
+                    // 注意这里直接走service层方法，不再调用calculateRoutes方法
+                    cached = loadRoutes(cacheKey, routeRequest);
+                }
             }
 
+            // 预序列化条目：按预先计算的顺序直接拼接路线字节
+            if (cached.getBody() != null) {
+                byte[] sortedBody = routeCacheService.sortedBody(cached, sortType);
+                return ok(nearby)
+                        .contentType(MediaType.parseMediaType(cached.getContentType()))
+                        .body(sortedBody);
+            }
+            List<RouteResponse.RouteDetail> allRoutes = cached.getResponse().getRoutes();
+
             // Step 2: 按指定方式排序
             List<RouteResponse.RouteDetail> sortedRoutes = TimingUtils.measureExecutionTime(
                     "路径排序耗时",
@@ -151,11 +230,255 @@ public class RouteController {
             );
 
             // 返回排序后的路线
-            return ResponseEntity.ok(sortedRoutes);
+            return ok(nearby).body(sortedRoutes);
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body("Invalid sort type: " + sortType);
         } catch (Exception e) {
             return ResponseEntity.status(500).body("Error sorting routes: " + e.getMessage());
         }
     }
+
+    /**
+     * 清除路线缓存但保留 Google 原始响应缓存，下次请求时基于原始响应重新处理步骤
+     * (如拥堵站点、热点数据更新后)
+     */
+    @PostMapping("/cache/invalidate")
+    public ResponseEntity<?> invalidateRouteCache(@RequestBody RouteRequest routeRequest) {
+        String cacheKey = CacheKeyGenerator.generateRouteKey(routeRequest);
+        routeCacheService.invalidate(cacheKey);
+        logger.info("路径缓存已清除 - 缓存键: " + cacheKey);
+        return ResponseEntity.ok().build();
+    }
+
+    /**
+     * 路线缓存相关统计 (请求合并次数等)
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<?> getRouteStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("cache", routeCacheService.getStats());
+        stats.put("singleFlight", routeSingleFlight.getStats());
+        stats.put("lease", redisLeaseService.getStats());
+        stats.put("approximate", routeSpatialIndexService.getStats());
+        stats.put("raw", rawRouteCacheService.getStats());
+        stats.put("httpPools", httpClientPoolRegistry.getStats());
+        stats.put("reactive", reactiveRouteService.getStats());
+        stats.put("bulkheads", bulkheadRegistry.getStats());
+        stats.put("otp", otpService.getStats());
+        stats.put("driveEstimator", driveTimeEstimator.getStats());
+        if (redisService.redisTemplate.getValueSerializer() instanceof RouteBinaryRedisSerializer codec) {
+            stats.put("codec", codec.getStats());
+        }
+        return ResponseEntity.ok(stats);
+    }
+
+    /**
+     * 输出缓存条目：预序列化条目直接写出 JSON 字节 (附带 ETag)，否则由 Spring 序列化 RouteResponse
+     *
+     * @param entry 缓存条目
+     * @param nearby 近似命中时的匹配信息，精确命中或新计算时为 null
+     * @return 响应
+     */
+    private ResponseEntity<?> respond(CachedRoute entry, RouteSpatialIndexService.NearbyRoute nearby) {
+        if (entry.getBody() != null) {
+            return ok(nearby)
+                    .contentType(MediaType.parseMediaType(entry.getContentType()))
+                    .eTag(entry.getContentHash())
+                    .body(entry.getBody());
+        }
+        return ok(nearby).body(entry.getResponse());
+    }
+
+    /**
+     * 近似命中时在响应头中标记，并附带起终点的偏移距离 (米)，便于统计近似命中的质量
+     */
+    private ResponseEntity.BodyBuilder ok(RouteSpatialIndexService.NearbyRoute nearby) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+        if (nearby != null) {
+            builder.header(CACHE_STATUS_HEADER, "approximate")
+                    .header(CACHE_OFFSET_HEADER, Math.round(nearby.getOriginOffsetMeters()) + ","
+                            + Math.round(nearby.getDestinationOffsetMeters()));
+        }
+        return builder;
+    }
+
+    /**
+     * 缓存未命中时计算路线并异步写入缓存
+     * 相同缓存键的并发请求只会触发一次计算，其余请求等待并共享同一个结果
+     *
+     * @param cacheKey 路线缓存键
+     * @param routeRequest 路线请求
+     * @return 路线缓存条目
+     */
+    private CachedRoute loadRoutes(String cacheKey, RouteRequest routeRequest) throws Exception {
+        return loadRoutes(cacheKey, routeRequest, null);
+    }
+
+    /**
+     * 计算路线并写入缓存
+     *
+     * @param cacheKey 路线缓存键
+     * @param routeRequest 路线请求
+     * @param previous 当前已有的条目 (后台刷新时)，只接受比它更新的其他节点结果；未命中时为 null
+     * @return 路线缓存条目
+     */
+    private CachedRoute loadRoutes(String cacheKey, RouteRequest routeRequest, CachedRoute previous) throws Exception {
+        return routeSingleFlight.execute(cacheKey, () -> {
+            CachedRoute entry;
+            if (leaseEnabled) {
+                entry = loadRoutesWithLease(cacheKey, routeRequest, previous);
+            } else {
+                entry = computeEntry(routeRequest, previous);
+                // 写入本地缓存并异步缓存路线到redis
+                routeCacheService.put(cacheKey, entry);
+                // 缓存保存日志
+                logger.info("路径已缓存 - 缓存键: " + cacheKey);
+            }
+            // 加入起终点空间索引，供附近的请求近似命中
+            routeSpatialIndexService.index(cacheKey, routeRequest, entry);
+            return entry;
+        });
+    }
+
+    /**
+     * 命中的条目已软过期或被选中提前刷新时，触发一次后台刷新
+     * 同一个缓存键同时只会有一次后台刷新
+     *
+     * @param cacheKey 路线缓存键
+     * @param routeRequest 路线请求
+     * @param cached 命中的缓存条目
+     */
+    private void refreshIfNeeded(String cacheKey, RouteRequest routeRequest, CachedRoute cached) {
+        if (!routeCacheService.shouldRefresh(cached) || !refreshingKeys.add(cacheKey)) {
+            return;
+        }
+        logger.info("路径缓存触发后台刷新 - 缓存键: " + cacheKey);
+        try {
+            asyncCacheService.refreshRouteAsync(cacheKey, () -> {
+                try {
+                    // 其他节点可能已经刷新过，先确认 Redis 中的条目
+                    CachedRoute latest = routeCacheService.reload(cacheKey);
+                    if (latest != null && latest.getCreatedAt() > cached.getCreatedAt()) {
+                        return latest;
+                    }
+                    return loadRoutes(cacheKey, routeRequest, cached);
+                } finally {
+                    refreshingKeys.remove(cacheKey);
+                }
+            });
+        } catch (RuntimeException e) {
+            refreshingKeys.remove(cacheKey);
+            logger.warning("提交后台刷新失败 - 缓存键: " + cacheKey + " - 错误: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 集群范围的未命中合并
+     * 持有 Redis 租约的节点负责计算并发布结果；其他节点轮询等待结果写入，
+     * 租约在没有结果的情况下消失（持有者失败或租约过期）时重新争抢租约，
+     * 等待超时后由本节点自行计算。
+     *
+     * @param cacheKey 路线缓存键
+     * @param routeRequest 路线请求
+     * @param previous 当前已有的条目，只接受写入时间晚于它的其他节点结果；未命中时为 null
+     * @return 路线缓存条目
+     */
+    private CachedRoute loadRoutesWithLease(String cacheKey, RouteRequest routeRequest, CachedRoute previous) throws Exception {
+        long staleCreatedAt = previous == null ? 0L : previous.getCreatedAt();
+        // 等待时间不超过剩余的请求预算
+        long waitDeadline = System.currentTimeMillis() + Math.min(leaseWaitMs, RequestBudget.remainingMillis());
+
+        while (System.currentTimeMillis() < waitDeadline) {
+            RedisLeaseService.Lease lease = redisLeaseService.tryAcquire(cacheKey, leaseTtlMs, TimeUnit.MILLISECONDS);
+            if (lease != null) {
+                CachedRoute entry;
+                try {
+                    entry = computeEntry(routeRequest, previous);
+                } catch (Exception e) {
+                    redisLeaseService.release(lease);
+                    throw e;
+                }
+                long ttlMillis = entry.getHardExpireAt() - System.currentTimeMillis();
+                if (redisLeaseService.publishAndRelease(lease, routeCacheService.encode(entry), ttlMillis, TimeUnit.MILLISECONDS)) {
+                    logger.info("路径已缓存 - 缓存键: " + cacheKey + " - token: " + lease.getToken());
+                    // 替换了已有的条目 (后台刷新)，通知其他节点清除旧的 L1
+                    if (previous != null) {
+                        routeCacheService.publishInvalidation(cacheKey);
+                    }
+                } else {
+                    logger.warning("路径计算租约已被其他节点接管，只写入本地缓存 - 缓存键: " + cacheKey + " - token: " + lease.getToken());
+                }
+                // 本节点的后续请求直接使用计算结果，不再重新计算
+                routeCacheService.putLocal(cacheKey, entry);
+                return entry;
+            }
+
+            // 其他节点正在计算，等待其发布结果
+            while (System.currentTimeMillis() < waitDeadline) {
+                Thread.sleep(leasePollIntervalMs);
+                CachedRoute published = routeCacheService.reload(cacheKey);
+                if (published != null && published.getCreatedAt() > staleCreatedAt) {
+                    redisLeaseService.recordPeerHit();
+                    logger.info("路径由其他节点计算完成 - 缓存键: " + cacheKey);
+                    return published;
+                }
+                if (!redisLeaseService.isHeld(cacheKey)) {
+                    break;
+                }
+            }
+        }
+
+        // 等待超时，自行计算
+        redisLeaseService.recordFallback();
+        logger.warning("等待其他节点计算路径超时，本节点自行计算 - 缓存键: " + cacheKey);
+        CachedRoute entry = computeEntry(routeRequest, previous);
+        long ttlMillis = entry.getHardExpireAt() - System.currentTimeMillis();
+        // 不持有租约，同样按 fencing token 写入，避免覆盖更新的结果
+        try {
+            if (ttlMillis > 0) {
+                if (redisLeaseService.publishIfNewer(cacheKey, routeCacheService.encode(entry),
+                        ttlMillis, TimeUnit.MILLISECONDS)) {
+                    if (previous != null) {
+                        routeCacheService.publishInvalidation(cacheKey);
+                    }
+                } else {
+                    logger.warning("已有更新的路径结果，只写入本地缓存 - 缓存键: " + cacheKey);
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.warning("写入路线缓存失败 - 缓存键: " + cacheKey + " - 错误: " + e.getMessage());
+        }
+        routeCacheService.putLocal(cacheKey, entry);
+        return entry;
+    }
+
+    /**
+     * 计算路线并创建缓存条目 (记录计算耗时用于提前刷新)
+     *
+     * @param routeRequest 路线请求
+     * @param previous 同一缓存键的上一个条目，没有时为 null
+     * @return 缓存条目
+     */
+    private CachedRoute computeEntry(RouteRequest routeRequest, CachedRoute previous) {
+        long start = System.currentTimeMillis();
+        RouteResponse response = computeRoutes(routeRequest);
+        return routeCacheService.createEntry(response, System.currentTimeMillis() - start, previous);
+    }
+
+    /**
+     * 调用路线服务计算路线并记录耗时
+     *
+     * @param routeRequest 路线请求
+     * @return 路线计算结果
+     */
+    private RouteResponse computeRoutes(RouteRequest routeRequest) {
+        return TimingUtils.measureExecutionTime("路线计算服务耗时",
+                () -> {
+                    try {
+                        return routeService.getRoutes(routeRequest);
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                });
+    }
 }
\ No newline at end of file
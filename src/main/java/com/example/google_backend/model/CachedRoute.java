@@ -0,0 +1,152 @@
+package com.example.google_backend.model;
+
+import java.io.Serializable;
+import java.util.Map;
+
+/**
+ * 路线缓存条目
+ * softExpireAt 之后条目视为过期但仍可返回 (同时后台刷新)，hardExpireAt 与 Redis 有效期一致
+ * 预序列化模式下 response 为空，body 中保存返回给客户端的 JSON 字节
+ */
+public class CachedRoute implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private RouteResponse response;
+
+    // 写入时间 (epoch ms)
+    private long createdAt;
+
+    // 软过期时间 (epoch ms)
+    private long softExpireAt;
+
+    // 硬过期时间 (epoch ms)
+    private long hardExpireAt;
+
+    // 计算该路线耗时 (ms)，用于提前刷新的概率计算
+    private long computeMillis;
+
+    // 路线内容指纹 (不含耗时统计)，用于判断重新计算后内容是否变化
+    private long fingerprint;
+
+    // 内容变化频率 (0~1，指数加权)，越高有效期越短
+    private double volatility;
+
+    // 预序列化的响应体及其类型、哈希 (用作 ETag)
+    private byte[] body;
+    private String contentType;
+    private String contentHash;
+
+    // 每条路线在 body 中的起止偏移 [start0, end0, start1, end1, ...]
+    private int[] routeOffsets;
+
+    // 各排序方式下的路线下标顺序
+    private Map<String, int[]> sortOrders;
+
+    public CachedRoute() {
+    }
+
+    public CachedRoute(RouteResponse response, long createdAt, long softExpireAt, long hardExpireAt, long computeMillis) {
+        this.response = response;
+        this.createdAt = createdAt;
+        this.softExpireAt = softExpireAt;
+        this.hardExpireAt = hardExpireAt;
+        this.computeMillis = computeMillis;
+    }
+
+    public RouteResponse getResponse() {
+        return response;
+    }
+
+    public void setResponse(RouteResponse response) {
+        this.response = response;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(long createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public long getSoftExpireAt() {
+        return softExpireAt;
+    }
+
+    public void setSoftExpireAt(long softExpireAt) {
+        this.softExpireAt = softExpireAt;
+    }
+
+    public long getHardExpireAt() {
+        return hardExpireAt;
+    }
+
+    public void setHardExpireAt(long hardExpireAt) {
+        this.hardExpireAt = hardExpireAt;
+    }
+
+    public long getComputeMillis() {
+        return computeMillis;
+    }
+
+    public void setComputeMillis(long computeMillis) {
+        this.computeMillis = computeMillis;
+    }
+
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    public void setFingerprint(long fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    public double getVolatility() {
+        return volatility;
+    }
+
+    public void setVolatility(double volatility) {
+        this.volatility = volatility;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    public void setBody(byte[] body) {
+        this.body = body;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public int[] getRouteOffsets() {
+        return routeOffsets;
+    }
+
+    public void setRouteOffsets(int[] routeOffsets) {
+        this.routeOffsets = routeOffsets;
+    }
+
+    public Map<String, int[]> getSortOrders() {
+        return sortOrders;
+    }
+
+    public void setSortOrders(Map<String, int[]> sortOrders) {
+        this.sortOrders = sortOrders;
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.google_backend.model;
+
+import java.util.List;
+
+/**
+ * Google computeRoutes 响应中用到的字段
+ * 由 {@link com.example.google_backend.common.google.ComputeRoutesDecoder} 流式解析得到，缺失的字段为 null
+ *
+ * @param routes 路线，响应中没有 routes 时为 null
+ */
+public record ComputeRoutesResponse(List<Route> routes) {
+
+    /**
+     * @param distanceMeters 距离 (米)
+     * @param duration       时长，如 "1581s"
+     * @param polyline       encodedPolyline
+     */
+    public record Route(String summary, Long distanceMeters, String duration, String polyline, List<Leg> legs) {
+    }
+
+    /**
+     * @param steps 步骤，响应中没有 steps 时为 null
+     */
+    public record Leg(LatLng startLocation, LatLng endLocation, Long distanceMeters, String duration,
+                      List<Step> steps) {
+    }
+
+    /**
+     * @param distanceMeters  距离 (米)，缺失时为 0
+     * @param durationSeconds staticDuration (秒)，缺失时为 0
+     * @param transit         transitDetails，非公交步骤为 null
+     */
+    public record Step(String instruction, long distanceMeters, long durationSeconds, String polyline,
+                       String travelMode, Transit transit) {
+    }
+
+    /**
+     * @param departureTime 上车时间 (RFC 3339)
+     * @param arrivalTime   下车时间 (RFC 3339)
+     * @param stopCount     途经站数，缺失时为 null
+     */
+    public record Transit(Stop departureStop, Stop arrivalStop, String departureTime, String arrivalTime,
+                          boolean hasStopDetails, String headsign, Line line, Integer stopCount) {
+    }
+
+    public record Stop(String name, LatLng location) {
+    }
+
+    /**
+     * @param vehicleName vehicle.name.text
+     */
+    public record Line(List<Agency> agencies, String name, String color, String nameShort, String textColor,
+                       boolean hasVehicle, String vehicleName, String vehicleType, String vehicleIconUri) {
+    }
+
+    public record Agency(String name, String phoneNumber, String uri) {
+    }
+
+    public record LatLng(double latitude, double longitude) {
+    }
+}
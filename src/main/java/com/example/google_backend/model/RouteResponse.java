@@ -1,5 +1,9 @@
 package com.example.google_backend.model;
 
+import com.example.google_backend.common.google.ComputeRoutesDecoder;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import java.io.Serializable;
 import java.util.List;
 import java.util.Map;
@@ -12,6 +16,10 @@ public class RouteResponse implements Serializable {
 
     private Map<String,Long> timings;
 
+    // 因请求预算不足被跳过的优化 (如 otpReplacement)，没有跳过时不输出
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    private List<String> droppedOptimizations;
+
 
 
 
@@ -33,11 +41,28 @@ public class RouteResponse implements Serializable {
         this.timings = timings;
     }
 
+    public List<String> getDroppedOptimizations() {
+        return droppedOptimizations;
+    }
+
+    public void setDroppedOptimizations(List<String> droppedOptimizations) {
+        this.droppedOptimizations = droppedOptimizations;
+    }
+
+    /**
+     * 与 Google 响应相同的 location JSON，如 {"latLng":{"latitude":22.3,"longitude":114.1}}
+     */
+    public static String toLocationJson(double latitude, double longitude) {
+        return "{\"latLng\":{\"latitude\":" + latitude + ",\"longitude\":" + longitude + "}}";
+    }
+
     // 内部类表示单条路线的详细信息
     public static class RouteDetail {
         private String summary;
-        private String distanceMeters;
-        private String duration;
+        // 距离 (米)，未知时为 -1；JSON 中仍输出为字符串
+        private long distanceMeters = -1;
+        // 时长 (秒)，未知时为 -1；JSON 中仍输出为 "1581s"
+        private long duration = -1;
         private String polyline; // 可以用于在地图上绘制路线
         private List<LegDetail> legs;
         private String steps;
@@ -49,8 +74,8 @@ public class RouteResponse implements Serializable {
 
         public RouteDetail(String summary, String distanceMeters, String duration, String polyline) {
             this.summary = summary;
-            this.distanceMeters = distanceMeters;
-            this.duration = duration;
+            setDistanceMeters(distanceMeters);
+            setDuration(duration);
             this.polyline = polyline;
         }
 
@@ -63,19 +88,48 @@ public class RouteResponse implements Serializable {
         }
 
         public String getDistanceMeters() {
-            return distanceMeters;
+            return distanceMeters < 0 ? "Unknown" : String.valueOf(distanceMeters);
         }
 
         public void setDistanceMeters(String distanceMeters) {
-            this.distanceMeters = distanceMeters;
+            try {
+                this.distanceMeters = distanceMeters == null ? -1 : Long.parseLong(distanceMeters.trim());
+            } catch (NumberFormatException e) {
+                this.distanceMeters = -1;
+            }
         }
 
         public String getDuration() {
-            return duration;
+            return duration < 0 ? "Unknown" : duration + "s";
         }
 
         public void setDuration(String duration) {
-            this.duration = duration;
+            this.duration = duration == null || !duration.trim().toLowerCase().endsWith("s")
+                    ? -1 : ComputeRoutesDecoder.parseDuration(duration);
+        }
+
+        /**
+         * @return 距离 (米)，未知时为 -1
+         */
+        @JsonIgnore
+        public long getDistanceInMeters() {
+            return distanceMeters;
+        }
+
+        public void setDistanceInMeters(long distanceMeters) {
+            this.distanceMeters = distanceMeters;
+        }
+
+        /**
+         * @return 时长 (秒)，未知时为 -1
+         */
+        @JsonIgnore
+        public long getDurationSeconds() {
+            return duration;
+        }
+
+        public void setDurationSeconds(long durationSeconds) {
+            this.duration = durationSeconds;
         }
 
         public String getPolyline() {
@@ -104,29 +158,92 @@ public class RouteResponse implements Serializable {
     }
 
     public static class LegDetail {
+        // 没有坐标时输出的文本 (如 "Unknown Start Location")，有坐标时 JSON 中输出 location JSON
         private String startLocation;
         private String endLocation;
         private String distance;
         private String duration;
         private List<StepDetail> steps;
         private String travelMode;
+        // 起终点坐标，未知时为 NaN
+        private double startLatitude = Double.NaN;
+        private double startLongitude = Double.NaN;
+        private double endLatitude = Double.NaN;
+        private double endLongitude = Double.NaN;
 
         // Getters and Setters
 
         public String getStartLocation() {
-            return startLocation;
+            return hasStartLocation() ? toLocationJson(startLatitude, startLongitude) : startLocation;
         }
 
+        /**
+         * location JSON 解析为坐标，其他文本原样保留
+         */
         public void setStartLocation(String startLocation) {
-            this.startLocation = startLocation;
+            ComputeRoutesResponse.LatLng latLng = ComputeRoutesDecoder.parseLocation(startLocation);
+            if (latLng != null) {
+                setStartCoordinates(latLng.latitude(), latLng.longitude());
+            } else {
+                this.startLocation = startLocation;
+                this.startLatitude = Double.NaN;
+                this.startLongitude = Double.NaN;
+            }
         }
 
         public String getEndLocation() {
-            return endLocation;
+            return hasEndLocation() ? toLocationJson(endLatitude, endLongitude) : endLocation;
         }
 
         public void setEndLocation(String endLocation) {
-            this.endLocation = endLocation;
+            ComputeRoutesResponse.LatLng latLng = ComputeRoutesDecoder.parseLocation(endLocation);
+            if (latLng != null) {
+                setEndCoordinates(latLng.latitude(), latLng.longitude());
+            } else {
+                this.endLocation = endLocation;
+                this.endLatitude = Double.NaN;
+                this.endLongitude = Double.NaN;
+            }
+        }
+
+        public void setStartCoordinates(double latitude, double longitude) {
+            this.startLocation = null;
+            this.startLatitude = latitude;
+            this.startLongitude = longitude;
+        }
+
+        public void setEndCoordinates(double latitude, double longitude) {
+            this.endLocation = null;
+            this.endLatitude = latitude;
+            this.endLongitude = longitude;
+        }
+
+        public boolean hasStartLocation() {
+            return !Double.isNaN(startLatitude);
+        }
+
+        public boolean hasEndLocation() {
+            return !Double.isNaN(endLatitude);
+        }
+
+        @JsonIgnore
+        public double getStartLatitude() {
+            return startLatitude;
+        }
+
+        @JsonIgnore
+        public double getStartLongitude() {
+            return startLongitude;
+        }
+
+        @JsonIgnore
+        public double getEndLatitude() {
+            return endLatitude;
+        }
+
+        @JsonIgnore
+        public double getEndLongitude() {
+            return endLongitude;
         }
 
         public String getDistance() {
@@ -245,8 +362,8 @@ public class RouteResponse implements Serializable {
         public void setPolyline(String polyline) {
             this.polyline = polyline;
         }
-        public void setTravelMode(String polyline) {
-            this.travelMode=travelMode;
+        public void setTravelMode(String travelMode) {
+            this.travelMode = travelMode;
         }
         public String getTravelMode() {
             return this.travelMode;
@@ -369,7 +486,11 @@ public class RouteResponse implements Serializable {
                 // Stop 类
                 public static class Stop {
                     private String name;
+                    // 没有坐标时输出的文本 (如 "Unknown Location")，有坐标时 JSON 中输出 location JSON
                     private String location;
+                    // 站点坐标，未知时为 NaN
+                    private double latitude = Double.NaN;
+                    private double longitude = Double.NaN;
 
 
                     // Constructors, Getters, and Setters
@@ -379,7 +500,13 @@ public class RouteResponse implements Serializable {
 
                     public Stop(String name, String location) {
                         this.name = name;
-                        this.location = location;
+                        setLocation(location);
+                    }
+
+                    public Stop(String name, double latitude, double longitude) {
+                        this.name = name;
+                        this.latitude = latitude;
+                        this.longitude = longitude;
                     }
 
                     public String getName() {
@@ -391,11 +518,41 @@ public class RouteResponse implements Serializable {
                     }
 
                     public String getLocation() {
-                        return location;
+                        return hasLocation() ? toLocationJson(latitude, longitude) : location;
                     }
 
+                    /**
+                     * location JSON 解析为坐标，其他文本原样保留
+                     */
                     public void setLocation(String location) {
-                        this.location = location;
+                        ComputeRoutesResponse.LatLng latLng = ComputeRoutesDecoder.parseLocation(location);
+                        if (latLng != null) {
+                            setCoordinates(latLng.latitude(), latLng.longitude());
+                        } else {
+                            this.location = location;
+                            this.latitude = Double.NaN;
+                            this.longitude = Double.NaN;
+                        }
+                    }
+
+                    public void setCoordinates(double latitude, double longitude) {
+                        this.location = null;
+                        this.latitude = latitude;
+                        this.longitude = longitude;
+                    }
+
+                    public boolean hasLocation() {
+                        return !Double.isNaN(latitude);
+                    }
+
+                    @JsonIgnore
+                    public double getLatitude() {
+                        return latitude;
+                    }
+
+                    @JsonIgnore
+                    public double getLongitude() {
+                        return longitude;
                     }
 
 
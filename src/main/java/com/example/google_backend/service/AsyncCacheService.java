@@ -1,6 +1,9 @@
 package com.example.google_backend.service;
 
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 public interface AsyncCacheService {
     /**
@@ -12,6 +15,45 @@ public interface AsyncCacheService {
      */
     void cacheRouteAsync(String cacheKey, Object response, int expireTime);
 
+    /**
+     * 异步缓存路由响应到Redis
+     *
+     * @param cacheKey Redis缓存键
+     * @param response 要缓存的路由响应对象
+     * @param timeout 缓存有效期
+     * @param timeUnit 时间颗粒度
+     */
+    void cacheRouteAsync(String cacheKey, Object response, long timeout, TimeUnit timeUnit);
+
+    /**
+     * 异步缓存原始字节到Redis
+     *
+     * @param cacheKey Redis缓存键
+     * @param value 已编码的缓存值
+     * @param timeout 缓存有效期
+     * @param timeUnit 时间颗粒度
+     */
+    void cacheBytesAsync(String cacheKey, byte[] value, long timeout, TimeUnit timeUnit);
+
+    /**
+     * 异步缓存原始字节到Redis，并返回是否覆盖了已有的值
+     *
+     * @param cacheKey Redis缓存键
+     * @param value 已编码的缓存值
+     * @param timeout 缓存有效期
+     * @param timeUnit 时间颗粒度
+     * @return true 覆盖了已有的值；未覆盖或写入失败为 false
+     */
+    CompletableFuture<Boolean> replaceBytesAsync(String cacheKey, byte[] value, long timeout, TimeUnit timeUnit);
+
+    /**
+     * 异步刷新缓存：在后台执行重新计算并写入缓存的逻辑
+     *
+     * @param cacheKey Redis缓存键
+     * @param refresher 重新计算并写入缓存的逻辑
+     */
+    void refreshRouteAsync(String cacheKey, Callable<?> refresher);
+
     /**
      * 异步删除缓存
      *
@@ -0,0 +1,43 @@
+package com.example.google_backend.service;
+
+import com.example.google_backend.model.RouteResponse;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * OTP 驾驶路段缓存
+ * 按量化后的起终点站坐标与时段 (工作日/周末 + 一天内的时间段) 缓存 OTP 规划出的驾驶步骤，
+ * 本地 (Caffeine) + Redis 两级；高峰时段同一对站点被大量请求替换时只需规划一次
+ */
+public interface DrivingSegmentCacheService {
+
+    /**
+     * 生成路段缓存键
+     *
+     * @param startLat 起点站纬度
+     * @param startLng 起点站经度
+     * @param endLat 终点站纬度
+     * @param endLng 终点站经度
+     * @param departure 出发时间 (香港时间)
+     * @return 缓存键
+     */
+    String segmentKey(double startLat, double startLng, double endLat, double endLng, LocalDateTime departure);
+
+    /**
+     * 读取路段的驾驶步骤，未命中时调用 planner 规划并写入缓存 (只缓存非空结果)
+     * 相同路段的并发未命中只会规划一次；每次调用返回新的步骤对象，调用方可以修改
+     *
+     * @param segmentKey 路段缓存键
+     * @param planner 规划逻辑
+     * @return 驾驶步骤
+     */
+    List<RouteResponse.StepDetail> get(String segmentKey, Callable<List<RouteResponse.StepDetail>> planner) throws Exception;
+
+    /**
+     * 路段缓存命中统计
+     */
+    Map<String, Long> getStats();
+}
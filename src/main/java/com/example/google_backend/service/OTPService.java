@@ -3,8 +3,14 @@ package com.example.google_backend.service;
 import com.example.google_backend.model.RouteResponse;
 
 import java.util.List;
+import java.util.Map;
 
 public interface OTPService {
     List<RouteResponse.StepDetail> getDrivingRoute(RouteResponse.StepDetail.TransitDetails.StopDetails.Stop startLocation,
                                                    RouteResponse.StepDetail.TransitDetails.StopDetails.Stop endLocation) throws Exception;
+
+    /**
+     * 对冲请求与熔断器统计
+     */
+    Map<String, Object> getStats();
 }
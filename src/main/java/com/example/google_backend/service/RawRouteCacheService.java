@@ -0,0 +1,38 @@
+package com.example.google_backend.service;
+
+import com.example.google_backend.model.ComputeRoutesResponse;
+import com.example.google_backend.model.RouteRequest;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Google computeRoutes 原始响应缓存
+ * 优化与不优化两条处理流程共用同一份原始响应；步骤处理逻辑或依赖的数据集变化后，
+ * 只需清除路线缓存即可基于原始响应重新处理，不必重新请求 Google；
+ * 缓存中保存 Google 返回的原始文本，读取时由 {@link com.example.google_backend.common.google.ComputeRoutesDecoder} 流式解析
+ */
+public interface RawRouteCacheService {
+
+    /**
+     * 读取原始响应，未命中时调用 fetcher 请求 Google 并写入缓存
+     * 相同请求的并发未命中只会请求一次
+     *
+     * @param request 路线请求
+     * @param fetcher 请求 Google 的逻辑，返回响应体
+     * @return 解析后的响应
+     */
+    ComputeRoutesResponse get(RouteRequest request, Callable<byte[]> fetcher) throws Exception;
+
+    /**
+     * 删除原始响应缓存
+     *
+     * @param request 路线请求
+     */
+    void invalidate(RouteRequest request);
+
+    /**
+     * 原始响应缓存命中统计
+     */
+    Map<String, Long> getStats();
+}
@@ -0,0 +1,48 @@
+package com.example.google_backend.service;
+
+import com.example.google_backend.model.CachedRoute;
+import com.example.google_backend.model.ComputeRoutesResponse;
+import com.example.google_backend.model.RouteRequest;
+import com.example.google_backend.model.RouteResponse;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+/**
+ * 响应式 (非阻塞) 路线计算流程
+ * Google 请求使用 WebClient，缓存读写使用 Lettuce 响应式 API，等待上游期间不占用线程；
+ * 步骤处理与 {@link RouteService} 共用同一套逻辑，缓存条目与阻塞接口互通
+ */
+public interface ReactiveRouteService {
+
+    /**
+     * 获取 Google computeRoutes 原始响应，优先读取原始响应缓存
+     *
+     * @param request 路线请求
+     * @return 解析后的响应
+     */
+    Mono<ComputeRoutesResponse> getResponse(RouteRequest request);
+
+    /**
+     * 计算路线 (含 OTP 路段替换)，不读写路线缓存
+     *
+     * @param request 路线请求
+     * @return 路线计算结果
+     */
+    Mono<RouteResponse> getRoutes(RouteRequest request);
+
+    /**
+     * 读取路线缓存 (L1 -> Redis)，未命中时计算并写入缓存
+     * 相同缓存键的并发未命中只计算一次；软过期的条目直接返回并在后台刷新
+     *
+     * @param cacheKey 路线缓存键
+     * @param request 路线请求
+     * @return 路线缓存条目
+     */
+    Mono<CachedRoute> getCachedRoutes(String cacheKey, RouteRequest request);
+
+    /**
+     * 响应式流程的合并、原始响应缓存与 OTP 跳过统计
+     */
+    Map<String, Long> getStats();
+}
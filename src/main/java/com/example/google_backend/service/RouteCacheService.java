@@ -0,0 +1,130 @@
+package com.example.google_backend.service;
+
+import com.example.google_backend.model.CachedRoute;
+import com.example.google_backend.model.RouteResponse;
+
+import java.util.Map;
+
+/**
+ * 两级路线缓存：进程内 L1 + Redis L2
+ */
+public interface RouteCacheService {
+
+    /**
+     * 读取路线缓存，先查 L1，未命中时从 L2 读取并回填 L1
+     * 软过期但未硬过期的条目同样返回，由调用方决定是否触发刷新
+     *
+     * @param cacheKey 路线缓存键
+     * @return 缓存条目，不存在时返回 null
+     */
+    CachedRoute get(String cacheKey);
+
+    /**
+     * 与 {@link #get(String)} 相同，但不计入按量化级别的命中统计，用于近似命中时检查候选路线
+     *
+     * @param cacheKey 路线缓存键
+     * @return 缓存条目，不存在时返回 null
+     */
+    CachedRoute peek(String cacheKey);
+
+    /**
+     * 跳过 L1 直接从 L2 读取并回填 L1，用于确认其他节点是否已写入更新的条目
+     *
+     * @param cacheKey 路线缓存键
+     * @return 缓存条目，不存在时返回 null
+     */
+    CachedRoute reload(String cacheKey);
+
+    /**
+     * 只查 L1，不访问 Redis，用于响应式流程中先同步检查本地缓存再异步读取 L2
+     *
+     * @param cacheKey 路线缓存键
+     * @return 缓存条目，L1 中不存在时返回 null
+     */
+    CachedRoute getLocal(String cacheKey);
+
+    /**
+     * 解码从 L2 读取的原始字节并回填 L1，与 {@link #reload(String)} 使用相同的格式兼容逻辑
+     * 用于值已由其他途径 (如响应式 Redis 客户端) 读取的情况
+     *
+     * @param cacheKey 路线缓存键
+     * @param raw 原始字节，不存在时为 null
+     * @param remainingMillis L2 剩余有效期 (ms)，小于 0 表示未知或永久
+     * @return 缓存条目，不存在时返回 null
+     */
+    CachedRoute decode(String cacheKey, byte[] raw, long remainingMillis);
+
+    /**
+     * 为新计算的路线创建缓存条目 (带抖动的软过期时间 + 硬过期时间)
+     * 有效期按路线中最早的公共交通发车时间计算，并按该键内容的变化频率缩短
+     *
+     * @param response 路线响应
+     * @param computeMillis 计算该路线的耗时 (ms)
+     * @param previous 同一缓存键的上一个条目 (刷新时)，用于计算内容变化频率；没有时为 null
+     * @return 缓存条目
+     */
+    CachedRoute createEntry(RouteResponse response, long computeMillis, CachedRoute previous);
+
+    /**
+     * 将条目编码为写入 Redis 的字节：预序列化条目使用二进制格式，其余使用 redisTemplate 的值序列化方式
+     *
+     * @param entry 缓存条目
+     * @return 编码后的字节
+     */
+    byte[] encode(CachedRoute entry);
+
+    /**
+     * 按预先计算的排序顺序拼接预序列化条目中的路线，得到排序后路线数组的 JSON 字节
+     *
+     * @param entry 预序列化的缓存条目
+     * @param sortType 排序方式
+     * @return 排序后的路线数组 JSON
+     * @throws IllegalArgumentException 排序方式无效或该条目无法按此方式排序
+     */
+    byte[] sortedBody(CachedRoute entry, String sortType);
+
+    /**
+     * 写入路线缓存，L1 同步写入，L2 异步写入，有效期为条目的硬过期时间
+     *
+     * @param cacheKey 路线缓存键
+     * @param entry 缓存条目
+     */
+    void put(String cacheKey, CachedRoute entry);
+
+    /**
+     * 仅写入 L1，用于条目已通过其他途径 (如租约发布) 写入 Redis 的情况
+     *
+     * @param cacheKey 路线缓存键
+     * @param entry 缓存条目
+     */
+    void putLocal(String cacheKey, CachedRoute entry);
+
+    /**
+     * 条目是否需要后台刷新：已软过期，或按 XFetch 概率提前刷新
+     *
+     * @param entry 缓存条目
+     * @return true 需要刷新
+     */
+    boolean shouldRefresh(CachedRoute entry);
+
+    /**
+     * 删除路线缓存，并通知其他节点清除各自的 L1
+     *
+     * @param cacheKey 路线缓存键
+     */
+    void invalidate(String cacheKey);
+
+    /**
+     * 条目在 Redis 中被新的结果覆盖后，通知其他节点清除各自的 L1 (本节点的 L1 已是新条目)
+     *
+     * @param cacheKey 路线缓存键
+     */
+    void publishInvalidation(String cacheKey);
+
+    /**
+     * 各级缓存的命中/未命中/淘汰统计，以及按缓存键量化级别 (level:&lt;级别&gt;) 的命中统计
+     *
+     * @return 按缓存层级分组的统计
+     */
+    Map<String, Map<String, Long>> getStats();
+}
@@ -0,0 +1,67 @@
+package com.example.google_backend.service;
+
+import com.example.google_backend.model.CachedRoute;
+import com.example.google_backend.model.RouteRequest;
+
+import java.util.Map;
+
+/**
+ * 已缓存路线的起终点空间索引，用于缓存未命中时查找起终点都在附近的已缓存路线 (近似命中)
+ */
+public interface RouteSpatialIndexService {
+
+    /**
+     * 将已缓存路线的起终点加入索引
+     *
+     * @param cacheKey 路线缓存键
+     * @param request 路线请求
+     * @param entry 缓存条目
+     */
+    void index(String cacheKey, RouteRequest request, CachedRoute entry);
+
+    /**
+     * 查找起点和终点都在配置半径内、且额外步行距离可接受的已缓存路线
+     *
+     * @param request 路线请求
+     * @return 近似命中结果，没有合适的路线时返回 null
+     */
+    NearbyRoute findNearby(RouteRequest request);
+
+    /**
+     * 近似命中统计
+     */
+    Map<String, Long> getStats();
+
+    /**
+     * 近似命中结果
+     */
+    final class NearbyRoute {
+        private final String cacheKey;
+        private final CachedRoute entry;
+        private final double originOffsetMeters;
+        private final double destinationOffsetMeters;
+
+        public NearbyRoute(String cacheKey, CachedRoute entry, double originOffsetMeters, double destinationOffsetMeters) {
+            this.cacheKey = cacheKey;
+            this.entry = entry;
+            this.originOffsetMeters = originOffsetMeters;
+            this.destinationOffsetMeters = destinationOffsetMeters;
+        }
+
+        public String getCacheKey() {
+            return cacheKey;
+        }
+
+        public CachedRoute getEntry() {
+            return entry;
+        }
+
+        public double getOriginOffsetMeters() {
+            return originOffsetMeters;
+        }
+
+        public double getDestinationOffsetMeters() {
+            return destinationOffsetMeters;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.example.google_backend.service.impl;
 
+import com.example.google_backend.common.concurrent.BulkheadFullException;
+import com.example.google_backend.common.concurrent.BulkheadRegistry;
 import com.example.google_backend.common.redis.service.RedisService;
 import com.example.google_backend.service.AsyncCacheService;
 import jakarta.annotation.Resource;
@@ -7,6 +9,8 @@ import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -19,6 +23,9 @@ public class AsyncCacheServiceImpl implements AsyncCacheService {
     @Resource
     private RedisService redisService;
 
+    @Resource
+    private BulkheadRegistry bulkheadRegistry;
+
     /**
      * 异步缓存路由响应到Redis
      *
@@ -37,6 +44,90 @@ public class AsyncCacheServiceImpl implements AsyncCacheService {
         }
     }
 
+    /**
+     * 异步缓存路由响应到Redis
+     *
+     * @param cacheKey Redis缓存键
+     * @param response 要缓存的路由响应对象
+     * @param timeout 缓存有效期
+     * @param timeUnit 时间颗粒度
+     */
+    @Async
+    public void cacheRouteAsync(String cacheKey, Object response, long timeout, TimeUnit timeUnit) {
+        try {
+            logger.info("开始异步缓存操作，缓存键: " + cacheKey);
+            redisService.setCacheObject(cacheKey, response, timeout, timeUnit);
+            logger.info("路径已异步缓存 - 有效期:" + timeout + " " + timeUnit);
+        } catch (Exception e) {
+            logger.warning("异步缓存操作失败" + cacheKey + "错误: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 异步缓存原始字节到Redis
+     *
+     * @param cacheKey Redis缓存键
+     * @param value 已编码的缓存值
+     * @param timeout 缓存有效期
+     * @param timeUnit 时间颗粒度
+     */
+    @Async
+    public void cacheBytesAsync(String cacheKey, byte[] value, long timeout, TimeUnit timeUnit) {
+        try {
+            bulkheadRegistry.get("redis").execute(() -> {
+                redisService.setCacheBytes(cacheKey, value, timeout, timeUnit);
+                return null;
+            });
+            logger.info("路径已异步缓存 - 大小: " + value.length + " 字节 - 有效期:" + timeout + " " + timeUnit);
+        } catch (BulkheadFullException e) {
+            // Redis 并发已满时放弃本次写入，条目仍在本地缓存中
+            logger.warning("Redis 并发已满，跳过异步缓存 - 缓存键: " + cacheKey);
+        } catch (Exception e) {
+            logger.warning("异步缓存操作失败" + cacheKey + "错误: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 异步缓存原始字节到Redis，并返回是否覆盖了已有的值
+     *
+     * @param cacheKey Redis缓存键
+     * @param value 已编码的缓存值
+     * @param timeout 缓存有效期
+     * @param timeUnit 时间颗粒度
+     * @return true 覆盖了已有的值；未覆盖或写入失败为 false
+     */
+    @Async
+    public CompletableFuture<Boolean> replaceBytesAsync(String cacheKey, byte[] value, long timeout, TimeUnit timeUnit) {
+        try {
+            boolean replaced = bulkheadRegistry.get("redis").execute(() ->
+                    redisService.replaceCacheBytes(cacheKey, value, timeout, timeUnit));
+            logger.info("路径已异步缓存 - 大小: " + value.length + " 字节 - 有效期:" + timeout + " " + timeUnit);
+            return CompletableFuture.completedFuture(replaced);
+        } catch (BulkheadFullException e) {
+            logger.warning("Redis 并发已满，跳过异步缓存 - 缓存键: " + cacheKey);
+        } catch (Exception e) {
+            logger.warning("异步缓存操作失败" + cacheKey + "错误: " + e.getMessage());
+        }
+        return CompletableFuture.completedFuture(false);
+    }
+
+    /**
+     * 异步刷新缓存：在后台执行重新计算并写入缓存的逻辑
+     *
+     * @param cacheKey Redis缓存键
+     * @param refresher 重新计算并写入缓存的逻辑
+     */
+    @Async
+    public void refreshRouteAsync(String cacheKey, Callable<?> refresher) {
+        try {
+            logger.info("开始后台刷新缓存，缓存键: " + cacheKey);
+            refresher.call();
+            logger.info("缓存已后台刷新 - 缓存键: " + cacheKey);
+        } catch (Exception e) {
+            logger.warning("后台刷新缓存失败 - 缓存键: " + cacheKey + " - 错误: " + e.getMessage());
+        }
+    }
+
     /**
      * 异步删除缓存
      *
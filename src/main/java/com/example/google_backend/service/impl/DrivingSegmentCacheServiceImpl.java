@@ -0,0 +1,163 @@
+package com.example.google_backend.service.impl;
+
+import com.example.google_backend.common.concurrent.BulkheadFullException;
+import com.example.google_backend.common.concurrent.BulkheadRegistry;
+import com.example.google_backend.common.concurrent.SingleFlight;
+import com.example.google_backend.common.redis.codec.RouteBinaryCodec;
+import com.example.google_backend.common.redis.service.RedisService;
+import com.example.google_backend.model.RouteResponse;
+import com.example.google_backend.service.AsyncCacheService;
+import com.example.google_backend.service.DrivingSegmentCacheService;
+import com.example.google_backend.utils.generator.SpatialQuantizer;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+@Service
+public class DrivingSegmentCacheServiceImpl implements DrivingSegmentCacheService {
+
+    private static final Logger logger = Logger.getLogger(DrivingSegmentCacheServiceImpl.class.getName());
+
+    static final String KEY_PREFIX = "seg:";
+
+    @Resource
+    private RedisService redisService;
+
+    @Resource
+    private AsyncCacheService asyncCacheService;
+
+    @Resource
+    private BulkheadRegistry bulkheadRegistry;
+
+    // 是否启用路段缓存
+    @Value("${otp.segment-cache.enabled:true}")
+    private boolean enabled;
+
+    // 站点坐标量化方式，同一单元内的站点共用路段
+    @Value("${otp.segment-cache.quantizer:grid:100}")
+    private String quantizerSpec;
+
+    // 时段长度 (分钟)
+    @Value("${otp.segment-cache.bucket-minutes:15}")
+    private int bucketMinutes;
+
+    // 路段有效期 (秒)
+    @Value("${otp.segment-cache.ttl-seconds:1800}")
+    private long ttlSeconds;
+
+    // 本地缓存最多保留的路段数
+    @Value("${otp.segment-cache.local-max-size:20000}")
+    private long localMaxSize;
+
+    private SpatialQuantizer quantizer;
+
+    // 本地缓存保存编码后的字节，每次读取解码出新的对象
+    private Cache<String, byte[]> l1;
+
+    private final SingleFlight<byte[]> planSingleFlight = new SingleFlight<>();
+
+    private final LongAdder l1Hits = new LongAdder();
+    private final LongAdder l2Hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder plans = new LongAdder();
+    private final LongAdder l2Rejected = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        quantizer = SpatialQuantizer.parse(quantizerSpec);
+        l1 = Caffeine.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
+    }
+
+    @Override
+    public String segmentKey(double startLat, double startLng, double endLat, double endLng, LocalDateTime departure) {
+        DayOfWeek day = departure.getDayOfWeek();
+        String dayType = day == DayOfWeek.SATURDAY || day == DayOfWeek.SUNDAY ? "we" : "wd";
+        int bucket = (departure.getHour() * 60 + departure.getMinute()) / Math.max(1, bucketMinutes);
+        return KEY_PREFIX + quantizer.level()
+                + ":" + quantizer.cell(startLat, startLng)
+                + ":" + quantizer.cell(endLat, endLng)
+                + ":" + dayType + bucket;
+    }
+
+    @Override
+    public List<RouteResponse.StepDetail> get(String segmentKey,
+                                              Callable<List<RouteResponse.StepDetail>> planner) throws Exception {
+        if (!enabled) {
+            return planner.call();
+        }
+
+        byte[] cached = l1.getIfPresent(segmentKey);
+        if (cached != null) {
+            l1Hits.increment();
+            return RouteBinaryCodec.decodeSteps(cached);
+        }
+
+        cached = readRemote(segmentKey);
+        if (cached != null) {
+            l2Hits.increment();
+            l1.put(segmentKey, cached);
+            return RouteBinaryCodec.decodeSteps(cached);
+        }
+        misses.increment();
+
+        // 并发未命中的同一路段只规划一次，等待方各自解码结果
+        byte[] planned = planSingleFlight.execute(segmentKey, () -> {
+            plans.increment();
+            List<RouteResponse.StepDetail> steps = planner.call();
+            byte[] encoded = RouteBinaryCodec.encodeSteps(steps);
+            // 空结果可能来自熔断或预算不足，不缓存
+            if (steps != null && !steps.isEmpty()) {
+                l1.put(segmentKey, encoded);
+                asyncCacheService.cacheBytesAsync(segmentKey, encoded, ttlSeconds, TimeUnit.SECONDS);
+            }
+            return encoded;
+        });
+        return RouteBinaryCodec.decodeSteps(planned);
+    }
+
+    @Override
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("l1Hits", l1Hits.sum());
+        stats.put("l2Hits", l2Hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("plans", plans.sum());
+        stats.put("coalesced", planSingleFlight.getCoalesced());
+        stats.put("l2Rejected", l2Rejected.sum());
+        stats.put("errors", errors.sum());
+        stats.put("localSize", l1.estimatedSize());
+        return stats;
+    }
+
+    private byte[] readRemote(String segmentKey) {
+        try {
+            return bulkheadRegistry.get("redis").execute(() -> redisService.getCacheBytes(segmentKey));
+        } catch (BulkheadFullException e) {
+            // Redis 并发已满：按未命中处理
+            l2Rejected.increment();
+            return null;
+        } catch (Exception e) {
+            errors.increment();
+            logger.warning("读取路段缓存失败 - 缓存键: " + segmentKey + " - 错误: " + e.getMessage());
+            return null;
+        }
+    }
+}
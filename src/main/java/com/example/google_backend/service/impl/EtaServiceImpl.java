@@ -1,5 +1,7 @@
 package com.example.google_backend.service.impl;
 
+import com.example.google_backend.common.concurrent.BulkheadRegistry;
+import com.example.google_backend.common.concurrent.RequestBudget;
 import com.example.google_backend.service.EtaService;
 import com.example.google_backend.utils.JsonUtils;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -29,7 +31,20 @@ import java.util.stream.Collectors;
 @Service
 public class EtaServiceImpl implements EtaService {
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    // 九巴、城巴各自的连接池
+    @jakarta.annotation.Resource(name = "kmbRestTemplate")
+    private RestTemplate kmbRestTemplate;
+
+    @jakarta.annotation.Resource(name = "citybusRestTemplate")
+    private RestTemplate citybusRestTemplate;
+
+    @jakarta.annotation.Resource
+    private BulkheadRegistry bulkheadRegistry;
+
+    // 剩余请求预算低于该值 (ms) 时跳过 ETA 查询
+    @Value("${eta.min-budget-ms:200}")
+    private long etaMinBudgetMs;
+
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     private static final Logger logger = LoggerFactory.getLogger(EtaServiceImpl.class.getName());
@@ -108,6 +123,12 @@ public class EtaServiceImpl implements EtaService {
         List<String> eta = new ArrayList<>();
         String stopId = null;
 
+        // ETA 属于可选信息，请求预算不足时直接返回空列表
+        if (!RequestBudget.allows("eta", etaMinBudgetMs)) {
+            logger.info("Request budget too low, skipping ETA for stop name: {}", stopName);
+            return eta;
+        }
+
         if ("kmb".equalsIgnoreCase(company)) {
             stopId = stopNameToIdMap.get("kmb").get(stopName);
             if(stopId!=null){
@@ -146,7 +167,8 @@ public class EtaServiceImpl implements EtaService {
         List<String> etaList = new ArrayList<>();
 
         try {
-            ResponseEntity<String> response = restTemplate.getForEntity(url, String.class);
+            ResponseEntity<String> response = bulkheadRegistry.get("kmb").execute(() ->
+                    kmbRestTemplate.getForEntity(url, String.class));
 
             if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
                 Map<String,Object> responseMap = JsonUtils.jsonToMap(response.getBody());
@@ -194,7 +216,8 @@ public class EtaServiceImpl implements EtaService {
         String url = CITYBUS_BASE_URL + "/" + stopId + "/" + routeId;
 
         try {
-            ResponseEntity<String> response = restTemplate.getForEntity(url, String.class);
+            ResponseEntity<String> response = bulkheadRegistry.get("citybus").execute(() ->
+                    citybusRestTemplate.getForEntity(url, String.class));
 
             if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
                 Map<String, Object> responseMap = JsonUtils.jsonToMap(response.getBody());
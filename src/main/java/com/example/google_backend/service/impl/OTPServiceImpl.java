@@ -1,39 +1,106 @@
 package com.example.google_backend.service.impl;
 
+import com.example.google_backend.common.concurrent.AdaptiveBulkhead;
+import com.example.google_backend.common.concurrent.BulkheadFullException;
+import com.example.google_backend.common.concurrent.BulkheadRegistry;
+import com.example.google_backend.common.concurrent.CircuitBreaker;
+import com.example.google_backend.common.concurrent.Hedger;
+import com.example.google_backend.common.concurrent.RequestBudget;
+import com.example.google_backend.common.matrix.DriveTimeMatrix;
+import com.example.google_backend.common.otp.OtpBackendPool;
+import com.example.google_backend.common.otp.OtpBatchException;
+import com.example.google_backend.common.otp.OtpGraphQlClient;
+import com.example.google_backend.common.otp.OtpPlanBatcher;
+import com.example.google_backend.common.otp.OtpUnavailableException;
 import com.example.google_backend.model.RouteRequestPayload;
 import com.example.google_backend.model.RouteResponse;
+import com.example.google_backend.service.DrivingSegmentCacheService;
 import com.example.google_backend.service.OTPService;
 import com.example.google_backend.service.RouteService;
 import com.example.google_backend.utils.TimingUtils;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.example.google_backend.utils.route.DriveTimeEstimator;
 import io.leonard.Position;
 import org.locationtech.jts.geom.LineString;
-import org.opentripplanner.client.OtpApiClient;
 import org.opentripplanner.client.model.*;
 import org.opentripplanner.client.parameters.TripPlanParameters;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
 @Service
 public class OTPServiceImpl implements OTPService {
 
-    private final OtpApiClient client;
-    private final static ZoneId ZONE_ID = ZoneId.of("Asia/Hong_Kong"); // 根据实际时区调整
+    // 多个 OTP 实例，每次规划发往进行中请求最少的实例
+    private final OtpBackendPool backendPool;
     private final Logger logger = Logger.getLogger(OTPServiceImpl.class.getName());
 
-    public OTPServiceImpl(@Value("${otp.base.url}") String otpBaseUrl) {
-        this.client = new OtpApiClient(ZONE_ID, otpBaseUrl);
+    // OTP 变慢时限制同时进行的规划数，超出的调用直接拒绝 (调用方保留原公交路段)
+    private final AdaptiveBulkhead bulkhead;
+
+    // 精简 GraphQL 客户端 + 跨请求微批；关闭时使用 otp-client 请求完整行程
+    private final OtpPlanBatcher planBatcher;
+    private final boolean graphQlEnabled;
+
+    // 本地驾驶时间估算，用 OTP 结果校准
+    private final DriveTimeEstimator driveTimeEstimator;
+
+    // 站点对驾驶路段缓存
+    private final DrivingSegmentCacheService segmentCacheService;
+
+    // 离线预计算的常用站点对驾驶时间 (内存映射)，命中时不请求 OTP
+    private final DriveTimeMatrix driveTimeMatrix;
+
+    // OTP 长尾延迟：超过最近 p95 仍未返回时再发一次相同的规划，先返回的生效
+    private final Hedger hedger;
+    private final boolean hedgeEnabled;
+
+    // OTP 连续失败后熔断，熔断期间不再调用 OTP，调用方保留原公交路段
+    private final CircuitBreaker circuitBreaker;
+
+    // 出发时间所在的时区：预计算矩阵与驾驶路段缓存的时段、OTP 的 date/time 参数都按该时区计算
+    private final ZoneId zoneId;
+
+    public OTPServiceImpl(OtpBackendPool backendPool,
+                          OtpPlanBatcher planBatcher,
+                          BulkheadRegistry bulkheadRegistry,
+                          DrivingSegmentCacheService segmentCacheService,
+                          DriveTimeEstimator driveTimeEstimator,
+                          DriveTimeMatrix driveTimeMatrix,
+                          @Value("${otp.graphql.enabled:true}") boolean graphQlEnabled,
+                          @Value("${otp.hedge.enabled:true}") boolean hedgeEnabled,
+                          @Value("${otp.hedge.percentile:0.95}") double hedgePercentile,
+                          @Value("${otp.hedge.min-delay-ms:20}") long hedgeMinDelayMs,
+                          @Value("${otp.hedge.max-delay-ms:1000}") long hedgeMaxDelayMs,
+                          @Value("${otp.hedge.max-ratio:0.1}") double hedgeMaxRatio,
+                          @Value("${otp.hedge.window:256}") int hedgeWindow,
+                          @Value("${otp.circuit.failure-threshold:5}") int circuitFailureThreshold,
+                          @Value("${otp.circuit.open-ms:10000}") long circuitOpenMs,
+                          @Value("${otp.circuit.half-open-calls:1}") int circuitHalfOpenCalls,
+                          @Value("${otp.zone-id:Asia/Hong_Kong}") String zoneId) {
+        this.backendPool = backendPool;
+        this.planBatcher = planBatcher;
+        this.graphQlEnabled = graphQlEnabled;
+        this.bulkhead = bulkheadRegistry.get("otp");
+        this.segmentCacheService = segmentCacheService;
+        this.driveTimeEstimator = driveTimeEstimator;
+        this.driveTimeMatrix = driveTimeMatrix;
+        this.hedgeEnabled = hedgeEnabled;
+        this.hedger = new Hedger("otp", hedgePercentile, hedgeMinDelayMs, hedgeMaxDelayMs, hedgeMaxRatio, hedgeWindow);
+        this.circuitBreaker = new CircuitBreaker("otp", circuitFailureThreshold, circuitOpenMs, circuitHalfOpenCalls);
+        this.zoneId = ZoneId.of(zoneId);
     }
 
 
@@ -41,49 +108,148 @@ public class OTPServiceImpl implements OTPService {
     public List<RouteResponse.StepDetail> getDrivingRoute(RouteResponse.StepDetail.TransitDetails.StopDetails.Stop startStop,
                                                           RouteResponse.StepDetail.TransitDetails.StopDetails.Stop endStop) throws Exception {
 
-        // 解析起终点坐标,提取名称
-        Coordinate origin = parseLocation(startStop.getLocation());
-        Coordinate destination = parseLocation(endStop.getLocation());
+        // 起终点坐标,提取名称
+        RouteRequestPayload.LatLng start = toLatLng(startStop);
+        RouteRequestPayload.LatLng end = toLatLng(endStop);
         String startStopName = startStop.getName();
         String endStopName = endStop.getName();
+        LocalDateTime departure = LocalDateTime.now(zoneId);
+        String instruction = String.format("OTP result: From %s drive to %s", startStopName, endStopName);
+
+        // 常用站点对直接查预计算矩阵，只有矩阵中没有的站点对才请求 OTP
+        OtpGraphQlClient.DrivingPlan precomputed = driveTimeMatrix.lookup(start.getLatitude(), start.getLongitude(),
+                end.getLatitude(), end.getLongitude(), departure);
+        if (precomputed != null) {
+            List<RouteResponse.StepDetail> steps = toStepDetails(precomputed);
+            steps.forEach(step -> step.setInstruction(instruction));
+            return steps;
+        }
 
-        try {
-            // 发送请求
-            var response = client.plan(TripPlanParameters.builder()
-                    .withFrom(origin)
-                    .withTo(destination)
-                    .withTime(LocalDateTime.now())
-                    .withModes(Set.of(RequestMode.CAR))
-                    .build());
+        // 同一对站点 (量化后) 在同一时段的驾驶路段直接复用，不再请求 OTP
+        String segmentKey = segmentCacheService.segmentKey(start.getLatitude(), start.getLongitude(),
+                end.getLatitude(), end.getLongitude(), departure);
+        List<RouteResponse.StepDetail> steps = segmentCacheService.get(segmentKey,
+                () -> planDriving(start, end, departure));
+
+        // 设置路线指示,使用google站点的名称代替OTP返回的经纬度 (缓存的路段可能来自附近的其他站点)
+        steps.forEach(step -> step.setInstruction(instruction));
+        return steps;
+    }
 
-            System.out.println(" OTP response : " + response);
+    /**
+     * 请求 OTP 规划一段驾驶路线
+     * 预算不足或熔断中抛出 {@link OtpUnavailableException}
+     */
+    private List<RouteResponse.StepDetail> planDriving(RouteRequestPayload.LatLng start,
+                                                       RouteRequestPayload.LatLng end,
+                                                       LocalDateTime departure) {
+        // 请求预算已用完或熔断中时不再发起规划，由调用方改用估算步骤或保留原公交路段
+        if (!RequestBudget.allows("otpReplacement", 1)) {
+            throw new OtpUnavailableException("request budget exhausted");
+        }
+        if (!circuitBreaker.tryAcquire()) {
+            throw new OtpUnavailableException("circuit open");
+        }
 
+        if (graphQlEnabled) {
+            OtpGraphQlClient.PlanQuery query = new OtpGraphQlClient.PlanQuery(start.getLatitude(), start.getLongitude(),
+                    end.getLatitude(), end.getLongitude(), departure);
+            OtpGraphQlClient.DrivingPlan plan = callOtp(() -> planBatcher.plan(query));
+            if (plan != null) {
+                // 用 OTP 的实际驾驶时间校准本地估算
+                driveTimeEstimator.calibrate(start.getLatitude(), start.getLongitude(),
+                        end.getLatitude(), end.getLongitude(), Instant.now(), plan.durationSeconds());
+            }
+            return toStepDetails(plan);
+        }
+
+        TripPlanParameters parameters = TripPlanParameters.builder()
+                .withFrom(new Coordinate(start.getLatitude(), start.getLongitude()))
+                .withTo(new Coordinate(end.getLatitude(), end.getLongitude()))
+                .withTime(departure)
+                .withModes(Set.of(RequestMode.CAR))
+                .build();
+        TripPlan response = callOtp(() -> plan(parameters));
+
+        System.out.println(" OTP response : " + response);
+
+        try {
             // 转换结果为统一的StepDetail格式
             return TimingUtils.measureExecutionTime("转换OTP数据格式过程：",()->
-                    convertToStepDetails(response,startStopName,endStopName));
-
+                    convertToStepDetails(response));
         } catch (Exception e) {
             throw new RuntimeException("Failed to get route from OTP", e);
         }
     }
 
-    private Coordinate parseLocation(String locationJson) {
+    /**
+     * 经过隔离舱 (和对冲) 调用 OTP，并把结果计入熔断器
+     * 每次尝试 (包括对冲) 都重新选择实例，对冲请求通常落在另一个实例上；
+     * 微批失败时同一批次的调用方只计一次失败
+     */
+    private <T> T callOtp(Callable<T> attempt) {
         try {
-            // 解析坐标
-            ObjectMapper mapper = new ObjectMapper();
-            JsonNode locationNode = mapper.readTree(locationJson);
+            T result = hedgeEnabled
+                    ? hedger.call(() -> bulkhead.execute(attempt))
+                    : bulkhead.execute(attempt);
+            circuitBreaker.onSuccess();
+            return result;
+        } catch (BulkheadFullException e) {
+            circuitBreaker.onIgnored();
+            throw e;
+        } catch (Exception e) {
+            OtpBatchException batchFailure = OtpBatchException.find(e);
+            if (batchFailure == null || batchFailure.claimFailure()) {
+                circuitBreaker.onFailure();
+            } else {
+                circuitBreaker.onIgnored();
+            }
+            throw new RuntimeException("Failed to get route from OTP", e);
+        }
+    }
 
-            JsonNode latLngNode = locationNode.get("latLng");
-            double latitude = latLngNode.get("latitude").asDouble();
-            double longitude = latLngNode.get("longitude").asDouble();
+    /**
+     * GraphQL 规划结果转换为 DRIVE 步骤，没有可行行程时返回空列表
+     */
+    private List<RouteResponse.StepDetail> toStepDetails(OtpGraphQlClient.DrivingPlan plan) {
+        List<RouteResponse.StepDetail> steps = new ArrayList<>();
+        if (plan == null) {
+            return steps;
+        }
+        RouteResponse.StepDetail step = new RouteResponse.StepDetail();
+        step.setTravelMode("DRIVE");
+        step.setDistance(Math.round(plan.distanceMeters()));
+        step.setDuration(Math.round(plan.durationSeconds()));
+        steps.add(step);
+        return steps;
+    }
 
-            return new Coordinate(latitude, longitude);
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to parse location", e);
+    private TripPlan plan(TripPlanParameters parameters) throws Exception {
+        return backendPool.execute(backend -> backend.getClient().plan(parameters));
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("graphQlEnabled", graphQlEnabled);
+        stats.put("batcher", planBatcher.getStats());
+        stats.put("hedgeEnabled", hedgeEnabled);
+        stats.put("hedge", hedger.getStats());
+        stats.put("circuit", circuitBreaker.getStats());
+        stats.put("backends", backendPool.getStats());
+        stats.put("segmentCache", segmentCacheService.getStats());
+        stats.put("matrix", driveTimeMatrix.getStats());
+        return stats;
+    }
+
+    private RouteRequestPayload.LatLng toLatLng(RouteResponse.StepDetail.TransitDetails.StopDetails.Stop stop) {
+        if (!stop.hasLocation()) {
+            throw new IllegalArgumentException("Stop has no location: " + stop.getName());
         }
+        return new RouteRequestPayload.LatLng(stop.getLatitude(), stop.getLongitude());
     }
 
-    private List<RouteResponse.StepDetail> convertToStepDetails(TripPlan response, String startStopName, String endStopName) {
+    private List<RouteResponse.StepDetail> convertToStepDetails(TripPlan response) {
         List<RouteResponse.StepDetail> steps = new ArrayList<>();
 
         //检查响应是否为空
@@ -127,12 +293,6 @@ public class OTPServiceImpl implements OTPService {
 //                            point.getLongitude())
 //            );
 
-            // 设置路线指示,使用google站点的名称代替OTP返回的经纬度
-            String instruction = String.format("OTP result: From %s drive to %s",
-                    startStopName,
-                    endStopName);
-            step.setInstruction(instruction);
-
             //设置时间,返回为秒数
             step.setDuration(leg.duration().getSeconds());
 
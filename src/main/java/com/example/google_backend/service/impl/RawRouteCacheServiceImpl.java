@@ -0,0 +1,111 @@
+package com.example.google_backend.service.impl;
+
+import com.example.google_backend.common.concurrent.SingleFlight;
+import com.example.google_backend.common.google.ComputeRoutesDecoder;
+import com.example.google_backend.model.ComputeRoutesResponse;
+import com.example.google_backend.model.RouteRequest;
+import com.example.google_backend.service.RawRouteCacheService;
+import com.example.google_backend.utils.generator.CacheKeyGenerator;
+import jakarta.annotation.Resource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+@Service
+public class RawRouteCacheServiceImpl implements RawRouteCacheService {
+
+    private static final Logger logger = Logger.getLogger(RawRouteCacheServiceImpl.class.getName());
+
+    static final String KEY_PREFIX = "raw:";
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    // 是否启用原始响应缓存
+    @Value("${google.raw-cache.enabled:true}")
+    private boolean enabled;
+
+    // 原始响应有效期 (秒)，响应中含有发车时间，不宜过长
+    @Value("${google.raw-cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    private final SingleFlight<ComputeRoutesResponse> fetchSingleFlight = new SingleFlight<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder fetches = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    @Override
+    public ComputeRoutesResponse get(RouteRequest request, Callable<byte[]> fetcher) throws Exception {
+        if (!enabled) {
+            byte[] body = fetcher.call();
+            return body == null ? null : ComputeRoutesDecoder.decode(body);
+        }
+        String cacheKey = KEY_PREFIX + CacheKeyGenerator.generateRouteKey(request);
+
+        ComputeRoutesResponse cached = read(cacheKey);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+
+        return fetchSingleFlight.execute(cacheKey, () -> {
+            fetches.increment();
+            byte[] body = fetcher.call();
+            if (body == null) {
+                return null;
+            }
+            ComputeRoutesResponse response = ComputeRoutesDecoder.decode(body);
+            // 只缓存有效的响应，缓存原始文本，不再重新序列化
+            if (response.routes() != null) {
+                write(cacheKey, new String(body, StandardCharsets.UTF_8));
+            }
+            return response;
+        });
+    }
+
+    @Override
+    public void invalidate(RouteRequest request) {
+        stringRedisTemplate.delete(KEY_PREFIX + CacheKeyGenerator.generateRouteKey(request));
+    }
+
+    @Override
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("fetches", fetches.sum());
+        stats.put("errors", errors.sum());
+        return stats;
+    }
+
+    private ComputeRoutesResponse read(String cacheKey) {
+        try {
+            String json = stringRedisTemplate.opsForValue().get(cacheKey);
+            return json == null ? null : ComputeRoutesDecoder.decode(json);
+        } catch (Exception e) {
+            errors.increment();
+            logger.warning("读取原始响应缓存失败 - 缓存键: " + cacheKey + " - 错误: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void write(String cacheKey, String json) {
+        try {
+            stringRedisTemplate.opsForValue().set(cacheKey, json, Duration.ofSeconds(ttlSeconds));
+        } catch (Exception e) {
+            errors.increment();
+            logger.warning("写入原始响应缓存失败 - 缓存键: " + cacheKey + " - 错误: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,416 @@
+package com.example.google_backend.service.impl;
+
+import com.example.google_backend.common.concurrent.AdaptiveBulkhead;
+import com.example.google_backend.common.concurrent.BulkheadRegistry;
+import com.example.google_backend.common.concurrent.DeadlineExceededException;
+import com.example.google_backend.common.concurrent.RequestBudget;
+import com.example.google_backend.common.google.ComputeRoutesDecoder;
+import com.example.google_backend.model.CachedRoute;
+import com.example.google_backend.model.ComputeRoutesResponse;
+import com.example.google_backend.model.RouteRequest;
+import com.example.google_backend.model.RouteResponse;
+import com.example.google_backend.service.ReactiveRouteService;
+import com.example.google_backend.service.RouteCacheService;
+import com.example.google_backend.service.RouteSpatialIndexService;
+import com.example.google_backend.utils.generator.CacheKeyGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import jakarta.annotation.Resource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+@Service
+public class ReactiveRouteServiceImpl implements ReactiveRouteService {
+
+    private static final Logger logger = Logger.getLogger(ReactiveRouteServiceImpl.class.getName());
+
+    private static final byte[] EMPTY = new byte[0];
+
+    @Resource(name = "googleWebClient")
+    private WebClient webClient;
+
+    @Resource
+    private ReactiveRedisTemplate<String, byte[]> reactiveRouteRedisTemplate;
+
+    @Resource
+    private ReactiveStringRedisTemplate reactiveStringRedisTemplate;
+
+    // 步骤处理、Google 请求体与 OTP 调用和阻塞流程共用
+    @Resource
+    private RouteServiceImpl routeService;
+
+    @Resource
+    private RouteCacheService routeCacheService;
+
+    @Resource
+    private RouteSpatialIndexService routeSpatialIndexService;
+
+    @Resource
+    private BulkheadRegistry bulkheadRegistry;
+
+    @Value("${google.raw-cache.enabled:true}")
+    private boolean rawCacheEnabled;
+
+    @Value("${google.raw-cache.ttl-seconds:300}")
+    private long rawCacheTtlSeconds;
+
+    // 单个请求内同时进行的 OTP 路径规划数上限
+    @Value("${otp.replace.max-parallelism:4}")
+    private int otpReplaceMaxParallelism;
+
+    // 单个请求内所有 OTP 路径规划的总超时 (ms)
+    @Value("${otp.replace.timeout-ms:8000}")
+    private long otpReplaceTimeoutMs;
+
+    // 剩余预算低于该值 (ms) 时跳过 OTP 路径替换
+    @Value("${otp.replace.min-budget-ms:300}")
+    private long otpReplaceMinBudgetMs;
+
+    // 单个请求的时间预算 (ms)，与阻塞流程相同
+    @Value("${route.request.budget-ms:6000}")
+    private long requestBudgetMs;
+
+    @Value("${route.request.budget-reserve-ms:100}")
+    private long budgetReserveMs;
+
+    // 相同缓存键正在进行的计算，后到的请求订阅同一个结果
+    private final Map<String, Mono<CachedRoute>> inFlight = new ConcurrentHashMap<>();
+
+    // 正在后台刷新的缓存键
+    private final Set<String> refreshingKeys = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder computed = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder rawHits = new LongAdder();
+    private final LongAdder rawMisses = new LongAdder();
+    private final LongAdder otpSkipped = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    @Override
+    public Mono<ComputeRoutesResponse> getResponse(RouteRequest request) {
+        return getResponse(request, null);
+    }
+
+    private Mono<ComputeRoutesResponse> getResponse(RouteRequest request, RequestBudget budget) {
+        if (!rawCacheEnabled) {
+            return fetchResponse(request, budget).map(this::decode);
+        }
+        String rawKey = RawRouteCacheServiceImpl.KEY_PREFIX + CacheKeyGenerator.generateRouteKey(request);
+        return reactiveStringRedisTemplate.opsForValue().get(rawKey)
+                .flatMap(json -> Mono.fromCallable(() -> ComputeRoutesDecoder.decode(json)))
+                .doOnNext(response -> rawHits.increment())
+                .onErrorResume(e -> {
+                    errors.increment();
+                    logger.warning("读取原始响应缓存失败 - 缓存键: " + rawKey + " - 错误: " + e.getMessage());
+                    return Mono.empty();
+                })
+                .switchIfEmpty(Mono.defer(() -> {
+                    rawMisses.increment();
+                    return fetchResponse(request, budget).map(body -> {
+                        ComputeRoutesResponse response = decode(body);
+                        writeRaw(rawKey, body, response);
+                        return response;
+                    });
+                }));
+    }
+
+    @Override
+    public Mono<RouteResponse> getRoutes(RouteRequest request) {
+        return Mono.defer(() -> computeRoutes(request, RequestBudget.of(requestBudgetMs)));
+    }
+
+    /**
+     * 计算路线
+     * 响应式流程中 ThreadLocal 的预算不会随线程传递，这里显式携带，在执行阻塞步骤的线程上绑定；
+     * 步骤处理 (长距离出口检查使用阻塞的 RedisTemplate) 和 OTP 结果回填在 boundedElastic 上执行，
+     * 不占用 Reactor Netty / Lettuce 的事件循环线程
+     *
+     * @param budget 请求预算，后台刷新时为 null (不限时)
+     */
+    private Mono<RouteResponse> computeRoutes(RouteRequest request, RequestBudget budget) {
+        long start = System.currentTimeMillis();
+        return getResponse(request, budget)
+                .flatMap(response -> Mono.fromCallable(bind(budget, () ->
+                                routeService.buildPlan(response, request, System.currentTimeMillis() - start)))
+                        .subscribeOn(Schedulers.boundedElastic()))
+                .flatMap(plan -> {
+                    long replaceStart = System.currentTimeMillis();
+                    return planReplacements(plan.getCandidates(), budget)
+                            .then(Mono.fromCallable(bind(budget, () ->
+                                            routeService.completePlan(plan, System.currentTimeMillis() - replaceStart)))
+                                    .subscribeOn(Schedulers.boundedElastic()));
+                });
+    }
+
+    @Override
+    public Mono<CachedRoute> getCachedRoutes(String cacheKey, RouteRequest request) {
+        CachedRoute local = routeCacheService.getLocal(cacheKey);
+        if (local != null) {
+            refreshIfNeeded(cacheKey, request, local);
+            return Mono.just(local);
+        }
+        return readRemote(cacheKey)
+                .doOnNext(entry -> refreshIfNeeded(cacheKey, request, entry))
+                .switchIfEmpty(Mono.defer(() -> load(cacheKey, request, null)));
+    }
+
+    @Override
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("computed", computed.sum());
+        stats.put("coalesced", coalesced.sum());
+        stats.put("inFlight", (long) inFlight.size());
+        stats.put("rawHits", rawHits.sum());
+        stats.put("rawMisses", rawMisses.sum());
+        stats.put("otpSkipped", otpSkipped.sum());
+        stats.put("errors", errors.sum());
+        return stats;
+    }
+
+    /**
+     * 请求 Google computeRoutes (WebClient，非阻塞)，返回原始响应体
+     * 与阻塞流程一样先检查请求预算，并经过 google 隔离舱：许可在 boundedElastic 上获取 (可能排队等待)，
+     * 请求结束、失败或被取消时释放
+     */
+    private Mono<byte[]> fetchResponse(RouteRequest request, RequestBudget budget) {
+        return Mono.defer(() -> {
+            if (budget != null && budget.remaining() <= 0) {
+                return Mono.error(new DeadlineExceededException("google"));
+            }
+            String requestBody;
+            try {
+                requestBody = routeService.buildRequestBody(request);
+            } catch (JsonProcessingException e) {
+                return Mono.error(e);
+            }
+            AdaptiveBulkhead bulkhead = bulkheadRegistry.get("google");
+            long start = System.currentTimeMillis();
+            return Mono.usingWhen(
+                            Mono.fromCallable(bulkhead::acquirePermit).subscribeOn(Schedulers.boundedElastic()),
+                            acquiredAt -> webClient.post()
+                                    .uri(RouteServiceImpl.COMPUTE_ROUTES_URL)
+                                    .headers(headers -> headers.addAll(routeService.googleHeaders()))
+                                    .bodyValue(requestBody)
+                                    .retrieve()
+                                    .bodyToMono(byte[].class),
+                            acquiredAt -> Mono.fromRunnable(() -> bulkhead.releasePermit(acquiredAt, null)),
+                            (acquiredAt, e) -> Mono.fromRunnable(() -> bulkhead.releasePermit(acquiredAt, e)),
+                            acquiredAt -> Mono.fromRunnable(() ->
+                                    bulkhead.releasePermit(acquiredAt, new CancellationException())))
+                    .doOnNext(response -> logger.info("Time taken to fetch routes (reactive): "
+                            + (System.currentTimeMillis() - start) + " ms"))
+                    .onErrorMap(e -> {
+                        logger.severe("Error calling Google Routes API: " + e.getMessage());
+                        return new Exception("Error calling Google Routes API", e);
+                    });
+        });
+    }
+
+    /**
+     * 并发规划所有待替换路段
+     * OtpApiClient 只提供阻塞调用，放在 boundedElastic 上执行，不占用事件循环线程；
+     * 超时或失败的路段改用估算的驾驶步骤
+     */
+    private Mono<Void> planReplacements(List<RouteServiceImpl.ReplacementCandidate> candidates, RequestBudget budget) {
+        if (candidates.isEmpty()) {
+            return Mono.empty();
+        }
+        // 不同备选路线中相同的站点对只规划一次
+        List<List<RouteServiceImpl.ReplacementCandidate>> groups =
+                List.copyOf(RouteServiceImpl.groupByStopPair(candidates).values());
+
+        // 只使用剩余的请求预算 (扣除保留部分)，不足时整体跳过，改用估算的驾驶步骤
+        if (budget != null && budget.remaining() < otpReplaceMinBudgetMs + budgetReserveMs) {
+            logger.info("请求预算不足，跳过 OTP 路径替换 - 待替换路段: " + candidates.size());
+            return Mono.fromCallable(bind(budget, () -> {
+                        groups.forEach(routeService::assignEstimate);
+                        return true;
+                    }))
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .then();
+        }
+        long timeoutMs = budget == null ? otpReplaceTimeoutMs
+                : Math.min(otpReplaceTimeoutMs, budget.remaining() - budgetReserveMs);
+
+        return Flux.fromIterable(groups)
+                .flatMap(group -> Mono.fromCallable(bind(budget, () ->
+                                        routeService.changeStep(group.get(0).getStartStop(), group.get(0).getEndStop())))
+                                .subscribeOn(Schedulers.boundedElastic())
+                                .doOnNext(steps -> RouteServiceImpl.assignReplacement(group, steps))
+                                .onErrorResume(e -> {
+                                    logger.warning("OTP 路径替换失败，改用估算的驾驶步骤: " + group.get(0).getStartStop().getName()
+                                            + " -> " + group.get(0).getEndStop().getName() + " - " + e);
+                                    return Mono.fromCallable(bind(budget, () -> {
+                                        routeService.assignEstimate(group);
+                                        return true;
+                                    })).then(Mono.empty());
+                                }),
+                        Math.max(1, otpReplaceMaxParallelism))
+                .then()
+                .timeout(Duration.ofMillis(timeoutMs), Mono.fromCallable(bind(budget, () -> {
+                            otpSkipped.increment();
+                            logger.warning("OTP 路径替换超时，未完成的路段改用估算的驾驶步骤");
+                            // 与阻塞路径一致：没有结果的站点对改用估算，估算也不可用时保留原公交步骤
+                            groups.stream()
+                                    .filter(group -> group.get(0).getReplacementSteps() == null)
+                                    .forEach(routeService::assignEstimate);
+                            return true;
+                        }))
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .then());
+    }
+
+    /**
+     * 从 Redis 读取条目 (GET 与 PTTL 走同一连接)，解码后回填 L1
+     */
+    private Mono<CachedRoute> readRemote(String cacheKey) {
+        return Mono.zip(
+                        reactiveRouteRedisTemplate.opsForValue().get(cacheKey).defaultIfEmpty(EMPTY),
+                        reactiveRouteRedisTemplate.getExpire(cacheKey)
+                                .map(ttl -> ttl.isZero() || ttl.isNegative() ? -1L : ttl.toMillis())
+                                .defaultIfEmpty(-1L))
+                .flatMap(result -> Mono.justOrEmpty(routeCacheService.decode(cacheKey,
+                        result.getT1().length == 0 ? null : result.getT1(), result.getT2())))
+                .onErrorResume(e -> {
+                    errors.increment();
+                    logger.warning("读取路线缓存失败 - 缓存键: " + cacheKey + " - 错误: " + e.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * 计算路线并写入缓存，相同缓存键同时只有一次计算
+     *
+     * @param previous 当前已有的条目 (后台刷新时)，未命中时为 null
+     */
+    private Mono<CachedRoute> load(String cacheKey, RouteRequest request, CachedRoute previous) {
+        Mono<CachedRoute> existing = inFlight.get(cacheKey);
+        if (existing != null) {
+            coalesced.increment();
+            return existing;
+        }
+        Mono<CachedRoute> created = Mono.defer(() -> {
+                    long start = System.currentTimeMillis();
+                    // 后台刷新与阻塞流程一样不限时
+                    Mono<RouteResponse> routes = previous == null
+                            ? computeRoutes(request, RequestBudget.of(requestBudgetMs))
+                            : computeRoutes(request, null);
+                    return routes.map(response ->
+                            routeCacheService.createEntry(response, System.currentTimeMillis() - start, previous));
+                })
+                .doOnNext(entry -> {
+                    computed.increment();
+                    write(cacheKey, request, entry, previous != null);
+                })
+                .doFinally(signal -> inFlight.remove(cacheKey))
+                .cache();
+        existing = inFlight.putIfAbsent(cacheKey, created);
+        if (existing != null) {
+            coalesced.increment();
+            return existing;
+        }
+        return created;
+    }
+
+    /**
+     * 写入 L1，并在后台写入 Redis 和起终点空间索引 (不阻塞响应)
+     *
+     * @param replacing 是否替换已有的条目 (后台刷新)，写入后通知其他节点清除旧的 L1
+     */
+    private void write(String cacheKey, RouteRequest request, CachedRoute entry, boolean replacing) {
+        long ttlMillis = entry.getHardExpireAt() - System.currentTimeMillis();
+        if (ttlMillis <= 0) {
+            return;
+        }
+        routeCacheService.putLocal(cacheKey, entry);
+        reactiveRouteRedisTemplate.opsForValue()
+                .set(cacheKey, routeCacheService.encode(entry), Duration.ofMillis(ttlMillis))
+                .subscribe(ok -> {
+                            logger.info("路径已缓存 (reactive) - 缓存键: " + cacheKey);
+                            if (replacing) {
+                                Mono.fromRunnable(() -> routeCacheService.publishInvalidation(cacheKey))
+                                        .subscribeOn(Schedulers.boundedElastic())
+                                        .subscribe();
+                            }
+                        },
+                        e -> {
+                            errors.increment();
+                            logger.warning("写入路线缓存失败 - 缓存键: " + cacheKey + " - 错误: " + e.getMessage());
+                        });
+        // 空间索引使用阻塞的 RedisTemplate
+        Mono.fromRunnable(() -> routeSpatialIndexService.index(cacheKey, request, entry))
+                .subscribeOn(Schedulers.boundedElastic())
+                .subscribe(null, e -> logger.warning("写入空间索引失败 - 缓存键: " + cacheKey + " - 错误: " + e.getMessage()));
+    }
+
+    /**
+     * 在执行线程上绑定请求预算，预算为 null 时不限时
+     */
+    private static <T> Callable<T> bind(RequestBudget budget, Callable<T> task) {
+        if (budget == null) {
+            return task;
+        }
+        return () -> {
+            try (RequestBudget.Scope ignored = budget.open()) {
+                return task.call();
+            }
+        };
+    }
+
+    private ComputeRoutesResponse decode(byte[] body) {
+        try {
+            return ComputeRoutesDecoder.decode(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to parse Google Routes API response", e);
+        }
+    }
+
+    /**
+     * 缓存 Google 返回的原始文本，只缓存有效的响应
+     */
+    private void writeRaw(String rawKey, byte[] body, ComputeRoutesResponse response) {
+        if (response.routes() == null) {
+            return;
+        }
+        reactiveStringRedisTemplate.opsForValue()
+                .set(rawKey, new String(body, StandardCharsets.UTF_8), Duration.ofSeconds(rawCacheTtlSeconds))
+                .subscribe(null, e -> {
+                    errors.increment();
+                    logger.warning("写入原始响应缓存失败 - 缓存键: " + rawKey + " - 错误: " + e.getMessage());
+                });
+    }
+
+    /**
+     * 命中的条目需要刷新时在后台重新计算，同一个缓存键同时只会有一次后台刷新
+     */
+    private void refreshIfNeeded(String cacheKey, RouteRequest request, CachedRoute cached) {
+        if (!routeCacheService.shouldRefresh(cached) || !refreshingKeys.add(cacheKey)) {
+            return;
+        }
+        // 其他节点可能已经刷新过，先确认 Redis 中的条目
+        readRemote(cacheKey)
+                .filter(latest -> latest.getCreatedAt() > cached.getCreatedAt())
+                .switchIfEmpty(Mono.defer(() -> load(cacheKey, request, cached)))
+                .doFinally(signal -> refreshingKeys.remove(cacheKey))
+                .subscribe(null, e -> logger.warning("后台刷新路线失败 - 缓存键: " + cacheKey + " - 错误: " + e.getMessage()));
+    }
+}
@@ -0,0 +1,628 @@
+package com.example.google_backend.service.impl;
+
+import com.example.google_backend.common.concurrent.BulkheadFullException;
+import com.example.google_backend.common.concurrent.BulkheadRegistry;
+import com.example.google_backend.common.redis.codec.CachedRouteBytesCodec;
+import com.example.google_backend.common.redis.service.RedisService;
+import com.example.google_backend.model.CachedRoute;
+import com.example.google_backend.model.RouteResponse;
+import com.example.google_backend.service.AsyncCacheService;
+import com.example.google_backend.service.RouteCacheService;
+import com.example.google_backend.service.RouteService;
+import com.example.google_backend.utils.generator.CacheKeyGenerator;
+import com.example.google_backend.utils.route.RouteFingerprint;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.HexFormat;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+@SuppressWarnings("unchecked")
+@Service
+public class RouteCacheServiceImpl implements RouteCacheService {
+
+    private static final Logger logger = Logger.getLogger(RouteCacheServiceImpl.class.getName());
+
+    // 跨节点 L1 失效通知频道
+    private static final String INVALIDATION_CHANNEL = "route:cache:invalidate";
+
+    // 预序列化模式下预先计算的排序方式，与 /sorted 接口支持的排序方式一致
+    private static final List<String> SORT_TYPES = List.of("fewestTransfers", "lowestPrice", "shortestDuration", "shortestDistance");
+
+    private static final byte[] ROUTES_PREFIX = "{\"routes\":[".getBytes(StandardCharsets.UTF_8);
+
+    @Resource
+    private RedisService redisService;
+
+    @Resource
+    private AsyncCacheService asyncCacheService;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @Resource
+    private RouteService routeService;
+
+    @Resource
+    private BulkheadRegistry bulkheadRegistry;
+
+    // 与 Spring MVC 输出响应时使用同一个 ObjectMapper，保证预序列化的字节与直接返回对象一致
+    @Resource
+    private ObjectMapper objectMapper;
+
+    // 缓存模式：object 缓存 RouteResponse 对象；bytes 缓存返回给客户端的 JSON 字节，命中时直接写出
+    @Value("${route.cache.mode:object}")
+    private String cacheMode;
+
+    // L1 总权重上限 (按路线步骤数计权)
+    @Value("${route.cache.l1.max-weight:20000}")
+    private long l1MaxWeight;
+
+    // L1 条目最长有效期 (秒)，与路线缓存有效期一致
+    @Value("${route.cache.l1.max-ttl-seconds:900}")
+    private long l1MaxTtlSeconds;
+
+    // 软过期时间 (秒)，超过后返回旧值并在后台刷新
+    @Value("${route.cache.soft-ttl-seconds:600}")
+    private long softTtlSeconds;
+
+    // 硬过期时间 (秒)，即 Redis 有效期
+    @Value("${route.cache.hard-ttl-seconds:900}")
+    private long hardTtlSeconds;
+
+    // 按最早发车时间计算有效期
+    @Value("${route.cache.ttl.departure-aware:true}")
+    private boolean departureAwareTtl;
+
+    // 有效期下限 (秒)
+    @Value("${route.cache.ttl.min-seconds:120}")
+    private long minTtlSeconds;
+
+    // 有效期上限 (秒)，如夜间班次很久以后才发车
+    @Value("${route.cache.ttl.max-seconds:3600}")
+    private long maxTtlSeconds;
+
+    // 内容变化频率的指数加权系数
+    @Value("${route.cache.ttl.volatility-alpha:0.5}")
+    private double volatilityAlpha;
+
+    // 内容每次都变化时有效期最多缩短的比例
+    @Value("${route.cache.ttl.volatility-max-reduction:0.75}")
+    private double volatilityMaxReduction;
+
+    // 软过期时间的随机抖动比例，避免同时写入的条目同时过期
+    @Value("${route.cache.ttl-jitter:0.1}")
+    private double ttlJitter;
+
+    // XFetch 提前刷新系数，越大越早刷新，0 表示关闭
+    @Value("${route.cache.xfetch-beta:1.0}")
+    private double xfetchBeta;
+
+    // 当前节点标识，用于忽略自己发出的失效通知
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private Cache<String, L1Entry> l1;
+
+    private final LongAdder l2Hits = new LongAdder();
+    private final LongAdder l2Misses = new LongAdder();
+    private final LongAdder l2Rejected = new LongAdder();
+    private final LongAdder invalidationsSent = new LongAdder();
+    private final LongAdder invalidationsReceived = new LongAdder();
+    private final LongAdder staleServed = new LongAdder();
+    private final LongAdder earlyRefreshes = new LongAdder();
+
+    // 按缓存键量化级别统计的命中/未命中次数 [hits, misses]
+    private final Map<String, LongAdder[]> levelCounters = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        // Caffeine 默认使用 W-TinyLFU 准入策略；每个条目的有效期跟随其在 Redis 中的剩余有效期
+        l1 = Caffeine.newBuilder()
+                .maximumWeight(l1MaxWeight)
+                .weigher((String key, L1Entry entry) -> entry.weight)
+                .expireAfter(new Expiry<String, L1Entry>() {
+                    @Override
+                    public long expireAfterCreate(String key, L1Entry entry, long currentTime) {
+                        return entry.ttlNanos;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, L1Entry entry, long currentTime, long currentDuration) {
+                        return entry.ttlNanos;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, L1Entry entry, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+
+        redisMessageListenerContainer.addMessageListener(new InvalidationListener(), new ChannelTopic(INVALIDATION_CHANNEL));
+    }
+
+    @Override
+    public CachedRoute get(String cacheKey) {
+        CachedRoute entry = peek(cacheKey);
+        recordLevel(cacheKey, entry != null);
+        return entry;
+    }
+
+    @Override
+    public CachedRoute peek(String cacheKey) {
+        L1Entry l1Entry = l1.getIfPresent(cacheKey);
+        return l1Entry != null ? l1Entry.entry : reload(cacheKey);
+    }
+
+    @Override
+    public CachedRoute reload(String cacheKey) {
+        // L2: GET 与 PTTL 在同一次往返中完成，值按原始字节读取后再按格式解码
+        List<Object> results;
+        try {
+            results = bulkheadRegistry.get("redis").execute(() ->
+                    redisService.redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                        byte[] rawKey = cacheKey.getBytes(StandardCharsets.UTF_8);
+                        connection.stringCommands().get(rawKey);
+                        connection.keyCommands().pTtl(rawKey);
+                        return null;
+                    }, RedisSerializer.byteArray()));
+        } catch (BulkheadFullException e) {
+            // Redis 并发已满：按未命中处理，不排队等待
+            l2Rejected.increment();
+            return null;
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+
+        byte[] raw = results.isEmpty() ? null : (byte[]) results.get(0);
+        long remainingMillis = results.size() > 1 && results.get(1) instanceof Long ttl ? ttl : -1L;
+        return decode(cacheKey, raw, remainingMillis);
+    }
+
+    @Override
+    public CachedRoute getLocal(String cacheKey) {
+        L1Entry l1Entry = l1.getIfPresent(cacheKey);
+        return l1Entry != null ? l1Entry.entry : null;
+    }
+
+    @Override
+    public CachedRoute decode(String cacheKey, byte[] raw, long remainingMillis) {
+        Object value;
+        if (CachedRouteBytesCodec.isEncoded(raw)) {
+            value = CachedRouteBytesCodec.decode(raw);
+        } else {
+            value = raw == null ? null : redisService.redisTemplate.getValueSerializer().deserialize(raw);
+        }
+
+        CachedRoute entry;
+        if (value instanceof CachedRoute cachedRoute) {
+            entry = cachedRoute;
+        } else if (value instanceof RouteResponse response) {
+            // 兼容旧格式：没有软过期信息，视为在 Redis 有效期内一直新鲜
+            long now = System.currentTimeMillis();
+            long expireAt = remainingMillis < 0 ? now + TimeUnit.SECONDS.toMillis(hardTtlSeconds) : now + remainingMillis;
+            entry = new CachedRoute(response, now, expireAt, expireAt, 0L);
+        } else {
+            l2Misses.increment();
+            return null;
+        }
+        l2Hits.increment();
+
+        putL1(cacheKey, entry, remainingMillis);
+        return entry;
+    }
+
+    @Override
+    public CachedRoute createEntry(RouteResponse response, long computeMillis, CachedRoute previous) {
+        long now = System.currentTimeMillis();
+        CachedRoute entry = new CachedRoute(response, now, 0L, 0L, computeMillis);
+        if ("bytes".equalsIgnoreCase(cacheMode)) {
+            serializeBody(entry, response);
+        }
+
+        // 与上一个条目比较路线结构 (不含时间)，更新变化频率
+        entry.setFingerprint(RouteFingerprint.of(response));
+        if (previous != null && previous.getFingerprint() != 0L) {
+            double changed = previous.getFingerprint() != entry.getFingerprint() ? 1.0 : 0.0;
+            entry.setVolatility(volatilityAlpha * changed + (1 - volatilityAlpha) * previous.getVolatility());
+        }
+
+        long hardTtlMillis = hardTtlMillis(response, now, entry.getVolatility());
+        // 软过期时间与硬过期时间保持配置中的比例
+        double softRatio = Math.min(1.0, (double) softTtlSeconds / hardTtlSeconds);
+        double jitter = ttlJitter <= 0 ? 0 : ttlJitter * (2 * ThreadLocalRandom.current().nextDouble() - 1);
+        long softTtlMillis = (long) (hardTtlMillis * softRatio * (1 + jitter));
+        entry.setSoftExpireAt(now + Math.min(softTtlMillis, hardTtlMillis));
+        entry.setHardExpireAt(now + hardTtlMillis);
+        return entry;
+    }
+
+    @Override
+    public byte[] encode(CachedRoute entry) {
+        if (entry.getBody() != null) {
+            return CachedRouteBytesCodec.encode(entry);
+        }
+        return ((RedisSerializer<Object>) redisService.redisTemplate.getValueSerializer()).serialize(entry);
+    }
+
+    @Override
+    public byte[] sortedBody(CachedRoute entry, String sortType) {
+        int[] order = entry.getSortOrders() == null ? null : entry.getSortOrders().get(sortType);
+        if (order == null) {
+            throw new IllegalArgumentException("Invalid sort type: " + sortType);
+        }
+        byte[] body = entry.getBody();
+        int[] offsets = entry.getRouteOffsets();
+        int length = 2 + Math.max(0, order.length - 1);
+        for (int index : order) {
+            length += offsets[2 * index + 1] - offsets[2 * index];
+        }
+
+        // 按排序后的下标拼接各条路线的字节片段
+        byte[] sorted = new byte[length];
+        int pos = 0;
+        sorted[pos++] = '[';
+        for (int i = 0; i < order.length; i++) {
+            if (i > 0) {
+                sorted[pos++] = ',';
+            }
+            int start = offsets[2 * order[i]];
+            int end = offsets[2 * order[i] + 1];
+            System.arraycopy(body, start, sorted, pos, end - start);
+            pos += end - start;
+        }
+        sorted[pos] = ']';
+        return sorted;
+    }
+
+    @Override
+    public void put(String cacheKey, CachedRoute entry) {
+        long ttlMillis = entry.getHardExpireAt() - System.currentTimeMillis();
+        if (ttlMillis <= 0) {
+            return;
+        }
+        putL1(cacheKey, entry, ttlMillis);
+        // 覆盖了已有的条目时通知其他节点清除旧的 L1
+        asyncCacheService.replaceBytesAsync(cacheKey, encode(entry), ttlMillis, TimeUnit.MILLISECONDS)
+                .thenAccept(replaced -> {
+                    if (replaced) {
+                        publishInvalidation(cacheKey);
+                    }
+                });
+    }
+
+    @Override
+    public void putLocal(String cacheKey, CachedRoute entry) {
+        long ttlMillis = entry.getHardExpireAt() - System.currentTimeMillis();
+        if (ttlMillis > 0) {
+            putL1(cacheKey, entry, ttlMillis);
+        }
+    }
+
+    @Override
+    public boolean shouldRefresh(CachedRoute entry) {
+        long now = System.currentTimeMillis();
+        if (now >= entry.getSoftExpireAt()) {
+            staleServed.increment();
+            return true;
+        }
+        // XFetch: 计算越慢、越接近软过期，越可能提前刷新
+        if (xfetchBeta > 0 && entry.getComputeMillis() > 0) {
+            double random = ThreadLocalRandom.current().nextDouble();
+            double gap = -entry.getComputeMillis() * xfetchBeta * Math.log(random);
+            if (now + gap >= entry.getSoftExpireAt()) {
+                earlyRefreshes.increment();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void invalidate(String cacheKey) {
+        l1.invalidate(cacheKey);
+        redisService.deleteObject(cacheKey);
+        stringRedisTemplate.convertAndSend(INVALIDATION_CHANNEL, nodeId + "|" + cacheKey);
+        invalidationsSent.increment();
+    }
+
+    @Override
+    public void publishInvalidation(String cacheKey) {
+        try {
+            stringRedisTemplate.convertAndSend(INVALIDATION_CHANNEL, nodeId + "|" + cacheKey);
+            invalidationsSent.increment();
+        } catch (RuntimeException e) {
+            logger.warning("发送路线缓存失效通知失败 - 缓存键: " + cacheKey + " - 错误: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public Map<String, Map<String, Long>> getStats() {
+        CacheStats l1Stats = l1.stats();
+        Map<String, Long> l1Map = new LinkedHashMap<>();
+        l1Map.put("hits", l1Stats.hitCount());
+        l1Map.put("misses", l1Stats.missCount());
+        l1Map.put("evictions", l1Stats.evictionCount());
+        l1Map.put("size", l1.estimatedSize());
+
+        Map<String, Long> l2Map = new LinkedHashMap<>();
+        l2Map.put("hits", l2Hits.sum());
+        l2Map.put("misses", l2Misses.sum());
+        l2Map.put("rejected", l2Rejected.sum());
+        l2Map.put("invalidationsSent", invalidationsSent.sum());
+        l2Map.put("invalidationsReceived", invalidationsReceived.sum());
+
+        Map<String, Long> refreshMap = new LinkedHashMap<>();
+        refreshMap.put("staleServed", staleServed.sum());
+        refreshMap.put("earlyRefreshes", earlyRefreshes.sum());
+
+        Map<String, Map<String, Long>> stats = new LinkedHashMap<>();
+        stats.put("l1", l1Map);
+        stats.put("l2", l2Map);
+        stats.put("refresh", refreshMap);
+
+        // 各量化级别的命中率，用于调整量化精度
+        for (Map.Entry<String, LongAdder[]> level : levelCounters.entrySet()) {
+            Map<String, Long> levelMap = new LinkedHashMap<>();
+            levelMap.put("hits", level.getValue()[0].sum());
+            levelMap.put("misses", level.getValue()[1].sum());
+            stats.put("level:" + level.getKey(), levelMap);
+        }
+        return stats;
+    }
+
+    private void recordLevel(String cacheKey, boolean hit) {
+        LongAdder[] counters = levelCounters.computeIfAbsent(CacheKeyGenerator.levelOf(cacheKey),
+                level -> new LongAdder[] { new LongAdder(), new LongAdder() });
+        counters[hit ? 0 : 1].increment();
+    }
+
+    /**
+     * 写入 L1，有效期不超过 L2 剩余有效期和 L1 上限
+     *
+     * @param cacheKey 路线缓存键
+     * @param entry 缓存条目
+     * @param remainingMillis L2 剩余有效期 (ms)，小于 0 表示未知或永久
+     */
+    private void putL1(String cacheKey, CachedRoute entry, long remainingMillis) {
+        long maxTtlMillis = TimeUnit.SECONDS.toMillis(l1MaxTtlSeconds);
+        long ttlMillis = remainingMillis < 0 ? maxTtlMillis : Math.min(remainingMillis, maxTtlMillis);
+        if (ttlMillis <= 0) {
+            return;
+        }
+        l1.put(cacheKey, new L1Entry(entry, TimeUnit.MILLISECONDS.toNanos(ttlMillis), weigh(entry)));
+    }
+
+    /**
+     * 计算硬过期时间 (ms)
+     * 含公共交通的路线在最早一班车发车时失效 (夹在上下限之间)，其余路线使用配置的固定有效期；
+     * 内容经常变化的键按变化频率缩短有效期；跳过了优化的降级结果使用有效期下限
+     */
+    private long hardTtlMillis(RouteResponse response, long now, double volatility) {
+        long minMillis = TimeUnit.SECONDS.toMillis(minTtlSeconds);
+        long maxMillis = TimeUnit.SECONDS.toMillis(maxTtlSeconds);
+        long ttlMillis = TimeUnit.SECONDS.toMillis(hardTtlSeconds);
+        // 因请求预算不足跳过了部分优化的结果只短暂缓存，尽快由完整结果替换
+        if (response != null && response.getDroppedOptimizations() != null
+                && !response.getDroppedOptimizations().isEmpty()) {
+            return minMillis;
+        }
+        if (departureAwareTtl) {
+            long earliestDeparture = earliestDeparture(response);
+            if (earliestDeparture > 0) {
+                ttlMillis = Math.max(minMillis, Math.min(maxMillis, earliestDeparture - now));
+            }
+        }
+        if (volatility > 0 && volatilityMaxReduction > 0) {
+            ttlMillis = Math.max(minMillis, (long) (ttlMillis * (1 - volatility * volatilityMaxReduction)));
+        }
+        return ttlMillis;
+    }
+
+    /**
+     * 路线中最早的公共交通发车时间 (epoch ms)，没有发车时间时返回 -1
+     */
+    private static long earliestDeparture(RouteResponse response) {
+        long earliest = -1L;
+        if (response == null || response.getRoutes() == null) {
+            return earliest;
+        }
+        for (RouteResponse.RouteDetail route : response.getRoutes()) {
+            if (route.getLegs() == null) {
+                continue;
+            }
+            for (RouteResponse.LegDetail leg : route.getLegs()) {
+                if (leg.getSteps() == null) {
+                    continue;
+                }
+                for (RouteResponse.StepDetail step : leg.getSteps()) {
+                    RouteResponse.StepDetail.TransitDetails details = step.getTransitDetails();
+                    if (details == null || details.getStopDetails() == null
+                            || details.getStopDetails().getDepartureTime() == null) {
+                        continue;
+                    }
+                    try {
+                        long departure = Instant.parse(details.getStopDetails().getDepartureTime()).toEpochMilli();
+                        if (earliest < 0 || departure < earliest) {
+                            earliest = departure;
+                        }
+                    } catch (DateTimeParseException e) {
+                        logger.fine("无法解析发车时间: " + details.getStopDetails().getDepartureTime());
+                    }
+                }
+            }
+        }
+        return earliest;
+    }
+
+    /**
+     * 生成预序列化的响应体，并记录每条路线在响应体中的位置和各排序方式下的顺序
+     * 响应体与 Spring MVC 直接输出 RouteResponse 的结果一致 (routes 字段在最前)
+     *
+     * @param entry 缓存条目，写入 body 后清空 response
+     * @param response 路线响应
+     */
+    private void serializeBody(CachedRoute entry, RouteResponse response) {
+        List<RouteResponse.RouteDetail> routes = response.getRoutes() == null ? List.of() : response.getRoutes();
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(8192);
+            int[] offsets = new int[routes.size() * 2];
+            out.write(ROUTES_PREFIX);
+            for (int i = 0; i < routes.size(); i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                offsets[2 * i] = out.size();
+                out.write(objectMapper.writeValueAsBytes(routes.get(i)));
+                offsets[2 * i + 1] = out.size();
+            }
+            out.write(']');
+
+            // 其余字段 (timings 等)
+            ObjectNode rest = objectMapper.valueToTree(response);
+            rest.remove("routes");
+            Iterator<Map.Entry<String, JsonNode>> fields = rest.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                out.write(',');
+                out.write(objectMapper.writeValueAsBytes(field.getKey()));
+                out.write(':');
+                out.write(objectMapper.writeValueAsBytes(field.getValue()));
+            }
+            out.write('}');
+
+            byte[] body = out.toByteArray();
+            entry.setBody(body);
+            entry.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            entry.setContentHash(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(body)));
+            entry.setRouteOffsets(offsets);
+            entry.setSortOrders(computeSortOrders(routes));
+            entry.setResponse(null);
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            // 预序列化失败时退回对象缓存
+            logger.warning("路线预序列化失败，改为缓存对象 - 错误: " + e.getMessage());
+            entry.setBody(null);
+        }
+    }
+
+    /**
+     * 预先计算各排序方式下的路线下标顺序，命中时直接按下标拼接字节片段
+     */
+    private Map<String, int[]> computeSortOrders(List<RouteResponse.RouteDetail> routes) {
+        Map<String, int[]> sortOrders = new LinkedHashMap<>();
+        if (routes.isEmpty()) {
+            return sortOrders;
+        }
+        Map<RouteResponse.RouteDetail, Integer> indexes = new IdentityHashMap<>();
+        for (int i = 0; i < routes.size(); i++) {
+            indexes.put(routes.get(i), i);
+        }
+        for (String sortType : SORT_TYPES) {
+            try {
+                List<RouteResponse.RouteDetail> sorted = routeService.sortRoutes(routes, sortType);
+                int[] order = new int[sorted.size()];
+                for (int i = 0; i < order.length; i++) {
+                    order[i] = indexes.get(sorted.get(i));
+                }
+                sortOrders.put(sortType, order);
+            } catch (RuntimeException e) {
+                // 与 /sorted 接口一致：无法排序时该排序方式返回 400
+                logger.fine("路线无法按 " + sortType + " 排序 - 错误: " + e.getMessage());
+            }
+        }
+        return sortOrders;
+    }
+
+    private static int weigh(CachedRoute entry) {
+        if (entry.getBody() != null) {
+            // 预序列化条目按响应体大小计权 (每 KB 计 1)
+            return 1 + entry.getBody().length / 1024;
+        }
+        RouteResponse response = entry.getResponse();
+        int weight = 1;
+        if (response != null && response.getRoutes() != null) {
+            for (RouteResponse.RouteDetail route : response.getRoutes()) {
+                if (route.getLegs() == null) {
+                    continue;
+                }
+                for (RouteResponse.LegDetail leg : route.getLegs()) {
+                    weight += leg.getSteps() == null ? 0 : leg.getSteps().size();
+                }
+            }
+        }
+        return weight;
+    }
+
+    private static final class L1Entry {
+        private final CachedRoute entry;
+        private final long ttlNanos;
+        private final int weight;
+
+        private L1Entry(CachedRoute entry, long ttlNanos, int weight) {
+            this.entry = entry;
+            this.ttlNanos = ttlNanos;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * 接收其他节点的失效通知并清除本地 L1
+     */
+    private final class InvalidationListener implements MessageListener {
+        @Override
+        public void onMessage(Message message, byte[] pattern) {
+            String body = RedisSerializer.string().deserialize(message.getBody());
+            if (body == null) {
+                return;
+            }
+            int separator = body.indexOf('|');
+            if (separator < 0 || body.substring(0, separator).equals(nodeId)) {
+                return;
+            }
+            String cacheKey = body.substring(separator + 1);
+            l1.invalidate(cacheKey);
+            invalidationsReceived.increment();
+            logger.fine("收到路线缓存失效通知 - 缓存键: " + cacheKey);
+        }
+    }
+}
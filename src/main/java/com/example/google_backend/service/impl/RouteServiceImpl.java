@@ -1,16 +1,26 @@
 package com.example.google_backend.service.impl;
 
+import com.example.google_backend.common.concurrent.BulkheadFullException;
+import com.example.google_backend.common.concurrent.BulkheadRegistry;
+import com.example.google_backend.common.concurrent.RequestBudget;
+import com.example.google_backend.common.google.ComputeRoutesDecoder;
+import com.example.google_backend.common.redis.codec.RouteBinaryCodec;
+import com.example.google_backend.model.ComputeRoutesResponse;
 import com.example.google_backend.model.RouteRequest;
 import com.example.google_backend.model.RouteResponse;
 import com.example.google_backend.service.OTPService;
+import com.example.google_backend.service.RawRouteCacheService;
 import com.example.google_backend.service.RouteService;
 import com.example.google_backend.model.RouteRequestPayload;
 import com.example.google_backend.utils.TimingUtils;
 import com.example.google_backend.utils.route.CrossSeaRouteChecker;
 import com.example.google_backend.utils.route.CongestionStationChecker;
+import com.example.google_backend.utils.route.DriveTimeEstimator;
+import com.example.google_backend.utils.route.GoogleStepMapper;
 import com.example.google_backend.utils.route.LongDistanceExitChecker;
+import com.example.google_backend.utils.route.StepEngine;
 import com.example.google_backend.utils.route.TaxiHotSpotChecker;
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.annotation.Resource;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -19,10 +29,16 @@ import org.springframework.http.*;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
-import java.io.IOException;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
@@ -41,38 +57,65 @@ public class RouteServiceImpl implements RouteService {
     @Resource
     private LongDistanceExitChecker longDistanceExitChecker;
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    @Resource
+    private DriveTimeEstimator driveTimeEstimator;
+
+    @Resource
+    private RawRouteCacheService rawRouteCacheService;
+
+    // Google Routes 专用的连接池
+    @Resource(name = "googleRestTemplate")
+    private RestTemplate restTemplate;
+
+    @Resource
+    private BulkheadRegistry bulkheadRegistry;
+
     private final ObjectMapper objectMapper = new ObjectMapper();
     private final Logger logger = Logger.getLogger(RouteServiceImpl.class.getName());
 
     private static final long MAX_WAIT_TIME_SECONDS = 600;
 
+    static final String COMPUTE_ROUTES_URL = "https://routes.googleapis.com/directions/v2:computeRoutes";
+    private static final String FIELD_MASK = "routes.distanceMeters,routes.duration,routes.polyline.encodedPolyline,routes.legs";
 
+    // 单个请求内同时进行的 OTP 路径规划数上限
+    @Value("${otp.replace.max-parallelism:4}")
+    private int otpReplaceMaxParallelism;
 
-    public JsonNode getResponse(RouteRequest request) throws Exception {
-        // Step 1: Prepare the computeRoutes API request URL
-        String computeRoutesUrl = "https://routes.googleapis.com/directions/v2:computeRoutes";
+    // 单个请求内所有 OTP 路径规划的总超时 (ms)
+    @Value("${otp.replace.timeout-ms:8000}")
+    private long otpReplaceTimeoutMs;
 
-        // Step 2: Build the request payload as per Google Routes API specifications
-        RouteRequestPayload payload = buildPayload(request);
-        payload.setComputeAlternativeRoutes(true);
+    // 剩余预算低于该值 (ms) 时跳过 OTP 路径替换
+    @Value("${otp.replace.min-budget-ms:300}")
+    private long otpReplaceMinBudgetMs;
 
-        // Convert payload to JSON
-        String requestBody = objectMapper.writeValueAsString(payload);
+    // 为缓存写入与响应输出保留的预算 (ms)，OTP 替换不会用掉这部分时间
+    @Value("${route.request.budget-reserve-ms:100}")
+    private long budgetReserveMs;
 
-        // Set up HTTP headers
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        headers.set("X-Goog-Api-Key", googleApiKey);
-        headers.set("X-Goog-FieldMask", "routes.distanceMeters,routes.duration,routes.polyline.encodedPolyline,routes.legs");
 
-        HttpEntity<String> entity = new HttpEntity<>(requestBody, headers);
+    /**
+     * 获取 Google computeRoutes 响应，优先读取原始响应缓存
+     */
+    public ComputeRoutesResponse getResponse(RouteRequest request) throws Exception {
+        return rawRouteCacheService.get(request, () -> fetchResponse(request));
+    }
+
+    /**
+     * 请求 Google computeRoutes，返回原始响应体，由 {@link ComputeRoutesDecoder} 流式解析
+     */
+    private byte[] fetchResponse(RouteRequest request) throws Exception {
+        RequestBudget.check("google");
+        // Step 1: Build the request payload and headers as per Google Routes API specifications
+        HttpEntity<String> entity = new HttpEntity<>(buildRequestBody(request), googleHeaders());
 
-        // Step 3: Call the computeRoutes API and measure the time taken
+        // Step 2: Call the computeRoutes API and measure the time taken
         Instant startTime = Instant.now();
-        ResponseEntity<JsonNode> responseEntity;
+        ResponseEntity<byte[]> responseEntity;
         try {
-            responseEntity = restTemplate.exchange(computeRoutesUrl, HttpMethod.POST, entity, JsonNode.class);
+            responseEntity = bulkheadRegistry.get("google").execute(() ->
+                    restTemplate.exchange(COMPUTE_ROUTES_URL, HttpMethod.POST, entity, byte[].class));
         } catch (Exception e) {
             logger.severe("Error calling Google Routes API: " + e.getMessage());
             throw new Exception("Error calling Google Routes API", e);
@@ -82,45 +125,28 @@ public class RouteServiceImpl implements RouteService {
         long timeElapsed = Duration.between(startTime, endTime).toMillis(); // Time in milliseconds
         logger.info("Time taken to fetch routes: " + timeElapsed + " ms");
 
-        JsonNode computeRoutesResponse = responseEntity.getBody();
-        return computeRoutesResponse;
+        return responseEntity.getBody();
     }
 
-    public RouteResponse.StepDetail setStepDetail(JsonNode stepNode){
-        RouteResponse.StepDetail stepDetail = new RouteResponse.StepDetail();
-
-        stepDetail.setInstruction(
-                stepNode.has("navigationInstruction")
-                        && stepNode.get("navigationInstruction").has("instructions")
-                        ? stepNode.get("navigationInstruction").get("instructions").asText()
-                        : "No Instruction"
-        );
-        stepDetail.setDistance(
-                stepNode.has("distanceMeters")
-                        ? stepNode.get("distanceMeters").asLong()
-                        : 0L
-        );
-        stepDetail.setDuration(
-                stepNode.has("staticDuration")
-                        ? parseDuration(stepNode.get("staticDuration").asText())
-                        : 0L
-        );
-        stepDetail.setPolyline(
-                stepNode.has("polyline") && !stepNode.get("polyline").isNull()
-                        && stepNode.get("polyline").has("encodedPolyline")
-                        ? stepNode.get("polyline").get("encodedPolyline").asText()
-                        : "No Polyline"
-        );
-        String stepTravelMode=stepNode.has("travelMode")
-                ? stepNode.get("travelMode").asText()
-                : "WALK";
-        stepDetail.setTravelMode(
-                stepTravelMode
-        );
-        return stepDetail;
-
+    /**
+     * computeRoutes 请求体 (JSON)，阻塞与响应式两种调用方式共用
+     */
+    String buildRequestBody(RouteRequest request) throws JsonProcessingException {
+        RouteRequestPayload payload = buildPayload(request);
+        payload.setComputeAlternativeRoutes(true);
+        return objectMapper.writeValueAsString(payload);
     }
 
+    /**
+     * computeRoutes 请求头 (API key 与字段掩码)
+     */
+    HttpHeaders googleHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set("X-Goog-Api-Key", googleApiKey);
+        headers.set("X-Goog-FieldMask", FIELD_MASK);
+        return headers;
+    }
 
     /**
      * Process route request and return route response
@@ -134,40 +160,59 @@ public class RouteServiceImpl implements RouteService {
      * @throws Exception when unable to retrieve route information
      */
     public RouteResponse getRoutes(RouteRequest request) throws Exception {
-        // 创建用于存储各阶段耗时的Map
-        Map<String, Long> timings = new HashMap<>();
-
         // 步骤1: 调用Google Routes API并测量时间
         Instant getResponseStart = Instant.now();
-        JsonNode computeRoutesResponse = getResponse(request);
-        Instant getResponseEnd = Instant.now();
-        long getResponseTime = Duration.between(getResponseStart, getResponseEnd).toMillis();
+        ComputeRoutesResponse computeRoutesResponse = getResponse(request);
+        long getResponseTime = Duration.between(getResponseStart, Instant.now()).toMillis();
+
+        // 步骤2: 解析响应并创建RouteResponse
+        RoutePlan plan = buildPlan(computeRoutesResponse, request, getResponseTime);
+
+        // 步骤3: 并发请求 OTP 驾驶路线，并将结果回填到对应位置
+        Instant replaceStart = Instant.now();
+        planReplacements(plan.candidates);
+        return completePlan(plan, Duration.between(replaceStart, Instant.now()).toMillis());
+    }
+
+    /**
+     * Parse the Google response into routes and collect the transit segments to replace
+     * The returned plan still holds the original transit steps; OTP results are spliced in
+     * by {@link #completePlan(RoutePlan, long)} once the candidates have been planned.
+     *
+     * @param computeRoutesResponse Decoded Google computeRoutes response
+     * @param request Original route request object
+     * @param getResponseTime Time spent fetching the Google response (ms)
+     * @return Parsed routes with their replacement candidates
+     * @throws Exception when the response contains no routes
+     */
+    RoutePlan buildPlan(ComputeRoutesResponse computeRoutesResponse, RouteRequest request, long getResponseTime) throws Exception {
+        // 创建用于存储各阶段耗时的Map
+        Map<String, Long> timings = new HashMap<>();
         timings.put("getResponseTime", getResponseTime);
 
-        if (computeRoutesResponse == null || !computeRoutesResponse.has("routes")) {
+        if (computeRoutesResponse == null || computeRoutesResponse.routes() == null) {
             throw new Exception("Unable to retrieve routes from Google Routes API.");
         }
 
-        // 步骤2: 解析响应并创建RouteResponse
         Instant processStart = Instant.now();
 
         List<RouteResponse.RouteDetail> routeDetails = new ArrayList<>();
-        int totalSteps = 0; // 用于计算处理的总步骤数
+        // 所有路线、所有 leg 中待替换的路段，统一收集后再并发请求 OTP
+        List<ReplacementCandidate> candidates = new ArrayList<>();
 
-        for (JsonNode routeNode : computeRoutesResponse.get("routes")) {
-            RouteResponse.RouteDetail routeDetail = createRouteDetail(routeNode);
+        for (ComputeRoutesResponse.Route route : computeRoutesResponse.routes()) {
+            RouteResponse.RouteDetail routeDetail = createRouteDetail(route);
             List<RouteResponse.LegDetail> legs = new ArrayList<>();
 
-            if (routeNode.has("legs") && !routeNode.get("legs").isNull()) {
-                for (JsonNode legNode : routeNode.get("legs")) {
-                    RouteResponse.LegDetail legDetail = createLegDetail(legNode, request);
+            if (route.legs() != null) {
+                for (ComputeRoutesResponse.Leg leg : route.legs()) {
+                    RouteResponse.LegDetail legDetail = createLegDetail(leg, request);
 
                     // 测量处理步骤的时间
                     Instant processStepsStart = Instant.now();
-                    if (legNode.has("steps") && !legNode.get("steps").isNull()) {
-                        List<RouteResponse.StepDetail> steps = processSteps(legNode);
+                    if (leg.steps() != null) {
+                        List<RouteResponse.StepDetail> steps = processSteps(leg.steps(), candidates);
                         legDetail.setSteps(steps);
-                        totalSteps += steps.size();
                     }
                     Instant processStepsEnd = Instant.now();
                     long processStepsTime = Duration.between(processStepsStart, processStepsEnd).toMillis();
@@ -183,22 +228,53 @@ public class RouteServiceImpl implements RouteService {
             routeDetails.add(routeDetail);
         }
 
+        return new RoutePlan(routeDetails, candidates, timings, processStart);
+    }
+
+    /**
+     * Splice planned OTP steps into the routes and build the final response with timings
+     *
+     * @param plan Parsed routes whose candidates have been planned (or skipped)
+     * @param replaceTime Time spent planning the OTP replacements (ms)
+     * @return RouteResponse object containing complete routing information
+     */
+    RouteResponse completePlan(RoutePlan plan, long replaceTime) {
+        Map<String, Long> timings = plan.timings;
+        applyReplacements(plan.candidates);
+        timings.put("otpReplaceTime", replaceTime);
+        timings.put("otpReplaceCount", (long) plan.candidates.size());
+
+        int totalSteps = 0; // 用于计算处理的总步骤数
+        for (RouteResponse.RouteDetail routeDetail : plan.routeDetails) {
+            for (RouteResponse.LegDetail legDetail : routeDetail.getLegs()) {
+                if (legDetail.getSteps() != null) {
+                    totalSteps += legDetail.getSteps().size();
+                }
+            }
+        }
+
         Instant processEnd = Instant.now();
-        long totalProcessingTime = Duration.between(processStart, processEnd).toMillis();
+        long totalProcessingTime = Duration.between(plan.processStart, processEnd).toMillis();
         timings.put("totalProcessingTime", totalProcessingTime);
 
         // 添加一些额外的元数据
-        timings.put("totalRoutes", (long) routeDetails.size());
+        timings.put("totalRoutes", (long) plan.routeDetails.size());
         timings.put("totalSteps", (long) totalSteps);
 
         // 计算总体耗时
-        timings.put("totalTime", getResponseTime + totalProcessingTime);
+        timings.put("totalTime", timings.get("getResponseTime") + totalProcessingTime);
 
         // 创建响应并设置耗时信息
         RouteResponse response = new RouteResponse();
-        response.setRoutes(routeDetails);
+        response.setRoutes(plan.routeDetails);
         response.setTimings(timings);
 
+        // 标记因预算不足被跳过的优化
+        RequestBudget budget = RequestBudget.current();
+        if (budget != null && !budget.getDropped().isEmpty()) {
+            response.setDroppedOptimizations(budget.getDropped());
+        }
+
         return response;
     }
 
@@ -219,12 +295,12 @@ public class RouteServiceImpl implements RouteService {
 
         // 步骤1: 调用Google Routes API并测量时间
         Instant getResponseStart = Instant.now();
-        JsonNode computeRoutesResponse = getResponse(request);
+        ComputeRoutesResponse computeRoutesResponse = getResponse(request);
         Instant getResponseEnd = Instant.now();
         long getResponseTime = Duration.between(getResponseStart, getResponseEnd).toMillis();
         timings.put("getResponseTime", getResponseTime);
 
-        if (computeRoutesResponse == null || !computeRoutesResponse.has("routes")) {
+        if (computeRoutesResponse == null || computeRoutesResponse.routes() == null) {
             throw new Exception("Unable to retrieve routes from Google Routes API.");
         }
 
@@ -234,30 +310,26 @@ public class RouteServiceImpl implements RouteService {
         List<RouteResponse.RouteDetail> routeDetails = new ArrayList<>();
         int totalSteps = 0; // 用于计算处理的总步骤数
 
-        for (JsonNode routeNode : computeRoutesResponse.get("routes")) {
-            RouteResponse.RouteDetail routeDetail = createRouteDetail(routeNode);
+        for (ComputeRoutesResponse.Route route : computeRoutesResponse.routes()) {
+            RouteResponse.RouteDetail routeDetail = createRouteDetail(route);
             List<RouteResponse.LegDetail> legs = new ArrayList<>();
 
-            if (routeNode.has("legs") && !routeNode.get("legs").isNull()) {
-                for (JsonNode legNode : routeNode.get("legs")) {
-                    RouteResponse.LegDetail legDetail = createLegDetail(legNode, request);
+            if (route.legs() != null) {
+                for (ComputeRoutesResponse.Leg leg : route.legs()) {
+                    RouteResponse.LegDetail legDetail = createLegDetail(leg, request);
 
                     // 直接处理步骤，不进行任何替换或优化
                     Instant processStepsStart = Instant.now();
                     List<RouteResponse.StepDetail> steps = new ArrayList<>();
 
-                    if (legNode.has("steps") && !legNode.get("steps").isNull()) {
+                    if (leg.steps() != null) {
                         // 处理所有步骤
-                        for (JsonNode stepNode : legNode.get("steps")) {
-                            RouteResponse.StepDetail stepDetail = setStepDetail(stepNode);
+                        for (ComputeRoutesResponse.Step step : leg.steps()) {
+                            RouteResponse.StepDetail stepDetail = GoogleStepMapper.toStepDetail(step);
 
                             // 如果是公交步骤，处理公交详情
-                            if (stepNode.has("travelMode") &&
-                                    "TRANSIT".equalsIgnoreCase(stepNode.get("travelMode").asText()) &&
-                                    stepNode.has("transitDetails") &&
-                                    !stepNode.get("transitDetails").isNull()) {
-
-                                stepDetail.setTransitDetails(parseTransitDetails(stepNode.get("transitDetails")));
+                            if ("TRANSIT".equalsIgnoreCase(step.travelMode()) && step.transit() != null) {
+                                stepDetail.setTransitDetails(GoogleStepMapper.toTransitDetails(step.transit()));
                             }
 
                             // 添加到步骤列表
@@ -311,28 +383,20 @@ public class RouteServiceImpl implements RouteService {
      * - Duration
      * - Polyline encoding
      *
-     * @param routeNode JsonNode containing route information
+     * @param route Decoded route
      * @return RouteResponse.RouteDetail object
      */
-    private RouteResponse.RouteDetail createRouteDetail(JsonNode routeNode) {
-        String summary = routeNode.has("summary") && !routeNode.get("summary").isNull()
-                ? routeNode.get("summary").asText() : "No Summary";
-        String distanceMeters = routeNode.has("distanceMeters") && !routeNode.get("distanceMeters").isNull()
-                ? routeNode.get("distanceMeters").asText() : "Unknown";
-        String duration = routeNode.has("duration") && !routeNode.get("duration").isNull()
-                ? routeNode.get("duration").asText() : "Unknown";
-        String polyline = "No Polyline";
-
-        if (routeNode.has("polyline") && !routeNode.get("polyline").isNull()
-                && routeNode.get("polyline").has("encodedPolyline")
-                && !routeNode.get("polyline").get("encodedPolyline").isNull()) {
-            polyline = routeNode.get("polyline").get("encodedPolyline").asText();
-        }
+    private RouteResponse.RouteDetail createRouteDetail(ComputeRoutesResponse.Route route) {
+        String summary = route.summary() != null ? route.summary() : "No Summary";
+        // 未知的距离、时长为 -1，JSON 中输出 "Unknown"
+        long distanceMeters = route.distanceMeters() != null ? route.distanceMeters() : -1;
+        long duration = route.duration() != null ? parseDuration(route.duration()) : -1;
+        String polyline = route.polyline() != null ? route.polyline() : "No Polyline";
 
         RouteResponse.RouteDetail routeDetail = new RouteResponse.RouteDetail();
         routeDetail.setSummary(summary);
-        routeDetail.setDistanceMeters(distanceMeters);
-        routeDetail.setDuration(duration);
+        routeDetail.setDistanceInMeters(distanceMeters);
+        routeDetail.setDurationSeconds(duration);
         routeDetail.setPolyline(polyline);
         return routeDetail;
 
@@ -347,290 +411,301 @@ public class RouteServiceImpl implements RouteService {
      * - Distance
      * - Duration
      *
-     * @param legNode JsonNode containing leg information
+     * @param leg Decoded leg
      * @param request Original route request object
      * @return RouteResponse.LegDetail object
      */
-    private RouteResponse.LegDetail createLegDetail(JsonNode legNode, RouteRequest request) {
+    private RouteResponse.LegDetail createLegDetail(ComputeRoutesResponse.Leg leg, RouteRequest request) {
         RouteResponse.LegDetail legDetail = new RouteResponse.LegDetail();
 
-        legDetail.setStartLocation(legNode.has("startLocation") && !legNode.get("startLocation").isNull()
-                ? legNode.get("startLocation").toString() : "Unknown Start Location");
-        legDetail.setEndLocation(legNode.has("endLocation") && !legNode.get("endLocation").isNull()
-                ? legNode.get("endLocation").toString() : "Unknown End Location");
+        if (leg.startLocation() != null) {
+            legDetail.setStartCoordinates(leg.startLocation().latitude(), leg.startLocation().longitude());
+        } else {
+            legDetail.setStartLocation("Unknown Start Location");
+        }
+        if (leg.endLocation() != null) {
+            legDetail.setEndCoordinates(leg.endLocation().latitude(), leg.endLocation().longitude());
+        } else {
+            legDetail.setEndLocation("Unknown End Location");
+        }
 
         legDetail.setTravelMode("TRANSIT".equalsIgnoreCase(request.getTravelMode())
                 ? "TRANSIT" : request.getTravelMode());
 
-        legDetail.setDistance(legNode.has("distanceMeters") && !legNode.get("distanceMeters").isNull()
-                ? legNode.get("distanceMeters").asText() : "Unknown Distance");
-        legDetail.setDuration(legNode.has("duration") && !legNode.get("duration").isNull()
-                ? legNode.get("duration").asText() : "Unknown Duration");
+        legDetail.setDistance(leg.distanceMeters() != null
+                ? String.valueOf(leg.distanceMeters()) : "Unknown Distance");
+        legDetail.setDuration(leg.duration() != null ? leg.duration() : "Unknown Duration");
 
         return legDetail;
     }
 
     /**
      * Process all steps in a leg
-     * Main responsibilities:
-     * 1. Count number of transit steps
-     * 2. Choose processing strategy based on transit count
-     * 3. Apply different processing for high-frequency transfers vs normal cases
+     * The steps are parsed once by {@link StepEngine}; legs with more than 5 transit segments keep
+     * only 3 of them, otherwise segments that should be replaced are kept as-is in the returned list
+     * and recorded in candidates; the OTP driving routes are planned later for the whole request at once.
      *
-     * @param legNode JsonNode containing steps information
+     * @param steps Decoded steps of the leg
+     * @param candidates Collector for transit segments that should be replaced by OTP driving routes
      * @return List<RouteResponse.StepDetail> processed list of steps
      */
-    private List<RouteResponse.StepDetail>  processSteps(JsonNode legNode) {
-        List<RouteResponse.StepDetail> steps = new ArrayList<>();
-        List<RouteResponse.StepDetail> transitSteps = new ArrayList<>();
-        int transitCount = 0;
-
-        // First pass: count transit steps and collect info
-        for (JsonNode stepNode : legNode.get("steps")) {
-            if (stepNode.has("travelMode") &&
-                    "TRANSIT".equalsIgnoreCase(stepNode.get("travelMode").asText())) {
-                transitCount++;
-                if (stepNode.has("transitDetails") && !stepNode.get("transitDetails").isNull()) {
-                    RouteResponse.StepDetail stepDetail = setStepDetail(stepNode);
-                    stepDetail.setTransitDetails(parseTransitDetails(stepNode.get("transitDetails")));
-                    transitSteps.add(stepDetail);
-                }
+    private List<RouteResponse.StepDetail> processSteps(List<ComputeRoutesResponse.Step> steps,
+                                                        List<ReplacementCandidate> candidates) {
+        return StepEngine.process(steps, stepPolicy,
+                (legSteps, startIndex, originalSteps, startStop, endStop) ->
+                        candidates.add(new ReplacementCandidate(legSteps, startIndex, originalSteps, startStop, endStop)));
+    }
+
+    /**
+     * 公交段替换判断：等车时间过长、站点拥堵、打车热点或长途步行地铁站时考虑替换，跨海路线除外；
+     * 估算打车明显慢于公交时不登记替换
+     */
+    private final StepEngine.Policy stepPolicy = new StepEngine.Policy() {
+        @Override
+        public boolean shouldReplace(StepEngine.ParsedStep step, long waitTimeSeconds) {
+            ComputeRoutesResponse.Transit transitDetails = step.source();
+            boolean isCrossSea = TimingUtils.measureExecutionTime("检查是否为跨海路线耗时",
+                    () -> CrossSeaRouteChecker.isCrossSeaRoute(transitDetails));
+            if (isCrossSea) {
+                return false;
+            }
+            if (waitTimeSeconds > MAX_WAIT_TIME_SECONDS) {
+                return true;
             }
+
+            boolean isCongested = TimingUtils.measureExecutionTime("检查出发站点是否为拥堵站点耗时",
+                    () -> CongestionStationChecker.isCongested(transitDetails));
+            if (isCongested) {
+                return true;
+            }
+
+            // 检查是否为打车热点
+            boolean isTaxiHotspot = TimingUtils.measureExecutionTime("检查是否为打车热点耗时",
+                    () -> taxiHotSpotChecker.isHotspot(transitDetails));
+            if (isTaxiHotspot) {
+                return true;
+            }
+
+            // 如果是地铁，检查该进站口是否为长途
+            RouteResponse.StepDetail.TransitDetails.TransitLine line = step.transitDetails().getTransitLine();
+            if (line != null && line.getVehicle() != null && "SUBWAY".equals(line.getVehicle().getType())) {
+                return TimingUtils.measureExecutionTime("检查是否为长途步行地铁站耗时",
+                        () -> longDistanceExitChecker.isLongDistanceExitStep(transitDetails));
+            }
+            return false;
         }
 
-        // Choose processing strategy based on transit count
-        if (transitCount > 5) {
-            return processHighTransitSteps(legNode, transitSteps);
-        } else {
-            return processNormalSteps(legNode);
+        @Override
+        public boolean worthPlanning(RouteResponse.StepDetail.TransitDetails.StopDetails.Stop startStop,
+                                     RouteResponse.StepDetail.TransitDetails.StopDetails.Stop endStop,
+                                     Instant departureTime, long transitSeconds) {
+            return driveTimeEstimator.worthPlanning(startStop, endStop, departureTime, transitSeconds);
         }
-    }
+    };
+
 
     /**
-     * Process steps for high-frequency transfer cases (when a leg contains 5 or more transfers)
-     * Optimization strategy:
-     * 1. Sort transit steps by transfer time
-     * 2. Keep 2-3 steps with the shortest transfer times
-     * 3. Retain all walking steps and selected transit steps
+     * Plan OTP driving routes for all replacement candidates concurrently
+     * Each candidate runs on its own virtual thread, at most otpReplaceMaxParallelism plans are
+     * in flight for one request; plans still running after otpReplaceTimeoutMs (or the remaining
+     * request budget, whichever is shorter) are cancelled. Segments whose plan was cancelled, failed
+     * or was skipped for lack of budget get an estimated drive step (DriveTimeEstimator) instead,
+     * or keep the original transit steps when estimation is disabled.
      *
-     * @param legNode JsonNode containing steps information
-     * @param transitSteps List of collected transit steps
-     * @return List<RouteResponse.StepDetail> optimized list of steps
+     * @param candidates Replacement candidates collected from all routes and legs
      */
-    private List<RouteResponse.StepDetail> processHighTransitSteps(JsonNode legNode,
-                                                                   List<RouteResponse.StepDetail> transitSteps) {
-        List<RouteResponse.StepDetail> steps = new ArrayList<>();
-
-        // Sort by transfer time
-        transitSteps.sort((s1, s2) -> {
-            long time1 = getTransferTime(s1);
-            long time2 = getTransferTime(s2);
-            return Long.compare(time1, time2);
-        });
-
-        // Keep 2-3 steps with the shortest transfer times
-        List<RouteResponse.StepDetail> keptSteps = transitSteps.subList(
-                0,
-                Math.min(3, transitSteps.size())
-        );
-
-        // Re-traverse steps, keeping non-transit steps and selected transit steps
-        for (JsonNode stepNode : legNode.get("steps")) {
-            String stepTravelMode = stepNode.has("travelMode") ?
-                    stepNode.get("travelMode").asText() : "WALK";
-
-            if (!"TRANSIT".equalsIgnoreCase(stepTravelMode)) {
-                steps.add(setStepDetail(stepNode));
-            } else if (stepNode.has("transitDetails")) {
-                RouteResponse.StepDetail stepDetail = setStepDetail(stepNode);
-                RouteResponse.StepDetail.TransitDetails td = parseTransitDetails(stepNode.get("transitDetails"));
-                stepDetail.setTransitDetails(td);
-
-                if (isStepInKeptList(td, keptSteps)) {
-                    steps.add(stepDetail);
+    private void planReplacements(List<ReplacementCandidate> candidates) {
+        if (candidates.isEmpty()) {
+            return;
+        }
+        // 不同备选路线中相同的站点对只规划一次
+        List<List<ReplacementCandidate>> groups = new ArrayList<>(groupByStopPair(candidates).values());
+        if (groups.size() < candidates.size()) {
+            logger.info("合并重复的待替换站点对 - 路段: " + candidates.size() + " - 需规划: " + groups.size());
+        }
+
+        // 只使用剩余的请求预算 (扣除保留部分)，不足时整体跳过，改用估算的驾驶步骤
+        if (!RequestBudget.allows("otpReplacement", otpReplaceMinBudgetMs + budgetReserveMs)) {
+            logger.info("请求预算不足，跳过 OTP 路径替换 - 待替换路段: " + candidates.size());
+            groups.forEach(this::assignEstimate);
+            return;
+        }
+        long timeoutMs = Math.min(otpReplaceTimeoutMs, RequestBudget.remainingMillis() - budgetReserveMs);
+
+        Semaphore permits = new Semaphore(Math.max(1, otpReplaceMaxParallelism));
+        List<Callable<List<RouteResponse.StepDetail>>> tasks = new ArrayList<>(groups.size());
+        for (List<ReplacementCandidate> group : groups) {
+            ReplacementCandidate candidate = group.get(0);
+            tasks.add(RequestBudget.wrap(() -> {
+                permits.acquire();
+                try {
+                    return changeStep(candidate.startStop, candidate.endStop);
+                } finally {
+                    permits.release();
                 }
-            }
+            }));
         }
 
-        return steps;
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            List<Future<List<RouteResponse.StepDetail>>> futures =
+                    executor.invokeAll(tasks, timeoutMs, TimeUnit.MILLISECONDS);
+            for (int k = 0; k < futures.size(); k++) {
+                Future<List<RouteResponse.StepDetail>> future = futures.get(k);
+                List<ReplacementCandidate> group = groups.get(k);
+                ReplacementCandidate candidate = group.get(0);
+                if (future.isCancelled()) {
+                    logger.warning("OTP 路径替换超时，改用估算的驾驶步骤: " + candidate.startStop.getName()
+                            + " -> " + candidate.endStop.getName());
+                    assignEstimate(group);
+                    continue;
+                }
+                try {
+                    assignReplacement(group, future.get());
+                } catch (ExecutionException e) {
+                    if (BulkheadFullException.isCause(e)) {
+                        // OTP 并发已满：不等待，直接改用估算
+                        logger.info("OTP 并发已满，跳过路径替换: " + candidate.startStop.getName()
+                                + " -> " + candidate.endStop.getName());
+                    } else {
+                        logger.warning("OTP 路径替换失败，改用估算的驾驶步骤: " + candidate.startStop.getName()
+                                + " -> " + candidate.endStop.getName() + " - " + e.getCause());
+                    }
+                    assignEstimate(group);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
     }
 
     /**
-     * Get transfer time from transit details
-     * Returns waitTimeSeconds directly from transit details if available
-     * Returns maximum value if information cannot be retrieved
+     * OTP 没有给出结果 (不可用、超时或预算不足) 时用本地估算的驾驶步骤代替
+     * 响应记录 otpReplacement 被降级，缓存有效期按降级响应处理；估算也不可用时保留原公交路段
      *
-     * @param step Step detail object containing transit details
-     * @return long Transfer/wait time in seconds
+     * @param group 同一站点对的路段
      */
-    private long getTransferTime(RouteResponse.StepDetail step) {
-        if (step.getTransitDetails() != null) {
-            return step.getTransitDetails().getWaitTimeSeconds();
+    void assignEstimate(List<ReplacementCandidate> group) {
+        RequestBudget budget = RequestBudget.current();
+        if (budget != null) {
+            budget.drop("otpReplacement");
         }
-        return Long.MAX_VALUE;
+        ReplacementCandidate candidate = group.get(0);
+        assignReplacement(group, driveTimeEstimator.approximateSteps(candidate.startStop, candidate.endStop));
     }
 
-
     /**
-     * Check if given transit step is in the kept list
-     * Matches by comparing departure stop locations
+     * 按起终点站分组 (单次请求内的备忘)，保持首次出现的顺序
      *
-     * @param td Transit details object
-     * @param keptSteps List of steps to keep
-     * @return boolean True if step is in kept list
+     * @param candidates 所有待替换路段
+     * @return 站点对 -> 该站点对的所有路段
      */
-    private boolean isStepInKeptList(RouteResponse.StepDetail.TransitDetails td,
-                                     List<RouteResponse.StepDetail> keptSteps) {
-        return keptSteps.stream().anyMatch(kept ->
-                kept.getTransitDetails().getStopDetails().getDepartureStop().getLocation()
-                        .equals(td.getStopDetails().getDepartureStop().getLocation())
-        );
+    static Map<String, List<ReplacementCandidate>> groupByStopPair(List<ReplacementCandidate> candidates) {
+        Map<String, List<ReplacementCandidate>> groups = new LinkedHashMap<>();
+        for (ReplacementCandidate candidate : candidates) {
+            String pair = candidate.startStop.getName() + "@" + candidate.startStop.getLatitude()
+                    + "," + candidate.startStop.getLongitude()
+                    + "|" + candidate.endStop.getName() + "@" + candidate.endStop.getLatitude()
+                    + "," + candidate.endStop.getLongitude();
+            groups.computeIfAbsent(pair, k -> new ArrayList<>()).add(candidate);
+        }
+        return groups;
     }
 
     /**
-     * Process steps for normal cases (less than 5 transfers)
-     * Main processing:
-     * 1. Calculate walking duration
-     * 2. Handle waiting times
-     * 3. Process special cases (e.g., waiting time > 20 minutes)
+     * 把一个站点对的规划结果分配给组内所有路段
+     * 除第一个路段外使用副本，不同路线不共享步骤对象
      *
-     * @param legNode JsonNode containing steps information
-     * @return List<RouteResponse.StepDetail> processed list of steps
+     * @param group 同一站点对的路段
+     * @param steps 规划出的驾驶步骤
      */
-    private List<RouteResponse.StepDetail> processNormalSteps(JsonNode legNode) {
-        List<RouteResponse.StepDetail> steps = new ArrayList<>();
-        String previousTravelMode = "WALK";
-        long previousWalkDuration = 0;
-        Instant curStepArrivalTime = Instant.now();
-        Instant previousStepArrivalTime = Instant.now();
-
-        for (int i = 0; i < legNode.get("steps").size(); i++) {
-            JsonNode stepNode = legNode.get("steps").get(i);
-            RouteResponse.StepDetail stepDetail = setStepDetail(stepNode);
-            String stepTravelMode = stepNode.has("travelMode")
-                    ? stepNode.get("travelMode").asText()
-                    : "WALK";
-
-            // 累计步行时间
-            if ("WALK".equalsIgnoreCase(previousTravelMode) &&
-                    "WALK".equalsIgnoreCase(stepTravelMode)) {
-                previousWalkDuration += stepDetail.getDuration();
+    static void assignReplacement(List<ReplacementCandidate> group, List<RouteResponse.StepDetail> steps) {
+        group.get(0).replacementSteps = steps;
+        if (group.size() > 1 && steps != null && !steps.isEmpty()) {
+            byte[] encoded = RouteBinaryCodec.encodeSteps(steps);
+            for (int i = 1; i < group.size(); i++) {
+                group.get(i).replacementSteps = RouteBinaryCodec.decodeSteps(encoded);
             }
+        }
+    }
 
-            if ("TRANSIT".equalsIgnoreCase(stepTravelMode)) {
-                if (stepNode.has("transitDetails") && !stepNode.get("transitDetails").isNull()) {
-                    JsonNode transitDetails = stepNode.get("transitDetails");
-                    boolean isCrossSea = TimingUtils.measureExecutionTime("检查是否为跨海路线耗时",
-                            () -> CrossSeaRouteChecker.isCrossSeaRoute(transitDetails));
-
-                    boolean isCongested = TimingUtils.measureExecutionTime("检查出发站点是否为拥堵站点耗时",
-                            () -> CongestionStationChecker.isCongested(transitDetails));
-
-                    // 检查是否为打车热点
-                    boolean isTaxiHotspot = TimingUtils.measureExecutionTime("检查是否为打车热点耗时",
-                            () -> {
-                                try {
-                                    return taxiHotSpotChecker.isHotspot(
-                                            transitDetails.get("departure_stop"));
-                                } catch (IOException e) {
-                                    throw new RuntimeException(e);
-                                }
-                            });
-
-                    boolean isLongDistanceExit = false;
-
-                    RouteResponse.StepDetail.TransitDetails td = parseTransitDetails(transitDetails);
-                    stepDetail.setTransitDetails(td);
-
-                    // 更新到达时间
-                    if (td.getStopDetails() != null && td.getStopDetails().getArrivalTime() != null) {
-                        curStepArrivalTime = Instant.parse(td.getStopDetails().getArrivalTime());
-                    }
-                    // 判断公共交通是否为地铁
-                    String vehicleType = td.getTransitLine().getVehicle().getType();
-                    if("SUBWAY".equals(vehicleType)){
-                        // 如果是地铁，检查该进站口是否为长途
-                        isLongDistanceExit = TimingUtils.measureExecutionTime("检查是否为长途步行地铁站耗时",
-                            () -> longDistanceExitChecker.isLongDistanceExitStep(transitDetails));
-                    }
-
-                    // 检查是否需要替换路段
-                    if ("WALK".equalsIgnoreCase(previousTravelMode) &&
-                            td.getStopDetails() != null &&
-                            td.getStopDetails().getDepartureTime() != null) {
-
-                        try {
-                            Instant departureTime = Instant.parse(td.getStopDetails().getDepartureTime());
-                            Instant walkToStationTime = previousStepArrivalTime.plusSeconds(previousWalkDuration);
-                            long waitTimeSeconds = Duration.between(walkToStationTime, departureTime).getSeconds();
-                            td.setWaitTimeSeconds(waitTimeSeconds);
-                            stepDetail.setTransitDetails(td);
-
-                            // 修改判断条件：当等待时间过长或站点拥堵时都考虑替换路段
-                            // 但跨海路线除外
-                            if ((waitTimeSeconds > MAX_WAIT_TIME_SECONDS || isCongested || isTaxiHotspot || isLongDistanceExit)
-                                    && !isCrossSea) {
-                                // 找到当前公交段的终点站
-                                int j = i;
-                                RouteResponse.StepDetail.TransitDetails.StopDetails.Stop startStop =
-                                        td.getStopDetails().getDepartureStop();
-                                RouteResponse.StepDetail.TransitDetails.StopDetails.Stop endStop = null;
-
-                                // 查找终点站（不修改原始的 i）
-                                while (j < legNode.get("steps").size()) {
-                                    JsonNode currentNode = legNode.get("steps").get(j);
-                                    String currentMode = currentNode.has("travelMode")
-                                            ? currentNode.get("travelMode").asText()
-                                            : "WALK";
-
-                                    if ("TRANSIT".equalsIgnoreCase(currentMode)) {
-                                        JsonNode currentTransitDetails = currentNode.get("transitDetails");
-                                        if (currentTransitDetails != null && !currentTransitDetails.isNull()) {
-                                            RouteResponse.StepDetail.TransitDetails currentTd =
-                                                    parseTransitDetails(currentTransitDetails);
-                                            if (currentTd.getStopDetails() != null) {
-                                                endStop = currentTd.getStopDetails().getArrivalStop();
-                                            }
-                                        }
-                                    } else {
-                                        break;
-                                    }
-                                    j++;
-                                }
-
-                                // 如果找到了完整的起终点，进行替换路段操作
-                                if (startStop != null && endStop != null) {
-                                    List<RouteResponse.StepDetail> replacementSteps =
-                                            changeStep(startStop, endStop);
-                                    if (!replacementSteps.isEmpty()) {
-                                        steps.addAll(replacementSteps);
-                                        // 跳过被替换的路段
-                                        i = j - 1;
-                                        continue;
-                                    }
-                                }
-                            }
-                        } catch (Exception e) {
-                            logger.warning("处理等待时间时发生错误");
-                        }
-                    }
-                }
+    /**
+     * Splice OTP driving steps back into their legs
+     * Candidates are applied from last to first so earlier start indexes in the same leg stay valid.
+     *
+     * @param candidates Replacement candidates with planned replacement steps
+     */
+    private void applyReplacements(List<ReplacementCandidate> candidates) {
+        for (int k = candidates.size() - 1; k >= 0; k--) {
+            ReplacementCandidate candidate = candidates.get(k);
+            if (candidate.replacementSteps == null || candidate.replacementSteps.isEmpty()) {
+                continue;
             }
+            List<RouteResponse.StepDetail> region = candidate.legSteps.subList(
+                    candidate.startIndex, candidate.startIndex + candidate.originalSteps.size());
+            region.clear();
+            candidate.legSteps.addAll(candidate.startIndex, candidate.replacementSteps);
+        }
+    }
+
+    /**
+     * 待替换的公交路段：记录其在所属 leg 步骤列表中的位置，OTP 返回后按位置回填
+     */
+    static final class ReplacementCandidate {
+        private final List<RouteResponse.StepDetail> legSteps;
+        private final int startIndex;
+        private final List<RouteResponse.StepDetail> originalSteps;
+        private final RouteResponse.StepDetail.TransitDetails.StopDetails.Stop startStop;
+        private final RouteResponse.StepDetail.TransitDetails.StopDetails.Stop endStop;
+        private List<RouteResponse.StepDetail> replacementSteps;
+
+        private ReplacementCandidate(List<RouteResponse.StepDetail> legSteps, int startIndex,
+                                     List<RouteResponse.StepDetail> originalSteps,
+                                     RouteResponse.StepDetail.TransitDetails.StopDetails.Stop startStop,
+                                     RouteResponse.StepDetail.TransitDetails.StopDetails.Stop endStop) {
+            this.legSteps = legSteps;
+            this.startIndex = startIndex;
+            this.originalSteps = originalSteps;
+            this.startStop = startStop;
+            this.endStop = endStop;
+        }
 
-            previousStepArrivalTime = curStepArrivalTime;
-            previousTravelMode = stepTravelMode;
-            steps.add(stepDetail);
+        RouteResponse.StepDetail.TransitDetails.StopDetails.Stop getStartStop() {
+            return startStop;
+        }
 
-            // 重置步行时间
-            if (!("WALK".equalsIgnoreCase(previousTravelMode) &&
-                    "WALK".equalsIgnoreCase(stepTravelMode))) {
-                previousWalkDuration = 0;
-            }
+        RouteResponse.StepDetail.TransitDetails.StopDetails.Stop getEndStop() {
+            return endStop;
         }
 
-        return steps;
+        List<RouteResponse.StepDetail> getReplacementSteps() {
+            return replacementSteps;
+        }
     }
 
+    /**
+     * 已解析的路线及其待替换路段，OTP 规划完成后由 completePlan 生成最终响应
+     */
+    static final class RoutePlan {
+        private final List<RouteResponse.RouteDetail> routeDetails;
+        private final List<ReplacementCandidate> candidates;
+        private final Map<String, Long> timings;
+        private final Instant processStart;
+
+        private RoutePlan(List<RouteResponse.RouteDetail> routeDetails, List<ReplacementCandidate> candidates,
+                          Map<String, Long> timings, Instant processStart) {
+            this.routeDetails = routeDetails;
+            this.candidates = candidates;
+            this.timings = timings;
+            this.processStart = processStart;
+        }
+
+        List<ReplacementCandidate> getCandidates() {
+            return candidates;
+        }
+    }
 
     // 替换公交路径为OTP返回的驾驶路径
     public List<RouteResponse.StepDetail> changeStep(RouteResponse.StepDetail.TransitDetails.StopDetails.Stop startStop,
@@ -685,12 +760,14 @@ public class RouteServiceImpl implements RouteService {
 
             case "shortestDuration":
                 return allRoutes.stream()
-                        .sorted(Comparator.comparingLong(route -> parseDuration(route.getDuration()))) // 按时间升序
+                        // 按时间升序，时长未知 (-1) 的路线排在最后
+                        .sorted(Comparator.comparingLong(route -> knownOrMax(route.getDurationSeconds())))
                         .collect(Collectors.toList());
 
             case "shortestDistance":
                 return allRoutes.stream()
-                        .sorted(Comparator.comparingInt(route -> Integer.parseInt(route.getDistanceMeters()))) // 按距离升序
+                        // 按距离升序，距离未知 (-1) 的路线排在最后
+                        .sorted(Comparator.comparingLong(route -> knownOrMax(route.getDistanceInMeters())))
                         .collect(Collectors.toList());
 
             default:
@@ -700,114 +777,12 @@ public class RouteServiceImpl implements RouteService {
     }
 
     /**
-     * Parses the transit details from the JSON node.
-     * 在此方法内也对 arrivalTime 做了读取，但只是存储和返回，不在此处做等待时间大于 180 秒的替换逻辑
-     * （可在创建 stepDetail 时进行更灵活的判断）
+     * 排序用的数值，未知 (小于 0) 时按最大值处理
      */
-    private RouteResponse.StepDetail.TransitDetails parseTransitDetails(JsonNode transitDetailsNode) {
-        RouteResponse.StepDetail.TransitDetails transitDetails = new RouteResponse.StepDetail.TransitDetails();
-
-        // Parse stopDetails
-        if (transitDetailsNode.has("stopDetails") && !transitDetailsNode.get("stopDetails").isNull()) {
-            JsonNode stopDetailsNode = transitDetailsNode.get("stopDetails");
-            RouteResponse.StepDetail.TransitDetails.StopDetails stopDetails = new RouteResponse.StepDetail.TransitDetails.StopDetails();
-
-            if (stopDetailsNode.has("arrivalStop") && !stopDetailsNode.get("arrivalStop").isNull()) {
-                JsonNode arrivalStopNode = stopDetailsNode.get("arrivalStop");
-                RouteResponse.StepDetail.TransitDetails.StopDetails.Stop arrivalStop = new RouteResponse.StepDetail.TransitDetails.StopDetails.Stop();
-
-                arrivalStop.setName(arrivalStopNode.has("name") ? arrivalStopNode.get("name").asText() : "Unknown Arrival Stop");
-                if (arrivalStopNode.has("location") && !arrivalStopNode.get("location").isNull()) {
-                    arrivalStop.setLocation(arrivalStopNode.get("location").toString());
-                } else {
-                    arrivalStop.setLocation("Unknown Location");
-                }
-                stopDetails.setArrivalStop(arrivalStop);
-            }
-            // 把 arrivalTime 原样存储下来，后续在创建 StepDetail 时判断
-            if (stopDetailsNode.has("arrivalTime") && !stopDetailsNode.get("arrivalTime").isNull()) {
-                stopDetails.setArrivalTime(stopDetailsNode.get("arrivalTime").asText());
-            }
-
-            if (stopDetailsNode.has("departureStop") && !stopDetailsNode.get("departureStop").isNull()) {
-                JsonNode departureStopNode = stopDetailsNode.get("departureStop");
-                RouteResponse.StepDetail.TransitDetails.StopDetails.Stop departureStop = new RouteResponse.StepDetail.TransitDetails.StopDetails.Stop();
-
-                departureStop.setName(departureStopNode.has("name") ? departureStopNode.get("name").asText() : "Unknown Departure Stop");
-                if (departureStopNode.has("location") && !departureStopNode.get("location").isNull()) {
-                    departureStop.setLocation(departureStopNode.get("location").toString());
-                } else {
-                    departureStop.setLocation("Unknown Location");
-                }
-
-                stopDetails.setDepartureStop(departureStop);
-            }
-
-            if (stopDetailsNode.has("departureTime") && !stopDetailsNode.get("departureTime").isNull()) {
-                stopDetails.setDepartureTime(stopDetailsNode.get("departureTime").asText());
-            }
-
-            transitDetails.setStopDetails(stopDetails);
-        }
-
-        // Parse headsign
-        if (transitDetailsNode.has("headsign") && !transitDetailsNode.get("headsign").isNull()) {
-            transitDetails.setHeadsign(transitDetailsNode.get("headsign").asText());
-        }
-
-        // Parse transitLine
-        if (transitDetailsNode.has("transitLine") && !transitDetailsNode.get("transitLine").isNull()) {
-            JsonNode transitLineNode = transitDetailsNode.get("transitLine");
-            RouteResponse.StepDetail.TransitDetails.TransitLine transitLine = new RouteResponse.StepDetail.TransitDetails.TransitLine();
-
-            // Agencies
-            if (transitLineNode.has("agencies") && transitLineNode.get("agencies").isArray()) {
-                List<RouteResponse.StepDetail.TransitDetails.TransitLine.Agency> agencies = new ArrayList<>();
-                for (JsonNode agencyNode : transitLineNode.get("agencies")) {
-                    RouteResponse.StepDetail.TransitDetails.TransitLine.Agency agency =
-                            new RouteResponse.StepDetail.TransitDetails.TransitLine.Agency();
-                    agency.setName(agencyNode.has("name") ? agencyNode.get("name").asText() : null);
-                    agency.setPhoneNumber(agencyNode.has("phoneNumber") ? agencyNode.get("phoneNumber").asText() : null);
-                    agency.setUri(agencyNode.has("uri") ? agencyNode.get("uri").asText() : null);
-                    agencies.add(agency);
-                }
-                transitLine.setAgencies(agencies);
-            }
-
-            transitLine.setName(transitLineNode.has("name") ? transitLineNode.get("name").asText() : null);
-            transitLine.setColor(transitLineNode.has("color") ? transitLineNode.get("color").asText() : null);
-            transitLine.setNameShort(transitLineNode.has("nameShort") ? transitLineNode.get("nameShort").asText() : null);
-            transitLine.setTextColor(transitLineNode.has("textColor") ? transitLineNode.get("textColor").asText() : null);
-
-            // Vehicle
-            if (transitLineNode.has("vehicle") && !transitLineNode.get("vehicle").isNull()) {
-                JsonNode vehicleNode = transitLineNode.get("vehicle");
-                RouteResponse.StepDetail.TransitDetails.TransitLine.Vehicle vehicle =
-                        new RouteResponse.StepDetail.TransitDetails.TransitLine.Vehicle();
-
-                if (vehicleNode.has("name") && !vehicleNode.get("name").isNull()) {
-                    RouteResponse.StepDetail.TransitDetails.TransitLine.Vehicle.Name name =
-                            new RouteResponse.StepDetail.TransitDetails.TransitLine.Vehicle.Name();
-                    name.setText(vehicleNode.get("name").has("text")
-                            ? vehicleNode.get("name").get("text").asText()
-                            : null);
-                    vehicle.setName(name);
-                }
-                vehicle.setType(vehicleNode.has("type") ? vehicleNode.get("type").asText() : null);
-                vehicle.setIconUri(vehicleNode.has("iconUri") ? vehicleNode.get("iconUri").asText() : null);
-                transitLine.setVehicle(vehicle);
-            }
-
-            transitDetails.setTransitLine(transitLine);
-        }
-
-        // Parse stopCount
-        if (transitDetailsNode.has("stopCount")) {
-            transitDetails.setStopCount(transitDetailsNode.get("stopCount").asInt());
-        }
-
-        return transitDetails;
+    private static long knownOrMax(long value) {
+        return value < 0 ? Long.MAX_VALUE : value;
     }
+
     /**
      * Parses duration string (e.g., "1581s") to seconds.
      *
@@ -815,17 +790,7 @@ public class RouteServiceImpl implements RouteService {
      * @return The duration in seconds.
      */
     private long parseDuration(String durationStr) {
-        if (durationStr == null || durationStr.isEmpty()) return 0;
-        durationStr = durationStr.trim().toLowerCase();
-        if (durationStr.endsWith("s")) {
-            try {
-                return Long.parseLong(durationStr.replace("s", ""));
-            } catch (NumberFormatException e) {
-                logger.warning("Failed to parse duration: " + durationStr);
-                return 0;
-            }
-        }
-        return 0;
+        return ComputeRoutesDecoder.parseDuration(durationStr);
     }
 
     /**
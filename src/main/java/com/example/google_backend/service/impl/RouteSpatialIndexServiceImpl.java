@@ -0,0 +1,307 @@
+package com.example.google_backend.service.impl;
+
+import com.example.google_backend.model.CachedRoute;
+import com.example.google_backend.model.RouteRequest;
+import com.example.google_backend.model.RouteResponse;
+import com.example.google_backend.service.RouteCacheService;
+import com.example.google_backend.service.RouteSpatialIndexService;
+import com.example.google_backend.utils.generator.CacheKeyGenerator;
+import jakarta.annotation.Resource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.geo.Circle;
+import org.springframework.data.geo.Distance;
+import org.springframework.data.geo.GeoResult;
+import org.springframework.data.geo.GeoResults;
+import org.springframework.data.geo.Point;
+import org.springframework.data.redis.connection.RedisGeoCommands;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * 基于 Redis GEO 的已缓存路线空间索引
+ * 按出行方式分组，起点、终点各一个 GEO 集合，成员为路线缓存键；
+ * GEO 成员没有单独的有效期，另用一个按过期时间排序的 ZSET 记录每个成员的过期时间，
+ * 写入时删除已过期的成员，成员数超过上限时删除最早过期的成员
+ */
+@Service
+public class RouteSpatialIndexServiceImpl implements RouteSpatialIndexService {
+
+    private static final Logger logger = Logger.getLogger(RouteSpatialIndexServiceImpl.class.getName());
+
+    private static final String ORIGIN_KEY_PREFIX = "route:geo:origin:";
+    private static final String DESTINATION_KEY_PREFIX = "route:geo:dest:";
+    private static final String EXPIRY_KEY_PREFIX = "route:geo:expiry:";
+
+    // 每次写入最多清理的成员数
+    private static final int MAX_PRUNE_PER_WRITE = 100;
+
+    // 加入起终点与过期时间；清理已过期 (以及超出上限) 的成员；三个集合的有效期只延长不缩短
+    // KEYS: 起点集合, 终点集合, 过期时间集合
+    // ARGV: 起点经度, 起点纬度, 终点经度, 终点纬度, 成员, 过期时间, 当前时间, 有效期 (ms), 成员上限, 最多清理数
+    private static final DefaultRedisScript<Long> INDEX_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('GEOADD', KEYS[1], ARGV[1], ARGV[2], ARGV[5]) " +
+                    "redis.call('GEOADD', KEYS[2], ARGV[3], ARGV[4], ARGV[5]) " +
+                    "redis.call('ZADD', KEYS[3], ARGV[6], ARGV[5]) " +
+                    "local limit = tonumber(ARGV[10]) " +
+                    "local pruned = redis.call('ZRANGEBYSCORE', KEYS[3], '-inf', ARGV[7], 'LIMIT', 0, limit) " +
+                    "local excess = redis.call('ZCARD', KEYS[3]) - #pruned - tonumber(ARGV[9]) " +
+                    "if excess > 0 and #pruned < limit then " +
+                    "local oldest = redis.call('ZRANGE', KEYS[3], #pruned, #pruned + math.min(excess, limit - #pruned) - 1) " +
+                    "for _, member in ipairs(oldest) do table.insert(pruned, member) end " +
+                    "end " +
+                    "for _, member in ipairs(pruned) do " +
+                    "redis.call('ZREM', KEYS[1], member) " +
+                    "redis.call('ZREM', KEYS[2], member) " +
+                    "redis.call('ZREM', KEYS[3], member) " +
+                    "end " +
+                    "for i = 1, 3 do " +
+                    "if redis.call('PTTL', KEYS[i]) < tonumber(ARGV[8]) then " +
+                    "redis.call('PEXPIRE', KEYS[i], ARGV[8]) " +
+                    "end " +
+                    "end " +
+                    "return #pruned", Long.class);
+
+    // 地球平均半径 (米)
+    private static final double EARTH_RADIUS_METERS = 6371000.0;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RouteCacheService routeCacheService;
+
+    // 是否启用近似命中
+    @Value("${route.approx.enabled:true}")
+    private boolean enabled;
+
+    // 起点、终点各自允许的最大偏移 (米)
+    @Value("${route.approx.radius-meters:150}")
+    private double radiusMeters;
+
+    // 额外步行距离 (起终点偏移之和) 占请求直线距离的最大比例，短途请求不适合用附近的路线代替
+    @Value("${route.approx.max-extra-walk-ratio:0.2}")
+    private double maxExtraWalkRatio;
+
+    // 缓存路线开头 (结尾) 的步行加上起点 (终点) 偏移后允许的最大步行距离 (米)
+    @Value("${route.approx.max-walk-meters:800}")
+    private double maxWalkMeters;
+
+    // 每次查询最多检查的候选路线数
+    @Value("${route.approx.max-candidates:10}")
+    private long maxCandidates;
+
+    // 每种出行方式索引的最大路线数
+    @Value("${route.approx.max-members:10000}")
+    private long maxMembers;
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder rejectedByWalk = new LongAdder();
+    private final LongAdder staleMembers = new LongAdder();
+    private final LongAdder prunedMembers = new LongAdder();
+
+    @Override
+    public void index(String cacheKey, RouteRequest request, CachedRoute entry) {
+        if (!enabled || request.getOrigin() == null || request.getDestination() == null) {
+            return;
+        }
+        long ttlMillis = entry.getHardExpireAt() - System.currentTimeMillis();
+        if (ttlMillis <= 0) {
+            return;
+        }
+        String modeKey = CacheKeyGenerator.generateModeKey(request);
+        try {
+            Long pruned = stringRedisTemplate.execute(INDEX_SCRIPT,
+                    List.of(ORIGIN_KEY_PREFIX + modeKey, DESTINATION_KEY_PREFIX + modeKey, EXPIRY_KEY_PREFIX + modeKey),
+                    String.valueOf(request.getOrigin().getLongitude()),
+                    String.valueOf(request.getOrigin().getLatitude()),
+                    String.valueOf(request.getDestination().getLongitude()),
+                    String.valueOf(request.getDestination().getLatitude()),
+                    cacheKey,
+                    String.valueOf(entry.getHardExpireAt()),
+                    String.valueOf(System.currentTimeMillis()),
+                    String.valueOf(ttlMillis),
+                    String.valueOf(maxMembers),
+                    String.valueOf(MAX_PRUNE_PER_WRITE));
+            if (pruned != null) {
+                prunedMembers.add(pruned);
+            }
+        } catch (Exception e) {
+            logger.warning("路线空间索引写入失败 - 缓存键: " + cacheKey + " - 错误: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public NearbyRoute findNearby(RouteRequest request) {
+        if (!enabled || request.getOrigin() == null || request.getDestination() == null) {
+            return null;
+        }
+        lookups.increment();
+
+        RouteRequest.Coordinates origin = request.getOrigin();
+        RouteRequest.Coordinates destination = request.getDestination();
+        double tripMeters = haversine(origin, destination);
+        double maxExtraWalk = Math.min(2 * radiusMeters, tripMeters * maxExtraWalkRatio);
+
+        String modeKey = CacheKeyGenerator.generateModeKey(request);
+        String originKey = ORIGIN_KEY_PREFIX + modeKey;
+        String destinationKey = DESTINATION_KEY_PREFIX + modeKey;
+
+        // 查询失败时按未命中处理，由调用方计算路线
+        GeoResults<RedisGeoCommands.GeoLocation<String>> nearOrigin;
+        List<String> members = new ArrayList<>();
+        List<Point> destinations;
+        try {
+            nearOrigin = stringRedisTemplate.opsForGeo().radius(
+                    originKey,
+                    new Circle(toPoint(origin), new Distance(radiusMeters, RedisGeoCommands.DistanceUnit.METERS)),
+                    RedisGeoCommands.GeoRadiusCommandArgs.newGeoRadiusArgs()
+                            .includeDistance()
+                            .sortAscending()
+                            .limit(maxCandidates));
+            if (nearOrigin == null || nearOrigin.getContent().isEmpty()) {
+                return null;
+            }
+            for (GeoResult<RedisGeoCommands.GeoLocation<String>> result : nearOrigin.getContent()) {
+                members.add(result.getContent().getName());
+            }
+            destinations = stringRedisTemplate.opsForGeo().position(destinationKey, members.toArray(new String[0]));
+        } catch (Exception e) {
+            logger.warning("路线空间索引查询失败 - 出行方式: " + modeKey + " - 错误: " + e.getMessage());
+            return null;
+        }
+        if (destinations == null) {
+            return null;
+        }
+
+        // 按额外步行距离从小到大检查候选路线
+        List<double[]> candidates = new ArrayList<>();
+        for (int i = 0; i < members.size(); i++) {
+            Point point = destinations.get(i);
+            if (point == null) {
+                continue;
+            }
+            double originOffset = nearOrigin.getContent().get(i).getDistance().getValue();
+            double destinationOffset = haversine(destination.getLatitude(), destination.getLongitude(), point.getY(), point.getX());
+            if (destinationOffset > radiusMeters) {
+                continue;
+            }
+            if (originOffset + destinationOffset > maxExtraWalk) {
+                rejectedByWalk.increment();
+                continue;
+            }
+            candidates.add(new double[] { originOffset + destinationOffset, i, originOffset, destinationOffset });
+        }
+        candidates.sort((a, b) -> Double.compare(a[0], b[0]));
+
+        for (double[] candidate : candidates) {
+            String cacheKey = members.get((int) candidate[1]);
+            CachedRoute entry = routeCacheService.peek(cacheKey);
+            if (entry == null) {
+                // 路线缓存已过期，从索引中删除
+                try {
+                    stringRedisTemplate.opsForZSet().remove(originKey, cacheKey);
+                    stringRedisTemplate.opsForZSet().remove(destinationKey, cacheKey);
+                    stringRedisTemplate.opsForZSet().remove(EXPIRY_KEY_PREFIX + modeKey, cacheKey);
+                } catch (Exception e) {
+                    logger.warning("删除过期的索引成员失败 - 缓存键: " + cacheKey + " - 错误: " + e.getMessage());
+                }
+                staleMembers.increment();
+                continue;
+            }
+            if (!walksWithinLimit(entry.getResponse(), candidate[2], candidate[3])) {
+                rejectedByWalk.increment();
+                continue;
+            }
+            hits.increment();
+            return new NearbyRoute(cacheKey, entry, candidate[2], candidate[3]);
+        }
+        return null;
+    }
+
+    @Override
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("lookups", lookups.sum());
+        stats.put("hits", hits.sum());
+        stats.put("rejectedByWalk", rejectedByWalk.sum());
+        stats.put("staleMembers", staleMembers.sum());
+        stats.put("prunedMembers", prunedMembers.sum());
+        return stats;
+    }
+
+    /**
+     * 缓存的每条路线开头的步行加上起点偏移、结尾的步行加上终点偏移都不超过上限
+     * (已经以长距离步行开始或结束的路线，不能再叠加额外步行)
+     */
+    private boolean walksWithinLimit(RouteResponse response, double originOffset, double destinationOffset) {
+        if (response == null || response.getRoutes() == null) {
+            return true;
+        }
+        for (RouteResponse.RouteDetail route : response.getRoutes()) {
+            List<RouteResponse.LegDetail> legs = route.getLegs();
+            if (legs == null || legs.isEmpty()) {
+                continue;
+            }
+            long leadingWalk = leadingWalkMeters(legs.get(0).getSteps(), false);
+            long trailingWalk = leadingWalkMeters(legs.get(legs.size() - 1).getSteps(), true);
+            if (leadingWalk + originOffset > maxWalkMeters || trailingWalk + destinationOffset > maxWalkMeters) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 从 leg 开头 (reverse 时从结尾) 起连续步行步骤的距离之和
+     */
+    private static long leadingWalkMeters(List<RouteResponse.StepDetail> steps, boolean reverse) {
+        if (steps == null) {
+            return 0;
+        }
+        long meters = 0;
+        for (int k = 0; k < steps.size(); k++) {
+            RouteResponse.StepDetail step = steps.get(reverse ? steps.size() - 1 - k : k);
+            if (!isWalk(step)) {
+                break;
+            }
+            meters += step.getDistance();
+        }
+        return meters;
+    }
+
+    private static boolean isWalk(RouteResponse.StepDetail step) {
+        if (step == null) {
+            return false;
+        }
+        if (step.getTravelMode() != null) {
+            return "WALK".equalsIgnoreCase(step.getTravelMode());
+        }
+        // 旧版本缓存的步骤没有保存出行方式
+        return step.getTransitDetails() == null && step.getTransitLine() == null;
+    }
+
+    private static Point toPoint(RouteRequest.Coordinates coordinates) {
+        return new Point(coordinates.getLongitude(), coordinates.getLatitude());
+    }
+
+    private static double haversine(RouteRequest.Coordinates from, RouteRequest.Coordinates to) {
+        return haversine(from.getLatitude(), from.getLongitude(), to.getLatitude(), to.getLongitude());
+    }
+
+    private static double haversine(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.sqrt(a));
+    }
+}
@@ -3,68 +3,165 @@ package com.example.google_backend.utils.generator;
 
 import com.example.google_backend.model.RouteRequest;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+import java.util.TreeSet;
+
 /**
  * 缓存键生成工具类
  */
 public class CacheKeyGenerator {
 
+    private static final String ROUTE_PREFIX = "route:";
+
+    // 哈希键保留的 SHA-256 字节数 (128 位)
+    private static final int HASH_BYTES = 16;
+
+    // 未单独配置的出行方式使用的量化器，默认保留5位小数 (约1.1米)
+    private static volatile SpatialQuantizer defaultQuantizer = new DecimalQuantizer(5);
+
+    // 按出行方式 (大写) 配置的量化器
+    private static volatile Map<String, SpatialQuantizer> modeQuantizers = Map.of();
+
+    // 是否使用哈希后的短键
+    private static volatile boolean hashed = false;
+
     private CacheKeyGenerator() {
         // 私有构造函数防止实例化
     }
 
+    /**
+     * 配置坐标量化方式与键格式，由 CacheKeyConfig 在启动时调用
+     *
+     * @param defaultSpatialQuantizer 默认量化器
+     * @param quantizersByMode 按出行方式 (大写) 配置的量化器
+     * @param hashedKeys 是否使用哈希后的短键
+     */
+    public static void configure(SpatialQuantizer defaultSpatialQuantizer,
+                                 Map<String, SpatialQuantizer> quantizersByMode,
+                                 boolean hashedKeys) {
+        defaultQuantizer = defaultSpatialQuantizer;
+        modeQuantizers = Map.copyOf(quantizersByMode);
+        hashed = hashedKeys;
+    }
+
     /**
      * 根据路线请求生成缓存键
+     * 格式为 route:&lt;量化级别&gt;:&lt;规范键或其哈希&gt;
      *
      * @param request 路线请求
      * @return 缓存键
      */
     public static String generateRouteKey(RouteRequest request) {
+        String canonicalKey = generateCanonicalRouteKey(request);
+        if (!hashed) {
+            return canonicalKey;
+        }
+        String level = levelOf(canonicalKey);
+        return ROUTE_PREFIX + level + ":" + hash(canonicalKey);
+    }
+
+    /**
+     * 生成可读的规范缓存键
+     * 坐标按出行方式对应的量化器映射到单元；出行方式大写；公共交通方式大写、去重并排序，
+     * 因此 [BUS,SUBWAY] 与 [subway,bus] 得到相同的键
+     *
+     * @param request 路线请求
+     * @return 规范缓存键
+     */
+    public static String generateCanonicalRouteKey(RouteRequest request) {
         if (request == null) {
             throw new IllegalArgumentException("RouteRequest cannot be null");
         }
 
-        StringBuilder keyBuilder = new StringBuilder("route:");
+        String travelMode = canonicalMode(request.getTravelMode());
+        SpatialQuantizer quantizer = quantizerFor(travelMode);
+
+        StringBuilder keyBuilder = new StringBuilder(ROUTE_PREFIX)
+                .append(quantizer.level())
+                .append(":");
 
         // 处理起点坐标
-        if (request.getOrigin() != null) {
-            // 对坐标四舍五入到5位小数以减少微小差异造成的缓存未命中
-            // 5位小数精度约为1.1米，足够大多数城市导航场景
-            keyBuilder.append(roundCoordinate(request.getOrigin().getLatitude()))
-                    .append(",")
-                    .append(roundCoordinate(request.getOrigin().getLongitude()));
-        } else {
-            keyBuilder.append("unknown");
-        }
+        appendCell(keyBuilder, quantizer, request.getOrigin());
 
         keyBuilder.append(":");
 
         // 处理终点坐标
-        if (request.getDestination() != null) {
-            keyBuilder.append(roundCoordinate(request.getDestination().getLatitude()))
-                    .append(",")
-                    .append(roundCoordinate(request.getDestination().getLongitude()));
-        } else {
-            keyBuilder.append("unknown");
-        }
+        appendCell(keyBuilder, quantizer, request.getDestination());
 
         keyBuilder.append(":");
 
-        // 添加出行方式
-        keyBuilder.append(request.getTravelMode() != null ? request.getTravelMode() : "ANY");
+        // 添加出行方式与公共交通方式
+        keyBuilder.append(generateModeKey(request));
+
+        return keyBuilder.toString();
+    }
 
-        // 添加公共交通方式
+    /**
+     * 生成规范的出行方式部分：出行方式大写；公共交通方式大写、去重并排序
+     * 如 TRANSIT:BUS,SUBWAY
+     *
+     * @param request 路线请求
+     * @return 出行方式键
+     */
+    public static String generateModeKey(RouteRequest request) {
+        StringBuilder keyBuilder = new StringBuilder(canonicalMode(request.getTravelMode()));
         if (request.getTransitModes() != null && !request.getTransitModes().isEmpty()) {
-            keyBuilder.append(":");
-            keyBuilder.append(String.join(",", request.getTransitModes()));
+            TreeSet<String> transitModes = new TreeSet<>();
+            for (String mode : request.getTransitModes()) {
+                if (mode != null && !mode.isBlank()) {
+                    transitModes.add(mode.trim().toUpperCase());
+                }
+            }
+            if (!transitModes.isEmpty()) {
+                keyBuilder.append(":");
+                keyBuilder.append(String.join(",", transitModes));
+            }
         }
-
         return keyBuilder.toString();
     }
 
-    private static double roundCoordinate(double coordinate) {
-        // 保留5位小数
-        return Math.round(coordinate * 1e5) / 1e5;
+    /**
+     * 从路线缓存键中取出量化级别
+     *
+     * @param routeKey 路线缓存键
+     * @return 量化级别，无法识别时返回 unknown
+     */
+    public static String levelOf(String routeKey) {
+        if (routeKey == null || !routeKey.startsWith(ROUTE_PREFIX)) {
+            return "unknown";
+        }
+        int end = routeKey.indexOf(':', ROUTE_PREFIX.length());
+        return end < 0 ? "unknown" : routeKey.substring(ROUTE_PREFIX.length(), end);
+    }
+
+    private static String canonicalMode(String travelMode) {
+        return travelMode == null || travelMode.isBlank() ? "ANY" : travelMode.trim().toUpperCase();
+    }
+
+    private static SpatialQuantizer quantizerFor(String travelMode) {
+        return modeQuantizers.getOrDefault(travelMode, defaultQuantizer);
+    }
+
+    private static void appendCell(StringBuilder keyBuilder, SpatialQuantizer quantizer, RouteRequest.Coordinates coordinates) {
+        if (coordinates != null) {
+            keyBuilder.append(quantizer.cell(coordinates.getLatitude(), coordinates.getLongitude()));
+        } else {
+            keyBuilder.append("unknown");
+        }
+    }
 
+    private static String hash(String canonicalKey) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(canonicalKey.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest, HASH_BYTES));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
     }
 
     // 可以添加其他类型的缓存键生成方法
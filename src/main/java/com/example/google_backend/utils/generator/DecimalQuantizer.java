@@ -0,0 +1,28 @@
+package com.example.google_backend.utils.generator;
+
+/**
+ * 按小数位数四舍五入坐标 (5 位小数约 1.1 米)
+ */
+public class DecimalQuantizer implements SpatialQuantizer {
+
+    private final int decimals;
+    private final double scale;
+
+    public DecimalQuantizer(int decimals) {
+        if (decimals < 0 || decimals > 8) {
+            throw new IllegalArgumentException("Decimals must be between 0 and 8: " + decimals);
+        }
+        this.decimals = decimals;
+        this.scale = Math.pow(10, decimals);
+    }
+
+    @Override
+    public String level() {
+        return "d" + decimals;
+    }
+
+    @Override
+    public String cell(double latitude, double longitude) {
+        return Math.round(latitude * scale) / scale + "," + Math.round(longitude * scale) / scale;
+    }
+}
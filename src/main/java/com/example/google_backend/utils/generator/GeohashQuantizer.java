@@ -0,0 +1,61 @@
+package com.example.google_backend.utils.generator;
+
+/**
+ * 按 geohash 精度量化坐标 (精度 7 约 153m x 153m，精度 8 约 38m x 19m)
+ */
+public class GeohashQuantizer implements SpatialQuantizer {
+
+    private static final char[] BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+
+    private final int precision;
+
+    public GeohashQuantizer(int precision) {
+        if (precision < 1 || precision > 12) {
+            throw new IllegalArgumentException("Geohash precision must be between 1 and 12: " + precision);
+        }
+        this.precision = precision;
+    }
+
+    @Override
+    public String level() {
+        return "gh" + precision;
+    }
+
+    @Override
+    public String cell(double latitude, double longitude) {
+        double minLat = -90, maxLat = 90;
+        double minLon = -180, maxLon = 180;
+        char[] hash = new char[precision];
+        boolean evenBit = true;
+        int bit = 0;
+        int index = 0;
+        for (int i = 0; i < precision; ) {
+            if (evenBit) {
+                double mid = (minLon + maxLon) / 2;
+                if (longitude >= mid) {
+                    index = index * 2 + 1;
+                    minLon = mid;
+                } else {
+                    index = index * 2;
+                    maxLon = mid;
+                }
+            } else {
+                double mid = (minLat + maxLat) / 2;
+                if (latitude >= mid) {
+                    index = index * 2 + 1;
+                    minLat = mid;
+                } else {
+                    index = index * 2;
+                    maxLat = mid;
+                }
+            }
+            evenBit = !evenBit;
+            if (++bit == 5) {
+                hash[i++] = BASE32[index];
+                bit = 0;
+                index = 0;
+            }
+        }
+        return new String(hash);
+    }
+}
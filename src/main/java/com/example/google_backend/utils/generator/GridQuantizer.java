@@ -0,0 +1,36 @@
+package com.example.google_backend.utils.generator;
+
+/**
+ * 按固定边长 (米) 的网格量化坐标
+ * 纬度方向按固定度数划分；经度方向的度数按所在纬度行的中心纬度换算，保证各纬度下单元大小接近
+ */
+public class GridQuantizer implements SpatialQuantizer {
+
+    // 每度纬度约 111320 米
+    private static final double METERS_PER_DEGREE = 111320.0;
+
+    private final double cellMeters;
+    private final double latStep;
+
+    public GridQuantizer(double cellMeters) {
+        if (cellMeters <= 0) {
+            throw new IllegalArgumentException("Cell size must be positive: " + cellMeters);
+        }
+        this.cellMeters = cellMeters;
+        this.latStep = cellMeters / METERS_PER_DEGREE;
+    }
+
+    @Override
+    public String level() {
+        return "grid" + (long) cellMeters + "m";
+    }
+
+    @Override
+    public String cell(double latitude, double longitude) {
+        long row = (long) Math.floor(latitude / latStep);
+        double rowCenter = (row + 0.5) * latStep;
+        double lonStep = cellMeters / (METERS_PER_DEGREE * Math.max(Math.cos(Math.toRadians(rowCenter)), 1e-6));
+        long col = (long) Math.floor(longitude / lonStep);
+        return row + "," + col;
+    }
+}
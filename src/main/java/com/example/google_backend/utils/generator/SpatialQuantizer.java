@@ -0,0 +1,48 @@
+package com.example.google_backend.utils.generator;
+
+/**
+ * 坐标量化器：把一定范围内的坐标映射为同一个单元，用于生成缓存键
+ * 距离足够近的请求落在同一单元时共享同一条缓存
+ */
+public interface SpatialQuantizer {
+
+    /**
+     * 量化级别名称，写入缓存键并用于按级别统计命中率，如 d5、grid100m、gh7
+     */
+    String level();
+
+    /**
+     * 返回坐标所在单元的标识
+     *
+     * @param latitude 纬度
+     * @param longitude 经度
+     * @return 单元标识
+     */
+    String cell(double latitude, double longitude);
+
+    /**
+     * 按配置创建量化器
+     * 支持 decimal:&lt;小数位数&gt;、grid:&lt;单元边长(米)&gt;、geohash:&lt;精度&gt;
+     *
+     * @param spec 配置，如 grid:100
+     * @return 量化器
+     */
+    static SpatialQuantizer parse(String spec) {
+        String[] parts = spec.trim().split(":");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Invalid quantizer spec: " + spec);
+        }
+        String type = parts[0].trim().toLowerCase();
+        String value = parts[1].trim();
+        switch (type) {
+            case "decimal":
+                return new DecimalQuantizer(Integer.parseInt(value));
+            case "grid":
+                return new GridQuantizer(Double.parseDouble(value));
+            case "geohash":
+                return new GeohashQuantizer(Integer.parseInt(value));
+            default:
+                throw new IllegalArgumentException("Unknown quantizer type: " + type);
+        }
+    }
+}
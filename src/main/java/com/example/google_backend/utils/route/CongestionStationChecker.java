@@ -1,9 +1,9 @@
 package com.example.google_backend.utils.route;
 
 
+import com.example.google_backend.model.ComputeRoutesResponse;
 import com.example.google_backend.model.RouteResponse;
 import com.example.google_backend.service.impl.EtaServiceImpl;
-import com.fasterxml.jackson.databind.JsonNode;
 import jakarta.annotation.PostConstruct;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
@@ -72,33 +72,28 @@ public class CongestionStationChecker {
                 System.currentTimeMillis() - startTime);
     }
 
-    public static boolean isCongested(JsonNode transitDetails) {
+    public static boolean isCongested(ComputeRoutesResponse.Transit transitDetails) {
 
         if (transitDetails == null) return false;
 
         // 获取交通工具信息
-        JsonNode transitLine = transitDetails.path("transitLine");
-        if (transitLine.isMissingNode()) return false;
+        ComputeRoutesResponse.Line transitLine = transitDetails.line();
+        if (transitLine == null) return false;
 
         // 获取交通工具类型
-        String vehicleType = transitLine.path("vehicle")
-                .path("type")
-                .asText("");
+        String vehicleType = transitLine.vehicleType() != null ? transitLine.vehicleType() : "";
 
 
         // 暂时只判断公交车
         if ("BUS".equals(vehicleType)) {
             try {
-                JsonNode stopDetails = transitDetails.path("stopDetails");
-                if (stopDetails.isMissingNode()) return false;
+                if (!transitDetails.hasStopDetails()) return false;
                 // 获取当前出发站点名称
-                String stationName = stopDetails.path("departureStop")
-                        .path("name")
-                        .asText();
+                String stationName = transitDetails.departureStop() != null
+                        ? transitDetails.departureStop().name() : null;
 
                 // 获取时间 HH:mm 格式 并 将其转换为 HK 时间
-                String departureTime = stopDetails.path("departureTime")
-                        .asText();
+                String departureTime = transitDetails.departureTime();
                 String currentTime = ZonedDateTime.parse(departureTime)
                         .withZoneSameInstant(ZoneId.of("Asia/Hong_Kong"))
                         .format(DateTimeFormatter.ofPattern("HH:mm"));
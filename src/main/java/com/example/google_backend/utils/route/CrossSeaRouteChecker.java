@@ -1,6 +1,6 @@
 package com.example.google_backend.utils.route;
 
-import com.fasterxml.jackson.databind.JsonNode;
+import com.example.google_backend.model.ComputeRoutesResponse;
 import org.springframework.stereotype.Component;
 
 import java.util.Set;
@@ -34,22 +34,20 @@ public class CrossSeaRouteChecker {
             "X970"
     );
 
-    public static boolean isCrossSeaRoute(JsonNode transitDetails) {
+    public static boolean isCrossSeaRoute(ComputeRoutesResponse.Transit transitDetails) {
         if (transitDetails == null) return false;
 
         // 获取交通工具信息
-        JsonNode transitLine = transitDetails.path("transitLine");
-        if (transitLine.isMissingNode()) return false;
+        ComputeRoutesResponse.Line transitLine = transitDetails.line();
+        if (transitLine == null) return false;
 
         // 获取交通工具类型
-        String vehicleType = transitLine.path("vehicle")
-                .path("type")
-                .asText("");
+        String vehicleType = transitLine.vehicleType() != null ? transitLine.vehicleType() : "";
 
         // 获取路线名称或编号
-        String routeName = transitLine.path("nameShort").asText("");
+        String routeName = transitLine.nameShort() != null ? transitLine.nameShort() : "";
         if (routeName.isEmpty()) {
-            routeName = transitLine.path("name").asText("");
+            routeName = transitLine.name() != null ? transitLine.name() : "";
         }
 
         // 根据交通工具类型判断
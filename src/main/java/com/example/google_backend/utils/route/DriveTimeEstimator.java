@@ -0,0 +1,251 @@
+package com.example.google_backend.utils.route;
+
+import com.example.google_backend.model.RouteResponse;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 本地驾驶时间估算
+ * 直线 (haversine) 距离 × 绕行系数 ÷ 按小时的车速，再加上等车时间；
+ * 每个小时的估算值用 OTP 实际返回的驾驶时间做指数加权校准。
+ * 用于判断一段公交是否值得请求 OTP 规划，以及 OTP 不可用或预算不足时给出近似的驾驶步骤。
+ */
+@Component
+public class DriveTimeEstimator {
+
+    private static final Logger logger = LoggerFactory.getLogger(DriveTimeEstimator.class);
+
+    private static final double EARTH_RADIUS_METERS = 6_371_000.0;
+
+    // 校准系数范围，避免个别异常的 OTP 结果使估算失真
+    private static final double MIN_CALIBRATION = 0.5;
+    private static final double MAX_CALIBRATION = 2.5;
+
+    // 车速按该时区的钟点取值，与 OTP 规划使用的时区一致
+    @Value("${otp.zone-id:Asia/Hong_Kong}")
+    private String zoneIdName;
+
+    // 是否在登记替换路段前先估算
+    @Value("${route.estimate.enabled:true}")
+    private boolean enabled;
+
+    // OTP 不可用、超时或预算不足时是否用估算的驾驶步骤代替
+    @Value("${route.estimate.fallback-enabled:true}")
+    private boolean fallbackEnabled;
+
+    // 道路绕行系数 (实际道路距离 / 直线距离)
+    @Value("${route.estimate.detour-factor:1.35}")
+    private double detourFactor;
+
+    // 等车 (叫车) 时间 (秒)
+    @Value("${route.estimate.pickup-seconds:180}")
+    private long pickupSeconds;
+
+    // 工作日 0-23 时的平均车速 (km/h)
+    @Value("${route.estimate.speed-kmh:30,32,33,33,32,28,22,17,15,18,22,23,22,22,22,21,19,16,15,18,22,25,27,28}")
+    private String speedProfile;
+
+    // 周末车速系数
+    @Value("${route.estimate.weekend-speed-factor:1.15}")
+    private double weekendSpeedFactor;
+
+    // 估算驾驶时间超过公交时间 (等车 + 乘车) 的该倍数时，认为打车明显不划算，不请求 OTP
+    @Value("${route.estimate.skip-ratio:1.2}")
+    private double skipRatio;
+
+    // 校准的指数加权系数，0 表示不校准
+    @Value("${route.estimate.calibration-alpha:0.1}")
+    private double calibrationAlpha;
+
+    private ZoneId zoneId;
+
+    private final double[] speedKmh = new double[24];
+
+    // 每小时的校准系数 (OTP 实际时间 / 估算时间)，由 lock 保护
+    private final double[] calibration = new double[24];
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final LongAdder estimates = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+    private final LongAdder calibrations = new LongAdder();
+
+    /**
+     * 估算结果：道路距离 (米) 与驾驶时间 (秒，含等车时间)
+     */
+    public record Estimate(double distanceMeters, double durationSeconds) {
+    }
+
+    @PostConstruct
+    public void init() {
+        zoneId = ZoneId.of(zoneIdName);
+        String[] values = speedProfile.split(",");
+        if (values.length != 24) {
+            throw new IllegalArgumentException("route.estimate.speed-kmh needs 24 hourly values, got " + values.length);
+        }
+        for (int hour = 0; hour < 24; hour++) {
+            speedKmh[hour] = Double.parseDouble(values[hour].trim());
+            calibration[hour] = 1.0;
+        }
+        logger.info("驾驶时间估算 - 绕行系数: {} - 等车时间: {}s - 跳过倍数: {} - 时区: {}",
+                detourFactor, pickupSeconds, skipRatio, zoneId);
+    }
+
+    /**
+     * 估算两点之间的驾驶时间
+     *
+     * @param departure 出发时间
+     * @return 估算结果
+     */
+    public Estimate estimate(double startLat, double startLng, double endLat, double endLng, Instant departure) {
+        estimates.increment();
+        ZonedDateTime time = departure.atZone(zoneId);
+        int hour = time.getHour();
+        double factor;
+        lock.lock();
+        try {
+            factor = calibration[hour];
+        } finally {
+            lock.unlock();
+        }
+        double distance = haversine(startLat, startLng, endLat, endLng) * detourFactor;
+        return new Estimate(distance, rawDriveSeconds(distance, time) * factor + pickupSeconds);
+    }
+
+    /**
+     * 估算两个站点之间的驾驶时间
+     *
+     * @return 估算结果，站点没有坐标时返回 null
+     */
+    public Estimate estimate(RouteResponse.StepDetail.TransitDetails.StopDetails.Stop start,
+                             RouteResponse.StepDetail.TransitDetails.StopDetails.Stop end,
+                             Instant departure) {
+        if (start == null || end == null || !start.hasLocation() || !end.hasLocation()) {
+            return null;
+        }
+        return estimate(start.getLatitude(), start.getLongitude(), end.getLatitude(), end.getLongitude(), departure);
+    }
+
+    /**
+     * 是否值得为这段公交请求 OTP 规划：估算的驾驶时间明显长于公交时间时返回 false
+     *
+     * @param transitSeconds 从到站开始的公交时间 (等车 + 乘车，秒)
+     * @return true 需要规划
+     */
+    public boolean worthPlanning(RouteResponse.StepDetail.TransitDetails.StopDetails.Stop start,
+                                 RouteResponse.StepDetail.TransitDetails.StopDetails.Stop end,
+                                 Instant departure, long transitSeconds) {
+        if (!enabled || transitSeconds <= 0) {
+            return true;
+        }
+        Estimate estimate = estimate(start, end, departure);
+        if (estimate == null || estimate.durationSeconds() <= transitSeconds * skipRatio) {
+            return true;
+        }
+        skipped.increment();
+        logger.debug("估算打车 {}s 明显慢于公交 {}s，不请求 OTP: {} -> {}",
+                Math.round(estimate.durationSeconds()), transitSeconds, start.getName(), end.getName());
+        return false;
+    }
+
+    /**
+     * OTP 不可用时的近似驾驶步骤
+     *
+     * @return 估算的 DRIVE 步骤；未启用或坐标无法解析时返回空列表
+     */
+    public List<RouteResponse.StepDetail> approximateSteps(RouteResponse.StepDetail.TransitDetails.StopDetails.Stop start,
+                                                           RouteResponse.StepDetail.TransitDetails.StopDetails.Stop end) {
+        List<RouteResponse.StepDetail> steps = new ArrayList<>();
+        if (!fallbackEnabled) {
+            return steps;
+        }
+        Estimate estimate = estimate(start, end, Instant.now());
+        if (estimate == null) {
+            return steps;
+        }
+        fallbacks.increment();
+        RouteResponse.StepDetail step = new RouteResponse.StepDetail();
+        step.setTravelMode("DRIVE");
+        step.setDistance(Math.round(estimate.distanceMeters()));
+        step.setDuration(Math.round(estimate.durationSeconds()));
+        step.setInstruction(String.format("Estimated: From %s drive to %s", start.getName(), end.getName()));
+        steps.add(step);
+        return steps;
+    }
+
+    /**
+     * 用 OTP 返回的驾驶时间校准对应小时的估算
+     *
+     * @param otpSeconds OTP 返回的驾驶时间 (秒，不含等车时间)
+     */
+    public void calibrate(double startLat, double startLng, double endLat, double endLng,
+                          Instant departure, double otpSeconds) {
+        if (calibrationAlpha <= 0 || otpSeconds <= 0) {
+            return;
+        }
+        ZonedDateTime time = departure.atZone(zoneId);
+        double raw = rawDriveSeconds(haversine(startLat, startLng, endLat, endLng) * detourFactor, time);
+        if (raw <= 0) {
+            return;
+        }
+        double ratio = Math.max(MIN_CALIBRATION, Math.min(MAX_CALIBRATION, otpSeconds / raw));
+        int hour = time.getHour();
+        lock.lock();
+        try {
+            calibration[hour] = calibration[hour] * (1 - calibrationAlpha) + ratio * calibrationAlpha;
+        } finally {
+            lock.unlock();
+        }
+        calibrations.increment();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("estimates", estimates.sum());
+        stats.put("skipped", skipped.sum());
+        stats.put("fallbacks", fallbacks.sum());
+        stats.put("calibrations", calibrations.sum());
+        lock.lock();
+        try {
+            double[] factors = new double[24];
+            for (int hour = 0; hour < 24; hour++) {
+                factors[hour] = Math.round(calibration[hour] * 100) / 100.0;
+            }
+            stats.put("calibration", factors);
+        } finally {
+            lock.unlock();
+        }
+        return stats;
+    }
+
+    private double rawDriveSeconds(double distanceMeters, ZonedDateTime time) {
+        double speed = speedKmh[time.getHour()];
+        DayOfWeek day = time.getDayOfWeek();
+        if (day == DayOfWeek.SATURDAY || day == DayOfWeek.SUNDAY) {
+            speed *= weekendSpeedFactor;
+        }
+        return speed <= 0 ? 0 : distanceMeters / (speed / 3.6);
+    }
+
+    static double haversine(double lat1, double lng1, double lat2, double lng2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1.0, Math.sqrt(a)));
+    }
+}
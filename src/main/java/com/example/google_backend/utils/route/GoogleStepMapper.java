@@ -0,0 +1,112 @@
+package com.example.google_backend.utils.route;
+
+import com.example.google_backend.model.ComputeRoutesResponse;
+import com.example.google_backend.model.RouteResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Google computeRoutes 步骤转换为响应模型
+ * 路线处理 ({@link StepEngine}) 与不做优化的路线查询共用
+ */
+public final class GoogleStepMapper {
+
+    private GoogleStepMapper() {
+    }
+
+    /**
+     * 转换一个步骤 (不含公交详情)
+     */
+    public static RouteResponse.StepDetail toStepDetail(ComputeRoutesResponse.Step step) {
+        RouteResponse.StepDetail stepDetail = new RouteResponse.StepDetail();
+        stepDetail.setInstruction(step.instruction() != null ? step.instruction() : "No Instruction");
+        stepDetail.setDistance(step.distanceMeters());
+        stepDetail.setDuration(step.durationSeconds());
+        stepDetail.setPolyline(step.polyline() != null ? step.polyline() : "No Polyline");
+        stepDetail.setTravelMode(step.travelMode() != null ? step.travelMode() : "WALK");
+        return stepDetail;
+    }
+
+    /**
+     * 转换公交详情
+     * arrivalTime / departureTime 原样保存，等车时间在步骤处理时计算
+     */
+    public static RouteResponse.StepDetail.TransitDetails toTransitDetails(ComputeRoutesResponse.Transit transit) {
+        RouteResponse.StepDetail.TransitDetails transitDetails = new RouteResponse.StepDetail.TransitDetails();
+
+        if (transit.hasStopDetails()) {
+            RouteResponse.StepDetail.TransitDetails.StopDetails stopDetails = new RouteResponse.StepDetail.TransitDetails.StopDetails();
+            if (transit.arrivalStop() != null) {
+                stopDetails.setArrivalStop(toStop(transit.arrivalStop(), "Unknown Arrival Stop"));
+            }
+            stopDetails.setArrivalTime(transit.arrivalTime());
+            if (transit.departureStop() != null) {
+                stopDetails.setDepartureStop(toStop(transit.departureStop(), "Unknown Departure Stop"));
+            }
+            stopDetails.setDepartureTime(transit.departureTime());
+            transitDetails.setStopDetails(stopDetails);
+        }
+
+        if (transit.headsign() != null) {
+            transitDetails.setHeadsign(transit.headsign());
+        }
+
+        ComputeRoutesResponse.Line line = transit.line();
+        if (line != null) {
+            RouteResponse.StepDetail.TransitDetails.TransitLine transitLine = new RouteResponse.StepDetail.TransitDetails.TransitLine();
+
+            if (line.agencies() != null) {
+                List<RouteResponse.StepDetail.TransitDetails.TransitLine.Agency> agencies = new ArrayList<>(line.agencies().size());
+                for (ComputeRoutesResponse.Agency agency : line.agencies()) {
+                    RouteResponse.StepDetail.TransitDetails.TransitLine.Agency detail =
+                            new RouteResponse.StepDetail.TransitDetails.TransitLine.Agency();
+                    detail.setName(agency.name());
+                    detail.setPhoneNumber(agency.phoneNumber());
+                    detail.setUri(agency.uri());
+                    agencies.add(detail);
+                }
+                transitLine.setAgencies(agencies);
+            }
+
+            transitLine.setName(line.name());
+            transitLine.setColor(line.color());
+            transitLine.setNameShort(line.nameShort());
+            transitLine.setTextColor(line.textColor());
+
+            if (line.hasVehicle()) {
+                RouteResponse.StepDetail.TransitDetails.TransitLine.Vehicle vehicle =
+                        new RouteResponse.StepDetail.TransitDetails.TransitLine.Vehicle();
+                if (line.vehicleName() != null) {
+                    RouteResponse.StepDetail.TransitDetails.TransitLine.Vehicle.Name name =
+                            new RouteResponse.StepDetail.TransitDetails.TransitLine.Vehicle.Name();
+                    name.setText(line.vehicleName());
+                    vehicle.setName(name);
+                }
+                vehicle.setType(line.vehicleType());
+                vehicle.setIconUri(line.vehicleIconUri());
+                transitLine.setVehicle(vehicle);
+            }
+
+            transitDetails.setTransitLine(transitLine);
+        }
+
+        if (transit.stopCount() != null) {
+            transitDetails.setStopCount(transit.stopCount());
+        }
+
+        return transitDetails;
+    }
+
+    private static RouteResponse.StepDetail.TransitDetails.StopDetails.Stop toStop(ComputeRoutesResponse.Stop stop,
+                                                                                   String unknownName) {
+        RouteResponse.StepDetail.TransitDetails.StopDetails.Stop detail = new RouteResponse.StepDetail.TransitDetails.StopDetails.Stop();
+        detail.setName(stop.name() != null ? stop.name() : unknownName);
+        if (stop.location() != null) {
+            detail.setCoordinates(stop.location().latitude(), stop.location().longitude());
+        } else {
+            detail.setLocation("Unknown Location");
+        }
+        return detail;
+    }
+}
@@ -1,8 +1,8 @@
 package com.example.google_backend.utils.route;
 
+import com.example.google_backend.common.concurrent.RequestBudget;
 import com.example.google_backend.common.redis.service.RedisService;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.example.google_backend.model.ComputeRoutesResponse;
 import jakarta.annotation.PostConstruct;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
@@ -36,6 +36,7 @@ public class LongDistanceExitChecker {
     private static final String REDIS_DISTANCE_KEY = "metro:exit:distances";
     private static final double LONG_DISTANCE_THRESHOLD = 600.0; // 长距离出口阈值(米)
     private static final double SEARCH_RADIUS = 50.0; // 搜索半径(米)
+    private static final long MIN_BUDGET_MS = 50; // 剩余请求预算低于该值时跳过 Redis 查询(毫秒)
 
     @Value("${exits.data.long-distance-file}")
     private Resource longDistanceExitsResource;
@@ -107,37 +108,20 @@ public class LongDistanceExitChecker {
     }
 
     /**
-     * 检查步骤节点是否指向长距离出口
-     * @param transitDetails JsonNode 步骤节点
+     * 检查公交步骤的出发站点是否为长距离出口
+     * @param transitDetails 公交步骤的 transitDetails
      * @return 如果是长距离出口返回true，否则返回false
      */
-    public boolean isLongDistanceExitStep(JsonNode transitDetails) {
-        if (transitDetails == null) return false;
+    public boolean isLongDistanceExitStep(ComputeRoutesResponse.Transit transitDetails) {
+        if (transitDetails == null || transitDetails.departureStop() == null) return false;
+        // 可选检查：请求预算不足时跳过
+        if (!RequestBudget.allows("longDistanceExitCheck", MIN_BUDGET_MS)) return false;
 
-        try {
-            // 提取步骤的终点位置
-            JsonNode stopDetails = transitDetails.path("stopDetails");
-            if (stopDetails.isMissingNode()) return false;
-
-            //解析站点经纬度，首先得到经纬度json字符串
-            String startStopLocation = stopDetails.path("departureStop")
-                    .path("location").toString();
-
-            // 解析坐标
-            ObjectMapper mapper = new ObjectMapper();
-            JsonNode locationNode = mapper.readTree(startStopLocation);
-
-            JsonNode latLngNode = locationNode.get("latLng");
-            double lat = latLngNode.get("latitude").asDouble();
-            double lng = latLngNode.get("longitude").asDouble();
+        ComputeRoutesResponse.LatLng location = transitDetails.departureStop().location();
+        if (location == null) return false;
 
-            // 使用经纬度检查是否为长距离出口
-            return isLongDistanceExit(lat, lng);
-
-        } catch (Exception e) {
-            logger.error("解析步骤节点时发生错误", e);
-            return false;
-        }
+        // 使用经纬度检查是否为长距离出口
+        return isLongDistanceExit(location.latitude(), location.longitude());
     }
 
     /**
@@ -0,0 +1,93 @@
+package com.example.google_backend.utils.route;
+
+import com.example.google_backend.model.RouteResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+/**
+ * 路线结构指纹，用于判断同一个缓存键重新计算后路线是否真的变化
+ * 只包含稳定的结构：每个 leg 的步骤数，每个步骤的出行方式、线路名称、上下车站名与途经站数；
+ * 不包含发车 / 到达时间、等车时间等每次计算都会变化的时间信息
+ */
+public final class RouteFingerprint {
+
+    private static final byte SEPARATOR = 0;
+
+    private RouteFingerprint() {
+    }
+
+    /**
+     * @return 结构的 SHA-256 前 8 字节，没有路线时为空结构的指纹
+     */
+    public static long of(RouteResponse response) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        List<RouteResponse.RouteDetail> routes = response == null ? null : response.getRoutes();
+        if (routes != null) {
+            for (RouteResponse.RouteDetail route : routes) {
+                update(digest, "route");
+                List<RouteResponse.LegDetail> legs = route == null ? null : route.getLegs();
+                if (legs == null) {
+                    continue;
+                }
+                for (RouteResponse.LegDetail leg : legs) {
+                    List<RouteResponse.StepDetail> steps = leg == null ? null : leg.getSteps();
+                    update(digest, "leg");
+                    update(digest, String.valueOf(steps == null ? -1 : steps.size()));
+                    if (steps == null) {
+                        continue;
+                    }
+                    for (RouteResponse.StepDetail step : steps) {
+                        updateStep(digest, step);
+                    }
+                }
+            }
+        }
+
+        byte[] hash = digest.digest();
+        long fingerprint = 0L;
+        for (int i = 0; i < 8; i++) {
+            fingerprint = (fingerprint << 8) | (hash[i] & 0xFF);
+        }
+        return fingerprint;
+    }
+
+    private static void updateStep(MessageDigest digest, RouteResponse.StepDetail step) {
+        if (step == null) {
+            update(digest, null);
+            return;
+        }
+        update(digest, step.getTravelMode());
+        RouteResponse.StepDetail.TransitDetails details = step.getTransitDetails();
+        if (details == null) {
+            // OTP 驾驶路段等没有 transitDetails 的步骤
+            RouteResponse.TransitLine line = step.getTransitLine();
+            update(digest, line == null ? null : line.getName());
+            update(digest, line == null ? null : line.getNameShort());
+            return;
+        }
+        RouteResponse.StepDetail.TransitDetails.TransitLine line = details.getTransitLine();
+        update(digest, line == null ? null : line.getName());
+        update(digest, line == null ? null : line.getNameShort());
+        RouteResponse.StepDetail.TransitDetails.StopDetails stopDetails = details.getStopDetails();
+        update(digest, stopDetails == null || stopDetails.getDepartureStop() == null
+                ? null : stopDetails.getDepartureStop().getName());
+        update(digest, stopDetails == null || stopDetails.getArrivalStop() == null
+                ? null : stopDetails.getArrivalStop().getName());
+        update(digest, String.valueOf(details.getStopCount()));
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        if (value != null) {
+            digest.update(value.getBytes(StandardCharsets.UTF_8));
+        }
+        digest.update(SEPARATOR);
+    }
+}
@@ -0,0 +1,282 @@
+package com.example.google_backend.utils.route;
+
+import com.example.google_backend.model.ComputeRoutesResponse;
+import com.example.google_backend.model.RouteResponse;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 单遍步骤处理引擎
+ * 一个 leg 的步骤只转换一次，得到不可变的 {@link ParsedStep} 数组；
+ * 等车时间、公交段向后查找的终点站以及保留 / 替换判断都按数组下标计算，不再重复转换 transitDetails。
+ */
+public final class StepEngine {
+
+    // 公交段数超过该值时按高频换乘处理
+    private static final int HIGH_TRANSIT_THRESHOLD = 5;
+
+    // 高频换乘时保留的公交段数
+    private static final int HIGH_TRANSIT_KEEP = 3;
+
+    private StepEngine() {
+    }
+
+    /**
+     * 解析后的步骤
+     *
+     * @param detail         输出的步骤 (公交步骤已带 transitDetails)
+     * @param source         解码后的 transitDetails，供各检查器使用；非公交步骤为 null
+     * @param transitDetails 解析后的公交详情；非公交步骤为 null
+     * @param departureTime  上车时间，缺失或无法解析时为 null
+     * @param arrivalTime    下车时间，缺失或无法解析时为 null
+     */
+    public record ParsedStep(RouteResponse.StepDetail detail,
+                             String travelMode,
+                             boolean walk,
+                             boolean transit,
+                             ComputeRoutesResponse.Transit source,
+                             RouteResponse.StepDetail.TransitDetails transitDetails,
+                             Instant departureTime,
+                             Instant arrivalTime) {
+    }
+
+    /**
+     * 替换判断
+     */
+    public interface Policy {
+
+        /**
+         * 步行到站后乘坐的公交段是否考虑替换 (等车过久、站点拥堵等)
+         *
+         * @param step            公交步骤
+         * @param waitTimeSeconds 到站后的等车时间 (秒)
+         */
+        boolean shouldReplace(ParsedStep step, long waitTimeSeconds);
+
+        /**
+         * 是否值得为这段公交请求驾驶规划
+         *
+         * @param transitSeconds 公交时间 (等车 + 乘车，秒)，无法计算时为 -1
+         */
+        boolean worthPlanning(RouteResponse.StepDetail.TransitDetails.StopDetails.Stop startStop,
+                              RouteResponse.StepDetail.TransitDetails.StopDetails.Stop endStop,
+                              Instant departureTime, long transitSeconds);
+    }
+
+    /**
+     * 待替换路段的接收方
+     */
+    @FunctionalInterface
+    public interface CandidateSink {
+
+        /**
+         * @param legSteps      输出的步骤列表，originalSteps 从 startIndex 开始
+         * @param startIndex    被替换路段在 legSteps 中的起始位置
+         * @param originalSteps 被替换的连续公交步骤
+         */
+        void accept(List<RouteResponse.StepDetail> legSteps, int startIndex,
+                    List<RouteResponse.StepDetail> originalSteps,
+                    RouteResponse.StepDetail.TransitDetails.StopDetails.Stop startStop,
+                    RouteResponse.StepDetail.TransitDetails.StopDetails.Stop endStop);
+    }
+
+    /**
+     * 处理一个 leg 的全部步骤
+     * 公交段超过 5 段时只保留 3 段 (高频换乘)，否则按等车时间等条件登记待替换路段，
+     * 被登记的公交步骤原样保留在返回列表中，由调用方稍后回填驾驶路线
+     *
+     * @param legSteps leg 的步骤
+     * @return 处理后的步骤
+     */
+    public static List<RouteResponse.StepDetail> process(List<ComputeRoutesResponse.Step> legSteps,
+                                                         Policy policy, CandidateSink sink) {
+        ParsedStep[] steps = parse(legSteps);
+        int transitCount = 0;
+        for (ParsedStep step : steps) {
+            if (step.transit()) {
+                transitCount++;
+            }
+        }
+        return transitCount > HIGH_TRANSIT_THRESHOLD
+                ? processHighTransit(steps)
+                : processNormal(steps, policy, sink);
+    }
+
+    /**
+     * 单遍转换 leg 的步骤
+     */
+    public static ParsedStep[] parse(List<ComputeRoutesResponse.Step> legSteps) {
+        ParsedStep[] steps = new ParsedStep[legSteps.size()];
+        for (int i = 0; i < steps.length; i++) {
+            ComputeRoutesResponse.Step step = legSteps.get(i);
+            RouteResponse.StepDetail detail = GoogleStepMapper.toStepDetail(step);
+            String travelMode = step.travelMode() != null ? step.travelMode() : "WALK";
+            boolean transit = "TRANSIT".equalsIgnoreCase(travelMode);
+
+            ComputeRoutesResponse.Transit transitSource = null;
+            RouteResponse.StepDetail.TransitDetails transitDetails = null;
+            Instant departureTime = null;
+            Instant arrivalTime = null;
+            if (transit && step.transit() != null) {
+                transitSource = step.transit();
+                transitDetails = GoogleStepMapper.toTransitDetails(transitSource);
+                detail.setTransitDetails(transitDetails);
+                if (transitDetails.getStopDetails() != null) {
+                    departureTime = parseInstant(transitDetails.getStopDetails().getDepartureTime());
+                    arrivalTime = parseInstant(transitDetails.getStopDetails().getArrivalTime());
+                }
+            }
+            steps[i] = new ParsedStep(detail, travelMode, "WALK".equalsIgnoreCase(travelMode), transit,
+                    transitSource, transitDetails, departureTime, arrivalTime);
+        }
+        return steps;
+    }
+
+    /**
+     * 高频换乘：保留换乘时间最短的 3 段公交 (按下标标记) 与全部非公交步骤
+     */
+    static List<RouteResponse.StepDetail> processHighTransit(ParsedStep[] steps) {
+        List<Integer> transitIndexes = new ArrayList<>();
+        for (int i = 0; i < steps.length; i++) {
+            if (steps[i].transitDetails() != null) {
+                transitIndexes.add(i);
+            }
+        }
+        // 稳定排序，换乘时间相同时保留靠前的公交段
+        transitIndexes.sort(Comparator.comparingLong(i -> steps[i].transitDetails().getWaitTimeSeconds()));
+        boolean[] kept = new boolean[steps.length];
+        for (int k = 0; k < Math.min(HIGH_TRANSIT_KEEP, transitIndexes.size()); k++) {
+            kept[transitIndexes.get(k)] = true;
+        }
+
+        List<RouteResponse.StepDetail> result = new ArrayList<>(steps.length);
+        for (int i = 0; i < steps.length; i++) {
+            if (!steps[i].transit() || kept[i]) {
+                result.add(steps[i].detail());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 普通情况：累计步行时间，计算到站后的等车时间，需要替换时登记从该步骤开始的整段连续公交
+     */
+    static List<RouteResponse.StepDetail> processNormal(ParsedStep[] steps, Policy policy, CandidateSink sink) {
+        int n = steps.length;
+        // runEnd[i]: 从 i 开始的连续公交段之后的第一个下标
+        // lastStop[i]: 该连续公交段中最后一个带 stopDetails 的步骤，没有时为 -1
+        int[] runEnd = new int[n];
+        int[] lastStop = new int[n];
+        for (int i = n - 1; i >= 0; i--) {
+            if (!steps[i].transit()) {
+                runEnd[i] = i;
+                lastStop[i] = -1;
+                continue;
+            }
+            boolean continues = i + 1 < n && steps[i + 1].transit();
+            runEnd[i] = continues ? runEnd[i + 1] : i + 1;
+            if (continues && lastStop[i + 1] >= 0) {
+                lastStop[i] = lastStop[i + 1];
+            } else {
+                RouteResponse.StepDetail.TransitDetails td = steps[i].transitDetails();
+                lastStop[i] = td != null && td.getStopDetails() != null ? i : -1;
+            }
+        }
+
+        List<RouteResponse.StepDetail> result = new ArrayList<>(n);
+        String previousTravelMode = "WALK";
+        long previousWalkDuration = 0;
+        Instant curStepArrivalTime = Instant.now();
+        Instant previousStepArrivalTime = curStepArrivalTime;
+
+        for (int i = 0; i < n; i++) {
+            ParsedStep step = steps[i];
+            boolean previousWalk = "WALK".equalsIgnoreCase(previousTravelMode);
+
+            // 累计步行时间
+            if (previousWalk && step.walk()) {
+                previousWalkDuration += step.detail().getDuration();
+            }
+
+            RouteResponse.StepDetail.TransitDetails td = step.transitDetails();
+            if (td != null) {
+                // 更新到达时间
+                if (step.arrivalTime() != null) {
+                    curStepArrivalTime = step.arrivalTime();
+                }
+
+                // 检查是否需要替换路段
+                if (previousWalk && step.departureTime() != null) {
+                    Instant walkToStationTime = previousStepArrivalTime.plusSeconds(previousWalkDuration);
+                    long waitTimeSeconds = Duration.between(walkToStationTime, step.departureTime()).getSeconds();
+                    td.setWaitTimeSeconds(waitTimeSeconds);
+
+                    if (policy.shouldReplace(step, waitTimeSeconds)) {
+                        int end = runEnd[i];
+                        int last = lastStop[i];
+                        RouteResponse.StepDetail.TransitDetails.StopDetails.Stop startStop =
+                                td.getStopDetails().getDepartureStop();
+                        RouteResponse.StepDetail.TransitDetails.StopDetails.Stop endStop = last < 0 ? null
+                                : steps[last].transitDetails().getStopDetails().getArrivalStop();
+                        Instant lastArrivalTime = last < 0 ? null : steps[last].arrivalTime();
+
+                        // 公交时间 (等车 + 乘车)
+                        long transitSeconds = lastArrivalTime == null ? -1
+                                : Duration.between(walkToStationTime, lastArrivalTime).getSeconds();
+
+                        if (startStop != null && endStop != null
+                                && policy.worthPlanning(startStop, endStop, step.departureTime(), transitSeconds)) {
+                            List<RouteResponse.StepDetail> originalSteps = new ArrayList<>(end - i);
+                            for (int k = i; k < end; k++) {
+                                originalSteps.add(steps[k].detail());
+                            }
+                            sink.accept(result, result.size(), originalSteps, startStop, endStop);
+                            result.addAll(originalSteps);
+
+                            // 规划失败或没有结果时原公交步骤会留在 leg 中，按乘坐了这段公交推进状态：
+                            // 之后的步行从公交段的到达时间重新累计，下一段公交的等车时间不会从上车前的步行算起
+                            for (int k = i + 1; k < end; k++) {
+                                if (steps[k].arrivalTime() != null) {
+                                    curStepArrivalTime = steps[k].arrivalTime();
+                                }
+                            }
+                            previousStepArrivalTime = curStepArrivalTime;
+                            previousTravelMode = steps[end - 1].travelMode();
+                            previousWalkDuration = 0;
+
+                            // 跳过被替换的路段
+                            i = end - 1;
+                            continue;
+                        }
+                    }
+                }
+            }
+
+            previousStepArrivalTime = curStepArrivalTime;
+            previousTravelMode = step.travelMode();
+            result.add(step.detail());
+
+            // 重置步行时间
+            if (!step.walk()) {
+                previousWalkDuration = 0;
+            }
+        }
+        return result;
+    }
+
+    private static Instant parseInstant(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Instant.parse(value);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
@@ -2,8 +2,7 @@ package com.example.google_backend.utils.route;
 
 
 import com.example.google_backend.utils.JsonUtils;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.example.google_backend.model.ComputeRoutesResponse;
 import jakarta.annotation.PostConstruct;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -33,6 +32,10 @@ public class TaxiHotSpotChecker {
     @Value("${taxi.data.hotspots-file}")
     private Resource hotspotsResource;
 
+    // 修复前热点检查从未命中 (传入的是不存在的 departure_stop 节点)，默认保持原行为，确认替换比例后再开启
+    @Value("${taxi.hotspot.enabled:false}")
+    private boolean enabled;
+
     @Data
     @AllArgsConstructor
     private static class TaxiHotspot {
@@ -92,24 +95,17 @@ public class TaxiHotSpotChecker {
                 System.currentTimeMillis() - startTime);
     }
 
-    public boolean isHotspot(JsonNode transitDetails) throws IOException {
-
-        if(transitDetails == null) return false;
-
-        JsonNode stopDetails = transitDetails.path("stopDetails");
-        if (stopDetails.isMissingNode()) return false;
+    public boolean isHotspot(ComputeRoutesResponse.Transit transitDetails) {
 
-        //解析站点经纬度，首先得到json字符串
-        String startStopLocation = stopDetails.path("departureStop")
-                .path("location").toString();
+        if (!enabled) return false;
 
-        // 解析坐标
-        ObjectMapper mapper = new ObjectMapper();
-        JsonNode locationNode = mapper.readTree(startStopLocation);
+        if (transitDetails == null || transitDetails.departureStop() == null) return false;
 
-        JsonNode latLngNode = locationNode.get("latLng");
-        double lat = latLngNode.get("latitude").asDouble();
-        double lng = latLngNode.get("longitude").asDouble();
+        // 出发站点经纬度
+        ComputeRoutesResponse.LatLng location = transitDetails.departureStop().location();
+        if (location == null) return false;
+        double lat = location.latitude();
+        double lng = location.longitude();
 
         try {
             // 检查该位置是否在任何一个热点区域内
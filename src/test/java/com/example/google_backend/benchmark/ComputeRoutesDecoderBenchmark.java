@@ -0,0 +1,110 @@
+package com.example.google_backend.benchmark;
+
+import com.example.google_backend.common.google.ComputeRoutesDecoder;
+import com.example.google_backend.model.ComputeRoutesResponse;
+import com.example.google_backend.model.RouteResponse;
+import com.example.google_backend.utils.route.GoogleStepMapper;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * computeRoutes 响应解析对比：原来的 ObjectMapper.readTree 构建 JsonNode 树后逐个转换步骤
+ * vs {@link ComputeRoutesDecoder} 流式解析为 {@link ComputeRoutesResponse} 后转换步骤
+ * 两者都从响应体 (byte[]) 开始，得到同样的 StepDetail (公交步骤带 transitDetails)，结果为每次解析的耗时 (μs)。
+ * main 中启用了 GC profiler，gc.alloc.rate.norm 即每次解析分配的字节数。
+ *
+ * source 默认为测试资源中的香港公交路线响应，generated:N 按 {@link ComputeRoutesSamples} 生成 (每个 leg N 段公交)，
+ * 也可以指定其他 computeRoutes 响应文件。
+ *
+ * 运行: mvn test-compile exec:java -Dexec.mainClass=com.example.google_backend.benchmark.ComputeRoutesDecoderBenchmark -Dexec.classpathScope=test
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class ComputeRoutesDecoderBenchmark {
+
+    // computeRoutes 响应：测试资源、generated:<公交段数> 或文件路径
+    @Param({ ComputeRoutesSamples.HK_TRANSIT, "generated:3", "generated:8" })
+    private String source;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private byte[] body;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        body = ComputeRoutesSamples.load(mapper, source);
+    }
+
+    @Benchmark
+    public int tree() throws IOException {
+        int total = 0;
+        JsonNode response = mapper.readTree(body);
+        for (JsonNode routeNode : response.path("routes")) {
+            for (JsonNode legNode : routeNode.path("legs")) {
+                for (JsonNode stepNode : legNode.path("steps")) {
+                    RouteResponse.StepDetail stepDetail = TreeRouteParser.parseStep(stepNode);
+                    if (stepNode.has("transitDetails") && !stepNode.get("transitDetails").isNull()) {
+                        stepDetail.setTransitDetails(TreeRouteParser.parseTransitDetails(stepNode.get("transitDetails")));
+                    }
+                    total += stepDetail.getPolyline().length();
+                }
+            }
+        }
+        return total;
+    }
+
+    @Benchmark
+    public int streaming() throws IOException {
+        int total = 0;
+        ComputeRoutesResponse response = ComputeRoutesDecoder.decode(body);
+        for (ComputeRoutesResponse.Route route : response.routes()) {
+            if (route.legs() == null) {
+                continue;
+            }
+            for (ComputeRoutesResponse.Leg leg : route.legs()) {
+                if (leg.steps() == null) {
+                    continue;
+                }
+                for (ComputeRoutesResponse.Step step : leg.steps()) {
+                    RouteResponse.StepDetail stepDetail = GoogleStepMapper.toStepDetail(step);
+                    if (step.transit() != null) {
+                        stepDetail.setTransitDetails(GoogleStepMapper.toTransitDetails(step.transit()));
+                    }
+                    total += stepDetail.getPolyline().length();
+                }
+            }
+        }
+        return total;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ComputeRoutesDecoderBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.google_backend.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * 基准测试用的 computeRoutes 响应
+ * 与字段掩码 routes.legs 返回的结构相同，包括处理时用不到的 localizedValues、步骤起终点等字段
+ */
+final class ComputeRoutesSamples {
+
+    private static final Instant BASE_TIME = Instant.parse("2025-01-06T01:00:00Z");
+
+    // 基准测试默认使用的香港公交路线响应 (测试资源)
+    static final String HK_TRANSIT = "google/compute-routes-hk-transit.json";
+
+    private ComputeRoutesSamples() {
+    }
+
+    /**
+     * 基准测试的响应体
+     *
+     * @param source generated:&lt;公交段数&gt; 按 {@link #generate} 生成；否则为测试资源，不存在时按文件路径读取
+     */
+    static byte[] load(ObjectMapper mapper, String source) throws IOException {
+        if (source.startsWith("generated:")) {
+            return mapper.writeValueAsBytes(generate(mapper, Integer.parseInt(source.substring("generated:".length()))));
+        }
+        try (InputStream in = ComputeRoutesSamples.class.getResourceAsStream("/" + source)) {
+            if (in != null) {
+                return in.readAllBytes();
+            }
+        }
+        return Files.readAllBytes(Path.of(source));
+    }
+
+    /**
+     * 5 条路线，每条路线一个 leg：步行、公交交替，部分公交段等车时间超过 10 分钟
+     *
+     * @param transitCount 每个 leg 的公交段数
+     */
+    static JsonNode generate(ObjectMapper mapper, int transitCount) {
+        ObjectNode root = mapper.createObjectNode();
+        ArrayNode routes = root.putArray("routes");
+        for (int r = 0; r < 5; r++) {
+            ObjectNode route = routes.addObject();
+            route.put("distanceMeters", 12000 + r * 500);
+            route.put("duration", (2400 + r * 60) + "s");
+            route.putObject("polyline").put("encodedPolyline", "a~l~Fjk~uOwHJy@P");
+            ObjectNode leg = route.putArray("legs").addObject();
+            leg.put("distanceMeters", 12000 + r * 500);
+            leg.put("duration", (2400 + r * 60) + "s");
+            leg.put("staticDuration", (2400 + r * 60) + "s");
+            leg.putObject("polyline").put("encodedPolyline", "a~l~Fjk~uOwHJy@P");
+            location(leg.putObject("startLocation"), 22.30, 114.17 + r * 0.001);
+            location(leg.putObject("endLocation"), 22.40, 114.18 + r * 0.001);
+            localizedValues(leg, (12 + r * 0.5) + " km", (40 + r) + " mins");
+            ArrayNode steps = leg.putArray("steps");
+
+            Instant time = BASE_TIME;
+            for (int t = 0; t < transitCount; t++) {
+                for (int w = 0; w < 3; w++) {
+                    ObjectNode walk = steps.addObject();
+                    walk.put("distanceMeters", 80);
+                    walk.put("staticDuration", "60s");
+                    walk.putObject("polyline").put("encodedPolyline", "wHJy@P");
+                    location(walk.putObject("startLocation"), 22.30 + t * 0.001, 114.17);
+                    location(walk.putObject("endLocation"), 22.30 + t * 0.001, 114.171);
+                    ObjectNode instruction = walk.putObject("navigationInstruction");
+                    instruction.put("maneuver", "TURN_LEFT");
+                    instruction.put("instructions", "Walk " + w);
+                    localizedValues(walk, "80 m", "1 min");
+                    walk.put("travelMode", "WALK");
+                    time = time.plusSeconds(60);
+                }
+                // 每隔一段公交等车 15 分钟
+                Instant departure = time.plusSeconds((t + r) % 2 == 0 ? 900 : 120);
+                Instant arrival = departure.plusSeconds(600);
+                steps.add(transitStep(mapper, r, t, departure, arrival));
+                // 连续两段公交 (中途不下车换乘)
+                if (t % 3 == 2) {
+                    steps.add(transitStep(mapper, r, t + 100, arrival.plusSeconds(60), arrival.plusSeconds(420)));
+                    arrival = arrival.plusSeconds(420);
+                }
+                time = arrival;
+            }
+        }
+        return root;
+    }
+
+    private static ObjectNode transitStep(ObjectMapper mapper, int route, int index, Instant departure, Instant arrival) {
+        ObjectNode step = mapper.createObjectNode();
+        step.put("distanceMeters", 3000);
+        step.put("staticDuration", Duration.between(departure, arrival).getSeconds() + "s");
+        step.putObject("polyline").put("encodedPolyline", "a~l~Fjk~uOwHJy@P");
+        location(step.putObject("startLocation"), 22.30 + index * 0.001, 114.17 + route * 0.001);
+        location(step.putObject("endLocation"), 22.30 + (index + 1) * 0.001, 114.17 + route * 0.001);
+        step.putObject("navigationInstruction").put("instructions", "Bus towards Central");
+        localizedValues(step, "3 km", "10 mins");
+        step.put("travelMode", "TRANSIT");
+        ObjectNode transit = step.putObject("transitDetails");
+        ObjectNode stops = transit.putObject("stopDetails");
+        stop(stops.putObject("departureStop"), "Stop " + route + "-" + index, 22.30 + index * 0.001, 114.17 + route * 0.001);
+        stop(stops.putObject("arrivalStop"), "Stop " + route + "-" + (index + 1), 22.30 + (index + 1) * 0.001, 114.17 + route * 0.001);
+        stops.put("departureTime", departure.toString());
+        stops.put("arrivalTime", arrival.toString());
+        ObjectNode times = transit.putObject("localizedValues");
+        times.putObject("arrivalTime").putObject("time").put("text", "9:10 AM");
+        times.putObject("departureTime").putObject("time").put("text", "9:00 AM");
+        transit.put("headsign", "Central");
+        ObjectNode line = transit.putObject("transitLine");
+        ObjectNode agency = line.putArray("agencies").addObject();
+        agency.put("name", "Kowloon Motor Bus");
+        agency.put("uri", "https://www.kmb.hk/");
+        line.put("name", "Route " + (100 + index));
+        line.put("nameShort", String.valueOf(100 + index));
+        line.put("color", "#ff0000");
+        line.put("textColor", "#ffffff");
+        ObjectNode vehicle = line.putObject("vehicle");
+        vehicle.putObject("name").put("text", "Bus");
+        vehicle.put("type", "BUS");
+        vehicle.put("iconUri", "//maps.gstatic.com/mapfiles/transit/iw2/6/bus2.png");
+        transit.put("stopCount", 8);
+        return step;
+    }
+
+    private static void stop(ObjectNode stop, String name, double latitude, double longitude) {
+        stop.put("name", name);
+        location(stop.putObject("location"), latitude, longitude);
+    }
+
+    private static void location(ObjectNode location, double latitude, double longitude) {
+        ObjectNode latLng = location.putObject("latLng");
+        latLng.put("latitude", latitude);
+        latLng.put("longitude", longitude);
+    }
+
+    private static void localizedValues(ObjectNode node, String distance, String duration) {
+        ObjectNode values = node.putObject("localizedValues");
+        values.putObject("distance").put("text", distance);
+        values.putObject("staticDuration").put("text", duration);
+    }
+}
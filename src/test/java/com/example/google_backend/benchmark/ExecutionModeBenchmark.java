@@ -0,0 +1,256 @@
+package com.example.google_backend.benchmark;
+
+import com.example.google_backend.common.concurrent.BulkheadRegistry;
+import com.example.google_backend.common.concurrent.RequestBudget;
+import com.example.google_backend.common.google.ComputeRoutesDecoder;
+import com.example.google_backend.model.ComputeRoutesResponse;
+import com.example.google_backend.model.RouteRequest;
+import com.example.google_backend.model.RouteResponse;
+import com.example.google_backend.service.OTPService;
+import com.example.google_backend.service.RawRouteCacheService;
+import com.example.google_backend.service.RouteService;
+import com.example.google_backend.service.impl.RouteServiceImpl;
+import com.example.google_backend.utils.route.DriveTimeEstimator;
+import com.example.google_backend.utils.route.LongDistanceExitChecker;
+import com.example.google_backend.utils.route.TaxiHotSpotChecker;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.io.support.ResourcePropertySource;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 请求处理线程模型吞吐量对比：spring.threads.virtual.enabled=false (Tomcat 默认 200 个平台线程)
+ * 与 true (每个请求一个虚拟线程)
+ * 每个请求执行真实的 {@link RouteServiceImpl#getRoutes}：Google 请求经过 RestTemplate 与隔离舱，
+ * 响应流式解析、步骤处理、OTP 替换的并发规划与结果回填都是生产代码；
+ * 只有上游是桩：Google 在 RestTemplate 拦截器中等待 googleLatencyMs 后返回 {@link ComputeRoutesSamples} 的响应，
+ * OTP 等待 otpLatencyMs 后返回一段驾驶步骤，长距离出口检查 (Redis) 始终返回 false。
+ * 一次基准操作处理 requests 个并发请求，结果为每秒完成的批次数，乘以 requests 即请求吞吐量。
+ *
+ * 运行: mvn test-compile exec:java -Dexec.mainClass=com.example.google_backend.benchmark.ExecutionModeBenchmark -Dexec.classpathScope=test
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ExecutionModeBenchmark {
+
+    // 与 server.tomcat.threads.max 默认值一致
+    private static final int PLATFORM_THREADS = 200;
+
+    // 与 route.request.budget-ms 默认值一致
+    private static final long REQUEST_BUDGET_MS = 6000;
+
+    // spring.threads.virtual.enabled
+    @Param({ "false", "true" })
+    private boolean virtualThreads;
+
+    // 并发请求数
+    @Param({ "1000" })
+    private int requests;
+
+    // 模拟 Google 上游耗时 (ms)
+    @Param({ "40" })
+    private int googleLatencyMs;
+
+    // 模拟 OTP 上游耗时 (ms)
+    @Param({ "60" })
+    private int otpLatencyMs;
+
+    // 每条路线的公交段数
+    @Param({ "4" })
+    private int transitCount;
+
+    private AnnotationConfigApplicationContext context;
+    private RouteService routeService;
+    private ExecutorService executor;
+
+    // 失败的请求 (如隔离舱拒绝)，每个 trial 结束时输出
+    private final AtomicInteger failures = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        byte[] payload = mapper.writeValueAsBytes(ComputeRoutesSamples.generate(mapper, transitCount));
+
+        context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("benchmark", Map.<String, Object>of(
+                // 比较的是线程模型，放宽 Google 隔离舱，所有请求都能发出
+                "bulkhead.google.initial-limit", requests,
+                "bulkhead.google.max-limit", requests,
+                "bulkhead.google.max-queue", requests)));
+        context.getEnvironment().getPropertySources()
+                .addLast(new ResourcePropertySource("classpath:application.properties"));
+
+        context.registerBean("googleRestTemplate", RestTemplate.class, () -> googleStub(payload));
+        // 以下桩不经过依赖注入 (LongDistanceExitChecker 依赖 Redis)
+        context.getBeanFactory().registerSingleton("otpService", new OtpStub());
+        context.getBeanFactory().registerSingleton("rawRouteCacheService", new RawCacheStub());
+        context.getBeanFactory().registerSingleton("longDistanceExitChecker", new LongDistanceExitChecker() {
+            @Override
+            public void init() {
+            }
+
+            @Override
+            public boolean isLongDistanceExitStep(ComputeRoutesResponse.Transit transitDetails) {
+                return false;
+            }
+        });
+        context.register(BulkheadRegistry.class, DriveTimeEstimator.class, TaxiHotSpotChecker.class, RouteServiceImpl.class);
+        context.refresh();
+        routeService = context.getBean(RouteService.class);
+
+        executor = virtualThreads
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(PLATFORM_THREADS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdownNow();
+        context.close();
+        System.out.println("failed requests: " + failures.get());
+    }
+
+    @Benchmark
+    public int handleRequests() throws Exception {
+        List<Future<Integer>> futures = new ArrayList<>(requests);
+        for (int i = 0; i < requests; i++) {
+            RouteRequest request = request(i);
+            futures.add(executor.submit(() -> handleRequest(request)));
+        }
+        int sum = 0;
+        for (Future<Integer> future : futures) {
+            sum += future.get();
+        }
+        return sum;
+    }
+
+    /**
+     * 与 RouteController 相同：在请求线程上绑定请求预算后计算路线
+     */
+    private int handleRequest(RouteRequest request) {
+        try (RequestBudget.Scope ignored = RequestBudget.of(REQUEST_BUDGET_MS).open()) {
+            return routeService.getRoutes(request).getRoutes().size();
+        } catch (Exception e) {
+            failures.incrementAndGet();
+            return 0;
+        }
+    }
+
+    private static RouteRequest request(int id) {
+        RouteRequest request = new RouteRequest();
+        request.setOrigin(coordinates(22.30 + (id % 100) * 0.0001, 114.17));
+        request.setDestination(coordinates(22.40, 114.18 + (id % 100) * 0.0001));
+        request.setTravelMode("TRANSIT");
+        return request;
+    }
+
+    private static RouteRequest.Coordinates coordinates(double latitude, double longitude) {
+        RouteRequest.Coordinates coordinates = new RouteRequest.Coordinates();
+        coordinates.setLatitude(latitude);
+        coordinates.setLongitude(longitude);
+        return coordinates;
+    }
+
+    private RestTemplate googleStub(byte[] payload) {
+        RestTemplate restTemplate = new RestTemplate();
+        restTemplate.getInterceptors().add((request, body, execution) -> {
+            sleep(googleLatencyMs);
+            return new MockClientHttpResponse(payload, HttpStatus.OK);
+        });
+        return restTemplate;
+    }
+
+    private static void sleep(long millis) throws IOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * OTP 桩：等待后返回一段驾驶步骤
+     */
+    private final class OtpStub implements OTPService {
+        @Override
+        public List<RouteResponse.StepDetail> getDrivingRoute(RouteResponse.StepDetail.TransitDetails.StopDetails.Stop startLocation,
+                                                              RouteResponse.StepDetail.TransitDetails.StopDetails.Stop endLocation) throws Exception {
+            sleep(otpLatencyMs);
+            RouteResponse.StepDetail step = new RouteResponse.StepDetail();
+            step.setTravelMode("DRIVE");
+            step.setDistance(3000);
+            step.setDuration(420);
+            step.setInstruction("OTP result: From " + startLocation.getName() + " drive to " + endLocation.getName());
+            List<RouteResponse.StepDetail> steps = new ArrayList<>();
+            steps.add(step);
+            return steps;
+        }
+
+        @Override
+        public Map<String, Object> getStats() {
+            return Map.of();
+        }
+    }
+
+    /**
+     * 原始响应缓存桩：每次都请求上游
+     */
+    private static final class RawCacheStub implements RawRouteCacheService {
+        @Override
+        public ComputeRoutesResponse get(RouteRequest request, Callable<byte[]> fetcher) throws Exception {
+            return ComputeRoutesDecoder.decode(fetcher.call());
+        }
+
+        @Override
+        public void invalidate(RouteRequest request) {
+        }
+
+        @Override
+        public Map<String, Long> getStats() {
+            return Map.of();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ExecutionModeBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,269 @@
+package com.example.google_backend.benchmark;
+
+import com.example.google_backend.common.google.ComputeRoutesDecoder;
+import com.example.google_backend.model.ComputeRoutesResponse;
+import com.example.google_backend.model.RouteResponse;
+import com.example.google_backend.utils.route.StepEngine;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 步骤处理对比：原来的两遍处理 (计数时解析一次，处理时再解析，向后查找终点站时逐个重新解析)
+ * vs {@link StepEngine} 单遍解析后按下标计算
+ * 两者使用同一个替换判断 (只看等车时间，不调用各检查器)，结果为每秒处理的 computeRoutes 响应数。
+ * 原来的处理读取 JsonNode 树，{@link StepEngine} 读取流式解析后的步骤，解析本身的耗时见 {@link ComputeRoutesDecoderBenchmark}。
+ *
+ * source 默认为测试资源中的香港公交路线响应 (3 条备选路线，港铁、巴士与渡轮，部分公交段等车超过 10 分钟)；
+ * generated:N 按 {@link ComputeRoutesSamples} 生成结构相同的响应 (每个 leg N 段公交，超过 5 段时走高频换乘处理)；
+ * 也可以指定其他 computeRoutes 响应文件 (-p source=/path/to/response.json)。
+ *
+ * 运行: mvn test-compile exec:java -Dexec.mainClass=com.example.google_backend.benchmark.StepEngineBenchmark -Dexec.classpathScope=test
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class StepEngineBenchmark {
+
+    private static final long MAX_WAIT_TIME_SECONDS = 600;
+
+    // computeRoutes 响应：测试资源、generated:<公交段数> 或文件路径
+    @Param({ ComputeRoutesSamples.HK_TRANSIT, "generated:3", "generated:5", "generated:8" })
+    private String source;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private JsonNode response;
+    private ComputeRoutesResponse decoded;
+
+    private static final StepEngine.Policy POLICY = new StepEngine.Policy() {
+        @Override
+        public boolean shouldReplace(StepEngine.ParsedStep step, long waitTimeSeconds) {
+            return waitTimeSeconds > MAX_WAIT_TIME_SECONDS;
+        }
+
+        @Override
+        public boolean worthPlanning(RouteResponse.StepDetail.TransitDetails.StopDetails.Stop startStop,
+                                     RouteResponse.StepDetail.TransitDetails.StopDetails.Stop endStop,
+                                     Instant departureTime, long transitSeconds) {
+            return true;
+        }
+    };
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        byte[] body = ComputeRoutesSamples.load(mapper, source);
+        response = mapper.readTree(body);
+        decoded = ComputeRoutesDecoder.decode(body);
+    }
+
+    @Benchmark
+    public int twoPass() {
+        int total = 0;
+        for (JsonNode legNode : legs()) {
+            List<Object> candidates = new ArrayList<>();
+            total += LegacySteps.processSteps(legNode, candidates).size() + candidates.size();
+        }
+        return total;
+    }
+
+    @Benchmark
+    public int singlePass() {
+        int total = 0;
+        for (ComputeRoutesResponse.Leg leg : decodedLegs()) {
+            List<Object> candidates = new ArrayList<>();
+            total += StepEngine.process(leg.steps(), POLICY,
+                    (legSteps, startIndex, originalSteps, startStop, endStop) -> candidates.add(originalSteps)).size()
+                    + candidates.size();
+        }
+        return total;
+    }
+
+    private List<JsonNode> legs() {
+        List<JsonNode> legs = new ArrayList<>();
+        for (JsonNode routeNode : response.path("routes")) {
+            for (JsonNode legNode : routeNode.path("legs")) {
+                if (legNode.has("steps")) {
+                    legs.add(legNode);
+                }
+            }
+        }
+        return legs;
+    }
+
+    private List<ComputeRoutesResponse.Leg> decodedLegs() {
+        List<ComputeRoutesResponse.Leg> legs = new ArrayList<>();
+        for (ComputeRoutesResponse.Route route : decoded.routes()) {
+            if (route.legs() == null) {
+                continue;
+            }
+            for (ComputeRoutesResponse.Leg leg : route.legs()) {
+                if (leg.steps() != null) {
+                    legs.add(leg);
+                }
+            }
+        }
+        return legs;
+    }
+
+    /**
+     * 原来的 RouteServiceImpl 步骤处理 (两遍解析、向后查找时重新解析、按站点坐标字符串匹配保留的公交段)
+     */
+    static final class LegacySteps {
+
+        static List<RouteResponse.StepDetail> processSteps(JsonNode legNode, List<Object> candidates) {
+            List<RouteResponse.StepDetail> transitSteps = new ArrayList<>();
+            int transitCount = 0;
+            for (JsonNode stepNode : legNode.get("steps")) {
+                if (stepNode.has("travelMode")
+                        && "TRANSIT".equalsIgnoreCase(stepNode.get("travelMode").asText())) {
+                    transitCount++;
+                    if (stepNode.has("transitDetails") && !stepNode.get("transitDetails").isNull()) {
+                        RouteResponse.StepDetail stepDetail = TreeRouteParser.parseStep(stepNode);
+                        stepDetail.setTransitDetails(TreeRouteParser.parseTransitDetails(stepNode.get("transitDetails")));
+                        transitSteps.add(stepDetail);
+                    }
+                }
+            }
+            return transitCount > 5
+                    ? processHighTransitSteps(legNode, transitSteps)
+                    : processNormalSteps(legNode, candidates);
+        }
+
+        private static List<RouteResponse.StepDetail> processHighTransitSteps(JsonNode legNode,
+                                                                              List<RouteResponse.StepDetail> transitSteps) {
+            List<RouteResponse.StepDetail> steps = new ArrayList<>();
+            transitSteps.sort((s1, s2) -> Long.compare(s1.getTransitDetails().getWaitTimeSeconds(),
+                    s2.getTransitDetails().getWaitTimeSeconds()));
+            List<RouteResponse.StepDetail> keptSteps = transitSteps.subList(0, Math.min(3, transitSteps.size()));
+
+            for (JsonNode stepNode : legNode.get("steps")) {
+                String stepTravelMode = stepNode.has("travelMode") ? stepNode.get("travelMode").asText() : "WALK";
+                if (!"TRANSIT".equalsIgnoreCase(stepTravelMode)) {
+                    steps.add(TreeRouteParser.parseStep(stepNode));
+                } else if (stepNode.has("transitDetails")) {
+                    RouteResponse.StepDetail stepDetail = TreeRouteParser.parseStep(stepNode);
+                    RouteResponse.StepDetail.TransitDetails td =
+                            TreeRouteParser.parseTransitDetails(stepNode.get("transitDetails"));
+                    stepDetail.setTransitDetails(td);
+                    boolean kept = keptSteps.stream().anyMatch(k ->
+                            k.getTransitDetails().getStopDetails().getDepartureStop().getLocation()
+                                    .equals(td.getStopDetails().getDepartureStop().getLocation()));
+                    if (kept) {
+                        steps.add(stepDetail);
+                    }
+                }
+            }
+            return steps;
+        }
+
+        private static List<RouteResponse.StepDetail> processNormalSteps(JsonNode legNode, List<Object> candidates) {
+            List<RouteResponse.StepDetail> steps = new ArrayList<>();
+            String previousTravelMode = "WALK";
+            long previousWalkDuration = 0;
+            Instant curStepArrivalTime = Instant.now();
+            Instant previousStepArrivalTime = Instant.now();
+
+            for (int i = 0; i < legNode.get("steps").size(); i++) {
+                JsonNode stepNode = legNode.get("steps").get(i);
+                RouteResponse.StepDetail stepDetail = TreeRouteParser.parseStep(stepNode);
+                String stepTravelMode = stepNode.has("travelMode") ? stepNode.get("travelMode").asText() : "WALK";
+
+                if ("WALK".equalsIgnoreCase(previousTravelMode) && "WALK".equalsIgnoreCase(stepTravelMode)) {
+                    previousWalkDuration += stepDetail.getDuration();
+                }
+
+                if ("TRANSIT".equalsIgnoreCase(stepTravelMode)
+                        && stepNode.has("transitDetails") && !stepNode.get("transitDetails").isNull()) {
+                    RouteResponse.StepDetail.TransitDetails td =
+                            TreeRouteParser.parseTransitDetails(stepNode.get("transitDetails"));
+                    stepDetail.setTransitDetails(td);
+                    if (td.getStopDetails() != null && td.getStopDetails().getArrivalTime() != null) {
+                        curStepArrivalTime = Instant.parse(td.getStopDetails().getArrivalTime());
+                    }
+
+                    if ("WALK".equalsIgnoreCase(previousTravelMode)
+                            && td.getStopDetails() != null && td.getStopDetails().getDepartureTime() != null) {
+                        Instant departureTime = Instant.parse(td.getStopDetails().getDepartureTime());
+                        Instant walkToStationTime = previousStepArrivalTime.plusSeconds(previousWalkDuration);
+                        long waitTimeSeconds = Duration.between(walkToStationTime, departureTime).getSeconds();
+                        td.setWaitTimeSeconds(waitTimeSeconds);
+
+                        if (waitTimeSeconds > MAX_WAIT_TIME_SECONDS) {
+                            int j = i;
+                            RouteResponse.StepDetail.TransitDetails.StopDetails.Stop startStop =
+                                    td.getStopDetails().getDepartureStop();
+                            RouteResponse.StepDetail.TransitDetails.StopDetails.Stop endStop = null;
+                            List<RouteResponse.StepDetail> originalSteps = new ArrayList<>();
+                            while (j < legNode.get("steps").size()) {
+                                JsonNode currentNode = legNode.get("steps").get(j);
+                                String currentMode = currentNode.has("travelMode")
+                                        ? currentNode.get("travelMode").asText() : "WALK";
+                                if (!"TRANSIT".equalsIgnoreCase(currentMode)) {
+                                    break;
+                                }
+                                RouteResponse.StepDetail currentStep = j == i ? stepDetail : TreeRouteParser.parseStep(currentNode);
+                                JsonNode currentTransitDetails = currentNode.get("transitDetails");
+                                if (currentTransitDetails != null && !currentTransitDetails.isNull()) {
+                                    RouteResponse.StepDetail.TransitDetails currentTd =
+                                            j == i ? td : TreeRouteParser.parseTransitDetails(currentTransitDetails);
+                                    currentStep.setTransitDetails(currentTd);
+                                    if (currentTd.getStopDetails() != null) {
+                                        endStop = currentTd.getStopDetails().getArrivalStop();
+                                    }
+                                }
+                                originalSteps.add(currentStep);
+                                j++;
+                            }
+                            if (startStop != null && endStop != null) {
+                                candidates.add(originalSteps);
+                                steps.addAll(originalSteps);
+                                i = j - 1;
+                                continue;
+                            }
+                        }
+                    }
+                }
+
+                previousStepArrivalTime = curStepArrivalTime;
+                previousTravelMode = stepTravelMode;
+                steps.add(stepDetail);
+                if (!("WALK".equalsIgnoreCase(previousTravelMode) && "WALK".equalsIgnoreCase(stepTravelMode))) {
+                    previousWalkDuration = 0;
+                }
+            }
+            return steps;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(StepEngineBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.google_backend.benchmark;
+
+import com.example.google_backend.common.google.ComputeRoutesDecoder;
+import com.example.google_backend.model.RouteResponse;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 原来基于 JsonNode 树的步骤解析 (流式解析之前的 GoogleRouteParser)，作为基准测试与解析测试的对照
+ */
+public final class TreeRouteParser {
+
+    private TreeRouteParser() {
+    }
+
+    /**
+     * Parses one Google step into a StepDetail (without transit details)
+     */
+    public static RouteResponse.StepDetail parseStep(JsonNode stepNode) {
+        RouteResponse.StepDetail stepDetail = new RouteResponse.StepDetail();
+
+        stepDetail.setInstruction(
+                stepNode.has("navigationInstruction")
+                        && stepNode.get("navigationInstruction").has("instructions")
+                        ? stepNode.get("navigationInstruction").get("instructions").asText()
+                        : "No Instruction"
+        );
+        stepDetail.setDistance(
+                stepNode.has("distanceMeters")
+                        ? stepNode.get("distanceMeters").asLong()
+                        : 0L
+        );
+        stepDetail.setDuration(
+                stepNode.has("staticDuration")
+                        ? ComputeRoutesDecoder.parseDuration(stepNode.get("staticDuration").asText())
+                        : 0L
+        );
+        stepDetail.setPolyline(
+                stepNode.has("polyline") && !stepNode.get("polyline").isNull()
+                        && stepNode.get("polyline").has("encodedPolyline")
+                        ? stepNode.get("polyline").get("encodedPolyline").asText()
+                        : "No Polyline"
+        );
+        String stepTravelMode=stepNode.has("travelMode")
+                ? stepNode.get("travelMode").asText()
+                : "WALK";
+        stepDetail.setTravelMode(
+                stepTravelMode
+        );
+        return stepDetail;
+
+    }
+
+    /**
+     * Parses the transit details from the JSON node.
+     * 在此方法内也对 arrivalTime 做了读取，但只是存储和返回，不在此处做等待时间大于 180 秒的替换逻辑
+     * （可在创建 stepDetail 时进行更灵活的判断）
+     */
+    public static RouteResponse.StepDetail.TransitDetails parseTransitDetails(JsonNode transitDetailsNode) {
+        RouteResponse.StepDetail.TransitDetails transitDetails = new RouteResponse.StepDetail.TransitDetails();
+
+        // Parse stopDetails
+        if (transitDetailsNode.has("stopDetails") && !transitDetailsNode.get("stopDetails").isNull()) {
+            JsonNode stopDetailsNode = transitDetailsNode.get("stopDetails");
+            RouteResponse.StepDetail.TransitDetails.StopDetails stopDetails = new RouteResponse.StepDetail.TransitDetails.StopDetails();
+
+            if (stopDetailsNode.has("arrivalStop") && !stopDetailsNode.get("arrivalStop").isNull()) {
+                JsonNode arrivalStopNode = stopDetailsNode.get("arrivalStop");
+                RouteResponse.StepDetail.TransitDetails.StopDetails.Stop arrivalStop = new RouteResponse.StepDetail.TransitDetails.StopDetails.Stop();
+
+                arrivalStop.setName(arrivalStopNode.has("name") ? arrivalStopNode.get("name").asText() : "Unknown Arrival Stop");
+                if (arrivalStopNode.has("location") && !arrivalStopNode.get("location").isNull()) {
+                    arrivalStop.setLocation(arrivalStopNode.get("location").toString());
+                } else {
+                    arrivalStop.setLocation("Unknown Location");
+                }
+                stopDetails.setArrivalStop(arrivalStop);
+            }
+            // 把 arrivalTime 原样存储下来，后续在创建 StepDetail 时判断
+            if (stopDetailsNode.has("arrivalTime") && !stopDetailsNode.get("arrivalTime").isNull()) {
+                stopDetails.setArrivalTime(stopDetailsNode.get("arrivalTime").asText());
+            }
+
+            if (stopDetailsNode.has("departureStop") && !stopDetailsNode.get("departureStop").isNull()) {
+                JsonNode departureStopNode = stopDetailsNode.get("departureStop");
+                RouteResponse.StepDetail.TransitDetails.StopDetails.Stop departureStop = new RouteResponse.StepDetail.TransitDetails.StopDetails.Stop();
+
+                departureStop.setName(departureStopNode.has("name") ? departureStopNode.get("name").asText() : "Unknown Departure Stop");
+                if (departureStopNode.has("location") && !departureStopNode.get("location").isNull()) {
+                    departureStop.setLocation(departureStopNode.get("location").toString());
+                } else {
+                    departureStop.setLocation("Unknown Location");
+                }
+
+                stopDetails.setDepartureStop(departureStop);
+            }
+
+            if (stopDetailsNode.has("departureTime") && !stopDetailsNode.get("departureTime").isNull()) {
+                stopDetails.setDepartureTime(stopDetailsNode.get("departureTime").asText());
+            }
+
+            transitDetails.setStopDetails(stopDetails);
+        }
+
+        // Parse headsign
+        if (transitDetailsNode.has("headsign") && !transitDetailsNode.get("headsign").isNull()) {
+            transitDetails.setHeadsign(transitDetailsNode.get("headsign").asText());
+        }
+
+        // Parse transitLine
+        if (transitDetailsNode.has("transitLine") && !transitDetailsNode.get("transitLine").isNull()) {
+            JsonNode transitLineNode = transitDetailsNode.get("transitLine");
+            RouteResponse.StepDetail.TransitDetails.TransitLine transitLine = new RouteResponse.StepDetail.TransitDetails.TransitLine();
+
+            // Agencies
+            if (transitLineNode.has("agencies") && transitLineNode.get("agencies").isArray()) {
+                List<RouteResponse.StepDetail.TransitDetails.TransitLine.Agency> agencies = new ArrayList<>();
+                for (JsonNode agencyNode : transitLineNode.get("agencies")) {
+                    RouteResponse.StepDetail.TransitDetails.TransitLine.Agency agency =
+                            new RouteResponse.StepDetail.TransitDetails.TransitLine.Agency();
+                    agency.setName(agencyNode.has("name") ? agencyNode.get("name").asText() : null);
+                    agency.setPhoneNumber(agencyNode.has("phoneNumber") ? agencyNode.get("phoneNumber").asText() : null);
+                    agency.setUri(agencyNode.has("uri") ? agencyNode.get("uri").asText() : null);
+                    agencies.add(agency);
+                }
+                transitLine.setAgencies(agencies);
+            }
+
+            transitLine.setName(transitLineNode.has("name") ? transitLineNode.get("name").asText() : null);
+            transitLine.setColor(transitLineNode.has("color") ? transitLineNode.get("color").asText() : null);
+            transitLine.setNameShort(transitLineNode.has("nameShort") ? transitLineNode.get("nameShort").asText() : null);
+            transitLine.setTextColor(transitLineNode.has("textColor") ? transitLineNode.get("textColor").asText() : null);
+
+            // Vehicle
+            if (transitLineNode.has("vehicle") && !transitLineNode.get("vehicle").isNull()) {
+                JsonNode vehicleNode = transitLineNode.get("vehicle");
+                RouteResponse.StepDetail.TransitDetails.TransitLine.Vehicle vehicle =
+                        new RouteResponse.StepDetail.TransitDetails.TransitLine.Vehicle();
+
+                if (vehicleNode.has("name") && !vehicleNode.get("name").isNull()) {
+                    RouteResponse.StepDetail.TransitDetails.TransitLine.Vehicle.Name name =
+                            new RouteResponse.StepDetail.TransitDetails.TransitLine.Vehicle.Name();
+                    name.setText(vehicleNode.get("name").has("text")
+                            ? vehicleNode.get("name").get("text").asText()
+                            : null);
+                    vehicle.setName(name);
+                }
+                vehicle.setType(vehicleNode.has("type") ? vehicleNode.get("type").asText() : null);
+                vehicle.setIconUri(vehicleNode.has("iconUri") ? vehicleNode.get("iconUri").asText() : null);
+                transitLine.setVehicle(vehicle);
+            }
+
+            transitDetails.setTransitLine(transitLine);
+        }
+
+        // Parse stopCount
+        if (transitDetailsNode.has("stopCount")) {
+            transitDetails.setStopCount(transitDetailsNode.get("stopCount").asInt());
+        }
+
+        return transitDetails;
+    }
+}
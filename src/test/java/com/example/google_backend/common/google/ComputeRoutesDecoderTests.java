@@ -0,0 +1,148 @@
+package com.example.google_backend.common.google;
+
+import com.example.google_backend.benchmark.TreeRouteParser;
+import com.example.google_backend.model.ComputeRoutesResponse;
+import com.example.google_backend.model.RouteResponse;
+import com.example.google_backend.utils.route.GoogleStepMapper;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * computeRoutes 流式解析与原来 JsonNode 树解析 ({@link TreeRouteParser}) 的对比
+ * google/compute-routes-mixed.json 包含字符串形式的 int64 字段、为 null 或缺失的 polyline / location、
+ * 缺少 stopDetails / transitDetails 的公交步骤以及各层级的未知字段；
+ * google/compute-routes-hk-transit.json 为字段掩码 routes.legs 下完整结构的香港公交路线响应
+ */
+class ComputeRoutesDecoderTests {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void stepsMatchTreeParser() throws IOException {
+        assertStepsMatchTreeParser("compute-routes-mixed.json", 0, 0);
+    }
+
+    @Test
+    void hkTransitStepsMatchTreeParser() throws IOException {
+        // 基准测试默认使用的响应：3 条备选路线，港铁、巴士与渡轮
+        for (int route = 0; route < 3; route++) {
+            assertStepsMatchTreeParser("compute-routes-hk-transit.json", route, 0);
+        }
+    }
+
+    private void assertStepsMatchTreeParser(String name, int route, int leg) throws IOException {
+        byte[] body = fixture(name);
+        JsonNode tree = mapper.readTree(body);
+        ComputeRoutesResponse decoded = ComputeRoutesDecoder.decode(body);
+
+        JsonNode stepNodes = tree.path("routes").get(route).path("legs").get(leg).path("steps");
+        List<ComputeRoutesResponse.Step> steps = decoded.routes().get(route).legs().get(leg).steps();
+        assertEquals(stepNodes.size(), steps.size());
+        assertFalse(steps.isEmpty(), name);
+        for (int i = 0; i < steps.size(); i++) {
+            JsonNode stepNode = stepNodes.get(i);
+            ComputeRoutesResponse.Step step = steps.get(i);
+
+            RouteResponse.StepDetail expected = TreeRouteParser.parseStep(stepNode);
+            if ("TRANSIT".equalsIgnoreCase(expected.getTravelMode())
+                    && stepNode.has("transitDetails") && !stepNode.get("transitDetails").isNull()) {
+                expected.setTransitDetails(TreeRouteParser.parseTransitDetails(stepNode.get("transitDetails")));
+            }
+            RouteResponse.StepDetail actual = GoogleStepMapper.toStepDetail(step);
+            if ("TRANSIT".equalsIgnoreCase(step.travelMode()) && step.transit() != null) {
+                actual.setTransitDetails(GoogleStepMapper.toTransitDetails(step.transit()));
+            }
+
+            assertEquals(mapper.writeValueAsString(expected), mapper.writeValueAsString(actual),
+                    name + " route " + route + " step " + i);
+        }
+    }
+
+    @Test
+    void readsStringEncodedInt64Fields() throws IOException {
+        ComputeRoutesResponse decoded = ComputeRoutesDecoder.decode(fixture("compute-routes-mixed.json"));
+
+        ComputeRoutesResponse.Route route = decoded.routes().get(0);
+        assertEquals(12500L, route.distanceMeters());
+        assertEquals("2460s", route.duration());
+        assertEquals(12500L, route.legs().get(0).distanceMeters());
+        assertEquals(80L, route.legs().get(0).steps().get(0).distanceMeters());
+        assertEquals(8, route.legs().get(0).steps().get(1).transit().stopCount());
+        // 数字形式
+        assertEquals(3000L, route.legs().get(0).steps().get(1).distanceMeters());
+        assertEquals(2, route.legs().get(0).steps().get(3).transit().stopCount());
+    }
+
+    @Test
+    void leavesMissingFieldsNull() throws IOException {
+        ComputeRoutesResponse decoded = ComputeRoutesDecoder.decode(fixture("compute-routes-mixed.json"));
+
+        ComputeRoutesResponse.Leg leg = decoded.routes().get(0).legs().get(0);
+        assertEquals(22.2976, leg.startLocation().latitude(), 0.0);
+        assertEquals(114.1581, leg.endLocation().longitude(), 0.0);
+
+        // polyline 为 null、没有 encodedPolyline
+        assertNull(leg.steps().get(2).polyline());
+        assertNull(leg.steps().get(3).polyline());
+        // location 为 null、缺失
+        assertNull(leg.steps().get(2).transit().arrivalStop().location());
+        assertNull(leg.steps().get(2).transit().departureStop().location());
+        assertNull(leg.steps().get(2).transit().departureTime());
+        // 没有 stopDetails / transitDetails
+        assertFalse(leg.steps().get(3).transit().hasStopDetails());
+        assertNull(leg.steps().get(4).transit());
+        assertNull(leg.steps().get(4).instruction());
+        assertNull(leg.steps().get(5).travelMode());
+
+        ComputeRoutesResponse.Leg emptyLeg = decoded.routes().get(0).legs().get(1);
+        assertNull(emptyLeg.startLocation());
+        assertNull(emptyLeg.endLocation());
+        assertNull(emptyLeg.duration());
+        assertNull(emptyLeg.steps());
+
+        ComputeRoutesResponse.Route emptyRoute = decoded.routes().get(1);
+        assertNull(emptyRoute.summary());
+        assertNull(emptyRoute.distanceMeters());
+        assertNull(emptyRoute.polyline());
+        assertEquals(0, emptyRoute.legs().size());
+    }
+
+    @Test
+    void emptyBodyHasNoRoutes() throws IOException {
+        assertNull(ComputeRoutesDecoder.decode("{}").routes());
+        assertNull(ComputeRoutesDecoder.decode("{\"routes\":null}").routes());
+        assertEquals(0, ComputeRoutesDecoder.decode("{\"routes\":[]}").routes().size());
+    }
+
+    @Test
+    void errorBodyHasNoRoutes() throws IOException {
+        String error = "{\"error\":{\"code\":400,\"message\":\"Invalid JSON payload received.\","
+                + "\"status\":\"INVALID_ARGUMENT\",\"details\":[{\"@type\":\"type.googleapis.com/google.rpc.BadRequest\","
+                + "\"fieldViolations\":[{\"field\":\"origin\",\"description\":\"routes\"}]}]}}";
+
+        assertNull(ComputeRoutesDecoder.decode(error).routes());
+    }
+
+    @Test
+    void rejectsNonObjectBody() {
+        assertThrows(IOException.class, () -> ComputeRoutesDecoder.decode("[]"));
+    }
+
+    private static byte[] fixture(String name) throws IOException {
+        try (InputStream in = ComputeRoutesDecoderTests.class.getResourceAsStream("/google/" + name)) {
+            assertNotNull(in, name);
+            return in.readAllBytes();
+        }
+    }
+}
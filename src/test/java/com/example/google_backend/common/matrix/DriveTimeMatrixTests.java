@@ -0,0 +1,193 @@
+package com.example.google_backend.common.matrix;
+
+import com.example.google_backend.common.otp.OtpGraphQlClient;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 驾驶时间矩阵的写出与内存映射读取：命中、未命中、线性探测链、站点目录不匹配与截断的文件
+ */
+class DriveTimeMatrixTests {
+
+    private static final String KMB_HEADER = "stop,name_en,name_tc,name_sc,lat,long\n";
+    private static final String CTB_HEADER = "stop,name_tc,name_en,lat,long\n";
+
+    // 少于 8 个条目时的槽位数
+    private static final int SMALL_CAPACITY = 32;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void roundTripsEntries() throws IOException {
+        StopCatalog catalog = catalog("K1", "K2", "K3");
+        DriveTimeMatrixWriter writer = new DriveTimeMatrixWriter(catalog);
+        writer.put(0, 1, 8, 420, 3000);
+        writer.put(1, 2, 32, 600, 5200);
+        // 同一 key 以最后一次为准
+        writer.put(0, 1, 8, 450, 3100);
+        Path path = dir.resolve("matrix.bin");
+        assertEquals(2, writer.write(path));
+
+        DriveTimeMatrix matrix = DriveTimeMatrix.open(path, catalog, 50);
+        assertEquals(2, matrix.size());
+        assertPlan(matrix.get(0, 1, 8), 450, 3100);
+        assertPlan(matrix.get(1, 2, 32), 600, 5200);
+
+        // 未命中：站点对、方向、时段不同
+        assertNull(matrix.get(0, 2, 8));
+        assertNull(matrix.get(1, 0, 8));
+        assertNull(matrix.get(0, 1, 9));
+    }
+
+    @Test
+    void looksUpByCoordinates() throws IOException {
+        StopCatalog catalog = catalog("K1", "K2", "K3");
+        DriveTimeMatrixWriter writer = new DriveTimeMatrixWriter(catalog);
+        // 2025-01-06 为星期一
+        LocalDateTime departure = LocalDateTime.of(2025, 1, 6, 9, 15);
+        writer.put(catalog.indexOf("kmb:K1"), catalog.indexOf("ctb:C1"), DriveTimeMatrix.bucket(departure), 900, 8000);
+        Path path = dir.resolve("matrix.bin");
+        writer.write(path);
+
+        DriveTimeMatrix matrix = DriveTimeMatrix.open(path, catalog, 50);
+        int from = catalog.indexOf("kmb:K1");
+        int to = catalog.indexOf("ctb:C1");
+        // 坐标在站点 50 米以内
+        assertPlan(matrix.lookup(catalog.latitude(from) + 0.0002, catalog.longitude(from),
+                catalog.latitude(to), catalog.longitude(to) - 0.0002, departure), 900, 8000);
+        // 周末时段没有数据
+        assertNull(matrix.lookup(catalog.latitude(from), catalog.longitude(from),
+                catalog.latitude(to), catalog.longitude(to), departure.plusDays(5)));
+        // 坐标附近没有站点
+        assertNull(matrix.lookup(22.0, 113.0, catalog.latitude(to), catalog.longitude(to), departure));
+
+        assertEquals(3L, matrix.getStats().get("lookups"));
+        assertEquals(1L, matrix.getStats().get("hits"));
+        assertEquals(1L, matrix.getStats().get("misses"));
+        assertEquals(1L, matrix.getStats().get("unmatched"));
+    }
+
+    @Test
+    void followsCollisionChain() throws IOException {
+        StopCatalog catalog = catalog("K1", "K2", "K3");
+        int mask = SMALL_CAPACITY - 1;
+        // 找出落在同一槽位的三个 key：前两个写入，第三个用于沿探测链查询未命中
+        long[] chain = new long[3];
+        int found = 0;
+        int targetSlot = -1;
+        for (int from = 0; from < catalog.size() && found < chain.length; from++) {
+            for (int to = 0; to < catalog.size() && found < chain.length; to++) {
+                for (int bucket = 0; bucket < DriveTimeMatrix.BUCKETS && found < chain.length; bucket++) {
+                    long key = DriveTimeMatrix.key(from, to, bucket);
+                    int slot = DriveTimeMatrix.slot(key, mask);
+                    if (targetSlot < 0) {
+                        targetSlot = slot;
+                    }
+                    if (slot == targetSlot) {
+                        chain[found++] = key;
+                    }
+                }
+            }
+        }
+        assertEquals(3, found, "colliding keys");
+
+        DriveTimeMatrixWriter writer = new DriveTimeMatrixWriter(catalog);
+        writer.put(from(chain[0]), to(chain[0]), bucket(chain[0]), 100, 1000);
+        writer.put(from(chain[1]), to(chain[1]), bucket(chain[1]), 200, 2000);
+        Path path = dir.resolve("matrix.bin");
+        writer.write(path);
+
+        DriveTimeMatrix matrix = DriveTimeMatrix.open(path, catalog, 50);
+        assertPlan(matrix.get(from(chain[0]), to(chain[0]), bucket(chain[0])), 100, 1000);
+        // 第二个 key 在下一个槽位
+        assertPlan(matrix.get(from(chain[1]), to(chain[1]), bucket(chain[1])), 200, 2000);
+        assertNull(matrix.get(from(chain[2]), to(chain[2]), bucket(chain[2])));
+    }
+
+    @Test
+    void rejectsDifferentStopList() throws IOException {
+        DriveTimeMatrixWriter writer = new DriveTimeMatrixWriter(catalog("K1", "K2", "K3"));
+        writer.put(0, 1, 0, 300, 2000);
+        Path path = dir.resolve("matrix.bin");
+        writer.write(path);
+
+        IOException e = assertThrows(IOException.class,
+                () -> DriveTimeMatrix.open(path, catalog("K1", "K2", "K4"), 50));
+        assertTrue(e.getMessage().contains("different stop list"), e.getMessage());
+    }
+
+    @Test
+    void rejectsTruncatedFile() throws IOException {
+        StopCatalog catalog = catalog("K1", "K2", "K3");
+        DriveTimeMatrixWriter writer = new DriveTimeMatrixWriter(catalog);
+        writer.put(0, 1, 0, 300, 2000);
+        Path path = dir.resolve("matrix.bin");
+        writer.write(path);
+
+        // 少了最后一个槽位
+        truncate(path, DriveTimeMatrix.HEADER_BYTES + (SMALL_CAPACITY - 1) * DriveTimeMatrix.ENTRY_BYTES);
+        IOException e = assertThrows(IOException.class, () -> DriveTimeMatrix.open(path, catalog, 50));
+        assertTrue(e.getMessage().contains("Corrupt"), e.getMessage());
+
+        // 头部不完整
+        truncate(path, 12);
+        assertThrows(IOException.class, () -> DriveTimeMatrix.open(path, catalog, 50));
+    }
+
+    private static void assertPlan(OtpGraphQlClient.DrivingPlan plan, double durationSeconds, double distanceMeters) {
+        assertNotNull(plan);
+        assertEquals(durationSeconds, plan.durationSeconds(), 0.0);
+        assertEquals(distanceMeters, plan.distanceMeters(), 0.0);
+    }
+
+    private static int from(long key) {
+        return (int) (key >>> 40);
+    }
+
+    private static int to(long key) {
+        return (int) ((key >>> 16) & 0xFFFFFF);
+    }
+
+    private static int bucket(long key) {
+        return (int) (key & 0xFFFF);
+    }
+
+    private static void truncate(Path path, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(size);
+        }
+    }
+
+    /**
+     * 九巴站点相距约 1 公里，另有一个城巴站点
+     */
+    private static StopCatalog catalog(String... kmbStops) throws IOException {
+        StringBuilder kmb = new StringBuilder(KMB_HEADER);
+        for (int i = 0; i < kmbStops.length; i++) {
+            kmb.append(kmbStops[i]).append(",Stop ").append(i).append(",,,")
+                    .append(22.30 + i * 0.01).append(',').append(114.17).append('\n');
+        }
+        String ctb = CTB_HEADER + "C1,,Central,22.2819,114.1581\n";
+        return StopCatalog.load(stream(kmb.toString()), stream(ctb));
+    }
+
+    private static InputStream stream(String csv) {
+        return new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.google_backend.common.otp;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 用本地 stub OTP 服务验证实例选择、健康检查与被动摘除
+ */
+class OtpBackendPoolTests {
+
+    private final List<HttpServer> servers = new ArrayList<>();
+    private final HttpClient http = HttpClient.newHttpClient();
+
+    @AfterEach
+    void stopServers() {
+        servers.forEach(server -> server.stop(0));
+    }
+
+    @Test
+    void routesAwayFromBusyBackend() throws Exception {
+        String slow = startStub(300, 200, 200);
+        String fast1 = startStub(10, 200, 200);
+        String fast2 = startStub(10, 200, 200);
+
+        try (OtpBackendPool pool = pool(List.of(slow, fast1, fast2))) {
+            Map<String, AtomicInteger> served = new ConcurrentHashMap<>();
+            ExecutorService executor = Executors.newFixedThreadPool(6);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < 10; j++) {
+                        String url = pool.execute(this::plan);
+                        served.computeIfAbsent(url, k -> new AtomicInteger()).incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            executor.shutdown();
+
+            int slowCalls = served.getOrDefault(slow, new AtomicInteger()).get();
+            assertTrue(slowCalls < served.get(fast1).get(), "slow backend should get fewer plans: " + served);
+            assertTrue(slowCalls < served.get(fast2).get(), "slow backend should get fewer plans: " + served);
+        }
+    }
+
+    @Test
+    void skipsBackendFailingHealthCheck() throws Exception {
+        String down = startStub(0, 503, 200);
+        String up = startStub(0, 200, 200);
+
+        try (OtpBackendPool pool = pool(List.of(down, up))) {
+            pool.checkHealth();
+            assertFalse(pool.getBackends().get(0).isHealthy());
+            for (int i = 0; i < 10; i++) {
+                assertEquals(up, pool.execute(this::plan));
+            }
+        }
+    }
+
+    @Test
+    void ejectsFailingBackend() throws Exception {
+        String failing = startStub(0, 200, 500);
+        String ok = startStub(0, 200, 200);
+
+        try (OtpBackendPool pool = pool(List.of(failing, ok))) {
+            Map<String, Integer> served = new HashMap<>();
+            int failures = 0;
+            for (int i = 0; i < 20; i++) {
+                try {
+                    served.merge(pool.execute(this::plan), 1, Integer::sum);
+                } catch (IOException e) {
+                    failures++;
+                }
+            }
+            // 连续失败 3 次后摘除，之后全部发往正常实例
+            assertEquals(3, failures);
+            assertEquals(17, served.get(ok));
+            assertEquals(1L, pool.getStats().get(failing).get("ejections"));
+        }
+    }
+
+    @Test
+    void requiresAtLeastOneBackend() {
+        assertThrows(IllegalArgumentException.class, () -> pool(List.of()));
+    }
+
+    private OtpBackendPool pool(List<String> urls) {
+        // 不启动定时健康检查，由测试直接调用 checkHealth
+        return new OtpBackendPool(urls, ZoneId.of("Asia/Hong_Kong"), 3, 0, 60_000, "/otp/actuators/health", 0);
+    }
+
+    /**
+     * 代替 OTP 规划：请求 stub 的 /plan，返回处理请求的实例地址
+     */
+    private String plan(OtpBackend backend) throws Exception {
+        HttpResponse<String> response = http.send(
+                HttpRequest.newBuilder(URI.create(backend.getBaseUrl() + "/plan")).build(),
+                HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IOException("plan failed: " + response.statusCode());
+        }
+        return backend.getBaseUrl();
+    }
+
+    private String startStub(long planDelayMillis, int healthStatus, int planStatus) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/otp/actuators/health", exchange -> {
+            exchange.sendResponseHeaders(healthStatus, -1);
+            exchange.close();
+        });
+        server.createContext("/plan", exchange -> {
+            try {
+                Thread.sleep(planDelayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(planStatus, -1);
+            exchange.close();
+        });
+        server.start();
+        servers.add(server);
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+}
@@ -0,0 +1,268 @@
+package com.example.google_backend.common.redis.config;
+
+import com.example.google_backend.model.CachedRoute;
+import com.example.google_backend.model.RouteResponse;
+import com.example.google_backend.model.RouteResponse.StepDetail.TransitDetails;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 路线二进制编码的往返与旧格式读取
+ * src/test/resources/redis 下的 .bin 由对应版本的编码器写出 (cached-route-v1/v2/v3，v3 另有压缩版本，
+ * route-response-v1 为 RouteResponse 类型)，cached-route-fastjson.json 为启用二进制编码前 FastJson2 写入的值。
+ * 内容均为 {@link #sample(int)} 中的路线，旧版本没有的字段为默认值。
+ */
+class RouteBinaryRedisSerializerTests {
+
+    private static final int HEADER_LENGTH = 6;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void roundTripsCachedRoute() throws IOException {
+        RouteBinaryRedisSerializer serializer = new RouteBinaryRedisSerializer(0);
+        CachedRoute entry = sample(4);
+
+        byte[] bytes = serializer.serialize(entry);
+        assertEquals(0, bytes[4], "not deflated");
+
+        assertEntry(entry, (CachedRoute) serializer.deserialize(bytes));
+    }
+
+    @Test
+    void roundTripsDeflatedValuesAboveThreshold() throws IOException {
+        RouteBinaryRedisSerializer serializer = new RouteBinaryRedisSerializer(64);
+        CachedRoute entry = sample(4);
+
+        byte[] entryBytes = serializer.serialize(entry);
+        byte[] responseBytes = serializer.serialize(entry.getResponse());
+        assertEquals(1, entryBytes[4], "deflated");
+        assertEquals(1, responseBytes[4], "deflated");
+        assertEquals(2L, serializer.getStats().get("compressedCount"));
+        assertTrue(entryBytes.length < serializer.getStats().get("uncompressedBytes") / 2 + HEADER_LENGTH);
+
+        assertEntry(entry, (CachedRoute) serializer.deserialize(entryBytes));
+        assertResponse(entry.getResponse(), (RouteResponse) serializer.deserialize(responseBytes));
+    }
+
+    @Test
+    void roundTripsValuesBelowThresholdUncompressed() throws IOException {
+        RouteBinaryRedisSerializer serializer = new RouteBinaryRedisSerializer(1 << 20);
+        RouteResponse response = sample(4).getResponse();
+
+        byte[] bytes = serializer.serialize(response);
+        assertEquals(0, bytes[4], "not deflated");
+        assertResponse(response, (RouteResponse) serializer.deserialize(bytes));
+    }
+
+    @Test
+    void readsVersion1Entry() throws IOException {
+        assertFixture("cached-route-v1.bin", 1);
+    }
+
+    @Test
+    void readsVersion2Entry() throws IOException {
+        assertFixture("cached-route-v2.bin", 2);
+    }
+
+    @Test
+    void readsVersion3Entry() throws IOException {
+        assertFixture("cached-route-v3.bin", 3);
+    }
+
+    @Test
+    void readsDeflatedVersion3Entry() throws IOException {
+        assertFixture("cached-route-v3-deflated.bin", 3);
+    }
+
+    @Test
+    void readsVersion1Response() throws IOException {
+        byte[] bytes = fixture("route-response-v1.bin");
+        assertEquals(1, bytes[3]);
+        RouteResponse decoded = (RouteResponse) new RouteBinaryRedisSerializer(0).deserialize(bytes);
+        assertResponse(sample(1).getResponse(), decoded);
+    }
+
+    @Test
+    void readsLegacyJsonEntry() throws IOException {
+        RouteBinaryRedisSerializer serializer = new RouteBinaryRedisSerializer(0);
+
+        CachedRoute decoded = (CachedRoute) serializer.deserialize(fixture("cached-route-fastjson.json"));
+
+        // fixture 不带 timings：FastJson2 无法读回 Map<String, Long> 中的 "@type"，带 timings 的 JSON 值本来就读不出来
+        CachedRoute expected = sample(1);
+        expected.getResponse().setTimings(null);
+        assertEntry(expected, decoded);
+        assertEquals(1L, serializer.getStats().get("jsonReads"));
+        assertEquals(0L, serializer.getStats().get("decodeCount"));
+    }
+
+    @Test
+    void writesOtherValuesAsJson() {
+        RouteBinaryRedisSerializer serializer = new RouteBinaryRedisSerializer(0);
+        Map<String, Object> value = new LinkedHashMap<>();
+        value.put("name", "Central");
+        value.put("count", 3);
+
+        byte[] bytes = serializer.serialize(value);
+
+        assertEquals('{', bytes[0]);
+        Map<?, ?> decoded = (Map<?, ?>) serializer.deserialize(bytes);
+        assertEquals("Central", decoded.get("name"));
+        assertEquals(3, decoded.get("count"));
+        assertEquals(1L, serializer.getStats().get("jsonWrites"));
+        assertEquals(1L, serializer.getStats().get("jsonReads"));
+    }
+
+    private void assertFixture(String name, int version) throws IOException {
+        byte[] bytes = fixture(name);
+        assertEquals(version, bytes[3]);
+        CachedRoute decoded = (CachedRoute) new RouteBinaryRedisSerializer(0).deserialize(bytes);
+        assertEntry(sample(version), decoded);
+    }
+
+    private void assertEntry(CachedRoute expected, CachedRoute actual) throws IOException {
+        assertNotNull(actual);
+        assertEquals(expected.getCreatedAt(), actual.getCreatedAt());
+        assertEquals(expected.getSoftExpireAt(), actual.getSoftExpireAt());
+        assertEquals(expected.getHardExpireAt(), actual.getHardExpireAt());
+        assertEquals(expected.getComputeMillis(), actual.getComputeMillis());
+        assertEquals(expected.getFingerprint(), actual.getFingerprint());
+        assertEquals(expected.getVolatility(), actual.getVolatility(), 0.0);
+        assertResponse(expected.getResponse(), actual.getResponse());
+    }
+
+    private void assertResponse(RouteResponse expected, RouteResponse actual) throws IOException {
+        assertEquals(mapper.writeValueAsString(expected), mapper.writeValueAsString(actual));
+        // 数值字段与 JSON 文本一致
+        assertEquals(12000L, actual.getRoutes().get(0).getDistanceInMeters());
+        assertEquals(2400L, actual.getRoutes().get(0).getDurationSeconds());
+        assertEquals(-1L, actual.getRoutes().get(1).getDistanceInMeters());
+        assertEquals(22.2976, actual.getRoutes().get(0).getLegs().get(0).getStartLatitude(), 0.0);
+        TransitDetails.StopDetails.Stop stop =
+                actual.getRoutes().get(0).getLegs().get(0).getSteps().get(1).getTransitDetails().getStopDetails().getArrivalStop();
+        assertEquals(114.1581, stop.getLongitude(), 0.0);
+    }
+
+    private static byte[] fixture(String name) throws IOException {
+        try (InputStream in = RouteBinaryRedisSerializerTests.class.getResourceAsStream("/redis/" + name)) {
+            assertNotNull(in, name);
+            return in.readAllBytes();
+        }
+    }
+
+    /**
+     * 与旧版本写入 fixture 时相同的条目
+     * 版本 2 起有 fingerprint / volatility，版本 3 起有 droppedOptimizations；
+     * 版本 4 之前 StepDetail 的 travelMode 不会被保存 (setter 没有赋值)
+     */
+    private static CachedRoute sample(int version) {
+        RouteResponse response = new RouteResponse();
+
+        RouteResponse.RouteDetail route = new RouteResponse.RouteDetail();
+        route.setSummary("No Summary");
+        route.setDistanceInMeters(12000);
+        route.setDurationSeconds(2400);
+        route.setPolyline("a~l~Fjk~uOwHJy@P");
+
+        RouteResponse.LegDetail leg = new RouteResponse.LegDetail();
+        leg.setStartCoordinates(22.2976, 114.1722);
+        leg.setEndLocation("Unknown End Location");
+        leg.setDistance("12 km");
+        leg.setDuration("40 mins");
+
+        RouteResponse.StepDetail walk = new RouteResponse.StepDetail();
+        walk.setInstruction("Walk to Tsim Sha Tsui");
+        walk.setDistance(80);
+        walk.setDuration(60);
+        walk.setPolyline("wHJy@P");
+
+        RouteResponse.StepDetail bus = new RouteResponse.StepDetail();
+        bus.setInstruction("Bus towards Central");
+        bus.setDistance(3000);
+        bus.setDuration(600);
+        bus.setPolyline("a~l~Fjk~uO");
+        TransitDetails transitDetails = new TransitDetails();
+        TransitDetails.StopDetails stopDetails = new TransitDetails.StopDetails();
+        stopDetails.setDepartureStop(new TransitDetails.StopDetails.Stop("Tsim Sha Tsui", 22.2976, 114.1722));
+        stopDetails.setArrivalStop(new TransitDetails.StopDetails.Stop("Central", 22.2819, 114.1581));
+        stopDetails.setDepartureTime("2025-01-06T01:15:00Z");
+        stopDetails.setArrivalTime("2025-01-06T01:25:00Z");
+        transitDetails.setStopDetails(stopDetails);
+        transitDetails.setHeadsign("Central");
+        transitDetails.setStopCount(8);
+        transitDetails.setWaitTimeSeconds(840);
+        TransitDetails.TransitLine line = new TransitDetails.TransitLine();
+        line.setAgencies(Arrays.asList(
+                new TransitDetails.TransitLine.Agency("Kowloon Motor Bus", null, "https://www.kmb.hk/"), null));
+        line.setName("Route 1");
+        line.setNameShort("1");
+        line.setColor("#ff0000");
+        line.setTextColor("#ffffff");
+        line.setVehicle(new TransitDetails.TransitLine.Vehicle(
+                new TransitDetails.TransitLine.Vehicle.Name("Bus"), "BUS", "//maps.gstatic.com/bus2.png"));
+        transitDetails.setTransitLine(line);
+        bus.setTransitDetails(transitDetails);
+
+        // OTP 驾驶路段
+        RouteResponse.StepDetail drive = new RouteResponse.StepDetail();
+        drive.setInstruction("Drive");
+        drive.setDistance(2500);
+        drive.setDuration(420);
+        drive.setPolyline("No Polyline");
+        RouteResponse.TransitLine otpLine = new RouteResponse.TransitLine();
+        otpLine.setName("Taxi");
+        RouteResponse.TransitLine.Vehicle vehicle = new RouteResponse.TransitLine.Vehicle();
+        vehicle.setType("CAR");
+        otpLine.setVehicle(vehicle);
+        drive.setTransitLine(otpLine);
+
+        // 缺少坐标的站点
+        RouteResponse.StepDetail unknown = new RouteResponse.StepDetail();
+        unknown.setInstruction("No Instruction");
+        TransitDetails unknownDetails = new TransitDetails();
+        TransitDetails.StopDetails unknownStops = new TransitDetails.StopDetails();
+        unknownStops.setDepartureStop(new TransitDetails.StopDetails.Stop("Unknown Departure Stop", "Unknown Location"));
+        unknownDetails.setStopDetails(unknownStops);
+        unknown.setTransitDetails(unknownDetails);
+
+        if (version >= 4) {
+            walk.setTravelMode("WALK");
+            bus.setTravelMode("TRANSIT");
+            drive.setTravelMode("DRIVE");
+        }
+        leg.setSteps(List.of(walk, bus, drive, unknown));
+        route.setLegs(List.of(leg));
+
+        RouteResponse.RouteDetail empty = new RouteResponse.RouteDetail();
+        empty.setSummary("No Summary");
+        empty.setPolyline("No Polyline");
+
+        response.setRoutes(List.of(route, empty));
+        Map<String, Long> timings = new LinkedHashMap<>();
+        timings.put("google", 120L);
+        timings.put("otp", 340L);
+        response.setTimings(timings);
+        if (version >= 3) {
+            response.setDroppedOptimizations(List.of("otp"));
+        }
+
+        CachedRoute entry = new CachedRoute(response, 1736125200000L, 1736125500000L, 1736126100000L, 460L);
+        if (version >= 2) {
+            entry.setFingerprint(0x5eed1234abcdL);
+            entry.setVolatility(0.25);
+        }
+        return entry;
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.google_backend.common.redis.service;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 租约写入脚本在真实 Redis 上的行为：租约仍被持有、租约过期且 token 更新、租约过期且已有更新的结果
+ * 使用 Testcontainers 启动 Redis，没有 Docker 时跳过
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class RedisLeaseServiceTests {
+
+    private static final long CACHE_TTL_MS = 60_000;
+
+    // 足够短，测试中等待其过期
+    private static final long SHORT_LEASE_MS = 100;
+
+    @Container
+    private static final GenericContainer<?> REDIS =
+            new GenericContainer<>(DockerImageName.parse("redis:7-alpine")).withExposedPorts(6379);
+
+    private static LettuceConnectionFactory connectionFactory;
+    private static StringRedisTemplate stringRedisTemplate;
+
+    private RedisLeaseService leaseService;
+    private String key;
+
+    @BeforeAll
+    static void connect() {
+        connectionFactory = new LettuceConnectionFactory(REDIS.getHost(), REDIS.getMappedPort(6379));
+        connectionFactory.afterPropertiesSet();
+        stringRedisTemplate = new StringRedisTemplate(connectionFactory);
+    }
+
+    @AfterAll
+    static void disconnect() {
+        connectionFactory.destroy();
+    }
+
+    @BeforeEach
+    void setUp() {
+        leaseService = new RedisLeaseService();
+        ReflectionTestUtils.setField(leaseService, "stringRedisTemplate", stringRedisTemplate);
+        key = "route:test:" + UUID.randomUUID();
+    }
+
+    @Test
+    void publishesWhileHeld() {
+        RedisLeaseService.Lease lease = leaseService.tryAcquire(key, 10, TimeUnit.SECONDS);
+        assertNotNull(lease);
+        assertNull(leaseService.tryAcquire(key, 10, TimeUnit.SECONDS), "held by another node");
+
+        assertTrue(leaseService.publishAndRelease(lease, bytes("held"), CACHE_TTL_MS, TimeUnit.MILLISECONDS));
+        assertEquals("held", stringRedisTemplate.opsForValue().get(key));
+        assertFalse(leaseService.isHeld(key), "released after publish");
+        assertEquals(1L, leaseService.getStats().get("published"));
+    }
+
+    @Test
+    void publishesAfterExpiryWhenNoNewerToken() throws InterruptedException {
+        RedisLeaseService.Lease lease = leaseService.tryAcquire(key, SHORT_LEASE_MS, TimeUnit.MILLISECONDS);
+        assertNotNull(lease);
+        awaitExpiry();
+
+        assertTrue(leaseService.publishAndRelease(lease, bytes("late"), CACHE_TTL_MS, TimeUnit.MILLISECONDS));
+        assertEquals("late", stringRedisTemplate.opsForValue().get(key));
+        assertEquals(1L, leaseService.getStats().get("latePublished"));
+    }
+
+    @Test
+    void rejectsExpiredHolderAfterNewerPublish() throws InterruptedException {
+        RedisLeaseService.Lease stale = leaseService.tryAcquire(key, SHORT_LEASE_MS, TimeUnit.MILLISECONDS);
+        assertNotNull(stale);
+        awaitExpiry();
+
+        // 其他节点接管租约并先写入
+        RedisLeaseService.Lease newer = leaseService.tryAcquire(key, 10, TimeUnit.SECONDS);
+        assertNotNull(newer);
+        assertTrue(newer.getToken() > stale.getToken());
+        assertFalse(leaseService.publishAndRelease(stale, bytes("stale"), CACHE_TTL_MS, TimeUnit.MILLISECONDS),
+                "lease taken over");
+        assertTrue(leaseService.publishAndRelease(newer, bytes("newer"), CACHE_TTL_MS, TimeUnit.MILLISECONDS));
+
+        // 接管者已释放租约，旧持有者的 token 仍然更小
+        assertFalse(leaseService.publishAndRelease(stale, bytes("stale"), CACHE_TTL_MS, TimeUnit.MILLISECONDS));
+        assertEquals("newer", stringRedisTemplate.opsForValue().get(key));
+        assertEquals(2L, leaseService.getStats().get("rejected"));
+    }
+
+    @Test
+    void unleasedPublishFencesExpiredHolder() throws InterruptedException {
+        RedisLeaseService.Lease stale = leaseService.tryAcquire(key, SHORT_LEASE_MS, TimeUnit.MILLISECONDS);
+        assertNotNull(stale);
+        awaitExpiry();
+
+        // 等待超时的节点自行计算后写入
+        assertTrue(leaseService.publishIfNewer(key, bytes("fallback"), CACHE_TTL_MS, TimeUnit.MILLISECONDS));
+        assertFalse(leaseService.publishAndRelease(stale, bytes("stale"), CACHE_TTL_MS, TimeUnit.MILLISECONDS));
+        assertEquals("fallback", stringRedisTemplate.opsForValue().get(key));
+
+        // 之后持有租约的节点仍可写入
+        RedisLeaseService.Lease next = leaseService.tryAcquire(key, 10, TimeUnit.SECONDS);
+        assertNotNull(next);
+        assertTrue(leaseService.publishAndRelease(next, bytes("next"), CACHE_TTL_MS, TimeUnit.MILLISECONDS));
+        assertEquals("next", stringRedisTemplate.opsForValue().get(key));
+        assertEquals(1L, leaseService.getStats().get("unleasedPublished"));
+    }
+
+    private void awaitExpiry() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (leaseService.isHeld(key)) {
+            assertTrue(System.currentTimeMillis() < deadline, "lease did not expire");
+            Thread.sleep(20);
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.google_backend.utils.route;
+
+import com.example.google_backend.model.RouteResponse;
+import com.example.google_backend.model.RouteResponse.StepDetail.TransitDetails;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+/**
+ * 路线结构指纹：重新计算只改变时间时指纹不变
+ */
+class RouteFingerprintTests {
+
+    @Test
+    void ignoresTimesAndDerivedTimings() {
+        RouteResponse first = response("Route 1", "Central", "2025-01-06T01:15:00Z", "2025-01-06T01:25:00Z", 840, 2400);
+        RouteResponse second = response("Route 1", "Central", "2025-01-06T01:45:00Z", "2025-01-06T01:57:00Z", 120, 2580);
+        second.setTimings(Map.of("google", 95L));
+
+        assertEquals(RouteFingerprint.of(first), RouteFingerprint.of(second));
+    }
+
+    @Test
+    void changesWithLine() {
+        RouteResponse first = response("Route 1", "Central", "2025-01-06T01:15:00Z", "2025-01-06T01:25:00Z", 840, 2400);
+        RouteResponse second = response("Route 2", "Central", "2025-01-06T01:15:00Z", "2025-01-06T01:25:00Z", 840, 2400);
+
+        assertNotEquals(RouteFingerprint.of(first), RouteFingerprint.of(second));
+    }
+
+    @Test
+    void changesWithStop() {
+        RouteResponse first = response("Route 1", "Central", "2025-01-06T01:15:00Z", "2025-01-06T01:25:00Z", 840, 2400);
+        RouteResponse second = response("Route 1", "Admiralty", "2025-01-06T01:15:00Z", "2025-01-06T01:25:00Z", 840, 2400);
+
+        assertNotEquals(RouteFingerprint.of(first), RouteFingerprint.of(second));
+    }
+
+    @Test
+    void changesWithStepCount() {
+        RouteResponse first = response("Route 1", "Central", "2025-01-06T01:15:00Z", "2025-01-06T01:25:00Z", 840, 2400);
+        RouteResponse second = response("Route 1", "Central", "2025-01-06T01:15:00Z", "2025-01-06T01:25:00Z", 840, 2400);
+        List<RouteResponse.StepDetail> steps = new ArrayList<>(second.getRoutes().get(0).getLegs().get(0).getSteps());
+        steps.add(walk(45));
+        second.getRoutes().get(0).getLegs().get(0).setSteps(steps);
+
+        assertNotEquals(RouteFingerprint.of(first), RouteFingerprint.of(second));
+    }
+
+    private static RouteResponse response(String lineName, String arrivalStop, String departureTime, String arrivalTime,
+                                          long waitTimeSeconds, long durationSeconds) {
+        RouteResponse.StepDetail bus = new RouteResponse.StepDetail();
+        bus.setTravelMode("TRANSIT");
+        bus.setDuration(durationSeconds / 4);
+        TransitDetails details = new TransitDetails();
+        TransitDetails.StopDetails stopDetails = new TransitDetails.StopDetails();
+        stopDetails.setDepartureStop(new TransitDetails.StopDetails.Stop("Tsim Sha Tsui", 22.2976, 114.1722));
+        stopDetails.setArrivalStop(new TransitDetails.StopDetails.Stop(arrivalStop, 22.2819, 114.1581));
+        stopDetails.setDepartureTime(departureTime);
+        stopDetails.setArrivalTime(arrivalTime);
+        details.setStopDetails(stopDetails);
+        details.setWaitTimeSeconds(waitTimeSeconds);
+        details.setStopCount(8);
+        TransitDetails.TransitLine line = new TransitDetails.TransitLine();
+        line.setName(lineName);
+        line.setNameShort(lineName.substring(lineName.length() - 1));
+        details.setTransitLine(line);
+        bus.setTransitDetails(details);
+
+        RouteResponse.LegDetail leg = new RouteResponse.LegDetail();
+        leg.setDuration(durationSeconds / 60 + " mins");
+        leg.setSteps(List.of(walk(durationSeconds / 10), bus));
+
+        RouteResponse.RouteDetail route = new RouteResponse.RouteDetail();
+        route.setDurationSeconds(durationSeconds);
+        route.setLegs(List.of(leg));
+
+        RouteResponse response = new RouteResponse();
+        response.setRoutes(List.of(route));
+        response.setTimings(Map.of("google", 120L));
+        return response;
+    }
+
+    private static RouteResponse.StepDetail walk(long durationSeconds) {
+        RouteResponse.StepDetail walk = new RouteResponse.StepDetail();
+        walk.setTravelMode("WALK");
+        walk.setDuration(durationSeconds);
+        return walk;
+    }
+}
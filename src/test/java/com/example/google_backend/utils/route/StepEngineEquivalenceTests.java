@@ -0,0 +1,350 @@
+package com.example.google_backend.utils.route;
+
+import com.example.google_backend.benchmark.TreeRouteParser;
+import com.example.google_backend.common.google.ComputeRoutesDecoder;
+import com.example.google_backend.model.ComputeRoutesResponse;
+import com.example.google_backend.model.RouteResponse;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link StepEngine} 与原来 RouteServiceImpl 两遍处理 (JsonNode 树) 的结果对比
+ * 随机生成每个 leg 1–8 段公交的响应 (超过 5 段时走高频换乘处理)，包括缺少 stopDetails、
+ * 上下车时间、下车站和 transitDetails 的公交步骤，以及不下车换乘的连续公交；
+ * 比较输出的步骤 (含等车时间) 与登记的待替换路段。
+ */
+class StepEngineEquivalenceTests {
+
+    // 与 RouteServiceImpl 的等车阈值相同
+    private static final long MAX_WAIT_TIME_SECONDS = 600;
+
+    // 从 Instant.now() 算起的等车时间：两种实现读取当前时间的时刻不同，秒数可能差 1，比较前归零
+    private static final long NOW_BASED_WAIT_SECONDS = 1_000_000;
+
+    // 上一段公交之前的第一段等车时间从当前时间算起：过去的时间不会触发替换，将来的时间总是触发
+    private static final Instant PAST = Instant.parse("2025-01-06T01:00:00Z");
+    private static final Instant FUTURE = Instant.parse("2099-01-06T01:00:00Z");
+
+    private static final int LEGS = 2000;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private static final StepEngine.Policy POLICY = new StepEngine.Policy() {
+        @Override
+        public boolean shouldReplace(StepEngine.ParsedStep step, long waitTimeSeconds) {
+            return waitTimeSeconds > MAX_WAIT_TIME_SECONDS;
+        }
+
+        @Override
+        public boolean worthPlanning(RouteResponse.StepDetail.TransitDetails.StopDetails.Stop startStop,
+                                     RouteResponse.StepDetail.TransitDetails.StopDetails.Stop endStop,
+                                     Instant departureTime, long transitSeconds) {
+            return worth(transitSeconds);
+        }
+    };
+
+    @Test
+    void matchesLegacyProcessingOnGeneratedLegs() throws IOException {
+        Random random = new Random(20250106L);
+        int highTransitLegs = 0;
+        int registered = 0;
+        for (int n = 0; n < LEGS; n++) {
+            int transitCount = 1 + n % 8;
+            boolean highTransit = transitCount > 5;
+            ObjectNode root = mapper.createObjectNode();
+            ObjectNode leg = root.putArray("routes").addObject().putArray("legs").addObject();
+            generateSteps(leg.putArray("steps"), transitCount, highTransit, random);
+            String json = mapper.writeValueAsString(root);
+
+            List<String> legacyCandidates = new ArrayList<>();
+            List<RouteResponse.StepDetail> legacy = LegacySteps.processSteps(mapper.readTree(json).path("routes")
+                    .get(0).path("legs").get(0), legacyCandidates);
+
+            ComputeRoutesResponse decoded = ComputeRoutesDecoder.decode(json);
+            List<String> engineCandidates = new ArrayList<>();
+            List<RouteResponse.StepDetail> engine = StepEngine.process(decoded.routes().get(0).legs().get(0).steps(),
+                    POLICY, (legSteps, startIndex, originalSteps, startStop, endStop) ->
+                            engineCandidates.add(candidate(startIndex, originalSteps, startStop, endStop)));
+
+            assertEquals(serialize(legacy), serialize(engine), "steps of leg " + n + ": " + json);
+            assertEquals(legacyCandidates, engineCandidates, "candidates of leg " + n + ": " + json);
+            if (highTransit) {
+                highTransitLegs++;
+            }
+            registered += engineCandidates.size();
+        }
+        // 两个分支与替换登记都覆盖到
+        assertTrue(highTransitLegs > 0);
+        assertTrue(registered > LEGS / 4, "registered " + registered);
+    }
+
+    private static boolean worth(long transitSeconds) {
+        // 公交时间未知或较长时才规划，两个分支都会出现
+        return transitSeconds < 0 || transitSeconds > 900;
+    }
+
+    private static String candidate(int startIndex, List<RouteResponse.StepDetail> originalSteps,
+                                     RouteResponse.StepDetail.TransitDetails.StopDetails.Stop startStop,
+                                     RouteResponse.StepDetail.TransitDetails.StopDetails.Stop endStop) {
+        return startIndex + ":" + originalSteps.size() + ":" + startStop.getName() + "->" + endStop.getName();
+    }
+
+    private String serialize(List<RouteResponse.StepDetail> steps) throws IOException {
+        for (RouteResponse.StepDetail step : steps) {
+            RouteResponse.StepDetail.TransitDetails td = step.getTransitDetails();
+            if (td != null && Math.abs(td.getWaitTimeSeconds()) > NOW_BASED_WAIT_SECONDS) {
+                td.setWaitTimeSeconds(0);
+            }
+        }
+        return mapper.writeValueAsString(steps);
+    }
+
+    /**
+     * 步行与公交交替的步骤
+     * 高频换乘的 leg 中公交步骤总是带上车站：原来的处理按上车站坐标匹配保留的公交段，缺少时会抛出异常
+     */
+    private void generateSteps(ArrayNode steps, int transitCount, boolean highTransit, Random random) {
+        Instant time = random.nextBoolean() ? PAST : FUTURE;
+        int transit = 0;
+        while (transit < transitCount) {
+            int walks = random.nextInt(4);
+            for (int w = 0; w < walks; w++) {
+                ObjectNode walk = steps.addObject();
+                walk.put("distanceMeters", 80);
+                walk.put("staticDuration", (30 + random.nextInt(120)) + "s");
+                walk.putObject("polyline").put("encodedPolyline", "wHJy@P");
+                walk.putObject("navigationInstruction").put("instructions", "Walk " + w);
+                // 缺少 travelMode 的步骤按步行处理
+                if (random.nextInt(5) != 0) {
+                    walk.put("travelMode", "WALK");
+                }
+                time = time.plusSeconds(60);
+            }
+            // 不下车换乘的连续公交
+            int run = Math.min(transitCount - transit, random.nextInt(4) == 0 ? 2 + random.nextInt(2) : 1);
+            for (int r = 0; r < run; r++) {
+                long wait = random.nextBoolean() ? 60 + random.nextInt(300) : 700 + random.nextInt(900);
+                Instant departure = time.plusSeconds(r == 0 ? wait : 60);
+                Instant arrival = departure.plusSeconds(120 + random.nextInt(900));
+                steps.add(transitStep(transit, departure, arrival, highTransit, random));
+                time = arrival;
+                transit++;
+            }
+        }
+        if (random.nextBoolean()) {
+            ObjectNode walk = steps.addObject();
+            walk.put("staticDuration", "90s");
+            walk.put("travelMode", "WALK");
+        }
+    }
+
+    private ObjectNode transitStep(int index, Instant departure, Instant arrival, boolean highTransit, Random random) {
+        ObjectNode step = mapper.createObjectNode();
+        step.put("distanceMeters", 3000);
+        step.put("staticDuration", Duration.between(departure, arrival).getSeconds() + "s");
+        step.putObject("polyline").put("encodedPolyline", "a~l~Fjk~uO");
+        step.putObject("navigationInstruction").put("instructions", "Bus " + index);
+        step.put("travelMode", "TRANSIT");
+
+        int variant = random.nextInt(highTransit ? 4 : 7);
+        if (variant == 6) {
+            // 没有 transitDetails
+            return step;
+        }
+        ObjectNode transit = step.putObject("transitDetails");
+        if (variant == 5) {
+            // 没有 stopDetails
+            transit.put("headsign", "Central");
+            return step;
+        }
+        ObjectNode stops = transit.putObject("stopDetails");
+        stop(stops.putObject("departureStop"), "Stop " + index, 22.30 + index * 0.001);
+        if (variant != 4) {
+            stop(stops.putObject("arrivalStop"), "Stop " + (index + 1), 22.30 + (index + 1) * 0.001);
+        }
+        if (variant != 1) {
+            stops.put("departureTime", departure.toString());
+        }
+        if (variant != 2) {
+            stops.put("arrivalTime", arrival.toString());
+        }
+        transit.put("headsign", "Central");
+        ObjectNode line = transit.putObject("transitLine");
+        line.put("name", "Route " + index);
+        line.put("nameShort", String.valueOf(index));
+        ObjectNode vehicle = line.putObject("vehicle");
+        vehicle.putObject("name").put("text", "Bus");
+        vehicle.put("type", "BUS");
+        transit.put("stopCount", 3 + index);
+        return step;
+    }
+
+    private static void stop(ObjectNode stop, String name, double latitude) {
+        stop.put("name", name);
+        ObjectNode latLng = stop.putObject("location").putObject("latLng");
+        latLng.put("latitude", latitude);
+        latLng.put("longitude", 114.17);
+    }
+
+    /**
+     * 原来的 RouteServiceImpl 步骤处理 (两遍解析、向后查找时重新解析、按上车站坐标匹配保留的公交段)
+     * 替换判断换成 {@link #POLICY} 的条件；登记待替换路段后按乘坐了这段公交推进状态 (与引擎的修正一致)
+     */
+    static final class LegacySteps {
+
+        static List<RouteResponse.StepDetail> processSteps(JsonNode legNode, List<String> candidates) {
+            List<RouteResponse.StepDetail> transitSteps = new ArrayList<>();
+            int transitCount = 0;
+            for (JsonNode stepNode : legNode.get("steps")) {
+                if (stepNode.has("travelMode")
+                        && "TRANSIT".equalsIgnoreCase(stepNode.get("travelMode").asText())) {
+                    transitCount++;
+                    if (stepNode.has("transitDetails") && !stepNode.get("transitDetails").isNull()) {
+                        RouteResponse.StepDetail stepDetail = TreeRouteParser.parseStep(stepNode);
+                        stepDetail.setTransitDetails(TreeRouteParser.parseTransitDetails(stepNode.get("transitDetails")));
+                        transitSteps.add(stepDetail);
+                    }
+                }
+            }
+            return transitCount > 5
+                    ? processHighTransitSteps(legNode, transitSteps)
+                    : processNormalSteps(legNode, candidates);
+        }
+
+        private static List<RouteResponse.StepDetail> processHighTransitSteps(JsonNode legNode,
+                                                                              List<RouteResponse.StepDetail> transitSteps) {
+            List<RouteResponse.StepDetail> steps = new ArrayList<>();
+            transitSteps.sort((s1, s2) -> Long.compare(s1.getTransitDetails().getWaitTimeSeconds(),
+                    s2.getTransitDetails().getWaitTimeSeconds()));
+            List<RouteResponse.StepDetail> keptSteps = transitSteps.subList(0, Math.min(3, transitSteps.size()));
+
+            for (JsonNode stepNode : legNode.get("steps")) {
+                String stepTravelMode = stepNode.has("travelMode") ? stepNode.get("travelMode").asText() : "WALK";
+                if (!"TRANSIT".equalsIgnoreCase(stepTravelMode)) {
+                    steps.add(TreeRouteParser.parseStep(stepNode));
+                } else if (stepNode.has("transitDetails")) {
+                    RouteResponse.StepDetail stepDetail = TreeRouteParser.parseStep(stepNode);
+                    RouteResponse.StepDetail.TransitDetails td =
+                            TreeRouteParser.parseTransitDetails(stepNode.get("transitDetails"));
+                    stepDetail.setTransitDetails(td);
+                    boolean kept = keptSteps.stream().anyMatch(k ->
+                            k.getTransitDetails().getStopDetails().getDepartureStop().getLocation()
+                                    .equals(td.getStopDetails().getDepartureStop().getLocation()));
+                    if (kept) {
+                        steps.add(stepDetail);
+                    }
+                }
+            }
+            return steps;
+        }
+
+        private static List<RouteResponse.StepDetail> processNormalSteps(JsonNode legNode, List<String> candidates) {
+            List<RouteResponse.StepDetail> steps = new ArrayList<>();
+            String previousTravelMode = "WALK";
+            long previousWalkDuration = 0;
+            Instant curStepArrivalTime = Instant.now();
+            Instant previousStepArrivalTime = Instant.now();
+
+            for (int i = 0; i < legNode.get("steps").size(); i++) {
+                JsonNode stepNode = legNode.get("steps").get(i);
+                RouteResponse.StepDetail stepDetail = TreeRouteParser.parseStep(stepNode);
+                String stepTravelMode = stepNode.has("travelMode") ? stepNode.get("travelMode").asText() : "WALK";
+
+                if ("WALK".equalsIgnoreCase(previousTravelMode) && "WALK".equalsIgnoreCase(stepTravelMode)) {
+                    previousWalkDuration += stepDetail.getDuration();
+                }
+
+                if ("TRANSIT".equalsIgnoreCase(stepTravelMode)
+                        && stepNode.has("transitDetails") && !stepNode.get("transitDetails").isNull()) {
+                    RouteResponse.StepDetail.TransitDetails td =
+                            TreeRouteParser.parseTransitDetails(stepNode.get("transitDetails"));
+                    stepDetail.setTransitDetails(td);
+                    if (td.getStopDetails() != null && td.getStopDetails().getArrivalTime() != null) {
+                        curStepArrivalTime = Instant.parse(td.getStopDetails().getArrivalTime());
+                    }
+
+                    if ("WALK".equalsIgnoreCase(previousTravelMode)
+                            && td.getStopDetails() != null && td.getStopDetails().getDepartureTime() != null) {
+                        Instant departureTime = Instant.parse(td.getStopDetails().getDepartureTime());
+                        Instant walkToStationTime = previousStepArrivalTime.plusSeconds(previousWalkDuration);
+                        long waitTimeSeconds = Duration.between(walkToStationTime, departureTime).getSeconds();
+                        td.setWaitTimeSeconds(waitTimeSeconds);
+
+                        if (waitTimeSeconds > MAX_WAIT_TIME_SECONDS) {
+                            int j = i;
+                            RouteResponse.StepDetail.TransitDetails.StopDetails.Stop startStop =
+                                    td.getStopDetails().getDepartureStop();
+                            RouteResponse.StepDetail.TransitDetails.StopDetails.Stop endStop = null;
+                            List<RouteResponse.StepDetail> originalSteps = new ArrayList<>();
+                            String lastArrivalTime = null;
+                            while (j < legNode.get("steps").size()) {
+                                JsonNode currentNode = legNode.get("steps").get(j);
+                                String currentMode = currentNode.has("travelMode")
+                                        ? currentNode.get("travelMode").asText() : "WALK";
+                                if (!"TRANSIT".equalsIgnoreCase(currentMode)) {
+                                    break;
+                                }
+                                RouteResponse.StepDetail currentStep = j == i ? stepDetail : TreeRouteParser.parseStep(currentNode);
+                                JsonNode currentTransitDetails = currentNode.get("transitDetails");
+                                if (currentTransitDetails != null && !currentTransitDetails.isNull()) {
+                                    RouteResponse.StepDetail.TransitDetails currentTd =
+                                            j == i ? td : TreeRouteParser.parseTransitDetails(currentTransitDetails);
+                                    currentStep.setTransitDetails(currentTd);
+                                    if (currentTd.getStopDetails() != null) {
+                                        endStop = currentTd.getStopDetails().getArrivalStop();
+                                        lastArrivalTime = currentTd.getStopDetails().getArrivalTime();
+                                    }
+                                }
+                                originalSteps.add(currentStep);
+                                j++;
+                            }
+
+                            long transitSeconds = lastArrivalTime == null ? -1
+                                    : Duration.between(walkToStationTime, Instant.parse(lastArrivalTime)).getSeconds();
+
+                            if (startStop != null && endStop != null && worth(transitSeconds)) {
+                                candidates.add(candidate(steps.size(), originalSteps, startStop, endStop));
+                                steps.addAll(originalSteps);
+
+                                for (RouteResponse.StepDetail original : originalSteps.subList(1, originalSteps.size())) {
+                                    RouteResponse.StepDetail.TransitDetails originalTd = original.getTransitDetails();
+                                    if (originalTd != null && originalTd.getStopDetails() != null
+                                            && originalTd.getStopDetails().getArrivalTime() != null) {
+                                        curStepArrivalTime = Instant.parse(originalTd.getStopDetails().getArrivalTime());
+                                    }
+                                }
+                                previousStepArrivalTime = curStepArrivalTime;
+                                previousTravelMode = "TRANSIT";
+                                previousWalkDuration = 0;
+
+                                i = j - 1;
+                                continue;
+                            }
+                        }
+                    }
+                }
+
+                previousStepArrivalTime = curStepArrivalTime;
+                previousTravelMode = stepTravelMode;
+                steps.add(stepDetail);
+                if (!("WALK".equalsIgnoreCase(previousTravelMode) && "WALK".equalsIgnoreCase(stepTravelMode))) {
+                    previousWalkDuration = 0;
+                }
+            }
+            return steps;
+        }
+    }
+}
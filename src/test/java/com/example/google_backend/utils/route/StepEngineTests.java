@@ -0,0 +1,115 @@
+package com.example.google_backend.utils.route;
+
+import com.example.google_backend.model.ComputeRoutesResponse;
+import com.example.google_backend.model.RouteResponse;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 步骤处理引擎：登记待替换路段后的状态推进
+ */
+class StepEngineTests {
+
+    // 与 RouteServiceImpl 的等车阈值相同
+    private static final long MAX_WAIT_TIME_SECONDS = 600;
+
+    private final Instant base = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+
+    @Test
+    void registeredRunAdvancesStateForFollowingTransit() {
+        List<ComputeRoutesResponse.Step> legSteps = List.of(
+                walk(60),
+                // 等车约 30 分钟，登记替换；规划失败时原步骤保留
+                transit("A", "B", base.plusSeconds(1800), base.plusSeconds(2400)),
+                walk(60),
+                // 等车时间从 B 站的到达时间算起
+                transit("C", "D", base.plusSeconds(2580), base.plusSeconds(3000)));
+
+        List<String> registered = new ArrayList<>();
+        List<RouteResponse.StepDetail> result = StepEngine.process(legSteps, waitPolicy(),
+                (steps, startIndex, originalSteps, startStop, endStop) ->
+                        registered.add(startStop.getName() + "->" + endStop.getName()));
+
+        assertEquals(List.of("A->B"), registered);
+        assertEquals(4, result.size());
+        assertEquals(180, result.get(3).getTransitDetails().getWaitTimeSeconds());
+    }
+
+    @Test
+    void registeredRunUsesLastArrivalOfConsecutiveTransit() {
+        List<ComputeRoutesResponse.Step> legSteps = List.of(
+                walk(60),
+                transit("A", "B", base.plusSeconds(1800), base.plusSeconds(2400)),
+                // 连续公交 (不下车换乘)
+                transit("B", "C", base.plusSeconds(2460), base.plusSeconds(2700)),
+                walk(120),
+                transit("D", "E", base.plusSeconds(3000), base.plusSeconds(3300)));
+
+        List<String> registered = new ArrayList<>();
+        List<RouteResponse.StepDetail> result = StepEngine.process(legSteps, waitPolicy(),
+                (steps, startIndex, originalSteps, startStop, endStop) ->
+                        registered.add(startIndex + ":" + startStop.getName() + "->" + endStop.getName()
+                                + "/" + originalSteps.size()));
+
+        assertEquals(List.of("1:A->C/2"), registered);
+        assertEquals(5, result.size());
+        assertEquals(300, result.get(4).getTransitDetails().getWaitTimeSeconds());
+    }
+
+    @Test
+    void registeredRunDoesNotRegisterFollowingTransit() {
+        List<ComputeRoutesResponse.Step> legSteps = List.of(
+                walk(60),
+                transit("A", "B", base.plusSeconds(1800), base.plusSeconds(2400)),
+                walk(60),
+                walk(60),
+                // 从 B 站步行后等车约 6 分钟，不需要替换；步行时间不能累计到上车前的步行
+                transit("C", "D", base.plusSeconds(2800), base.plusSeconds(3200)));
+
+        List<String> registered = new ArrayList<>();
+        List<RouteResponse.StepDetail> result = StepEngine.process(legSteps, waitPolicy(),
+                (steps, startIndex, originalSteps, startStop, endStop) ->
+                        registered.add(startStop.getName() + "->" + endStop.getName()));
+
+        assertEquals(List.of("A->B"), registered);
+        assertEquals(5, result.size());
+        assertEquals(340, result.get(4).getTransitDetails().getWaitTimeSeconds());
+    }
+
+    private static StepEngine.Policy waitPolicy() {
+        return new StepEngine.Policy() {
+            @Override
+            public boolean shouldReplace(StepEngine.ParsedStep step, long waitTimeSeconds) {
+                return waitTimeSeconds > MAX_WAIT_TIME_SECONDS;
+            }
+
+            @Override
+            public boolean worthPlanning(RouteResponse.StepDetail.TransitDetails.StopDetails.Stop startStop,
+                                         RouteResponse.StepDetail.TransitDetails.StopDetails.Stop endStop,
+                                         Instant departureTime, long transitSeconds) {
+                return true;
+            }
+        };
+    }
+
+    private static ComputeRoutesResponse.Step walk(long seconds) {
+        return new ComputeRoutesResponse.Step("Walk", 80, seconds, "wHJy@P", "WALK", null);
+    }
+
+    private static ComputeRoutesResponse.Step transit(String from, String to, Instant departure, Instant arrival) {
+        ComputeRoutesResponse.Line line = new ComputeRoutesResponse.Line(null, "Route 1", null, "1", null,
+                true, "Bus", "BUS", null);
+        ComputeRoutesResponse.Transit transit = new ComputeRoutesResponse.Transit(
+                new ComputeRoutesResponse.Stop(from, new ComputeRoutesResponse.LatLng(22.30, 114.17)),
+                new ComputeRoutesResponse.Stop(to, new ComputeRoutesResponse.LatLng(22.31, 114.17)),
+                departure.toString(), arrival.toString(), true, "Central", line, 8);
+        return new ComputeRoutesResponse.Step("Bus", 3000, arrival.getEpochSecond() - departure.getEpochSecond(),
+                "a~l~Fjk~uO", "TRANSIT", transit);
+    }
+}